@@ -0,0 +1,38 @@
+package com.carwash.common.cache;
+
+import lombok.Data;
+
+/**
+ * 缓存命中统计快照
+ */
+@Data
+public class CacheStats {
+
+    /**
+     * 命中次数
+     */
+    private final long hits;
+
+    /**
+     * 未命中次数
+     */
+    private final long misses;
+
+    /**
+     * 因容量淘汰的条目数
+     */
+    private final long evictions;
+
+    /**
+     * 当前条目数
+     */
+    private final int size;
+
+    /**
+     * 命中率（0~1），无访问时为 0
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0D : (double) hits / total;
+    }
+}
@@ -0,0 +1,185 @@
+package com.carwash.common.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 合并加载的进程内缓存：适合键很少、计算代价高的结果（如仪表盘统计）
+ * - 同一个键同一时刻最多一次加载，并发未命中的请求等待这次加载的结果
+ * - 超过 ttl 但未超过 maxStale 的条目直接返回旧值，同时在后台刷新；超过 maxStale 的按未命中处理
+ * - invalidate 只把条目标记为过期（仍可作为旧值返回），失效前已开始的加载写回的结果同样视为过期
+ * 条目不做容量淘汰，键的数量由调用方保证有限
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class SingleFlightCache<K, V> {
+
+    private final long ttlMillis;
+    private final long maxStaleMillis;
+    private final Executor refreshExecutor;
+    private final LongSupplier clock;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    /** 失效代数：每次失效加一，用于识别失效前开始的加载 */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder refreshRejected = new LongAdder();
+
+    public SingleFlightCache(long ttlMillis, long maxStaleMillis, Executor refreshExecutor) {
+        this(ttlMillis, maxStaleMillis, refreshExecutor, System::currentTimeMillis);
+    }
+
+    SingleFlightCache(long ttlMillis, long maxStaleMillis, Executor refreshExecutor, LongSupplier clock) {
+        if (ttlMillis <= 0 || maxStaleMillis < ttlMillis) {
+            throw new IllegalArgumentException("过期时间必须大于0，且旧值保留时间不小于过期时间");
+        }
+        this.ttlMillis = ttlMillis;
+        this.maxStaleMillis = maxStaleMillis;
+        this.refreshExecutor = refreshExecutor;
+        this.clock = clock;
+    }
+
+    /**
+     * 读取缓存，未命中时由 loader 加载；loader 的异常原样抛给本次加载的所有等待者
+     */
+    public V get(K key, Supplier<V> loader) {
+        long now = clock.getAsLong();
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.invalidated && now - entry.loadedAt < ttlMillis) {
+            hits.increment();
+            return entry.value;
+        }
+        if (entry != null && now - entry.loadedAt < maxStaleMillis) {
+            staleHits.increment();
+            refreshAsync(key, loader);
+            return entry.value;
+        }
+        misses.increment();
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        load(key, loader, mine);
+        return await(mine);
+    }
+
+    /**
+     * 标记条目过期，下次读取返回旧值并触发刷新
+     */
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        entries.computeIfPresent(key, (k, entry) -> entry.invalidate());
+    }
+
+    /**
+     * 标记全部条目过期
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.replaceAll((k, entry) -> entry.invalidate());
+    }
+
+    /**
+     * 命中与加载统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("staleHits", staleHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("loads", loads.sum());
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("refreshRejected", refreshRejected.sum());
+        stats.put("size", entries.size());
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("maxStaleMillis", maxStaleMillis);
+        return stats;
+    }
+
+    private void refreshAsync(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, mine) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> load(key, loader, mine));
+        } catch (RejectedExecutionException e) {
+            // 刷新线程已满，继续返回旧值，下次读取再尝试
+            refreshRejected.increment();
+            inFlight.remove(key, mine);
+            mine.complete(null);
+        }
+    }
+
+    private void load(K key, Supplier<V> loader, CompletableFuture<V> future) {
+        long startGeneration = generation.get();
+        loads.increment();
+        try {
+            V value = loader.get();
+            if (value != null) {
+                entries.put(key, new Entry<>(value, clock.getAsLong(), generation.get() != startGeneration));
+                // 写回与失效并发时，由本次加载补上过期标记
+                if (generation.get() != startGeneration) {
+                    entries.computeIfPresent(key, (k, entry) -> entry.invalidate());
+                }
+            }
+            future.complete(value);
+        } catch (RuntimeException | Error e) {
+            loadFailures.increment();
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+        private final boolean invalidated;
+
+        private Entry(V value, long loadedAt, boolean invalidated) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.invalidated = invalidated;
+        }
+
+        private Entry<V> invalidate() {
+            return invalidated ? this : new Entry<>(value, loadedAt, true);
+        }
+    }
+}
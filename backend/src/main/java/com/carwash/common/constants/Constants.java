@@ -71,6 +71,8 @@ public class Constants {
         public static final String SERVICE_PREFIX = "service:";
         public static final String APPOINTMENT_PREFIX = "appointment:";
         public static final String TIME_SLOT_PREFIX = "time_slot:";
+        public static final String IDEMPOTENCY_PREFIX = "idempotency:";
+        public static final String WAITLIST_PREFIX = "waitlist:";
         
         public static final int DEFAULT_EXPIRE_TIME = 3600; // 1小时
         public static final int USER_EXPIRE_TIME = 7200; // 2小时
@@ -109,4 +111,19 @@ public class Constants {
         public static final int WORK_END_HOUR = 20; // 营业结束时间
         public static final int TIME_SLOT_DURATION = 60; // 时间段长度（分钟）
     }
-}
\ No newline at end of file
+
+    /**
+     * 事务发件箱相关常量
+     */
+    public static class Outbox {
+        public static final String TYPE_ORDER_STATUS_PUSH = "ORDER_STATUS_PUSH"; // 订单状态 WebSocket 推送
+        public static final String TYPE_ORDER_STATUS_SMS = "ORDER_STATUS_SMS"; // 订单状态短信通知
+
+        public static final String STATUS_PENDING = "PENDING";
+        public static final String STATUS_PROCESSING = "PROCESSING";
+        public static final String STATUS_SENT = "SENT";
+        public static final String STATUS_FAILED = "FAILED";
+
+        public static final int MAX_ATTEMPTS = 8; // 最大投递次数
+    }
+}
@@ -49,12 +49,16 @@ public enum ResultCode {
     APPOINTMENT_CONFLICT(3002, "预约时间冲突"),
     APPOINTMENT_EXPIRED(3003, "预约已过期"),
     APPOINTMENT_CANCELLED(3004, "预约已取消"),
+    IDEMPOTENCY_KEY_REUSED(3005, "幂等键已被其他预约请求使用"),
+    REQUEST_IN_PROGRESS(3006, "相同请求正在处理中，请稍后重试"),
+    WAITLIST_FULL(3007, "候补队列已满"),
     
     ORDER_NOT_FOUND(4001, "订单不存在"),
     ORDER_STATUS_ERROR(4002, "订单状态错误"),
     ORDER_CANNOT_CANCEL(4003, "订单无法取消"),
     INVALID_STATUS_TRANSITION(4004, "无效的状态转换"),
     ORDER_ALREADY_PAID(4005, "订单已支付"),
+    ORDER_CONCURRENT_MODIFIED(4006, "订单已被其他操作修改，请刷新后重试"),
     
     // 支付相关
     PAYMENT_NOT_FOUND(5001, "支付记录不存在"),
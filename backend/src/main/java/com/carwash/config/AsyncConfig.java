@@ -0,0 +1,76 @@
+package com.carwash.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 异步任务线程池配置类
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * 发件箱投递线程池
+     * 队列满时拒绝提交，事件仍在 outbox_events 表中，由定时轮询补投
+     */
+    @Bean
+    public ThreadPoolTaskExecutor outboxExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("carwash-outbox-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    /**
+     * 订单批量清理线程池
+     * 单线程顺序执行，多个清理任务排队，避免并发清理放大数据库压力
+     */
+    @Bean
+    public ThreadPoolTaskExecutor bookingPurgeExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("carwash-purge-");
+        return executor;
+    }
+
+    /**
+     * 统计查询线程池
+     * 仪表盘的各项独立统计并行执行；线程数小于数据库连接池（HikariCP 默认 10），不挤占请求线程的连接，
+     * 队列满时拒绝提交，对应字段按超时处理
+     */
+    @Bean
+    public ThreadPoolTaskExecutor statisticsExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(6);
+        executor.setMaxPoolSize(6);
+        executor.setQueueCapacity(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("carwash-stats-");
+        return executor;
+    }
+
+    /**
+     * 统计结果后台刷新线程池
+     * 与统计查询线程池分开，刷新任务等待并行查询结果时不会占满查询线程；每个缓存键同一时刻最多一个刷新任务
+     */
+    @Bean
+    public ThreadPoolTaskExecutor statisticsRefreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(10);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("carwash-stats-refresh-");
+        return executor;
+    }
+}
@@ -78,7 +78,8 @@ public class SecurityConfig {
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/public/**").permitAll()
                 .requestMatchers("/api/services/list").permitAll()
-                .requestMatchers("/api/time-slots/available").permitAll()
+                .requestMatchers("/api/time-slots/available", "/api/time-slots/available/range",
+                        "/api/time-slots/calendar").permitAll()
                 .requestMatchers("/api/bookings").permitAll()
                 .requestMatchers("/api/test/**").permitAll()
                 .requestMatchers("/api/debug/**").permitAll()
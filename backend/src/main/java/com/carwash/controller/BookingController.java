@@ -1,21 +1,49 @@
 package com.carwash.controller;
 
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.carwash.common.BusinessException;
 import com.carwash.common.result.Result;
+import com.carwash.common.result.ResultCode;
 import lombok.extern.slf4j.Slf4j;
+import com.carwash.dto.BatchStatusUpdateRequest;
+import com.carwash.dto.BatchStatusUpdateResponse;
+import com.carwash.dto.BookingPurgeProgress;
+import com.carwash.dto.BookingPurgeRequest;
 import com.carwash.dto.BookingRequest;
 import com.carwash.dto.BookingResponse;
+import com.carwash.dto.CursorPageResponse;
+import com.carwash.dto.DayScheduleResponse;
+import com.carwash.dto.WaitlistResponse;
+import com.carwash.service.BookingExportService;
 import com.carwash.service.BookingService;
+import com.carwash.service.booking.BookingCache;
+import com.carwash.service.booking.BookingExportFormat;
+import com.carwash.service.booking.BookingIdempotencyGuard;
+import com.carwash.service.booking.BookingPurgeJob;
+import com.carwash.service.booking.BookingSearchIndex;
+import com.carwash.service.booking.BookingWaitlist;
+import com.carwash.service.booking.DayScheduleIndex;
+import com.carwash.utils.TimeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import jakarta.validation.Valid;
 
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.stream.Collectors;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * 预约订单控制器
@@ -32,12 +60,35 @@ public class BookingController {
     @Autowired
     private BookingService bookingService;
 
+    @Autowired
+    private BookingExportService bookingExportService;
+
+    @Autowired
+    private BookingIdempotencyGuard bookingIdempotencyGuard;
+
+    @Autowired
+    private BookingCache bookingCache;
+
+    @Autowired
+    private BookingPurgeJob bookingPurgeJob;
+
+    @Autowired
+    private DayScheduleIndex dayScheduleIndex;
+
+    @Autowired
+    private BookingWaitlist bookingWaitlist;
+
+    @Autowired
+    private BookingSearchIndex bookingSearchIndex;
+
     /**
      * 创建预约订单
+     * 携带 Idempotency-Key 请求头时，相同键的重试请求直接返回首次创建的订单
      */
     @PostMapping
-    public Result<BookingResponse> createBooking(@RequestBody BookingRequest request) {
-        log.info("创建预约订单请求: {}", request);
+    public Result<BookingResponse> createBooking(@RequestBody BookingRequest request,
+                                                 @RequestHeader(value = BookingIdempotencyGuard.HEADER, required = false) String idempotencyKey) {
+        log.info("创建预约订单请求: {}, 幂等键: {}", request, idempotencyKey);
         
         try {
             // 验证请求参数
@@ -50,12 +101,10 @@ public class BookingController {
                 return Result.error("服务ID不能为空");
             }
             
-            Long bookingId = bookingService.createBooking(request);
-            log.info("预约订单创建成功，订单ID: {}", bookingId);
-            
-            // 返回完整的订单信息
-            BookingResponse booking = bookingService.getBookingById(bookingId);
-            return Result.success(booking);
+            if (idempotencyKey == null) {
+                return Result.success(createAndLoad(request));
+            }
+            return Result.success(bookingIdempotencyGuard.execute(idempotencyKey, request, () -> createAndLoad(request)));
             
         } catch (Exception e) {
             log.error("创建预约订单失败", e);
@@ -63,6 +112,44 @@ public class BookingController {
         }
     }
 
+    private BookingResponse createAndLoad(BookingRequest request) {
+        Long bookingId = bookingService.createBooking(request);
+        log.info("预约订单创建成功，订单ID: {}", bookingId);
+
+        // 返回完整的订单信息
+        return bookingService.getBookingById(bookingId);
+    }
+
+    /**
+     * 加入已约满时间段的候补队列，名额释放时自动为队首用户创建订单并推送通知
+     */
+    @PostMapping("/waitlist")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public Result<WaitlistResponse> joinWaitlist(@RequestBody BookingRequest request) {
+        log.info("加入候补队列请求: {}", request);
+        return Result.success(bookingWaitlist.join(request));
+    }
+
+    /**
+     * 查询候补排队位置
+     */
+    @GetMapping("/waitlist/{timeSlotId}")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public Result<WaitlistResponse> getWaitlistPosition(@PathVariable Long timeSlotId, @RequestParam Long userId) {
+        return Result.success(bookingWaitlist.position(timeSlotId, userId));
+    }
+
+    /**
+     * 离开候补队列
+     */
+    @DeleteMapping("/waitlist/{timeSlotId}")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public Result<Void> leaveWaitlist(@PathVariable Long timeSlotId, @RequestParam Long userId) {
+        log.info("离开候补队列，时间段ID: {}, 用户ID: {}", timeSlotId, userId);
+        bookingWaitlist.leave(timeSlotId, userId);
+        return Result.success();
+    }
+
     /**
      * 获取用户订单列表
      */
@@ -74,6 +161,18 @@ public class BookingController {
         return Result.success(bookings);
     }
 
+    /**
+     * 游标分页获取用户订单列表
+     */
+    @GetMapping("/user/{userId}/page")
+    @PreAuthorize("hasRole('USER') or hasRole('ADMIN')")
+    public Result<CursorPageResponse<BookingResponse>> getUserBookingsPage(@PathVariable Long userId,
+                                                                          @RequestParam(required = false) String cursor,
+                                                                          @RequestParam(required = false) Integer size) {
+        log.info("游标分页获取用户订单列表，用户ID: {}, 分页大小: {}", userId, size);
+        return Result.success(bookingService.getUserBookingsPage(userId, cursor, size));
+    }
+
     /**
      * 获取订单详情
      */
@@ -106,7 +205,7 @@ public class BookingController {
 
     /**
      * 删除订单（管理员）
-     * 使用硬删除，完全从数据库中移除订单数据
+     * 关联的支付记录和反馈记录一并删除
      */
     @DeleteMapping("/{bookingId}")
     @PreAuthorize("hasRole('ADMIN')")
@@ -142,6 +241,36 @@ public class BookingController {
         }
     }
 
+    /**
+     * 提交批量清理订单任务（管理员）
+     * 按用户 / 预约日期范围 / 状态后台分批清理，立即返回任务ID
+     */
+    @PostMapping("/admin/purge")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<BookingPurgeProgress> submitPurge(@RequestBody BookingPurgeRequest request) {
+        log.info("提交订单清理任务，条件: {}", request);
+        return Result.success(bookingPurgeJob.submit(request));
+    }
+
+    /**
+     * 查询批量清理任务进度（管理员）
+     */
+    @GetMapping("/admin/purge/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<BookingPurgeProgress> getPurgeProgress(@PathVariable String jobId) {
+        return Result.success(bookingPurgeJob.getProgress(jobId));
+    }
+
+    /**
+     * 取消批量清理任务（管理员），已完成的批次不会恢复
+     */
+    @DeleteMapping("/admin/purge/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<BookingPurgeProgress> cancelPurge(@PathVariable String jobId) {
+        log.info("取消订单清理任务，任务ID: {}", jobId);
+        return Result.success(bookingPurgeJob.cancel(jobId));
+    }
+
     /**
      * 更新订单状态（管理员）
      */
@@ -165,6 +294,23 @@ public class BookingController {
         return Result.success(updatedBooking);
     }
     
+    /**
+     * 批量更新订单状态（管理员）
+     * 逐条返回处理结果，单个订单失败不影响其余订单
+     */
+    @PutMapping("/status/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<BatchStatusUpdateResponse> updateBookingStatusBatch(@Valid @RequestBody BatchStatusUpdateRequest request) {
+        log.info("批量更新订单状态，订单数量: {}, 状态: {}", request.getBookingIds().size(), request.getStatus());
+
+        if (!isValidStatus(request.getStatus())) {
+            log.warn("无效的订单状态: {}", request.getStatus());
+            return Result.error("无效的订单状态: " + request.getStatus());
+        }
+
+        return Result.success(bookingService.updateBookingStatusBatch(request.getBookingIds(), request.getStatus()));
+    }
+
     /**
      * 验证订单状态是否有效
      */
@@ -190,6 +336,83 @@ public class BookingController {
         return Result.success(bookings);
     }
     
+    /**
+     * 游标分页获取所有订单（管理员）
+     */
+    @GetMapping("/admin/page")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<CursorPageResponse<BookingResponse>> getAllBookingsPage(@RequestParam(required = false) String cursor,
+                                                                         @RequestParam(required = false) Integer size) {
+        log.info("游标分页获取所有订单列表，分页大小: {}", size);
+        return Result.success(bookingService.getAllBookingsPage(cursor, size));
+    }
+
+    /**
+     * 按车牌号、联系电话或订单号片段搜索订单（管理员）
+     */
+    @GetMapping("/admin/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<IPage<BookingResponse>> searchBookings(@RequestParam String q,
+                                                         @RequestParam(required = false, defaultValue = "1") Long current,
+                                                         @RequestParam(required = false, defaultValue = "10") Long size) {
+        log.info("搜索订单，关键词: {}, 页码: {}, 分页大小: {}", q, current, size);
+        return Result.success(bookingService.searchBookings(q, current, size));
+    }
+
+    /**
+     * 订单搜索索引统计（管理员）
+     */
+    @GetMapping("/admin/search/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getSearchIndexStats() {
+        return Result.success(bookingSearchIndex.stats());
+    }
+
+    /**
+     * 流式导出订单（管理员）
+     * 支持 csv / ndjson 两种格式，按预约日期范围和状态过滤，数据边查边写，不在内存中累积
+     */
+    @GetMapping("/admin/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportBookings(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String status) {
+        log.info("导出订单请求，格式: {}, 日期范围: {} ~ {}, 状态: {}", format, startDate, endDate, status);
+        BookingExportFormat exportFormat = BookingExportFormat.of(format);
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "开始日期不能晚于结束日期");
+        }
+
+        String fileName = "bookings-" + TimeUtils.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + "." + exportFormat.getExtension();
+        StreamingResponseBody body = out -> bookingExportService.export(exportFormat, startDate, endDate, status, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body);
+    }
+
+    /**
+     * 运营看板单日排班（管理员）：按时间段分组的订单及各时间段占用情况，默认今天
+     */
+    @GetMapping("/admin/schedule")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<DayScheduleResponse> getDaySchedule(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return Result.success(dayScheduleIndex.getSchedule(date != null ? date : TimeUtils.today()));
+    }
+
+    /**
+     * 订单详情缓存命中统计（管理员）
+     */
+    @GetMapping("/admin/cache-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getCacheStats() {
+        return Result.success(bookingCache.stats());
+    }
+
     /**
      * 数据同步验证接口（管理员）
      */
@@ -6,6 +6,7 @@ import com.carwash.entity.Booking;
 import com.carwash.entity.Service;
 import com.carwash.entity.TimeSlot;
 import com.carwash.entity.User;
+import com.carwash.event.BookingChangedEvent;
 import com.carwash.mapper.BookingMapper;
 import com.carwash.mapper.ServiceMapper;
 import com.carwash.mapper.TimeSlotMapper;
@@ -15,6 +16,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -48,6 +50,9 @@ public class DebugController {
     @Autowired
     private BookingService bookingService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 测试数据库连接
      */
@@ -244,6 +249,7 @@ public class DebugController {
             for (Booking booking : allBookings) {
                 if (booking.getNotes() != null && booking.getNotes().contains("测试")) {
                     bookingMapper.deleteById(booking.getId());
+                    eventPublisher.publishEvent(BookingChangedEvent.removed(booking));
                     deletedCount++;
                 }
             }
@@ -1,17 +1,31 @@
 package com.carwash.controller;
 
+import com.carwash.common.BusinessException;
 import com.carwash.common.result.Result;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.AnalyticsSeriesResponse;
 import com.carwash.dto.StatisticsResponse;
 import com.carwash.service.StatisticsService;
+import com.carwash.service.statistics.BookingStatsCube;
+import com.carwash.service.statistics.DailyStatsRollup;
+import com.carwash.service.statistics.StatisticsCache;
+import com.carwash.service.statistics.StatisticsCounters;
+import com.carwash.service.statistics.StatisticsFanout;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+import java.util.Map;
+
 /**
  * 数据统计控制器
  * 
@@ -27,6 +41,21 @@ public class StatisticsController {
     @Autowired
     private StatisticsService statisticsService;
 
+    @Autowired
+    private StatisticsCounters statisticsCounters;
+
+    @Autowired
+    private DailyStatsRollup dailyStatsRollup;
+
+    @Autowired
+    private StatisticsFanout statisticsFanout;
+
+    @Autowired
+    private StatisticsCache statisticsCache;
+
+    @Autowired
+    private BookingStatsCube bookingStatsCube;
+
     /**
      * 获取系统统计概览
      */
@@ -59,4 +88,77 @@ public class StatisticsController {
         StatisticsResponse statistics = statisticsService.getMonthlyStatistics();
         return Result.success(statistics);
     }
-}
\ No newline at end of file
+
+    /**
+     * 订单趋势（管理员）：日期范围含首尾两天，粒度缺省时按范围自动选择
+     */
+    @GetMapping("/series")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<AnalyticsSeriesResponse> getSeries(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String granularity,
+            @RequestParam(required = false) String groupBy) {
+        return Result.success(statisticsService.getSeries(startDate, endDate, granularity, groupBy));
+    }
+
+    /**
+     * 统计计数器状态（管理员）
+     */
+    @GetMapping("/counters")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getCounterStats() {
+        return Result.success(statisticsCounters.stats());
+    }
+
+    /**
+     * 以数据库统计结果校正计数器（管理员）
+     */
+    @PostMapping("/counters/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Long>> reconcileCounters() {
+        log.info("管理员校正统计计数");
+        Map<String, Long> drift = statisticsCounters.reconcile();
+        if (drift == null) {
+            throw new BusinessException(ResultCode.REQUEST_IN_PROGRESS, "统计计数校正正在执行，请稍后再试");
+        }
+        statisticsCache.invalidateAll();
+        return Result.success("统计计数校正完成", drift);
+    }
+
+    /**
+     * 订单日汇总任务状态（管理员）
+     */
+    @GetMapping("/rollup")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getRollupStats() {
+        return Result.success(dailyStatsRollup.stats());
+    }
+
+    /**
+     * 统计查询耗时（管理员）
+     */
+    @GetMapping("/queries")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getQueryStats() {
+        return Result.success(statisticsFanout.stats());
+    }
+
+    /**
+     * 统计结果缓存命中情况（管理员）
+     */
+    @GetMapping("/cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getCacheStats() {
+        return Result.success(statisticsCache.stats());
+    }
+
+    /**
+     * 订单分析立方体状态（管理员）
+     */
+    @GetMapping("/cube")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Result<Map<String, Object>> getCubeStats() {
+        return Result.success(bookingStatsCube.stats());
+    }
+}
@@ -0,0 +1,140 @@
+package com.carwash.controller;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.constants.Constants;
+import com.carwash.common.result.Result;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.AvailabilityCalendarResponse;
+import com.carwash.dto.SlotReconcileResult;
+import com.carwash.dto.TimeSlotGenerationResult;
+import com.carwash.dto.TimeSlotTemplateRequest;
+import com.carwash.entity.TimeSlot;
+import com.carwash.service.TimeSlotService;
+import com.carwash.service.booking.SlotCountReconciler;
+import com.carwash.utils.TimeUtils;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.validation.Valid;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 时间段控制器
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@RestController
+@RequestMapping("/api/time-slots")
+@Tag(name = "时间段管理", description = "预约时间段相关接口")
+public class TimeSlotController {
+
+    private static final Logger log = LoggerFactory.getLogger(TimeSlotController.class);
+
+    @Autowired
+    private TimeSlotService timeSlotService;
+
+    @Autowired
+    private SlotCountReconciler slotCountReconciler;
+
+    /**
+     * 获取指定日期的可用时间段（公开接口）
+     */
+    @GetMapping("/available")
+    @Operation(summary = "获取可用时间段", description = "获取指定日期仍有名额的时间段，按开始时间排序")
+    public Result<List<TimeSlot>> getAvailableTimeSlots(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return Result.success(timeSlotService.getAvailableTimeSlots(date));
+    }
+
+    /**
+     * 获取日期范围内的可用时间段（公开接口）
+     */
+    @GetMapping("/available/range")
+    @Operation(summary = "按日期范围获取可用时间段", description = "获取日期范围内仍有名额的时间段，最多查询可预约天数范围")
+    public Result<List<TimeSlot>> getAvailableTimeSlotsInRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        return Result.success(timeSlotService.getAvailableTimeSlots(startDate, endDate));
+    }
+
+    /**
+     * 获取可预约日历（公开接口）
+     */
+    @GetMapping("/calendar")
+    @Operation(summary = "获取可预约日历", description = "返回日期范围内每天的空闲时间段数和时间段位图，默认从今天起到最远可预约日期")
+    public Result<AvailabilityCalendarResponse> getAvailabilityCalendar(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        return Result.success(timeSlotService.getAvailabilityCalendar(startDate, endDate));
+    }
+
+    /**
+     * 根据日期和时间范围查找时间段
+     */
+    @GetMapping("/find")
+    @Operation(summary = "查找时间段", description = "根据日期和时间范围（如 09:00-09:30）查找时间段")
+    public Result<TimeSlot> findTimeSlot(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam String timeRange) {
+        return Result.success(timeSlotService.findTimeSlot(date, timeRange));
+    }
+
+    /**
+     * 根据ID获取时间段详情
+     */
+    @GetMapping("/{id}")
+    @Operation(summary = "获取时间段详情", description = "根据时间段ID获取详细信息")
+    public Result<TimeSlot> getTimeSlotById(@PathVariable Long id) {
+        return Result.success(timeSlotService.getTimeSlotById(id));
+    }
+
+    /**
+     * 按营业时间模板批量生成时间段（管理员）
+     */
+    @PostMapping("/admin/generate")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "批量生成时间段", description = "按星期、营业时间、时间段时长和容量生成日期范围内的时间段，已存在的跳过")
+    public Result<TimeSlotGenerationResult> generateTimeSlots(@Valid @RequestBody TimeSlotTemplateRequest template) {
+        log.info("管理员批量生成时间段，日期范围: {} ~ {}", template.getStartDate(), template.getEndDate());
+        TimeSlotGenerationResult result = timeSlotService.generateTimeSlots(template);
+        return Result.success("时间段生成完成", result);
+    }
+
+    /**
+     * 按实际订单数校正时间段名额计数（管理员）
+     */
+    @PostMapping("/admin/reconcile")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "校正时间段名额计数", description = "以实际订单数为准修正 current_bookings，默认从昨天到最远可预约日期")
+    public Result<SlotReconcileResult> reconcileCounts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        LocalDate start = startDate != null ? startDate : TimeUtils.today().minusDays(1);
+        LocalDate end = endDate != null ? endDate : TimeUtils.today().plusDays(Constants.Appointment.MAX_ADVANCE_DAYS);
+        log.info("管理员校正时间段名额计数，日期范围: {} ~ {}", start, end);
+        SlotReconcileResult result = slotCountReconciler.reconcile(start, end);
+        if (result == null) {
+            throw new BusinessException(ResultCode.REQUEST_IN_PROGRESS, "名额计数校正正在执行，请稍后再试");
+        }
+        return Result.success("名额计数校正完成", result);
+    }
+
+    /**
+     * 名额计数校正统计（管理员）
+     */
+    @GetMapping("/admin/reconcile/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "名额计数校正统计", description = "累计偏差数、校正数及最近一次校正结果")
+    public Result<Map<String, Object>> getReconcileStats() {
+        return Result.success(slotCountReconciler.stats());
+    }
+}
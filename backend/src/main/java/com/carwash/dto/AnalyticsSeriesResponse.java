@@ -0,0 +1,95 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单趋势数据DTO
+ * 按列返回：buckets 为各时间桶起点，每个分组的各项指标数组与 buckets 一一对应，没有订单的时间桶补零
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class AnalyticsSeriesResponse {
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    /**
+     * 请求的粒度：hour / day / week / month / auto
+     */
+    private String requestedGranularity;
+
+    /**
+     * 实际粒度：时间桶数超过上限时自动降为更粗的粒度
+     */
+    private String granularity;
+
+    /**
+     * 分组维度：none / service / category / paymentMethod / status
+     */
+    private String groupBy;
+
+    /**
+     * 数据截至时间（立方体已汇总到的订单更新时间）
+     */
+    private LocalDateTime dataAsOf;
+
+    /**
+     * 时间桶起点：小时粒度为 yyyy-MM-ddTHH:mm，其余为 yyyy-MM-dd
+     */
+    private List<String> buckets;
+
+    /**
+     * 各分组的指标序列，按订单总数降序
+     */
+    private List<Series> series;
+
+    /**
+     * 单个分组的指标序列
+     */
+    @Data
+    public static class Series {
+
+        /**
+         * 分组键：服务ID、分类、支付方式或订单状态，不分组时为 all
+         */
+        private String key;
+
+        /**
+         * 展示名称（服务名称等），无则为空
+         */
+        private String label;
+
+        /**
+         * 订单数
+         */
+        private List<Long> bookings;
+
+        /**
+         * 已完成订单数
+         */
+        private List<Long> completed;
+
+        /**
+         * 已取消订单数
+         */
+        private List<Long> cancelled;
+
+        /**
+         * 已完成订单金额
+         */
+        private List<BigDecimal> revenue;
+
+        /**
+         * 已支付订单金额
+         */
+        private List<BigDecimal> paidAmount;
+    }
+}
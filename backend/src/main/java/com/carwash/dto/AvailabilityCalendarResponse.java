@@ -0,0 +1,55 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 可预约日历DTO
+ * 时间段以 times 中的下标表示，每天用位图标记仍有名额的时间段，避免逐个返回时间段对象
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class AvailabilityCalendarResponse {
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    /**
+     * 范围内出现过的时间段（HH:mm-HH:mm），按开始时间排序
+     */
+    private List<String> times;
+
+    /**
+     * 每天的名额概况，按日期排序
+     */
+    private List<Day> days;
+
+    /**
+     * 单日名额概况
+     */
+    @Data
+    public static class Day {
+
+        private LocalDate date;
+
+        /**
+         * 当天可用状态的时间段数
+         */
+        private Integer total;
+
+        /**
+         * 仍有名额的时间段数
+         */
+        private Integer free;
+
+        /**
+         * 仍有名额的时间段位图（十六进制）：第 i 个字节的第 j 位对应 times[i * 8 + j]
+         */
+        private String bitmap;
+    }
+}
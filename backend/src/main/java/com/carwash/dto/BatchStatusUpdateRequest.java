@@ -0,0 +1,29 @@
+package com.carwash.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量更新订单状态请求DTO
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class BatchStatusUpdateRequest {
+
+    /**
+     * 订单ID列表
+     */
+    @NotEmpty(message = "订单ID列表不能为空")
+    private List<Long> bookingIds;
+
+    /**
+     * 目标状态
+     */
+    @NotBlank(message = "目标状态不能为空")
+    private String status;
+}
@@ -0,0 +1,78 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量更新订单状态响应DTO
+ * 逐条返回处理结果，部分失败不影响其余订单
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class BatchStatusUpdateResponse {
+
+    /**
+     * 请求的订单数量（去重后）
+     */
+    private Integer total;
+
+    /**
+     * 成功数量
+     */
+    private Integer succeeded;
+
+    /**
+     * 失败数量
+     */
+    private Integer failed;
+
+    /**
+     * 逐条结果（与请求顺序一致）
+     */
+    private List<Item> results = new ArrayList<>();
+
+    /**
+     * 单个订单的处理结果
+     */
+    @Data
+    public static class Item {
+
+        private Long bookingId;
+
+        private Boolean success;
+
+        private String oldStatus;
+
+        private String newStatus;
+
+        /**
+         * 失败时的错误码（ResultCode）
+         */
+        private Integer code;
+
+        private String message;
+
+        public static Item success(Long bookingId, String oldStatus, String newStatus) {
+            Item item = new Item();
+            item.setBookingId(bookingId);
+            item.setSuccess(true);
+            item.setOldStatus(oldStatus);
+            item.setNewStatus(newStatus);
+            return item;
+        }
+
+        public static Item failure(Long bookingId, String oldStatus, Integer code, String message) {
+            Item item = new Item();
+            item.setBookingId(bookingId);
+            item.setSuccess(false);
+            item.setOldStatus(oldStatus);
+            item.setCode(code);
+            item.setMessage(message);
+            return item;
+        }
+    }
+}
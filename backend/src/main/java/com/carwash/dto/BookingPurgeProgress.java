@@ -0,0 +1,61 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批量清理订单任务进度DTO
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class BookingPurgeProgress {
+
+    /**
+     * 任务ID
+     */
+    private String jobId;
+
+    /**
+     * 任务状态：queued / running / completed / cancelled / failed
+     */
+    private String state;
+
+    /**
+     * 清理条件
+     */
+    private BookingPurgeRequest criteria;
+
+    /**
+     * 开始时符合条件的订单数（估算值，执行期间新增的订单也可能被清理）
+     */
+    private Long estimatedTotal;
+
+    /**
+     * 已清理的订单数
+     */
+    private Long purged;
+
+    /**
+     * 已提交的批次数
+     */
+    private Long chunks;
+
+    /**
+     * 完成百分比（0~100）
+     */
+    private Integer percent;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+
+    private LocalDateTime submittedAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,36 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * 批量清理订单请求DTO
+ * 条件之间为"且"关系，至少需要指定一个条件
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class BookingPurgeRequest {
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 预约日期起（含）
+     */
+    private LocalDate startDate;
+
+    /**
+     * 预约日期止（含）
+     */
+    private LocalDate endDate;
+
+    /**
+     * 订单状态
+     */
+    private String status;
+}
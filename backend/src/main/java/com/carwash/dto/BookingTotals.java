@@ -0,0 +1,49 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 订单数及已完成订单金额合计DTO
+ * 用于按日汇总表与当日明细查询结果的合并
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class BookingTotals {
+
+    /**
+     * 订单数（不含已删除订单）
+     */
+    private Long bookings;
+
+    /**
+     * 已完成订单金额
+     */
+    private BigDecimal revenue;
+
+    public BookingTotals() {
+    }
+
+    public BookingTotals(Long bookings, BigDecimal revenue) {
+        this.bookings = bookings;
+        this.revenue = revenue;
+    }
+
+    /**
+     * 两段合计相加，空值按零处理
+     */
+    public static BookingTotals sum(BookingTotals a, BookingTotals b) {
+        return new BookingTotals(countOf(a) + countOf(b), revenueOf(a).add(revenueOf(b)));
+    }
+
+    private static long countOf(BookingTotals totals) {
+        return totals != null && totals.bookings != null ? totals.bookings : 0L;
+    }
+
+    private static BigDecimal revenueOf(BookingTotals totals) {
+        return totals != null && totals.revenue != null ? totals.revenue : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,46 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页响应DTO
+ * 基于 (created_at, id) 的键集分页，翻页深度不影响查询性能
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class CursorPageResponse<T> {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records;
+
+    /**
+     * 本次请求的分页大小
+     */
+    private Integer size;
+
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasMore;
+
+    /**
+     * 下一页游标（不透明字符串，无下一页时为空）
+     */
+    private String nextCursor;
+
+    public CursorPageResponse() {
+    }
+
+    public CursorPageResponse(List<T> records, Integer size, Boolean hasMore, String nextCursor) {
+        this.records = records;
+        this.size = size;
+        this.hasMore = hasMore;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,95 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * 单日排班DTO（运营看板）
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class DayScheduleResponse {
+
+    /**
+     * 日期
+     */
+    private LocalDate date;
+
+    /**
+     * 当日未取消的订单数
+     */
+    private Integer activeBookings;
+
+    /**
+     * 按开始时间排序的时间段及其订单
+     */
+    private List<SlotSchedule> slots;
+
+    /**
+     * 未匹配到当日时间段的订单（按预约时间排序）
+     */
+    private List<BookingResponse> unassigned;
+
+    /**
+     * 排班数据版本，每次变更加一
+     */
+    private Long version;
+
+    /**
+     * 最后更新时间
+     */
+    private LocalDateTime updatedAt;
+
+    /**
+     * 单个时间段的排班
+     */
+    @Data
+    public static class SlotSchedule {
+
+        /**
+         * 时间段ID
+         */
+        private Long timeSlotId;
+
+        /**
+         * 开始时间
+         */
+        private LocalTime startTime;
+
+        /**
+         * 结束时间
+         */
+        private LocalTime endTime;
+
+        /**
+         * 时间段状态：0-不可用，1-可用
+         */
+        private Integer status;
+
+        /**
+         * 最大预约数
+         */
+        private Integer maxBookings;
+
+        /**
+         * 已占用名额（未取消的订单数）
+         */
+        private Integer occupied;
+
+        /**
+         * 剩余名额
+         */
+        private Integer available;
+
+        /**
+         * 该时间段的订单（按下单时间排序）
+         */
+        private List<BookingResponse> bookings;
+    }
+}
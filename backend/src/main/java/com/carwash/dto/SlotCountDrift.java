@@ -0,0 +1,33 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+/**
+ * 时间段名额计数偏差DTO
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class SlotCountDrift {
+
+    /**
+     * 时间段ID
+     */
+    private Long timeSlotId;
+
+    /**
+     * 最大预约数
+     */
+    private Integer maxBookings;
+
+    /**
+     * time_slots.current_bookings 中记录的值
+     */
+    private Integer recorded;
+
+    /**
+     * 实际占用名额的订单数
+     */
+    private Integer actual;
+}
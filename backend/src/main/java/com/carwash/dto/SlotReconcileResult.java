@@ -0,0 +1,54 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 时间段名额计数校正结果DTO
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class SlotReconcileResult {
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    /**
+     * 检查的时间段数
+     */
+    private Long scanned;
+
+    /**
+     * 计数与实际订单数不一致的时间段数
+     */
+    private Integer drifted;
+
+    /**
+     * 已校正的时间段数
+     */
+    private Integer fixed;
+
+    /**
+     * 校正时计数已被在线预约修改而跳过的时间段数（下次执行再校正）
+     */
+    private Integer skipped;
+
+    /**
+     * 实际订单数超过最大预约数的时间段数
+     */
+    private Integer overbooked;
+
+    /**
+     * 偏差绝对值之和
+     */
+    private Long totalDrift;
+
+    private LocalDateTime finishedAt;
+
+    private Long elapsedMillis;
+}
@@ -1,7 +1,9 @@
 package com.carwash.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
  * 数据统计响应DTO
@@ -62,6 +64,12 @@ public class StatisticsResponse {
      */
     private BigDecimal todayRevenue;
 
+    /**
+     * 未能按时统计的字段（值为 null），全部统计成功时不返回
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> staleFields;
+
     // Setter methods
     public void setTotalUsers(Integer totalUsers) {
         this.totalUsers = totalUsers;
@@ -103,6 +111,10 @@ public class StatisticsResponse {
         this.todayRevenue = todayRevenue;
     }
 
+    public void setStaleFields(List<String> staleFields) {
+        this.staleFields = staleFields;
+    }
+
     // Getter methods
     public Integer getTotalUsers() {
         return totalUsers;
@@ -143,4 +155,8 @@ public class StatisticsResponse {
     public BigDecimal getTodayRevenue() {
         return todayRevenue;
     }
+
+    public List<String> getStaleFields() {
+        return staleFields;
+    }
 }
\ No newline at end of file
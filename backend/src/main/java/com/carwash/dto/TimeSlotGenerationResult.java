@@ -0,0 +1,43 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+/**
+ * 批量生成时间段结果DTO
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class TimeSlotGenerationResult {
+
+    /**
+     * 按模板展开的时间段数
+     */
+    private Integer requested;
+
+    /**
+     * 新插入的时间段数
+     */
+    private Integer inserted;
+
+    /**
+     * 已存在而跳过的时间段数（按 date + start_time + end_time 唯一键判断）
+     */
+    private Integer skipped;
+
+    /**
+     * 多行插入语句的执行次数
+     */
+    private Integer batches;
+
+    /**
+     * 提交的事务数
+     */
+    private Integer transactions;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private Long elapsedMillis;
+}
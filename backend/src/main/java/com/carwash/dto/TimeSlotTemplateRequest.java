@@ -0,0 +1,66 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Set;
+
+/**
+ * 批量生成时间段的营业时间模板DTO
+ * 在日期范围内的指定星期，从开门到打烊按固定时长切分时间段
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class TimeSlotTemplateRequest {
+
+    /**
+     * 开始日期（含）
+     */
+    @NotNull(message = "开始日期不能为空")
+    private LocalDate startDate;
+
+    /**
+     * 结束日期（含）
+     */
+    @NotNull(message = "结束日期不能为空")
+    private LocalDate endDate;
+
+    /**
+     * 营业的星期（1-7，周一为1），为空表示每天营业
+     */
+    private Set<Integer> daysOfWeek;
+
+    /**
+     * 开门时间
+     */
+    @NotNull(message = "开门时间不能为空")
+    private LocalTime openTime;
+
+    /**
+     * 打烊时间（最后一个时间段不晚于该时间结束）
+     */
+    @NotNull(message = "打烊时间不能为空")
+    private LocalTime closeTime;
+
+    /**
+     * 每个时间段的时长（分钟）
+     */
+    @NotNull(message = "时间段时长不能为空")
+    @Min(value = 10, message = "时间段时长不能少于10分钟")
+    @Max(value = 480, message = "时间段时长不能超过480分钟")
+    private Integer slotMinutes;
+
+    /**
+     * 每个时间段的容量（同时可服务的车位数）
+     */
+    @NotNull(message = "时间段容量不能为空")
+    @Min(value = 1, message = "时间段容量必须大于0")
+    @Max(value = 100, message = "时间段容量不能超过100")
+    private Integer capacity;
+}
@@ -0,0 +1,33 @@
+package com.carwash.dto;
+
+import lombok.Data;
+
+/**
+ * 候补队列状态DTO
+ *
+ * @author CarWash Team
+ * @version 1.0.0
+ */
+@Data
+public class WaitlistResponse {
+
+    /**
+     * 时间段ID
+     */
+    private Long timeSlotId;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 排队位置（从1开始），0 表示不在队列中
+     */
+    private Integer position;
+
+    /**
+     * 当前排队人数
+     */
+    private Integer queueSize;
+}
@@ -133,6 +133,13 @@ public class Booking {
     @TableField("cancel_reason")
     private String cancelReason;
 
+    /**
+     * 乐观锁版本号，每次状态或支付状态变更加一
+     */
+    @Version
+    @TableField("version")
+    private Integer version;
+
     /**
      * 创建时间
      */
@@ -0,0 +1,84 @@
+package com.carwash.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 事务发件箱事件实体
+ * 与业务数据在同一事务内写入，提交后由 OutboxDispatcher 异步投递
+ */
+@Data
+@TableName("outbox_events")
+public class OutboxEvent {
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 事件类型：ORDER_STATUS_PUSH、ORDER_STATUS_SMS
+     */
+    @TableField("event_type")
+    private String eventType;
+
+    /**
+     * 关联的业务ID（订单ID）
+     */
+    @TableField("aggregate_id")
+    private Long aggregateId;
+
+    /**
+     * 事件内容（JSON）
+     */
+    @TableField("payload")
+    private String payload;
+
+    /**
+     * 投递状态：PENDING、PROCESSING、SENT、FAILED
+     */
+    @TableField("status")
+    private String status;
+
+    /**
+     * 已投递次数
+     */
+    @TableField("attempts")
+    private Integer attempts;
+
+    /**
+     * 下次投递时间
+     */
+    @TableField("next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 最近一次投递失败原因
+     */
+    @TableField("last_error")
+    private String lastError;
+
+    /**
+     * 被投递线程领取的时间
+     */
+    @TableField("locked_at")
+    private LocalDateTime lockedAt;
+
+    /**
+     * 投递成功时间
+     */
+    @TableField("sent_at")
+    private LocalDateTime sentAt;
+
+    /**
+     * 创建时间
+     */
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,182 @@
+package com.carwash.event;
+
+import com.carwash.entity.Booking;
+import org.springframework.beans.BeanUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 订单数据变更事件
+ * 订单状态、支付状态变化或被删除后发布，事务提交后用于清理订单缓存
+ * 通过 created / transitioned / removed 创建的事件额外携带状态变化前后的统计口径（状态、创建时间、金额），
+ * 供统计计数器计算增量；直接构造的事件只表示“订单有变化”
+ * 通过 removed / archived 创建的事件表示订单已不在 bookings 表中，订单视图可直接移除而无需重新读取
+ * 通过工厂方法创建的事件还携带变更后的订单快照，本节点的订单视图据此直接更新，无需回查数据库：
+ * 状态变化由比较并交换写入，快照即该版本的完整订单；paymentUpdated 只保证快照中的支付字段是最新的
+ */
+public class BookingChangedEvent {
+
+    private final Long bookingId;
+    private final String orderNo;
+
+    private final boolean transition;
+    private final boolean removed;
+    private final boolean paymentUpdate;
+    private final String fromStatus;
+    private final String toStatus;
+    private final LocalDateTime createdAt;
+    private final BigDecimal totalPrice;
+    private final Booking booking;
+    private final long createdNanos = System.nanoTime();
+
+    public BookingChangedEvent(Long bookingId, String orderNo) {
+        this(bookingId, orderNo, false, false, false, null, null, null);
+    }
+
+    private BookingChangedEvent(Long bookingId, String orderNo, boolean transition, boolean removed,
+                                boolean paymentUpdate, String fromStatus, String toStatus, Booking booking) {
+        this.bookingId = bookingId;
+        this.orderNo = orderNo;
+        this.transition = transition;
+        this.removed = removed;
+        this.paymentUpdate = paymentUpdate;
+        this.fromStatus = fromStatus;
+        this.toStatus = toStatus;
+        this.booking = booking;
+        this.createdAt = booking == null ? null : booking.getCreatedAt();
+        this.totalPrice = booking == null ? null : booking.getTotalPrice();
+    }
+
+    /**
+     * 新建订单
+     */
+    public static BookingChangedEvent created(Booking booking) {
+        return new BookingChangedEvent(booking.getId(), booking.getOrderNo(), true, false, false,
+                null, booking.getStatus(), snapshot(booking));
+    }
+
+    /**
+     * 订单状态由 fromStatus 变为 toStatus
+     */
+    public static BookingChangedEvent transitioned(Booking booking, String fromStatus, String toStatus) {
+        Booking snapshot = snapshot(booking);
+        if (toStatus != null) {
+            snapshot.setStatus(toStatus);
+        }
+        return new BookingChangedEvent(booking.getId(), booking.getOrderNo(), true, toStatus == null, false,
+                fromStatus, toStatus, snapshot);
+    }
+
+    /**
+     * 订单被删除（逻辑删除或硬删除）
+     */
+    public static BookingChangedEvent removed(Booking booking) {
+        return transitioned(booking, booking.getStatus(), null);
+    }
+
+    /**
+     * 订单被移入归档表：不再出现在 bookings 中，但仍计入统计，因此不携带状态变化
+     */
+    public static BookingChangedEvent archived(Booking booking) {
+        return new BookingChangedEvent(booking.getId(), booking.getOrderNo(), false, true, false,
+                booking.getStatus(), booking.getStatus(), snapshot(booking));
+    }
+
+    /**
+     * 订单支付信息变化（支付状态、支付方式、支付时间），订单状态不变
+     * 支付更新不校验版本号，快照中的其他字段可能早于并发提交的状态变化，订单视图只应采用支付字段
+     */
+    public static BookingChangedEvent paymentUpdated(Booking booking) {
+        return new BookingChangedEvent(booking.getId(), booking.getOrderNo(), false, false, true,
+                null, null, snapshot(booking));
+    }
+
+    private static Booking snapshot(Booking booking) {
+        Booking copy = new Booking();
+        BeanUtils.copyProperties(booking, copy);
+        return copy;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    /**
+     * 是否携带状态变化信息
+     */
+    public boolean isTransition() {
+        return transition;
+    }
+
+    /**
+     * 订单是否已不在 bookings 表中（删除或归档）
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    /**
+     * 是否只是支付信息变化
+     */
+    public boolean isPaymentUpdate() {
+        return paymentUpdate;
+    }
+
+    /**
+     * 变化前状态，新建订单为 null
+     */
+    public String getFromStatus() {
+        return fromStatus;
+    }
+
+    /**
+     * 变化后状态，删除订单为 null
+     */
+    public String getToStatus() {
+        return toStatus;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    /**
+     * 变更后的订单快照，直接构造的事件为 null；订阅方只读，不要修改
+     */
+    public Booking getBooking() {
+        return booking;
+    }
+
+    public LocalDate getBookingDate() {
+        return booking == null ? null : booking.getBookingDate();
+    }
+
+    public Long getTimeSlotId() {
+        return booking == null ? null : booking.getTimeSlotId();
+    }
+
+    /**
+     * 事件创建时刻（System.nanoTime），一定早于事务提交；
+     * 订单视图据此判断某次从数据库读取的数据是否可能已包含本次变更
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "BookingChangedEvent{bookingId=" + bookingId + ", orderNo=" + orderNo
+                + (transition ? ", " + fromStatus + " -> " + toStatus : "") + (removed ? ", removed" : "")
+                + (paymentUpdate ? ", payment" : "") + "}";
+    }
+}
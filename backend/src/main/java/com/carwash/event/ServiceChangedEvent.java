@@ -0,0 +1,23 @@
+package com.carwash.event;
+
+/**
+ * 服务项目变更事件
+ * 服务新增、修改、上下架或删除后发布，事务提交后用于更新统计计数器
+ */
+public class ServiceChangedEvent {
+
+    private final Long serviceId;
+
+    public ServiceChangedEvent(Long serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public Long getServiceId() {
+        return serviceId;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceChangedEvent{serviceId=" + serviceId + "}";
+    }
+}
@@ -0,0 +1,56 @@
+package com.carwash.event;
+
+import com.carwash.entity.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户数量变更事件
+ * 用户注册或删除后发布，事务提交后用于更新统计计数器
+ */
+public class UserChangedEvent {
+
+    private final Long userId;
+    private final LocalDateTime createdAt;
+    private final int delta;
+
+    private UserChangedEvent(Long userId, LocalDateTime createdAt, int delta) {
+        this.userId = userId;
+        this.createdAt = createdAt;
+        this.delta = delta;
+    }
+
+    /**
+     * 新用户注册
+     */
+    public static UserChangedEvent registered(User user) {
+        return new UserChangedEvent(user.getId(), user.getCreatedAt(), 1);
+    }
+
+    /**
+     * 用户被删除（逻辑删除或硬删除）
+     */
+    public static UserChangedEvent removed(User user) {
+        return new UserChangedEvent(user.getId(), user.getCreatedAt(), -1);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * 用户数变化量：注册为 1，删除为 -1
+     */
+    public int getDelta() {
+        return delta;
+    }
+
+    @Override
+    public String toString() {
+        return "UserChangedEvent{userId=" + userId + ", delta=" + delta + "}";
+    }
+}
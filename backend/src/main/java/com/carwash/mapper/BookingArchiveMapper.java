@@ -0,0 +1,67 @@
+package com.carwash.mapper;
+
+import com.carwash.entity.Booking;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单归档表数据访问层
+ * bookings_archive 与 bookings 列一致，查询结果直接映射为 Booking；归档数据只读
+ */
+@Mapper
+public interface BookingArchiveMapper {
+
+    /**
+     * bookings 与 bookings_archive 共有的列
+     */
+    String COLUMNS = "id, order_no, user_id, service_id, time_slot_id, booking_date, booking_time, car_number, car_model, " +
+            "contact_phone, notes, total_price, status, payment_status, payment_method, paid_at, completed_at, " +
+            "cancelled_at, cancel_reason, version, created_at, updated_at, deleted";
+
+    /**
+     * 将热表中的订单复制到归档表（调用方须已在同一事务中锁定这些订单）
+     * @return 复制的行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO bookings_archive (" + COLUMNS + ", archived_at) " +
+            "SELECT " + COLUMNS + ", #{now} FROM bookings WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int copyFromBookings(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 根据订单ID查询归档订单
+     */
+    @Select("SELECT * FROM bookings_archive WHERE id = #{id} AND deleted = 0")
+    Booking selectById(@Param("id") Long id);
+
+    /**
+     * 根据订单号查询归档订单
+     */
+    @Select("SELECT * FROM bookings_archive WHERE order_no = #{orderNo} AND deleted = 0")
+    Booking selectByOrderNo(@Param("orderNo") String orderNo);
+
+    /**
+     * 统计归档订单数
+     */
+    @Select("SELECT COUNT(*) FROM bookings_archive WHERE deleted = 0")
+    int countArchived();
+
+    /**
+     * 统计归档的已完成订单数
+     */
+    @Select("SELECT COUNT(*) FROM bookings_archive WHERE status = 'completed' AND deleted = 0")
+    int countArchivedCompleted();
+
+    /**
+     * 归档订单的收入合计
+     */
+    @Select("SELECT COALESCE(SUM(total_price), 0) FROM bookings_archive WHERE status = 'completed' AND deleted = 0")
+    BigDecimal getArchivedRevenue();
+}
@@ -0,0 +1,112 @@
+package com.carwash.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单分析立方体（booking_stats_hourly / booking_stats_daily）数据访问层
+ * 汇总进度见 StatsRollupProgressMapper，任务名 booking_cube
+ */
+@Mapper
+public interface BookingCubeMapper {
+
+    /**
+     * 汇总任务名称（stats_rollup_progress.job）
+     */
+    String JOB = "booking_cube";
+
+    /**
+     * 各维度的查询结果列：bucket, dim, label, bookings, completed, cancelled, revenue, paid_amount
+     */
+    String MEASURES = " SUM(c.booking_count) AS bookings," +
+            " SUM(CASE WHEN c.status = 'completed' THEN c.booking_count ELSE 0 END) AS completed," +
+            " SUM(CASE WHEN c.status = 'cancelled' THEN c.booking_count ELSE 0 END) AS cancelled," +
+            " SUM(CASE WHEN c.status = 'completed' THEN c.amount ELSE 0 END) AS revenue," +
+            " SUM(CASE WHEN c.payment_status = 'paid' THEN c.amount ELSE 0 END) AS paid_amount";
+
+    /**
+     * 分组维度（groupBy 取值已在调用方校验）
+     */
+    String DIMENSION = "<choose>" +
+            "<when test='groupBy == \"service\"'>CAST(c.service_id AS CHAR) AS dim, MAX(s.name) AS label,</when>" +
+            "<when test='groupBy == \"category\"'>COALESCE(s.category, '') AS dim, MAX(s.category) AS label,</when>" +
+            "<when test='groupBy == \"paymentMethod\"'>c.payment_method AS dim, MAX(c.payment_method) AS label,</when>" +
+            "<when test='groupBy == \"status\"'>CAST(c.status AS CHAR) AS dim, MAX(CAST(c.status AS CHAR)) AS label,</when>" +
+            "<otherwise>'all' AS dim, NULL AS label,</otherwise>" +
+            "</choose>";
+
+    String SERVICE_JOIN = "<if test='groupBy == \"service\" or groupBy == \"category\"'>" +
+            " LEFT JOIN services s ON s.id = c.service_id</if>";
+
+    @Delete("DELETE FROM booking_stats_hourly WHERE bucket_start >= #{start} AND bucket_start < #{end}")
+    int deleteHourly(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * 重新汇总 [start, end) 内创建的订单到小时表（热表与归档表按 created_at 范围各扫描一次）
+     */
+    @Insert("INSERT INTO booking_stats_hourly (bucket_start, service_id, status, payment_status, payment_method," +
+            " booking_count, amount, updated_at)" +
+            " SELECT t.bucket_start, t.service_id, t.status, t.payment_status, t.payment_method," +
+            " COUNT(*), COALESCE(SUM(t.total_price), 0), NOW() FROM (" +
+            " SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00') AS bucket_start, service_id," +
+            " COALESCE(status, 'pending') AS status, COALESCE(payment_status, 'unpaid') AS payment_status," +
+            " COALESCE(payment_method, '') AS payment_method, total_price FROM bookings" +
+            " WHERE created_at >= #{start} AND created_at < #{end} AND deleted = 0" +
+            " UNION ALL SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00'), service_id," +
+            " COALESCE(status, 'pending'), COALESCE(payment_status, 'unpaid')," +
+            " COALESCE(payment_method, ''), total_price FROM bookings_archive" +
+            " WHERE created_at >= #{start} AND created_at < #{end} AND deleted = 0" +
+            ") t GROUP BY t.bucket_start, t.service_id, t.status, t.payment_status, t.payment_method")
+    int insertHourly(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Delete("DELETE FROM booking_stats_daily WHERE bucket_date = #{day}")
+    int deleteDaily(@Param("day") LocalDate day);
+
+    /**
+     * 由小时表汇总某天的天表行
+     */
+    @Insert("INSERT INTO booking_stats_daily (bucket_date, service_id, status, payment_status, payment_method," +
+            " booking_count, amount, updated_at)" +
+            " SELECT #{day}, service_id, status, payment_status, payment_method, SUM(booking_count), SUM(amount), NOW()" +
+            " FROM booking_stats_hourly WHERE bucket_start >= #{start} AND bucket_start < #{end}" +
+            " GROUP BY service_id, status, payment_status, payment_method")
+    int insertDaily(@Param("day") LocalDate day,
+                    @Param("start") LocalDateTime start,
+                    @Param("end") LocalDateTime end);
+
+    /**
+     * 按小时查询 [start, end) 的指标
+     */
+    @Select("<script>SELECT c.bucket_start AS bucket, " + DIMENSION + MEASURES +
+            " FROM booking_stats_hourly c" + SERVICE_JOIN +
+            " WHERE c.bucket_start &gt;= #{start} AND c.bucket_start &lt; #{end}" +
+            " GROUP BY bucket, dim</script>")
+    List<Map<String, Object>> selectHourly(@Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end,
+                                           @Param("groupBy") String groupBy);
+
+    /**
+     * 按天 / 周（周一起）/ 月查询 [startDate, endDate) 的指标
+     */
+    @Select("<script>SELECT " +
+            "<choose>" +
+            "<when test='granularity == \"week\"'>DATE_SUB(c.bucket_date, INTERVAL WEEKDAY(c.bucket_date) DAY)</when>" +
+            "<when test='granularity == \"month\"'>DATE_SUB(c.bucket_date, INTERVAL DAYOFMONTH(c.bucket_date) - 1 DAY)</when>" +
+            "<otherwise>c.bucket_date</otherwise>" +
+            "</choose> AS bucket, " + DIMENSION + MEASURES +
+            " FROM booking_stats_daily c" + SERVICE_JOIN +
+            " WHERE c.bucket_date &gt;= #{startDate} AND c.bucket_date &lt; #{endDate}" +
+            " GROUP BY bucket, dim</script>")
+    List<Map<String, Object>> selectDaily(@Param("startDate") LocalDate startDate,
+                                          @Param("endDate") LocalDate endDate,
+                                          @Param("granularity") String granularity,
+                                          @Param("groupBy") String groupBy);
+}
@@ -1,17 +1,24 @@
 package com.carwash.mapper;
 
+import com.carwash.dto.BookingTotals;
 import com.carwash.entity.Booking;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 预约订单数据访问层
@@ -28,6 +35,138 @@ public interface BookingMapper extends BaseMapper<Booking> {
     @Select("SELECT * FROM bookings WHERE user_id = #{userId} AND deleted = 0 ORDER BY created_at DESC")
     IPage<Booking> selectUserBookings(Page<Booking> page, @Param("userId") Long userId);
 
+    /**
+     * 游标分页查询订单（按 created_at DESC, id DESC 排序）
+     * userId 为空时查询全部订单；游标为空时从第一页开始
+     */
+    @Select("<script>" +
+            "SELECT * FROM bookings WHERE deleted = 0" +
+            "<if test='userId != null'> AND user_id = #{userId}</if>" +
+            "<if test='cursorCreatedAt != null'>" +
+            " AND (created_at &lt; #{cursorCreatedAt} OR (created_at = #{cursorCreatedAt} AND id &lt; #{cursorId}))" +
+            "</if>" +
+            " ORDER BY created_at DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<Booking> selectPageByCursor(@Param("userId") Long userId,
+                                     @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                     @Param("cursorId") Long cursorId,
+                                     @Param("limit") int limit);
+
+    /**
+     * 流式读取订单用于导出（按主键顺序）
+     * fetchSize = Integer.MIN_VALUE 使 MySQL 驱动逐行返回结果，不在客户端缓存整个结果集；
+     * 游标需在事务内消费，消费完毕前连接不可复用
+     */
+    @Select("<script>" +
+            "SELECT * FROM bookings WHERE deleted = 0" +
+            "<if test='startDate != null'> AND booking_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND booking_date &lt;= #{endDate}</if>" +
+            "<if test='status != null and status != \"\"'> AND status = #{status}</if>" +
+            " ORDER BY id" +
+            "</script>")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Booking> streamForExport(@Param("startDate") LocalDate startDate,
+                                    @Param("endDate") LocalDate endDate,
+                                    @Param("status") String status);
+
+    /**
+     * 流式读取订单的可搜索字段用于构建搜索索引（按主键顺序，只取必要的列）
+     */
+    @Select("SELECT id, order_no, car_number, contact_phone FROM bookings WHERE deleted = 0 ORDER BY id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Booking> streamForSearchIndex();
+
+    /**
+     * 清理条件（userId / 日期范围 / 状态，均可为空）
+     */
+    String PURGE_FILTER =
+            "<if test='userId != null'> AND user_id = #{userId}</if>" +
+            "<if test='startDate != null'> AND booking_date &gt;= #{startDate}</if>" +
+            "<if test='endDate != null'> AND booking_date &lt;= #{endDate}</if>" +
+            "<if test='status != null and status != \"\"'> AND status = #{status}</if>";
+
+    /**
+     * 统计符合清理条件的订单数（用于进度展示）
+     */
+    @Select("<script>SELECT COUNT(*) FROM bookings WHERE deleted = 0" + PURGE_FILTER + "</script>")
+    long countForPurge(@Param("userId") Long userId,
+                       @Param("startDate") LocalDate startDate,
+                       @Param("endDate") LocalDate endDate,
+                       @Param("status") String status);
+
+    /**
+     * 按主键顺序锁定下一批待清理订单
+     * 取整行：级联删除以这些行作为 BookingChangedEvent.removed 的订单快照，各视图依赖其中的预约日期、时间段等字段
+     * 需在分批事务内调用，行锁只持有到该批次提交
+     */
+    @Select("<script>SELECT * FROM bookings" +
+            " WHERE deleted = 0 AND id &gt; #{afterId}" + PURGE_FILTER +
+            " ORDER BY id LIMIT #{limit} FOR UPDATE</script>")
+    List<Booking> lockPurgeChunk(@Param("userId") Long userId,
+                                 @Param("startDate") LocalDate startDate,
+                                 @Param("endDate") LocalDate endDate,
+                                 @Param("status") String status,
+                                 @Param("afterId") long afterId,
+                                 @Param("limit") int limit);
+
+    /**
+     * 按 (booking_date, id) 顺序锁定下一批可归档订单：指定状态、预约日期早于截止日期
+     * 有反馈记录的订单被 feedback 外键引用，不能移出热表，予以跳过
+     * 需在分批事务内调用，只锁 bookings 中命中的行
+     */
+    @Select("SELECT b.id, b.order_no, b.booking_date FROM bookings b" +
+            " WHERE b.status = #{status} AND b.booking_date < #{cutoff}" +
+            " AND (b.booking_date > #{afterDate} OR (b.booking_date = #{afterDate} AND b.id > #{afterId}))" +
+            " AND NOT EXISTS (SELECT 1 FROM feedback f WHERE f.booking_id = b.id)" +
+            " ORDER BY b.booking_date, b.id LIMIT #{limit} FOR UPDATE OF b")
+    List<Booking> lockArchiveChunk(@Param("status") String status,
+                                   @Param("cutoff") LocalDate cutoff,
+                                   @Param("afterDate") LocalDate afterDate,
+                                   @Param("afterId") long afterId,
+                                   @Param("limit") int limit);
+
+    /**
+     * 物理删除已复制到归档表的订单（仅限已完成/已取消）
+     * 与 BaseMapper 的逻辑删除不同，归档后热表不再保留这些行
+     */
+    @Delete("<script>" +
+            "DELETE FROM bookings WHERE status IN ('completed', 'cancelled') AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int deleteArchived(@Param("ids") List<Long> ids);
+
+    /**
+     * 订单状态比较并交换：仅当状态和版本号都与读取时一致才更新，一条语句完成校验与写入
+     * @return 影响行数，0 表示订单已被其他操作修改
+     */
+    @Update("<script>" +
+            "UPDATE bookings SET status = #{toStatus}, version = version + 1, updated_at = #{now}" +
+            "<if test='toStatus == \"completed\"'>, completed_at = #{now}</if>" +
+            "<if test='toStatus == \"cancelled\"'>, cancelled_at = #{now}</if>" +
+            "<if test='cancelReason != null'>, cancel_reason = #{cancelReason}</if>" +
+            " WHERE id = #{id} AND status = #{fromStatus} AND version = #{version} AND deleted = 0" +
+            "</script>")
+    int transitionStatus(@Param("id") Long id,
+                         @Param("fromStatus") String fromStatus,
+                         @Param("toStatus") String toStatus,
+                         @Param("version") Integer version,
+                         @Param("cancelReason") String cancelReason,
+                         @Param("now") LocalDateTime now);
+
+    /**
+     * 更新订单支付状态（只写支付相关列，不覆盖并发修改的订单状态）
+     */
+    @Update("<script>" +
+            "UPDATE bookings SET payment_status = #{paymentStatus}, version = version + 1, updated_at = NOW()" +
+            "<if test='paymentMethod != null'>, payment_method = #{paymentMethod}</if>" +
+            "<if test='paidAt != null'>, paid_at = #{paidAt}</if>" +
+            " WHERE id = #{id} AND deleted = 0" +
+            "</script>")
+    int updatePaymentStatus(@Param("id") Long id,
+                            @Param("paymentStatus") String paymentStatus,
+                            @Param("paymentMethod") String paymentMethod,
+                            @Param("paidAt") LocalDateTime paidAt);
+
     /**
      * 根据订单号查询订单
      */
@@ -40,6 +179,21 @@ public interface BookingMapper extends BaseMapper<Booking> {
     @Select("SELECT * FROM bookings WHERE booking_date = #{date} AND deleted = 0 ORDER BY booking_time ASC")
     List<Booking> selectByDate(@Param("date") LocalDate date);
 
+    /**
+     * 查询日期范围内的订单（排班索引全量加载）
+     */
+    @Select("SELECT * FROM bookings WHERE booking_date BETWEEN #{startDate} AND #{endDate} AND deleted = 0 ORDER BY booking_date, id")
+    List<Booking> selectByDateRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按时间段统计日期范围内占用名额的订单数（可预约日历）
+     * 每行包含 time_slot_id 与 cnt 两列
+     */
+    @Select("SELECT time_slot_id, COUNT(*) AS cnt FROM bookings " +
+            "WHERE booking_date BETWEEN #{startDate} AND #{endDate} AND status <> 'cancelled' AND deleted = 0 " +
+            "AND time_slot_id IS NOT NULL GROUP BY time_slot_id")
+    List<Map<String, Object>> countActiveBySlot(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
     /**
      * 查询指定时间段的订单数量
      */
@@ -65,15 +219,15 @@ public interface BookingMapper extends BaseMapper<Booking> {
     int countTotalBookings();
 
     /**
-     * 统计今日订单数
+     * 统计今日订单数（created_at 范围条件，可走 idx_created_id）
      */
-    @Select("SELECT COUNT(*) FROM bookings WHERE DATE(created_at) = CURDATE() AND deleted = 0")
+    @Select("SELECT COUNT(*) FROM bookings WHERE created_at >= CURDATE() AND created_at < CURDATE() + INTERVAL 1 DAY AND deleted = 0")
     int countTodayBookings();
 
     /**
      * 统计月度订单数
      */
-    @Select("SELECT COUNT(*) FROM bookings WHERE YEAR(created_at) = YEAR(CURDATE()) AND MONTH(created_at) = MONTH(CURDATE()) AND deleted = 0")
+    @Select("SELECT COUNT(*) FROM bookings WHERE created_at >= DATE_FORMAT(CURDATE(), '%Y-%m-01') AND created_at < CURDATE() + INTERVAL 1 DAY AND deleted = 0")
     int countMonthlyBookings();
 
     /**
@@ -97,12 +251,19 @@ public interface BookingMapper extends BaseMapper<Booking> {
     /**
      * 获取今日收入
      */
-    @Select("SELECT COALESCE(SUM(total_price), 0) FROM bookings WHERE DATE(created_at) = CURDATE() AND status = 'completed' AND deleted = 0")
+    @Select("SELECT COALESCE(SUM(total_price), 0) FROM bookings WHERE created_at >= CURDATE() AND created_at < CURDATE() + INTERVAL 1 DAY AND status = 'completed' AND deleted = 0")
     BigDecimal getTodayRevenue();
 
     /**
      * 获取月度收入
      */
-    @Select("SELECT COALESCE(SUM(total_price), 0) FROM bookings WHERE YEAR(created_at) = YEAR(CURDATE()) AND MONTH(created_at) = MONTH(CURDATE()) AND status = 'completed' AND deleted = 0")
+    @Select("SELECT COALESCE(SUM(total_price), 0) FROM bookings WHERE created_at >= DATE_FORMAT(CURDATE(), '%Y-%m-01') AND created_at < CURDATE() + INTERVAL 1 DAY AND status = 'completed' AND deleted = 0")
     BigDecimal getMonthlyRevenue();
+
+    /**
+     * 统计创建时间在 [start, end) 内的订单数及已完成订单金额，一次索引范围扫描
+     */
+    @Select("SELECT COUNT(*) AS bookings, COALESCE(SUM(CASE WHEN status = 'completed' THEN total_price END), 0) AS revenue" +
+            " FROM bookings WHERE created_at >= #{start} AND created_at < #{end} AND deleted = 0")
+    BookingTotals sumCreatedBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
\ No newline at end of file
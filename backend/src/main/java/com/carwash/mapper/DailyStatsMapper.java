@@ -0,0 +1,52 @@
+package com.carwash.mapper;
+
+import com.carwash.dto.BookingTotals;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 订单按日汇总表（daily_stats）数据访问层
+ * 汇总粒度：订单创建日期 × 状态 × 服务；汇总进度见 StatsRollupProgressMapper
+ */
+@Mapper
+public interface DailyStatsMapper {
+
+    /**
+     * 汇总任务名称（stats_rollup_progress.job）
+     */
+    String JOB = "daily_stats";
+
+    /**
+     * 删除某天的汇总行
+     */
+    @Delete("DELETE FROM daily_stats WHERE stat_date = #{day}")
+    int deleteDay(@Param("day") LocalDate day);
+
+    /**
+     * 重新汇总某天创建的订单（热表与归档表按 created_at 范围各扫描一次）
+     */
+    @Insert("INSERT INTO daily_stats (stat_date, status, service_id, booking_count, revenue, updated_at)" +
+            " SELECT #{day}, t.status, t.service_id, COUNT(*), COALESCE(SUM(t.total_price), 0), NOW() FROM (" +
+            " SELECT status, service_id, total_price FROM bookings" +
+            " WHERE created_at >= #{start} AND created_at < #{end} AND deleted = 0" +
+            " UNION ALL SELECT status, service_id, total_price FROM bookings_archive" +
+            " WHERE created_at >= #{start} AND created_at < #{end} AND deleted = 0" +
+            ") t GROUP BY t.status, t.service_id")
+    int insertDay(@Param("day") LocalDate day,
+                  @Param("start") LocalDateTime start,
+                  @Param("end") LocalDateTime end);
+
+    /**
+     * 汇总 [startDate, endDate) 内的订单数及已完成订单金额
+     */
+    @Select("SELECT COALESCE(SUM(booking_count), 0) AS bookings," +
+            " COALESCE(SUM(CASE WHEN status = 'completed' THEN revenue END), 0) AS revenue" +
+            " FROM daily_stats WHERE stat_date >= #{startDate} AND stat_date < #{endDate}")
+    BookingTotals sumRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+}
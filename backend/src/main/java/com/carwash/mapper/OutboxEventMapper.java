@@ -0,0 +1,67 @@
+package com.carwash.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.carwash.entity.OutboxEvent;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 事务发件箱 Mapper
+ */
+@Mapper
+public interface OutboxEventMapper extends BaseMapper<OutboxEvent> {
+
+    /**
+     * 多行插入事件（一次往返写入整批通知）
+     */
+    @Insert("<script>" +
+            "INSERT INTO outbox_events (event_type, aggregate_id, payload, status, attempts, next_attempt_at, created_at) VALUES " +
+            "<foreach collection='events' item='e' separator=','>" +
+            "(#{e.eventType}, #{e.aggregateId}, #{e.payload}, #{e.status}, #{e.attempts}, #{e.nextAttemptAt}, #{e.createdAt})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "events.id", keyColumn = "id")
+    int insertBatch(@Param("events") List<OutboxEvent> events);
+
+    /**
+     * 查询已到投递时间的待投递事件ID
+     */
+    @Select("SELECT id FROM outbox_events WHERE status = 'PENDING' AND next_attempt_at <= #{now} " +
+            "ORDER BY next_attempt_at, id LIMIT #{limit}")
+    List<Long> selectDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 领取事件：仅当仍为待投递状态时成功，保证同一事件只被一个线程（或实例）投递
+     */
+    @Update("UPDATE outbox_events SET status = 'PROCESSING', locked_at = #{now} " +
+            "WHERE id = #{id} AND status = 'PENDING' AND next_attempt_at <= #{now}")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * 标记投递成功
+     */
+    @Update("UPDATE outbox_events SET status = 'SENT', attempts = attempts + 1, sent_at = #{now}, last_error = NULL " +
+            "WHERE id = #{id} AND status = 'PROCESSING'")
+    int markSent(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * 投递失败：退回待投递状态并设置下次重试时间；达到上限时 status 传 FAILED
+     */
+    @Update("UPDATE outbox_events SET status = #{status}, attempts = attempts + 1, next_attempt_at = #{nextAttemptAt}, " +
+            "last_error = #{error} WHERE id = #{id} AND status = 'PROCESSING'")
+    int markAttemptFailed(@Param("id") Long id, @Param("status") String status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    /**
+     * 回收领取后长时间未完成的事件（投递线程或实例中途退出）
+     */
+    @Update("UPDATE outbox_events SET status = 'PENDING' WHERE status = 'PROCESSING' AND locked_at < #{before}")
+    int recoverStale(@Param("before") LocalDateTime before);
+}
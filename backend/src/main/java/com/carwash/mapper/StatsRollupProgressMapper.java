@@ -0,0 +1,52 @@
+package com.carwash.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 汇总进度表（stats_rollup_progress）数据访问层
+ * 各汇总任务（daily_stats、booking_cube）按任务名各占一行，水位线为已汇总到的订单 updated_at
+ */
+@Mapper
+public interface StatsRollupProgressMapper {
+
+    /**
+     * 读取汇总进度
+     */
+    @Select("SELECT watermark FROM stats_rollup_progress WHERE job = #{job}")
+    LocalDateTime selectWatermark(@Param("job") String job);
+
+    /**
+     * 锁定汇总进度行，串行化多个节点对同一汇总表的写入（需在事务中调用）
+     */
+    @Select("SELECT watermark FROM stats_rollup_progress WHERE job = #{job} FOR UPDATE")
+    LocalDateTime lockWatermark(@Param("job") String job);
+
+    /**
+     * 推进汇总进度，只前进不后退
+     */
+    @Update("UPDATE stats_rollup_progress SET watermark = #{watermark}, updated_at = NOW()" +
+            " WHERE job = #{job} AND (watermark IS NULL OR watermark < #{watermark})")
+    int advanceWatermark(@Param("job") String job, @Param("watermark") LocalDateTime watermark);
+
+    /**
+     * 查询 since 之后有变更（含支付状态变化）的订单所属的创建日期及其中最晚的 updated_at（走 idx_updated_at 范围扫描）
+     * since 为空时为首次全量汇总，同时包含归档表中的日期
+     */
+    @Select("<script>" +
+            "SELECT DATE(created_at) AS day, MAX(updated_at) AS last_updated FROM bookings" +
+            " WHERE created_at IS NOT NULL<if test='since != null'> AND updated_at &gt; #{since}</if>" +
+            " GROUP BY DATE(created_at)" +
+            "<if test='since == null'>" +
+            " UNION ALL SELECT DATE(created_at), MAX(updated_at) FROM bookings_archive" +
+            " WHERE created_at IS NOT NULL GROUP BY DATE(created_at)" +
+            "</if>" +
+            "</script>")
+    List<Map<String, Object>> selectChangedDays(@Param("since") LocalDateTime since);
+}
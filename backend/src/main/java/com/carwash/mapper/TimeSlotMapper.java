@@ -1,7 +1,9 @@
 package com.carwash.mapper;
 
+import com.carwash.dto.SlotCountDrift;
 import com.carwash.entity.TimeSlot;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -43,9 +45,70 @@ public interface TimeSlotMapper extends BaseMapper<TimeSlot> {
     @Update("UPDATE time_slots SET current_bookings = current_bookings + 1 WHERE id = #{timeSlotId}")
     int incrementCurrentBookings(@Param("timeSlotId") Long timeSlotId);
 
+    /**
+     * 占用时间段容量（带条件的原子更新）
+     * 仅当时间段可用且未约满时才会加一，返回0表示容量不足或时间段不可用
+     */
+    @Update("UPDATE time_slots SET current_bookings = current_bookings + 1 " +
+            "WHERE id = #{timeSlotId} AND status = 1 AND deleted = 0 AND current_bookings < max_bookings")
+    int reserveCapacity(@Param("timeSlotId") Long timeSlotId);
+
     /**
      * 减少时间段预约数量
      */
     @Update("UPDATE time_slots SET current_bookings = current_bookings - 1 WHERE id = #{timeSlotId} AND current_bookings > 0")
     int decrementCurrentBookings(@Param("timeSlotId") Long timeSlotId);
-}
\ No newline at end of file
+
+    /**
+     * 一次归还多个预约名额（批量删除订单时按时间段合并）
+     */
+    @Update("UPDATE time_slots SET current_bookings = GREATEST(current_bookings - #{count}, 0) " +
+            "WHERE id = #{timeSlotId} AND current_bookings > 0")
+    int releaseCapacity(@Param("timeSlotId") Long timeSlotId, @Param("count") int count);
+
+    /**
+     * 多行插入时间段，唯一键 uk_date_time 冲突的行直接跳过（包括已软删除的时间段）
+     * 返回实际插入的行数
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO time_slots (date, start_time, end_time, max_bookings, current_bookings, status, created_at, updated_at, deleted) VALUES " +
+            "<foreach collection='slots' item='s' separator=','>" +
+            "(#{s.date}, #{s.startTime}, #{s.endTime}, #{s.maxBookings}, #{s.currentBookings}, #{s.status}, #{s.createdAt}, #{s.updatedAt}, #{s.deleted})" +
+            "</foreach>" +
+            "</script>")
+    int insertIgnoreBatch(@Param("slots") List<TimeSlot> slots);
+
+    /**
+     * 统计日期范围内未删除的时间段数
+     */
+    @Select("SELECT COUNT(*) FROM time_slots WHERE date BETWEEN #{startDate} AND #{endDate} AND deleted = 0")
+    long countByDateRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 对比日期范围内时间段的 current_bookings 与实际占用名额（未取消、未删除）的订单数，只返回不一致的时间段
+     * 单条语句在同一快照中读取两侧数据，一次分组聚合覆盖整个日期范围
+     */
+    @Select("SELECT t.id AS timeSlotId, t.max_bookings AS maxBookings, COALESCE(t.current_bookings, 0) AS recorded, " +
+            "COALESCE(b.cnt, 0) AS actual FROM time_slots t " +
+            "LEFT JOIN (SELECT bk.time_slot_id, COUNT(*) AS cnt FROM bookings bk " +
+            "JOIN time_slots s ON s.id = bk.time_slot_id " +
+            "WHERE s.date BETWEEN #{startDate} AND #{endDate} AND bk.status <> 'cancelled' AND bk.deleted = 0 " +
+            "GROUP BY bk.time_slot_id) b ON b.time_slot_id = t.id " +
+            "WHERE t.date BETWEEN #{startDate} AND #{endDate} AND t.deleted = 0 " +
+            "AND COALESCE(t.current_bookings, 0) <> COALESCE(b.cnt, 0) ORDER BY t.id")
+    List<SlotCountDrift> selectCountDrift(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 批量校正 current_bookings
+     * 仅当计数仍等于聚合时读到的值才更新；期间被在线预约修改过的时间段跳过，返回实际校正的行数
+     */
+    @Update("<script>" +
+            "UPDATE time_slots SET current_bookings = CASE id " +
+            "<foreach collection='drifts' item='d' separator=' '>WHEN #{d.timeSlotId} THEN #{d.actual}</foreach> " +
+            "END WHERE " +
+            "<foreach collection='drifts' item='d' open='(' separator=' OR ' close=')'>" +
+            "(id = #{d.timeSlotId} AND COALESCE(current_bookings, 0) = #{d.recorded})" +
+            "</foreach>" +
+            "</script>")
+    int fixCountDrift(@Param("drifts") List<SlotCountDrift> drifts);
+}
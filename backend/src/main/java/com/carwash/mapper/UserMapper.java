@@ -60,14 +60,14 @@ public interface UserMapper extends BaseMapper<User> {
     int countTotalUsers();
 
     /**
-     * 统计今日新增用户数
+     * 统计今日新增用户数（created_at 范围条件，可走 idx_created_at）
      */
-    @Select("SELECT COUNT(*) FROM users WHERE DATE(created_at) = CURDATE() AND deleted = 0")
+    @Select("SELECT COUNT(*) FROM users WHERE created_at >= CURDATE() AND created_at < CURDATE() + INTERVAL 1 DAY AND deleted = 0")
     int countTodayNewUsers();
 
     /**
      * 统计月度新增用户数
      */
-    @Select("SELECT COUNT(*) FROM users WHERE YEAR(created_at) = YEAR(CURDATE()) AND MONTH(created_at) = MONTH(CURDATE()) AND deleted = 0")
+    @Select("SELECT COUNT(*) FROM users WHERE created_at >= DATE_FORMAT(CURDATE(), '%Y-%m-01') AND created_at < CURDATE() + INTERVAL 1 DAY AND deleted = 0")
     int countMonthlyNewUsers();
 }
\ No newline at end of file
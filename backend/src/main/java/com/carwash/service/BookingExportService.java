@@ -0,0 +1,25 @@
+package com.carwash.service;
+
+import com.carwash.service.booking.BookingExportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * 订单导出服务接口
+ */
+public interface BookingExportService {
+
+    /**
+     * 流式导出订单，逐行写入输出流，内存占用与导出行数无关
+     * @param format 导出格式
+     * @param startDate 预约日期起（含，可为空）
+     * @param endDate 预约日期止（含，可为空）
+     * @param status 订单状态（可为空）
+     * @param out 输出流（不会被关闭）
+     * @return 导出的订单行数
+     */
+    long export(BookingExportFormat format, LocalDate startDate, LocalDate endDate, String status,
+                OutputStream out) throws IOException;
+}
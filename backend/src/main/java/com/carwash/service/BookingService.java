@@ -1,7 +1,10 @@
 package com.carwash.service;
 
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.carwash.dto.BatchStatusUpdateResponse;
 import com.carwash.dto.BookingRequest;
 import com.carwash.dto.BookingResponse;
+import com.carwash.dto.CursorPageResponse;
 
 import java.util.List;
 
@@ -23,6 +26,11 @@ public interface BookingService {
      */
     List<BookingResponse> getUserBookings(Long userId);
 
+    /**
+     * 游标分页获取用户订单列表
+     */
+    CursorPageResponse<BookingResponse> getUserBookingsPage(Long userId, String cursor, Integer size);
+
     /**
      * 获取订单详情
      */
@@ -43,6 +51,11 @@ public interface BookingService {
      */
     void updateBookingStatus(Long bookingId, String status);
 
+    /**
+     * 批量更新订单状态，逐条返回处理结果
+     */
+    BatchStatusUpdateResponse updateBookingStatusBatch(List<Long> bookingIds, String status);
+
     /**
      * 删除订单（硬删除）
      */
@@ -57,4 +70,14 @@ public interface BookingService {
      * 获取所有订单（管理员）
      */
     List<BookingResponse> getAllBookings();
-}
\ No newline at end of file
+
+    /**
+     * 游标分页获取所有订单（管理员）
+     */
+    CursorPageResponse<BookingResponse> getAllBookingsPage(String cursor, Integer size);
+
+    /**
+     * 按车牌号、联系电话或订单号片段搜索订单（管理员）
+     */
+    IPage<BookingResponse> searchBookings(String keyword, Long current, Long size);
+}
@@ -1,7 +1,10 @@
 package com.carwash.service;
 
+import com.carwash.dto.AnalyticsSeriesResponse;
 import com.carwash.dto.StatisticsResponse;
 
+import java.time.LocalDate;
+
 /**
  * 数据统计服务接口
  * 
@@ -24,4 +27,9 @@ public interface StatisticsService {
      * 获取月度统计
      */
     StatisticsResponse getMonthlyStatistics();
+
+    /**
+     * 获取订单趋势（按小时 / 天 / 周 / 月及服务、分类、支付方式、状态分组）
+     */
+    AnalyticsSeriesResponse getSeries(LocalDate startDate, LocalDate endDate, String granularity, String groupBy);
 }
\ No newline at end of file
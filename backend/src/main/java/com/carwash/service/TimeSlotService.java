@@ -2,6 +2,9 @@ package com.carwash.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.carwash.dto.AvailabilityCalendarResponse;
+import com.carwash.dto.TimeSlotGenerationResult;
+import com.carwash.dto.TimeSlotTemplateRequest;
 import com.carwash.entity.TimeSlot;
 
 import java.time.LocalDate;
@@ -20,6 +23,11 @@ public interface TimeSlotService {
      */
     Long createTimeSlot(TimeSlot timeSlot);
 
+    /**
+     * 按营业时间模板批量生成时间段，已存在的时间段跳过
+     */
+    TimeSlotGenerationResult generateTimeSlots(TimeSlotTemplateRequest template);
+
     /**
      * 获取指定日期的时间段列表
      */
@@ -30,6 +38,27 @@ public interface TimeSlotService {
      */
     List<TimeSlot> getAvailableTimeSlots(LocalDate date);
 
+    /**
+     * 获取日期范围内的可用时间段（按日期、开始时间排序）
+     */
+    List<TimeSlot> getAvailableTimeSlots(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 获取可预约日历（每天的空闲时间段数和时间段位图）
+     * 日期为空时默认从今天起到最远可预约日期
+     */
+    AvailabilityCalendarResponse getAvailabilityCalendar(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 根据ID获取时间段
+     */
+    TimeSlot getTimeSlotById(Long timeSlotId);
+
+    /**
+     * 根据日期和时间范围（如 09:00-09:30）查找时间段
+     */
+    TimeSlot findTimeSlot(LocalDate date, String timeRange);
+
     /**
      * 获取所有时间段（分页）
      */
@@ -0,0 +1,309 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.constants.Constants;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.AvailabilityCalendarResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可预约日历：一次返回多天的空闲时间段数和时间段位图
+ * - 未缓存的日期合并为一次 time_slots 范围查询加一次按时间段分组的订单计数
+ * - 结果按天缓存在本节点内存中；订单变更提交后按事件携带的预约日期失效所在日期（支付变更不影响名额，忽略）
+ * - 其他节点的变更通过订单缓存失效频道感知，消息不带日期，按主键读取订单确定日期；本节点发出的消息跳过
+ * - 时间段自身的调整提交后失效所在日期
+ * - 只查询和缓存 [今天, 今天 + 最远可预约天数] 内的日期，跨天后清理已过去的日期，缓存条目数有上限
+ */
+@Component
+public class AvailabilityCalendar {
+
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityCalendar.class);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final TimeSlotMapper timeSlotMapper;
+    private final BookingMapper bookingMapper;
+
+    private final Map<LocalDate, CachedDay> cache = new ConcurrentHashMap<>();
+
+    /** 最近一次清理过期日期时的"今天" */
+    private volatile LocalDate prunedFor;
+
+    /** 每次失效加一；计算期间发生过失效时不写入缓存，避免覆盖为旧数据 */
+    private final AtomicLong epoch = new AtomicLong();
+
+    @Autowired
+    public AvailabilityCalendar(TimeSlotMapper timeSlotMapper,
+                                BookingMapper bookingMapper,
+                                RedisMessageListenerContainer listenerContainer) {
+        this.timeSlotMapper = timeSlotMapper;
+        this.bookingMapper = bookingMapper;
+        listenerContainer.addMessageListener(this::onRemoteChange, new ChannelTopic(BookingCache.EVICT_CHANNEL));
+    }
+
+    /**
+     * 查询日期范围内的可预约日历
+     * 范围截取到 [今天, 今天 + 最远可预约天数]，与可预约窗口没有交集时拒绝
+     */
+    public AvailabilityCalendarResponse getCalendar(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "开始日期和结束日期不能为空");
+        }
+        if (endDate.isBefore(startDate)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "结束日期不能早于开始日期");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) > Constants.Appointment.MAX_ADVANCE_DAYS) {
+            throw new BusinessException(ResultCode.PARAM_ERROR,
+                    "单次最多查询" + (Constants.Appointment.MAX_ADVANCE_DAYS + 1) + "天");
+        }
+        LocalDate today = TimeUtils.today();
+        LocalDate lastBookable = today.plusDays(Constants.Appointment.MAX_ADVANCE_DAYS);
+        if (endDate.isBefore(today) || startDate.isAfter(lastBookable)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR,
+                    "只能查询今天起" + (Constants.Appointment.MAX_ADVANCE_DAYS + 1) + "天内的日期");
+        }
+        pruneBefore(today);
+        startDate = startDate.isBefore(today) ? today : startDate;
+        endDate = endDate.isAfter(lastBookable) ? lastBookable : endDate;
+
+        Map<LocalDate, CachedDay> days = new TreeMap<>();
+        LocalDate firstMissing = null;
+        LocalDate lastMissing = null;
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            CachedDay day = cache.get(date);
+            if (day != null) {
+                days.put(date, day);
+            } else {
+                firstMissing = firstMissing == null ? date : firstMissing;
+                lastMissing = date;
+            }
+        }
+        if (firstMissing != null) {
+            for (CachedDay day : compute(firstMissing, lastMissing).values()) {
+                days.putIfAbsent(day.date, day);
+            }
+        }
+        return assemble(startDate, endDate, days);
+    }
+
+    /**
+     * 失效单日缓存；在事务中调用时提交后再失效一次，防止提交前被旧数据重新填充
+     */
+    public void evict(LocalDate date) {
+        if (date == null) {
+            return;
+        }
+        evictNow(date);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(date);
+                }
+            });
+        }
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void clear() {
+        epoch.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * 订单变更提交后失效所在日期
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.getBookingId() == null || event.isPaymentUpdate()) {
+            return;
+        }
+        if (event.getBookingDate() != null) {
+            evictNow(event.getBookingDate());
+        } else {
+            applyBooking(event.getBookingId());
+        }
+    }
+
+    /**
+     * 不带日期的变更（其他节点）：读取订单确定日期；订单已被删除时无法确定日期，清空全部缓存
+     */
+    void applyBooking(Long bookingId) {
+        try {
+            Booking booking = bookingMapper.selectById(bookingId);
+            if (booking == null || booking.getBookingDate() == null) {
+                clear();
+            } else {
+                evictNow(booking.getBookingDate());
+            }
+        } catch (Exception e) {
+            log.warn("可预约日历失效失败，订单ID: {}, 清空缓存: {}", bookingId, e.getMessage());
+            clear();
+        }
+    }
+
+    /**
+     * 跨天后移除已过去日期的缓存
+     */
+    private void pruneBefore(LocalDate today) {
+        if (today.equals(prunedFor)) {
+            return;
+        }
+        cache.keySet().removeIf(date -> date.isBefore(today));
+        prunedFor = today;
+    }
+
+    int cachedDays() {
+        return cache.size();
+    }
+
+    private void evictNow(LocalDate date) {
+        epoch.incrementAndGet();
+        cache.remove(date);
+    }
+
+    /**
+     * 一次范围查询加一次分组计数，计算 [start, end] 内每天的名额概况
+     */
+    private Map<LocalDate, CachedDay> compute(LocalDate start, LocalDate end) {
+        long epochBefore = epoch.get();
+        List<TimeSlot> slots = timeSlotMapper.selectByDateRange(start, end);
+        Map<Long, Integer> occupied = new HashMap<>();
+        for (Map<String, Object> row : bookingMapper.countActiveBySlot(start, end)) {
+            Object slotId = row.get("time_slot_id");
+            Object count = row.get("cnt");
+            if (slotId instanceof Number && count instanceof Number) {
+                occupied.put(((Number) slotId).longValue(), ((Number) count).intValue());
+            }
+        }
+
+        Map<LocalDate, List<TimeSlot>> byDate = new HashMap<>();
+        for (TimeSlot slot : slots) {
+            if (Integer.valueOf(1).equals(slot.getStatus()) && slot.getStartTime() != null && slot.getEndTime() != null) {
+                byDate.computeIfAbsent(slot.getDate(), d -> new ArrayList<>()).add(slot);
+            }
+        }
+        Map<LocalDate, CachedDay> computed = new HashMap<>();
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            List<TimeSlot> daySlots = byDate.getOrDefault(date, new ArrayList<>());
+            daySlots.sort(Comparator.comparing(TimeSlot::getStartTime).thenComparing(TimeSlot::getEndTime));
+            String[] times = new String[daySlots.size()];
+            boolean[] free = new boolean[daySlots.size()];
+            for (int i = 0; i < daySlots.size(); i++) {
+                TimeSlot slot = daySlots.get(i);
+                int max = slot.getMaxBookings() == null ? 0 : slot.getMaxBookings();
+                times[i] = slot.getStartTime() + "-" + slot.getEndTime();
+                free[i] = occupied.getOrDefault(slot.getId(), 0) < max;
+            }
+            computed.put(date, new CachedDay(date, times, free));
+        }
+        if (epoch.get() == epochBefore) {
+            cache.putAll(computed);
+        }
+        return computed;
+    }
+
+    private static AvailabilityCalendarResponse assemble(LocalDate startDate, LocalDate endDate,
+                                                         Map<LocalDate, CachedDay> days) {
+        TreeSet<String> allTimes = new TreeSet<>();
+        for (CachedDay day : days.values()) {
+            allTimes.addAll(List.of(day.times));
+        }
+        List<String> times = new ArrayList<>(allTimes);
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < times.size(); i++) {
+            positions.put(times.get(i), i);
+        }
+
+        List<AvailabilityCalendarResponse.Day> dayResponses = new ArrayList<>(days.size());
+        for (CachedDay day : days.values()) {
+            byte[] bitmap = new byte[(times.size() + 7) / 8];
+            int freeCount = 0;
+            for (int i = 0; i < day.times.length; i++) {
+                if (day.free[i]) {
+                    int bit = positions.get(day.times[i]);
+                    bitmap[bit >> 3] |= (byte) (1 << (bit & 7));
+                    freeCount++;
+                }
+            }
+            AvailabilityCalendarResponse.Day response = new AvailabilityCalendarResponse.Day();
+            response.setDate(day.date);
+            response.setTotal(day.times.length);
+            response.setFree(freeCount);
+            response.setBitmap(toHex(bitmap));
+            dayResponses.add(response);
+        }
+
+        AvailabilityCalendarResponse response = new AvailabilityCalendarResponse();
+        response.setStartDate(startDate);
+        response.setEndDate(endDate);
+        response.setTimes(times);
+        response.setDays(dayResponses);
+        return response;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private void onRemoteChange(Message message, byte[] pattern) {
+        try {
+            BookingChangedEvent event = BookingCache.parseRemoteChange(message);
+            if (event != null && event.getBookingId() != null) {
+                applyBooking(event.getBookingId());
+            }
+        } catch (Exception e) {
+            log.warn("可预约日历变更消息解析失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 单日缓存：按开始时间排序的时间段及是否仍有名额
+     */
+    private static final class CachedDay {
+        private final LocalDate date;
+        private final String[] times;
+        private final boolean[] free;
+
+        private CachedDay(LocalDate date, String[] times, boolean[] free) {
+            this.date = date;
+            this.times = times;
+            this.free = free;
+        }
+    }
+}
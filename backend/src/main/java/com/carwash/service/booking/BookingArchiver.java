@@ -0,0 +1,176 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.entity.Booking;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingArchiveMapper;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 订单归档：将预约日期早于保留期的已完成/已取消订单移入 bookings_archive
+ * - 每月执行一次，按 (booking_date, id) 顺序分批处理，每批在独立的短事务中"锁定 → 复制 → 物理删除"，
+ *   复制行数与删除行数不一致时整批回滚
+ * - 有反馈记录的订单被 feedback 外键引用，保留在热表中
+ * - 归档订单只读，按订单ID / 订单号查询时由 BookingServiceImpl 回落到归档表
+ * - 归档只涉及早于截止日期的时间段，不调整 time_slots.current_bookings
+ * - 每批归档的订单发布 BookingChangedEvent.archived，提交后由订单缓存、搜索索引等视图移除（不影响统计）
+ */
+@Component
+public class BookingArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingArchiver.class);
+
+    /** 可归档的订单状态 */
+    static final List<String> ARCHIVABLE_STATUSES = List.of("completed", "cancelled");
+
+    /** 扫描起点（MySQL DATE 的最小值） */
+    private static final LocalDate SCAN_START = LocalDate.of(1000, 1, 1);
+
+    /** 单批事务超时时间（秒） */
+    private static final int CHUNK_TIMEOUT_SECONDS = 30;
+
+    private final BookingMapper bookingMapper;
+    private final BookingArchiveMapper bookingArchiveMapper;
+    private final TransactionTemplate chunkTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int retainMonths;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public BookingArchiver(BookingMapper bookingMapper,
+                           BookingArchiveMapper bookingArchiveMapper,
+                           PlatformTransactionManager transactionManager,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${booking.archive.enabled:true}") boolean enabled,
+                           @Value("${booking.archive.retain-months:6}") int retainMonths,
+                           @Value("${booking.archive.chunk-size:1000}") int chunkSize,
+                           @Value("${booking.archive.pause-ms:100}") long pauseMillis) {
+        this.bookingMapper = bookingMapper;
+        this.bookingArchiveMapper = bookingArchiveMapper;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.retainMonths = retainMonths;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkTransaction.setTimeout(CHUNK_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * 每月 1 日凌晨归档保留期之前的订单
+     */
+    @Scheduled(cron = "${booking.archive.cron:0 30 3 1 * *}")
+    public void archiveMonthly() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archiveBefore(cutoffDate());
+        } catch (Exception e) {
+            log.error("订单归档失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 截止日期：保留期起始月份的 1 日，早于该日期的订单可归档
+     */
+    public LocalDate cutoffDate() {
+        return TimeUtils.today().minusMonths(retainMonths).withDayOfMonth(1);
+    }
+
+    /**
+     * 归档预约日期早于截止日期的已完成/已取消订单
+     * @return 归档的订单数
+     */
+    public long archiveBefore(LocalDate cutoff) {
+        if (cutoff == null || !cutoff.isBefore(TimeUtils.today())) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "归档截止日期必须早于今天");
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.info("订单归档正在执行，跳过本次请求");
+            return 0;
+        }
+        try {
+            long archived = 0;
+            int chunks = 0;
+            for (String status : ARCHIVABLE_STATUSES) {
+                // 上一批最后一个订单的 (booking_date, id)，下一批从其后继续；跳过的订单不会被重复扫描
+                LocalDate[] afterDate = {SCAN_START};
+                long[] afterId = {0L};
+                while (true) {
+                    Integer moved = chunkTransaction.execute(tx -> {
+                        List<Booking> chunk = bookingMapper.lockArchiveChunk(status, cutoff, afterDate[0], afterId[0], chunkSize);
+                        if (chunk.isEmpty()) {
+                            return null;
+                        }
+                        Booking last = chunk.get(chunk.size() - 1);
+                        afterDate[0] = last.getBookingDate();
+                        afterId[0] = last.getId();
+                        return moveChunk(chunk);
+                    });
+                    if (moved == null) {
+                        break;
+                    }
+                    archived += moved;
+                    chunks++;
+                    pause();
+                }
+            }
+            log.info("订单归档完成，截止日期: {}, 归档数量: {}, 批次数: {}", cutoff, archived, chunks);
+            return archived;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int moveChunk(List<Booking> chunk) {
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (Booking booking : chunk) {
+            ids.add(booking.getId());
+        }
+        int copied = bookingArchiveMapper.copyFromBookings(ids, TimeUtils.now());
+        int deleted = bookingMapper.deleteArchived(ids);
+        if (copied != ids.size() || deleted != ids.size()) {
+            throw new IllegalStateException("归档行数不一致，批次回滚: 锁定 " + ids.size()
+                    + ", 复制 " + copied + ", 删除 " + deleted);
+        }
+        for (Booking booking : chunk) {
+            eventPublisher.publishEvent(BookingChangedEvent.archived(booking));
+        }
+        return deleted;
+    }
+
+    private void pause() {
+        if (pauseMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("订单归档被中断", e);
+        }
+    }
+}
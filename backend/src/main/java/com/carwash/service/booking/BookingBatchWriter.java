@@ -0,0 +1,48 @@
+package com.carwash.service.booking;
+
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import com.carwash.entity.Booking;
+import com.carwash.mapper.BookingMapper;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单批量写入
+ * 通过 MyBatis BATCH 执行器把多条条件更新合并为一次 JDBC 批量提交，在调用方事务内执行
+ */
+@Component
+public class BookingBatchWriter {
+
+    private static final Log LOG = LogFactory.getLog(BookingBatchWriter.class);
+
+    /**
+     * 批量执行状态比较并交换
+     * @param bookings 读取到的订单（按其当前状态和版本号作为条件）
+     * @return 与入参顺序一致的影响行数；驱动开启批量重写时可能为 Statement.SUCCESS_NO_INFO
+     */
+    public int[] transitionAll(List<Booking> bookings, String toStatus, LocalDateTime now) {
+        int[] counts = new int[bookings.size()];
+        if (bookings.isEmpty()) {
+            return counts;
+        }
+        SqlHelper.executeBatch(Booking.class, LOG, sqlSession -> {
+            BookingMapper mapper = sqlSession.getMapper(BookingMapper.class);
+            for (Booking booking : bookings) {
+                int version = booking.getVersion() != null ? booking.getVersion() : 0;
+                mapper.transitionStatus(booking.getId(), booking.getStatus(), toStatus, version, null, now);
+            }
+            int index = 0;
+            for (BatchResult result : sqlSession.flushStatements()) {
+                for (int count : result.getUpdateCounts()) {
+                    counts[index++] = count;
+                }
+            }
+        });
+        return counts;
+    }
+}
@@ -0,0 +1,290 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.cache.CacheStats;
+import com.carwash.common.cache.LocalTtlCache;
+import com.carwash.common.constants.Constants;
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.dto.BookingResponse;
+import com.carwash.event.BookingChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 订单详情两级缓存（按订单ID与订单号）
+ * - 一级：进程内 LRU + 短 TTL；二级：Redis（JSON 字符串）
+ * - 订单号只缓存 "订单号 -> 订单ID" 的映射，两种查询共用同一份订单详情，失效时只需清理一处
+ * - 订单变更后发布 BookingChangedEvent，事务提交后清理本节点两级缓存，并通过 Redis 频道通知其他节点清理一级缓存
+ * - 失效消息带发送节点标识，其他订单视图据此跳过本节点已在事务提交后处理过的变更
+ * - 加载期间若发生过失效，则本次加载结果不回填，避免把提交前读到的旧数据写回缓存
+ * - Redis 不可用时短暂熔断，仅使用一级缓存
+ */
+@Component
+public class BookingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingCache.class);
+
+    private static final String ID_KEY_PREFIX = Constants.Cache.APPOINTMENT_PREFIX + "id:";
+    private static final String ORDER_NO_KEY_PREFIX = Constants.Cache.APPOINTMENT_PREFIX + "order:";
+
+    static final String EVICT_CHANNEL = Constants.Cache.APPOINTMENT_PREFIX + "evict";
+
+    /** 本进程的节点标识，写入失效消息 */
+    static final String NODE_ID = UUID.randomUUID().toString();
+
+    /** Redis 故障后的熔断时长 */
+    private static final long CIRCUIT_OPEN_MILLIS = 30_000L;
+
+    private final RedisUtils redisUtils;
+    private final long redisTtlSeconds;
+
+    private final LocalTtlCache<Long, BookingResponse> byId;
+    private final LocalTtlCache<String, Long> idByOrderNo;
+
+    /** 每次失效递增，加载前后不一致时放弃回填 */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    private volatile long circuitOpenUntil = 0L;
+
+    @Autowired
+    public BookingCache(RedisUtils redisUtils,
+                        RedisMessageListenerContainer listenerContainer,
+                        @Value("${booking.cache.local-max-size:10000}") int localMaxSize,
+                        @Value("${booking.cache.local-ttl-seconds:30}") long localTtlSeconds,
+                        @Value("${booking.cache.redis-ttl-seconds:600}") long redisTtlSeconds) {
+        this.redisUtils = redisUtils;
+        this.redisTtlSeconds = redisTtlSeconds;
+        this.byId = new LocalTtlCache<>(localMaxSize, TimeUnit.SECONDS.toMillis(localTtlSeconds));
+        this.idByOrderNo = new LocalTtlCache<>(localMaxSize, TimeUnit.SECONDS.toMillis(localTtlSeconds));
+        listenerContainer.addMessageListener(this::onRemoteEvict, new ChannelTopic(EVICT_CHANNEL));
+    }
+
+    /**
+     * 按订单ID读取，未命中时调用 loader 加载并回填
+     */
+    public BookingResponse getById(Long bookingId, Function<Long, BookingResponse> loader) {
+        BookingResponse cached = lookupById(bookingId);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = invalidations.get();
+        BookingResponse loaded = loader.apply(bookingId);
+        fill(loaded, generation);
+        return loaded;
+    }
+
+    /**
+     * 按订单号读取，未命中时调用 loader 加载并回填
+     */
+    public BookingResponse getByOrderNo(String orderNo, Function<String, BookingResponse> loader) {
+        Long bookingId = idByOrderNo.get(orderNo);
+        if (bookingId == null) {
+            bookingId = redisGetId(orderNo);
+        }
+        if (bookingId != null) {
+            BookingResponse cached = lookupById(bookingId);
+            // 防御性校验：详情中的订单号须与查询的订单号一致
+            if (cached != null && orderNo.equals(cached.getOrderNo())) {
+                idByOrderNo.put(orderNo, bookingId);
+                return cached;
+            }
+        }
+        long generation = invalidations.get();
+        BookingResponse loaded = loader.apply(orderNo);
+        fill(loaded, generation);
+        return loaded;
+    }
+
+    /**
+     * 订单变更事务提交后清理缓存；不在事务中发布的事件立即处理
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        evict(event.getBookingId(), event.getOrderNo());
+    }
+
+    /**
+     * 清理指定订单的两级缓存，并通知其他节点清理一级缓存
+     */
+    public void evict(Long bookingId, String orderNo) {
+        evictLocal(bookingId, orderNo);
+        if (isCircuitOpen()) {
+            return;
+        }
+        try {
+            if (bookingId != null) {
+                redisUtils.delete(ID_KEY_PREFIX + bookingId);
+            }
+            if (orderNo != null) {
+                redisUtils.delete(ORDER_NO_KEY_PREFIX + orderNo);
+            }
+            redisUtils.convertAndSend(EVICT_CHANNEL, NODE_ID + "|" + bookingId + ":" + (orderNo == null ? "" : orderNo));
+        } catch (Exception e) {
+            openCircuit(e);
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> stats() {
+        CacheStats local = byId.stats();
+        long redisHit = redisHits.sum();
+        long loaded = loads.sum();
+        long total = local.getHits() + redisHit + loaded;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localHits", local.getHits());
+        stats.put("localHitRatio", local.getHitRatio());
+        stats.put("localSize", local.getSize());
+        stats.put("localEvictions", local.getEvictions());
+        stats.put("orderNoIndexSize", idByOrderNo.size());
+        stats.put("redisHits", redisHit);
+        stats.put("redisMisses", redisMisses.sum());
+        stats.put("databaseLoads", loaded);
+        stats.put("hitRatio", total == 0 ? 0D : (double) (local.getHits() + redisHit) / total);
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private BookingResponse lookupById(Long bookingId) {
+        BookingResponse cached = byId.get(bookingId);
+        if (cached != null) {
+            return cached;
+        }
+        cached = redisGet(bookingId);
+        if (cached != null) {
+            redisHits.increment();
+            byId.put(bookingId, cached);
+        }
+        return cached;
+    }
+
+    private void fill(BookingResponse response, long generation) {
+        loads.increment();
+        if (response == null || response.getId() == null || invalidations.get() != generation) {
+            return;
+        }
+        byId.put(response.getId(), response);
+        if (response.getOrderNo() != null) {
+            idByOrderNo.put(response.getOrderNo(), response.getId());
+        }
+        if (isCircuitOpen()) {
+            return;
+        }
+        try {
+            redisUtils.set(ID_KEY_PREFIX + response.getId(), BookingJson.MAPPER.writeValueAsString(response),
+                    redisTtlSeconds, TimeUnit.SECONDS);
+            if (response.getOrderNo() != null) {
+                redisUtils.set(ORDER_NO_KEY_PREFIX + response.getOrderNo(), String.valueOf(response.getId()),
+                        redisTtlSeconds, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            openCircuit(e);
+        }
+    }
+
+    private BookingResponse redisGet(Long bookingId) {
+        if (isCircuitOpen()) {
+            return null;
+        }
+        try {
+            Object value = redisUtils.get(ID_KEY_PREFIX + bookingId);
+            if (value instanceof String) {
+                return BookingJson.MAPPER.readValue((String) value, BookingResponse.class);
+            }
+            redisMisses.increment();
+        } catch (Exception e) {
+            openCircuit(e);
+        }
+        return null;
+    }
+
+    private Long redisGetId(String orderNo) {
+        if (isCircuitOpen()) {
+            return null;
+        }
+        try {
+            Object value = redisUtils.get(ORDER_NO_KEY_PREFIX + orderNo);
+            return value instanceof String ? Long.valueOf((String) value) : null;
+        } catch (Exception e) {
+            openCircuit(e);
+            return null;
+        }
+    }
+
+    private void evictLocal(Long bookingId, String orderNo) {
+        invalidations.incrementAndGet();
+        byId.invalidate(bookingId);
+        idByOrderNo.invalidate(orderNo);
+    }
+
+    /**
+     * 其他节点（包括本节点）广播的失效消息，消息体为 "节点标识|订单ID:订单号"
+     */
+    private void onRemoteEvict(Message message, byte[] pattern) {
+        try {
+            BookingChangedEvent event = parseEvictMessage(message);
+            evictLocal(event.getBookingId(), event.getOrderNo());
+        } catch (Exception e) {
+            log.warn("订单缓存失效消息解析失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 解析失效消息（其他订单视图订阅同一频道感知跨节点的订单变更）
+     */
+    static BookingChangedEvent parseEvictMessage(Message message) throws IOException {
+        String body = BookingJson.MAPPER.readValue(message.getBody(), String.class);
+        return toEvent(body.substring(body.indexOf('|') + 1));
+    }
+
+    /**
+     * 解析其他节点的订单变更；本节点发出的消息返回 null（已由事务提交后的事件处理）
+     * 滚动升级期间旧版本节点发出的消息不带节点标识，按其他节点处理
+     */
+    static BookingChangedEvent parseRemoteChange(Message message) throws IOException {
+        String body = BookingJson.MAPPER.readValue(message.getBody(), String.class);
+        int node = body.indexOf('|');
+        if (node >= 0 && NODE_ID.equals(body.substring(0, node))) {
+            return null;
+        }
+        return toEvent(body.substring(node + 1));
+    }
+
+    private static BookingChangedEvent toEvent(String change) {
+        int split = change.indexOf(':');
+        String id = change.substring(0, split);
+        String orderNo = change.substring(split + 1);
+        return new BookingChangedEvent("null".equals(id) ? null : Long.valueOf(id), orderNo.isEmpty() ? null : orderNo);
+    }
+
+    private boolean isCircuitOpen() {
+        return System.currentTimeMillis() < circuitOpenUntil;
+    }
+
+    private void openCircuit(Exception e) {
+        circuitOpenUntil = System.currentTimeMillis() + CIRCUIT_OPEN_MILLIS;
+        log.warn("Redis 订单缓存不可用，{} 秒内仅使用本地缓存: {}", CIRCUIT_OPEN_MILLIS / 1000, e.getMessage());
+    }
+}
@@ -0,0 +1,88 @@
+package com.carwash.service.booking;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.carwash.entity.Booking;
+import com.carwash.entity.Feedback;
+import com.carwash.entity.Payment;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.FeedbackMapper;
+import com.carwash.mapper.PaymentMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单级联删除（基于集合）
+ * 关联的支付记录、反馈记录和订单本身各用一条 IN 语句删除，名额按时间段合并归还，
+ * 删除 N 个订单的数据库交互次数与 N 无关。须在调用方事务内执行。
+ *
+ * 与各实体的 @TableLogic 一致，均为逻辑删除
+ */
+@Component
+public class BookingCascadeDeleter {
+
+    private final BookingMapper bookingMapper;
+    private final PaymentMapper paymentMapper;
+    private final FeedbackMapper feedbackMapper;
+    private final SlotReservationEngine slotReservationEngine;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public BookingCascadeDeleter(BookingMapper bookingMapper,
+                                 PaymentMapper paymentMapper,
+                                 FeedbackMapper feedbackMapper,
+                                 SlotReservationEngine slotReservationEngine,
+                                 ApplicationEventPublisher eventPublisher) {
+        this.bookingMapper = bookingMapper;
+        this.paymentMapper = paymentMapper;
+        this.feedbackMapper = feedbackMapper;
+        this.slotReservationEngine = slotReservationEngine;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 删除订单及其支付、反馈记录
+     * 批量删除时订单应已在当前事务中被锁定（SELECT ... FOR UPDATE），保证归还的名额与实际删除的订单一致
+     * @param bookings 已读取的未删除订单（完整行，作为删除事件的订单快照）
+     * @return 实际删除的订单数
+     */
+    public int deleteAll(List<Booking> bookings) {
+        if (bookings.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(bookings.size());
+        List<String> orderNos = new ArrayList<>(bookings.size());
+        Map<Long, Integer> heldCapacity = new HashMap<>();
+        for (Booking booking : bookings) {
+            ids.add(booking.getId());
+            if (booking.getOrderNo() != null) {
+                orderNos.add(booking.getOrderNo());
+            }
+            if (booking.getTimeSlotId() != null && SlotReservationEngine.holdsCapacity(booking.getStatus())) {
+                heldCapacity.merge(booking.getTimeSlotId(), 1, Integer::sum);
+            }
+        }
+
+        // 支付记录通过订单号关联
+        if (!orderNos.isEmpty()) {
+            paymentMapper.delete(new QueryWrapper<Payment>().in("order_no", orderNos));
+        }
+        feedbackMapper.delete(new QueryWrapper<Feedback>().in("booking_id", ids));
+        int deleted = bookingMapper.deleteBatchIds(ids);
+        if (deleted <= 0) {
+            return 0;
+        }
+
+        heldCapacity.forEach(slotReservationEngine::release);
+        for (Booking booking : bookings) {
+            eventPublisher.publishEvent(BookingChangedEvent.removed(booking));
+        }
+        return deleted;
+    }
+}
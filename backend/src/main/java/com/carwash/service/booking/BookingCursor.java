@@ -0,0 +1,78 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.constants.Constants;
+import com.carwash.common.result.ResultCode;
+import com.carwash.entity.Booking;
+import com.carwash.utils.TimeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 订单列表游标
+ * - 按 (created_at DESC, id DESC) 排序，游标记录上一页最后一条的创建时间与ID
+ * - 对外编码为 Base64URL 字符串，客户端只需原样回传
+ */
+public final class BookingCursor {
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    private BookingCursor(LocalDateTime createdAt, Long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * 以某条订单为位置生成游标
+     */
+    public static BookingCursor after(Booking booking) {
+        return new BookingCursor(booking.getCreatedAt(), booking.getId());
+    }
+
+    /**
+     * 编码为不透明字符串
+     */
+    public String encode() {
+        String raw = TimeUtils.toTimestamp(createdAt) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析客户端回传的游标，为空表示第一页
+     */
+    public static BookingCursor decode(String token) {
+        if (token == null || token.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            long timestamp = Long.parseLong(raw.substring(0, separator));
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new BookingCursor(TimeUtils.fromTimestamp(timestamp), id);
+        } catch (RuntimeException e) {
+            throw new BusinessException(ResultCode.PARAM_INVALID, "无效的分页游标");
+        }
+    }
+
+    /**
+     * 规范化分页大小：缺省取默认值，最大不超过 MAX_PAGE_SIZE
+     */
+    public static int normalizePageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return Constants.Page.DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, Constants.Page.MAX_PAGE_SIZE);
+    }
+}
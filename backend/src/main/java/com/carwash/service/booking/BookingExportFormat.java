@@ -0,0 +1,47 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+
+/**
+ * 订单导出格式
+ */
+public enum BookingExportFormat {
+
+    /** 逗号分隔，带 UTF-8 BOM 便于 Excel 直接打开 */
+    CSV("text/csv;charset=UTF-8", "csv"),
+
+    /** 每行一个 JSON 对象 */
+    NDJSON("application/x-ndjson;charset=UTF-8", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    BookingExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 解析请求参数中的导出格式（不区分大小写）
+     */
+    public static BookingExportFormat of(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return CSV;
+        }
+        for (BookingExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(value.trim())) {
+                return format;
+            }
+        }
+        throw new BusinessException(ResultCode.PARAM_INVALID, "不支持的导出格式: " + value);
+    }
+}
@@ -0,0 +1,330 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.cache.LocalTtlCache;
+import com.carwash.common.constants.Constants;
+import com.carwash.common.result.ResultCode;
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.dto.BookingRequest;
+import com.carwash.dto.BookingResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 预约创建幂等控制（Idempotency-Key）
+ * - 结果按 "用户ID + 幂等键" 保存在 Redis 中（短 TTL），客户端超时重试时直接返回首次创建的订单，不再访问 MySQL
+ * - 本节点内的并发重复请求合并到同一次执行上；跨节点的并发请求由 Redis SETNX 占位，后到者轮询等待结果
+ * - 同一幂等键携带不同请求内容时拒绝，避免客户端误用导致返回错误的订单
+ * - Redis 不可用时短暂熔断，期间的结果写入容量有界的本地 TTL 缓存（仅保证单节点幂等），Redis 正常时不占用本地内存
+ */
+@Component
+public class BookingIdempotencyGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingIdempotencyGuard.class);
+
+    public static final String HEADER = "Idempotency-Key";
+
+    static final int MAX_KEY_LENGTH = 64;
+
+    private static final String KEY_PREFIX = Constants.Cache.IDEMPOTENCY_PREFIX + "booking:";
+
+    /** 处理中占位值前缀，后接请求指纹 */
+    private static final String PENDING_PREFIX = "PENDING:";
+
+    /** Redis 故障后的熔断时长 */
+    private static final long CIRCUIT_OPEN_MILLIS = 30_000L;
+
+    private static final long POLL_INTERVAL_MILLIS = 50L;
+
+    private final RedisUtils redisUtils;
+    private final long ttlSeconds;
+    private final long lockSeconds;
+
+    /** 本节点正在执行的请求 */
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    /** 本地结果缓存（仅在 Redis 不可用时写入） */
+    private final LocalTtlCache<String, StoredResult> localResults;
+
+    private volatile long circuitOpenUntil = 0L;
+
+    @Autowired
+    public BookingIdempotencyGuard(RedisUtils redisUtils,
+                                   @Value("${booking.idempotency.ttl-seconds:600}") long ttlSeconds,
+                                   @Value("${booking.idempotency.lock-seconds:30}") long lockSeconds,
+                                   @Value("${booking.idempotency.local-max-size:10000}") int localMaxSize,
+                                   @Value("${booking.idempotency.local-ttl-seconds:120}") long localTtlSeconds) {
+        this.redisUtils = redisUtils;
+        this.ttlSeconds = ttlSeconds;
+        this.lockSeconds = lockSeconds;
+        this.localResults = new LocalTtlCache<>(localMaxSize, TimeUnit.SECONDS.toMillis(Math.min(localTtlSeconds, ttlSeconds)));
+    }
+
+    /**
+     * 以幂等方式创建预约
+     * @param idempotencyKey 客户端提供的幂等键
+     * @param request 预约请求
+     * @param action 实际的创建逻辑，同一幂等键在 TTL 内最多成功执行一次
+     */
+    public BookingResponse execute(String idempotencyKey, BookingRequest request, Supplier<BookingResponse> action) {
+        String key = scopedKey(idempotencyKey, request);
+        String fingerprint = fingerprint(request);
+
+        InFlight mine = new InFlight(fingerprint);
+        InFlight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            log.info("合并并发的重复预约请求，幂等键: {}", idempotencyKey);
+            return awaitInFlight(running, fingerprint);
+        }
+        try {
+            BookingResponse response = executeOnce(key, fingerprint, action);
+            mine.future.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private BookingResponse executeOnce(String key, String fingerprint, Supplier<BookingResponse> action) {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(lockSeconds);
+        while (true) {
+            StoredResult stored = lookup(key, fingerprint);
+            if (stored != null) {
+                log.info("幂等键命中，返回已创建的订单: {}", stored.getResponse().getOrderNo());
+                return stored.getResponse();
+            }
+            if (tryAcquire(key, fingerprint)) {
+                return runAndStore(key, fingerprint, action);
+            }
+            // 其他节点正在处理同一请求
+            if (System.currentTimeMillis() >= deadline) {
+                throw new BusinessException(ResultCode.REQUEST_IN_PROGRESS);
+            }
+            sleepQuietly();
+        }
+    }
+
+    private BookingResponse runAndStore(String key, String fingerprint, Supplier<BookingResponse> action) {
+        BookingResponse response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // 创建失败不记录结果，释放占位允许客户端重试
+            releaseLock(key);
+            throw e;
+        }
+        store(key, new StoredResult(fingerprint, response));
+        return response;
+    }
+
+    /**
+     * 查询已保存的结果；占位或结果的请求指纹不一致时拒绝
+     */
+    private StoredResult lookup(String key, String fingerprint) {
+        StoredResult local = localResults.get(key);
+        if (local != null) {
+            return verify(local, fingerprint);
+        }
+        if (isCircuitOpen()) {
+            return null;
+        }
+        Object value;
+        try {
+            value = redisUtils.get(key);
+        } catch (Exception e) {
+            openCircuit(e);
+            return null;
+        }
+        if (!(value instanceof String)) {
+            return null;
+        }
+        String text = (String) value;
+        if (text.startsWith(PENDING_PREFIX)) {
+            if (!text.substring(PENDING_PREFIX.length()).equals(fingerprint)) {
+                throw new BusinessException(ResultCode.IDEMPOTENCY_KEY_REUSED);
+            }
+            return null;
+        }
+        try {
+            return verify(BookingJson.MAPPER.readValue(text, StoredResult.class), fingerprint);
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("幂等结果解析失败，按未命中处理，key: {}, 原因: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean tryAcquire(String key, String fingerprint) {
+        if (isCircuitOpen()) {
+            return true;
+        }
+        try {
+            return Boolean.TRUE.equals(redisUtils.setIfAbsent(key, PENDING_PREFIX + fingerprint, lockSeconds, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            openCircuit(e);
+            return true;
+        }
+    }
+
+    private void releaseLock(String key) {
+        if (isCircuitOpen()) {
+            return;
+        }
+        try {
+            redisUtils.delete(key);
+        } catch (Exception e) {
+            openCircuit(e);
+        }
+    }
+
+    /**
+     * 保存结果：Redis 正常时只写 Redis；熔断期间或写入失败时写本地缓存
+     */
+    private void store(String key, StoredResult stored) {
+        if (isCircuitOpen()) {
+            localResults.put(key, stored);
+            return;
+        }
+        try {
+            redisUtils.set(key, BookingJson.MAPPER.writeValueAsString(stored), ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            openCircuit(e);
+            localResults.put(key, stored);
+        }
+    }
+
+    /**
+     * 本地回退缓存中的条目数
+     */
+    int localSize() {
+        return localResults.size();
+    }
+
+    private BookingResponse awaitInFlight(InFlight running, String fingerprint) {
+        if (!running.fingerprint.equals(fingerprint)) {
+            throw new BusinessException(ResultCode.IDEMPOTENCY_KEY_REUSED);
+        }
+        try {
+            return running.future.get(lockSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BusinessException(ResultCode.SYSTEM_ERROR, cause.getMessage());
+        } catch (TimeoutException e) {
+            throw new BusinessException(ResultCode.REQUEST_IN_PROGRESS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ResultCode.REQUEST_IN_PROGRESS);
+        }
+    }
+
+    private static StoredResult verify(StoredResult stored, String fingerprint) {
+        if (!fingerprint.equals(stored.getFingerprint())) {
+            throw new BusinessException(ResultCode.IDEMPOTENCY_KEY_REUSED);
+        }
+        return stored;
+    }
+
+    private static String scopedKey(String idempotencyKey, BookingRequest request) {
+        String key = idempotencyKey == null ? "" : idempotencyKey.trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new BusinessException(ResultCode.PARAM_INVALID, HEADER + " 长度必须在 1~" + MAX_KEY_LENGTH + " 之间");
+        }
+        // 按用户隔离，不同用户使用相同的键互不影响
+        return KEY_PREFIX + request.getUserId() + ":" + key;
+    }
+
+    /**
+     * 请求指纹：同一幂等键只能对应同一份预约内容
+     */
+    static String fingerprint(BookingRequest request) {
+        String content = String.join("|",
+                String.valueOf(request.getUserId()),
+                String.valueOf(request.getServiceId()),
+                String.valueOf(request.getTimeSlotId()),
+                String.valueOf(request.getBookingDate()),
+                String.valueOf(request.getCarNumber()),
+                String.valueOf(request.getCarModel()),
+                String.valueOf(request.getContactPhone()),
+                String.valueOf(request.getNotes()));
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(ResultCode.REQUEST_IN_PROGRESS);
+        }
+    }
+
+    private boolean isCircuitOpen() {
+        return System.currentTimeMillis() < circuitOpenUntil;
+    }
+
+    private void openCircuit(Exception e) {
+        circuitOpenUntil = System.currentTimeMillis() + CIRCUIT_OPEN_MILLIS;
+        log.warn("Redis 幂等存储不可用，{} 秒内回退到本地缓存: {}", CIRCUIT_OPEN_MILLIS / 1000, e.getMessage());
+    }
+
+    private static final class InFlight {
+        private final String fingerprint;
+        private final CompletableFuture<BookingResponse> future = new CompletableFuture<>();
+
+        private InFlight(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * 已保存的创建结果
+     */
+    static class StoredResult {
+        private String fingerprint;
+        private BookingResponse response;
+
+        StoredResult() {
+        }
+
+        StoredResult(String fingerprint, BookingResponse response) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public void setFingerprint(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public BookingResponse getResponse() {
+            return response;
+        }
+
+        public void setResponse(BookingResponse response) {
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.carwash.service.booking;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * 订单数据在 Redis 中的 JSON 序列化
+ * RedisConfig 中的 ObjectMapper 未注册 Java 8 时间类型，BookingResponse 等对象以 JSON 字符串形式存储
+ */
+final class BookingJson {
+
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private BookingJson() {
+    }
+}
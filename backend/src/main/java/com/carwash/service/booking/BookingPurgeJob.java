@@ -0,0 +1,245 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.BookingPurgeProgress;
+import com.carwash.dto.BookingPurgeRequest;
+import com.carwash.entity.Booking;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台批量清理订单（按用户 / 预约日期范围 / 状态）
+ * - 按主键顺序分批处理，每批在独立的短事务中 SELECT ... FOR UPDATE 锁定后级联删除，提交后才处理下一批
+ * - 批次之间短暂停顿，避免长时间占用连接和行锁影响在线下单
+ * - 任务进度保存在本节点内存中，可查询和取消；取消在当前批次提交后生效
+ */
+@Component
+public class BookingPurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingPurgeJob.class);
+
+    public static final String STATE_QUEUED = "queued";
+    public static final String STATE_RUNNING = "running";
+    public static final String STATE_COMPLETED = "completed";
+    public static final String STATE_CANCELLED = "cancelled";
+    public static final String STATE_FAILED = "failed";
+
+    /** 保留的已结束任务数量 */
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    /** 单批事务超时时间（秒） */
+    private static final int CHUNK_TIMEOUT_SECONDS = 30;
+
+    private final BookingMapper bookingMapper;
+    private final BookingCascadeDeleter cascadeDeleter;
+    private final TransactionTemplate chunkTransaction;
+    private final Executor executor;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BookingPurgeJob(BookingMapper bookingMapper,
+                           BookingCascadeDeleter cascadeDeleter,
+                           PlatformTransactionManager transactionManager,
+                           @Qualifier("bookingPurgeExecutor") Executor executor,
+                           @Value("${booking.purge.chunk-size:500}") int chunkSize,
+                           @Value("${booking.purge.pause-ms:50}") long pauseMillis) {
+        this.bookingMapper = bookingMapper;
+        this.cascadeDeleter = cascadeDeleter;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkTransaction.setTimeout(CHUNK_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * 提交清理任务
+     */
+    public BookingPurgeProgress submit(BookingPurgeRequest request) {
+        validate(request);
+        Job job = new Job(UUID.randomUUID().toString().replace("-", ""), request);
+        evictFinishedJobs();
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new BusinessException(ResultCode.SYSTEM_ERROR, "清理任务排队已满，请稍后重试");
+        }
+        log.info("订单清理任务已提交，任务ID: {}, 条件: {}", job.id, request);
+        return job.snapshot();
+    }
+
+    /**
+     * 查询任务进度
+     */
+    public BookingPurgeProgress getProgress(String jobId) {
+        return find(jobId).snapshot();
+    }
+
+    /**
+     * 取消任务，已提交的批次不会回滚
+     */
+    public BookingPurgeProgress cancel(String jobId) {
+        Job job = find(jobId);
+        job.cancelRequested = true;
+        log.info("请求取消订单清理任务，任务ID: {}", jobId);
+        return job.snapshot();
+    }
+
+    private void run(Job job) {
+        if (job.cancelRequested) {
+            job.finish(STATE_CANCELLED, null);
+            return;
+        }
+        job.state = STATE_RUNNING;
+        job.startedAt = TimeUtils.now();
+        BookingPurgeRequest criteria = job.criteria;
+        try {
+            job.estimatedTotal = bookingMapper.countForPurge(criteria.getUserId(), criteria.getStartDate(),
+                    criteria.getEndDate(), criteria.getStatus());
+            // 上一批最后一个订单ID，下一批从其后继续
+            long[] cursor = {0L};
+            while (!job.cancelRequested) {
+                Integer purged = chunkTransaction.execute(status -> {
+                    List<Booking> chunk = bookingMapper.lockPurgeChunk(criteria.getUserId(), criteria.getStartDate(),
+                            criteria.getEndDate(), criteria.getStatus(), cursor[0], chunkSize);
+                    if (chunk.isEmpty()) {
+                        return null;
+                    }
+                    cursor[0] = chunk.get(chunk.size() - 1).getId();
+                    return cascadeDeleter.deleteAll(chunk);
+                });
+                if (purged == null) {
+                    break;
+                }
+                job.purged.addAndGet(purged);
+                job.chunks.incrementAndGet();
+                pause();
+            }
+            job.finish(job.cancelRequested ? STATE_CANCELLED : STATE_COMPLETED, null);
+            log.info("订单清理任务结束，任务ID: {}, 状态: {}, 清理数量: {}, 批次数: {}",
+                    job.id, job.state, job.purged.get(), job.chunks.get());
+        } catch (Exception e) {
+            job.finish(STATE_FAILED, e.getMessage());
+            log.error("订单清理任务失败，任务ID: {}, 已清理: {}", job.id, job.purged.get(), e);
+        }
+    }
+
+    private static void validate(BookingPurgeRequest request) {
+        if (request == null || (request.getUserId() == null && request.getStartDate() == null
+                && request.getEndDate() == null && (request.getStatus() == null || request.getStatus().isEmpty()))) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "至少需要指定一个清理条件");
+        }
+        if (request.getStartDate() != null && request.getEndDate() != null
+                && request.getStartDate().isAfter(request.getEndDate())) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "开始日期不能晚于结束日期");
+        }
+    }
+
+    private Job find(String jobId) {
+        Job job = jobId == null ? null : jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException(ResultCode.NOT_FOUND, "清理任务不存在");
+        }
+        return job;
+    }
+
+    private void evictFinishedJobs() {
+        if (jobs.size() < MAX_FINISHED_JOBS) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(job -> job.finishedAt != null)
+                .sorted((a, b) -> a.finishedAt.compareTo(b.finishedAt))
+                .limit(jobs.size() - MAX_FINISHED_JOBS + 1)
+                .forEach(job -> jobs.remove(job.id));
+    }
+
+    private void pause() {
+        if (pauseMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("清理任务被中断", e);
+        }
+    }
+
+    /**
+     * 任务运行状态，由执行线程更新、请求线程读取
+     */
+    private static final class Job {
+        private final String id;
+        private final BookingPurgeRequest criteria;
+        private final LocalDateTime submittedAt = TimeUtils.now();
+        private final AtomicLong purged = new AtomicLong();
+        private final AtomicLong chunks = new AtomicLong();
+        private volatile String state = STATE_QUEUED;
+        private volatile long estimatedTotal;
+        private volatile boolean cancelRequested;
+        private volatile String message;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        private Job(String id, BookingPurgeRequest criteria) {
+            this.id = id;
+            this.criteria = criteria;
+        }
+
+        private void finish(String finalState, String failure) {
+            message = failure;
+            finishedAt = TimeUtils.now();
+            state = finalState;
+        }
+
+        private BookingPurgeProgress snapshot() {
+            BookingPurgeProgress progress = new BookingPurgeProgress();
+            progress.setJobId(id);
+            progress.setState(state);
+            progress.setCriteria(criteria);
+            progress.setEstimatedTotal(estimatedTotal);
+            progress.setPurged(purged.get());
+            progress.setChunks(chunks.get());
+            int percent;
+            if (STATE_COMPLETED.equals(state)) {
+                percent = 100;
+            } else if (estimatedTotal <= 0) {
+                percent = 0;
+            } else {
+                percent = (int) Math.min(99, purged.get() * 100 / estimatedTotal);
+            }
+            progress.setPercent(percent);
+            progress.setMessage(message);
+            progress.setSubmittedAt(submittedAt);
+            progress.setStartedAt(startedAt);
+            progress.setFinishedAt(finishedAt);
+            return progress;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.carwash.service.booking;
+
+import com.carwash.dto.BookingResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.Service;
+import com.carwash.mapper.ServiceMapper;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 订单响应组装器
+ * - 列表场景一次性批量查询所有涉及的服务名称，查询次数与列表长度无关（消除 N+1 查询）
+ * - 单条场景按ID查询单个服务；调用方已知服务名称时可直接组装
+ */
+@Component
+public class BookingResponseAssembler {
+
+    private final ServiceMapper serviceMapper;
+
+    @Autowired
+    public BookingResponseAssembler(ServiceMapper serviceMapper) {
+        this.serviceMapper = serviceMapper;
+    }
+
+    /**
+     * 组装单个订单响应
+     */
+    public BookingResponse toResponse(Booking booking) {
+        String serviceName = null;
+        if (booking.getServiceId() != null) {
+            Service service = serviceMapper.selectById(booking.getServiceId());
+            if (service != null) {
+                serviceName = service.getName();
+            }
+        }
+        return build(booking, serviceName);
+    }
+
+    /**
+     * 服务名称已知时组装单个订单响应，不查询数据库
+     */
+    public BookingResponse toResponse(Booking booking, String serviceName) {
+        return build(booking, serviceName);
+    }
+
+    /**
+     * 批量组装订单响应
+     */
+    public List<BookingResponse> toResponses(List<Booking> bookings) {
+        if (bookings == null || bookings.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, String> serviceNames = resolveServiceNames(bookings);
+        List<BookingResponse> responses = new ArrayList<>(bookings.size());
+        for (Booking booking : bookings) {
+            responses.add(build(booking, serviceNames.get(booking.getServiceId())));
+        }
+        return responses;
+    }
+
+    /**
+     * 一次查询解析列表中所有不同服务ID对应的名称
+     */
+    public Map<Long, String> resolveServiceNames(List<Booking> bookings) {
+        Set<Long> serviceIds = new LinkedHashSet<>();
+        for (Booking booking : bookings) {
+            if (booking.getServiceId() != null) {
+                serviceIds.add(booking.getServiceId());
+            }
+        }
+        if (serviceIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, String> serviceNames = new HashMap<>(serviceIds.size() * 2);
+        for (Service service : serviceMapper.selectBatchIds(serviceIds)) {
+            serviceNames.put(service.getId(), service.getName());
+        }
+        return serviceNames;
+    }
+
+    private BookingResponse build(Booking booking, String serviceName) {
+        BookingResponse response = new BookingResponse();
+        BeanUtils.copyProperties(booking, response);
+        response.setServiceName(serviceName);
+        return response;
+    }
+}
@@ -0,0 +1,633 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.entity.Booking;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 订单搜索索引：按车牌号、联系电话、订单号的任意片段查找订单，替代 LIKE '%x%' 全表扫描
+ * - 三字符 n-gram 倒排索引，倒排表按文档号递增存储为变长整数差值；各字段的规范化文本顺序存放在一个 char 数组中，用于校验候选结果
+ * - 启动时及每天凌晨以流式查询全量构建；订单变更提交后直接使用事件携带的订单快照（删除和归档事件直接移除），不再读取；
+ *   其他节点的变更通过订单缓存失效频道感知，按主键重新读取单个订单，本节点发出的消息跳过
+ * - 删除和字段变更只标记旧文档，已删除文档超过四分之一时重新构建
+ * - 结果按入索引的先后倒序（新订单在前），分页只返回订单ID，由调用方批量加载详情
+ */
+@Component
+public class BookingSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingSearchIndex.class);
+
+    /** n-gram 长度，也是最短搜索关键词长度 */
+    static final int GRAM = 3;
+
+    /** 同一订单内各字段之间的分隔符，保证匹配不会跨字段 */
+    private static final char FIELD_SEPARATOR = '\u0000';
+
+    /** 已删除文档占比超过该值时重新构建 */
+    private static final double COMPACT_RATIO = 0.25;
+
+    private final BookingMapper bookingMapper;
+    private final TransactionTemplate readTransaction;
+
+    /** 读写锁：搜索持有读锁，增量更新和切换新索引持有写锁 */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment segment;
+
+    /** 构建期间收到变更的订单，切换后重新应用 */
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean rebuilding;
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+    private final AtomicBoolean compactRequested = new AtomicBoolean();
+
+    @Autowired
+    public BookingSearchIndex(BookingMapper bookingMapper,
+                              PlatformTransactionManager transactionManager,
+                              RedisMessageListenerContainer listenerContainer) {
+        this.bookingMapper = bookingMapper;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        listenerContainer.addMessageListener(this::onRemoteChange, new ChannelTopic(BookingCache.EVICT_CHANNEL));
+    }
+
+    /**
+     * 搜索结果：命中总数及当前页的订单ID（新订单在前）
+     */
+    public static final class Hits {
+        private final int total;
+        private final List<Long> bookingIds;
+
+        Hits(int total, List<Long> bookingIds) {
+            this.total = total;
+            this.bookingIds = bookingIds;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public List<Long> getBookingIds() {
+            return bookingIds;
+        }
+    }
+
+    /**
+     * 按关键词片段搜索
+     * @param offset 跳过的命中数
+     * @param limit 返回的最大条数
+     */
+    public Hits search(String keyword, int offset, int limit) {
+        String query = normalize(keyword);
+        if (query.length() < GRAM) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "搜索关键词至少需要" + GRAM + "个字符");
+        }
+        long[] grams = distinctGrams(query);
+        lock.readLock().lock();
+        try {
+            if (segment == null) {
+                throw new BusinessException(ResultCode.SYSTEM_ERROR, "订单搜索索引正在构建，请稍后重试");
+            }
+            return segment.search(query, grams, Math.max(offset, 0), Math.max(limit, 0));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * 每天凌晨重新构建，回收已删除文档占用的空间
+     */
+    @Scheduled(cron = "${booking.search.rebuild-cron:0 0 4 * * *}")
+    public void rebuildDaily() {
+        rebuild();
+    }
+
+    /**
+     * 已删除文档过多时提前重新构建
+     */
+    @Scheduled(fixedDelayString = "${booking.search.compact-check-ms:60000}")
+    public void compactIfNeeded() {
+        if (compactRequested.compareAndSet(true, false)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 以流式查询全量构建新索引并切换
+     */
+    public void rebuild() {
+        if (!rebuildRunning.compareAndSet(false, true)) {
+            return;
+        }
+        rebuilding = true;
+        changedDuringRebuild.clear();
+        try {
+            long start = System.currentTimeMillis();
+            Segment fresh = readTransaction.execute(tx -> {
+                try (Cursor<Booking> cursor = bookingMapper.streamForSearchIndex()) {
+                    return build(cursor);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            lock.writeLock().lock();
+            try {
+                segment = fresh;
+                rebuilding = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("订单搜索索引构建完成，订单数: {}, n-gram 数: {}, 耗时: {} ms",
+                    fresh.docCount, fresh.postings.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("订单搜索索引构建失败，继续使用现有索引: {}", e.getMessage());
+        } finally {
+            rebuilding = false;
+            rebuildRunning.set(false);
+        }
+        for (Long bookingId : changedDuringRebuild) {
+            apply(bookingId);
+        }
+        changedDuringRebuild.clear();
+    }
+
+    /**
+     * 由订单序列构建索引（启动构建与基准测试共用）
+     */
+    static Segment build(Iterable<Booking> bookings) {
+        Segment built = new Segment();
+        for (Booking booking : bookings) {
+            built.add(booking.getId(), textOf(booking));
+        }
+        return built;
+    }
+
+    /**
+     * 订单变更提交后更新索引
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.getBookingId() == null) {
+            return;
+        }
+        if (event.isRemoved()) {
+            remove(event.getBookingId());
+        } else if (event.getBooking() != null) {
+            index(event.getBooking());
+        } else {
+            apply(event.getBookingId());
+        }
+    }
+
+    /**
+     * 按事件快照更新订单；状态、支付变化不影响可搜索字段，文本相同时不改动索引
+     */
+    void index(Booking booking) {
+        if (rebuilding) {
+            changedDuringRebuild.add(booking.getId());
+        }
+        update(booking.getId(), textOf(booking));
+    }
+
+    /**
+     * 移除已删除或已归档的订单
+     */
+    void remove(Long bookingId) {
+        if (rebuilding) {
+            changedDuringRebuild.add(bookingId);
+        }
+        update(bookingId, null);
+    }
+
+    /**
+     * 重新读取单个订单：已删除（或已归档）的标记删除，可搜索字段变化的重新加入
+     */
+    void apply(Long bookingId) {
+        if (rebuilding) {
+            changedDuringRebuild.add(bookingId);
+        }
+        String text;
+        try {
+            Booking booking = bookingMapper.selectById(bookingId);
+            text = booking == null ? null : textOf(booking);
+        } catch (Exception e) {
+            log.warn("订单搜索索引更新失败，订单ID: {}, 等待下次构建: {}", bookingId, e.getMessage());
+            return;
+        }
+        update(bookingId, text);
+    }
+
+    /**
+     * 以新文本替换订单的文档，text 为 null 时只删除
+     */
+    private void update(Long bookingId, String text) {
+        lock.writeLock().lock();
+        try {
+            if (segment == null) {
+                return;
+            }
+            int doc = segment.docOf.get(bookingId);
+            if (doc >= 0 && text != null && segment.textEquals(doc, text)) {
+                return;
+            }
+            if (doc >= 0) {
+                segment.delete(doc);
+            }
+            if (text != null) {
+                segment.add(bookingId, text);
+            }
+            if (segment.deletedCount > segment.docCount * COMPACT_RATIO && segment.docCount > 1000) {
+                compactRequested.set(true);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 索引统计（含内存占用估算）
+     */
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("ready", segment != null);
+            if (segment != null) {
+                stats.putAll(segment.stats());
+            }
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void onRemoteChange(Message message, byte[] pattern) {
+        try {
+            BookingChangedEvent event = BookingCache.parseRemoteChange(message);
+            if (event != null && event.getBookingId() != null) {
+                apply(event.getBookingId());
+            }
+        } catch (Exception e) {
+            log.warn("订单搜索索引变更消息解析失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 规范化：去掉空白和连字符，字母转大写
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!Character.isWhitespace(c) && c != '-' && c != FIELD_SEPARATOR) {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String textOf(Booking booking) {
+        return normalize(booking.getCarNumber()) + FIELD_SEPARATOR
+                + normalize(booking.getContactPhone()) + FIELD_SEPARATOR
+                + normalize(booking.getOrderNo());
+    }
+
+    private static long gram(CharSequence text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    private static long[] distinctGrams(String query) {
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= query.length(); i++) {
+            grams.add(gram(query, i));
+        }
+        return grams.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * 索引数据，只在持有写锁时修改
+     */
+    static final class Segment {
+        private long[] bookingIds = new long[1024];
+        /** 文档 i 的文本位于 arena[textStart[i], textStart[i + 1]) */
+        private int[] textStart = new int[1025];
+        private char[] arena = new char[32 * 1024];
+        private int arenaLength;
+        private int docCount;
+        private final BitSet deleted = new BitSet();
+        private int deletedCount;
+        private final LongIntMap docOf = new LongIntMap();
+        private final Map<Long, Postings> postings = new HashMap<>();
+
+        private void add(long bookingId, String text) {
+            if (docCount == bookingIds.length) {
+                bookingIds = Arrays.copyOf(bookingIds, docCount * 2);
+                textStart = Arrays.copyOf(textStart, docCount * 2 + 1);
+            }
+            if (arenaLength + text.length() > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + text.length()));
+            }
+            int doc = docCount++;
+            bookingIds[doc] = bookingId;
+            text.getChars(0, text.length(), arena, arenaLength);
+            textStart[doc] = arenaLength;
+            arenaLength += text.length();
+            textStart[doc + 1] = arenaLength;
+            docOf.put(bookingId, doc);
+
+            // 逐字段切分 n-gram，不跨越分隔符
+            int fieldStart = 0;
+            for (int i = 0; i <= text.length(); i++) {
+                if (i == text.length() || text.charAt(i) == FIELD_SEPARATOR) {
+                    for (int j = fieldStart; j + GRAM <= i; j++) {
+                        postings.computeIfAbsent(gram(text, j), g -> new Postings()).add(doc);
+                    }
+                    fieldStart = i + 1;
+                }
+            }
+        }
+
+        private void delete(int doc) {
+            if (!deleted.get(doc)) {
+                deleted.set(doc);
+                deletedCount++;
+                docOf.remove(bookingIds[doc]);
+            }
+        }
+
+        private boolean textEquals(int doc, String text) {
+            int start = textStart[doc];
+            if (textStart[doc + 1] - start != text.length()) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                if (arena[start + i] != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean contains(int doc, String query) {
+            int end = textStart[doc + 1] - query.length();
+            for (int i = textStart[doc]; i <= end; i++) {
+                int k = 0;
+                while (k < query.length() && arena[i + k] == query.charAt(k)) {
+                    k++;
+                }
+                if (k == query.length()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Hits search(String query, long[] grams, int offset, int limit) {
+            Postings[] lists = new Postings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(grams[i]);
+                if (lists[i] == null) {
+                    return new Hits(0, Collections.emptyList());
+                }
+            }
+            // 从最短的倒排表开始求交集
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.count, b.count));
+            int[] candidates = lists[0].decode();
+            int n = candidates.length;
+            for (int i = 1; i < lists.length && n > 0; i++) {
+                n = lists[i].retain(candidates, n);
+            }
+            // n-gram 全部出现不代表连续出现，逐个校验
+            int matched = 0;
+            for (int i = 0; i < n; i++) {
+                int doc = candidates[i];
+                if (!deleted.get(doc) && contains(doc, query)) {
+                    candidates[matched++] = doc;
+                }
+            }
+            List<Long> page = new ArrayList<>(Math.min(limit, matched));
+            for (int i = matched - 1 - offset; i >= 0 && page.size() < limit; i--) {
+                page.add(bookingIds[candidates[i]]);
+            }
+            return new Hits(matched, page);
+        }
+
+        private Map<String, Object> stats() {
+            long postingBytes = 0;
+            long postingEntries = 0;
+            for (Postings list : postings.values()) {
+                postingBytes += list.data.length;
+                postingEntries += list.count;
+            }
+            // 每个 n-gram 的 HashMap 节点、Long 键、Postings 对象及数组头约 100 字节
+            long overhead = postings.size() * 100L;
+            long estimated = bookingIds.length * 8L + textStart.length * 4L + arena.length * 2L
+                    + docOf.capacity() * 12L + deleted.size() / 8 + postingBytes + overhead;
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("documents", docCount - deletedCount);
+            stats.put("deletedDocuments", deletedCount);
+            stats.put("grams", postings.size());
+            stats.put("postingEntries", postingEntries);
+            stats.put("postingBytes", postingBytes);
+            stats.put("textChars", arenaLength);
+            stats.put("estimatedBytes", estimated);
+            return stats;
+        }
+    }
+
+    /**
+     * 倒排表：文档号递增，存储为与前一个文档号之差的变长整数（每字节 7 位）
+     */
+    static final class Postings {
+        private byte[] data = new byte[4];
+        private int length;
+        private int count;
+        private int lastDoc = -1;
+
+        private void add(int doc) {
+            if (doc == lastDoc) {
+                return;
+            }
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            int delta = doc - lastDoc;
+            while ((delta & ~0x7F) != 0) {
+                data[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            lastDoc = doc;
+            count++;
+        }
+
+        private int[] decode() {
+            int[] docs = new int[count];
+            int doc = -1;
+            int pos = 0;
+            for (int i = 0; i < count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += delta;
+                docs[i] = doc;
+            }
+            return docs;
+        }
+
+        /**
+         * 与有序候选集求交集，结果写回 candidates 前部
+         * @return 交集大小
+         */
+        private int retain(int[] candidates, int n) {
+            int kept = 0;
+            int c = 0;
+            int doc = -1;
+            int pos = 0;
+            for (int i = 0; i < count && c < n; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += delta;
+                while (c < n && candidates[c] < doc) {
+                    c++;
+                }
+                if (c < n && candidates[c] == doc) {
+                    candidates[kept++] = doc;
+                    c++;
+                }
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * 订单ID -> 文档号的开放寻址哈希表（线性探测，0 作为空槽），避免百万级装箱对象
+     */
+    static final class LongIntMap {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            // 后移删除：把探测链上后续元素前移填补空位，保持查找正确
+            int gap = i;
+            for (i = (i + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                int home = slot(keys[i], mask);
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    gap = i;
+                }
+            }
+            keys[gap] = 0;
+            size--;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.carwash.service.booking;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 订单状态机
+ * pending → confirmed → in_progress → completed，除已完成外均可取消；completed、cancelled 为终态
+ */
+public final class BookingStatusMachine {
+
+    private static final Map<String, Set<String>> TRANSITIONS;
+
+    static {
+        Map<String, Set<String>> transitions = new HashMap<>();
+        transitions.put("pending", Set.of("confirmed", "cancelled"));
+        transitions.put("confirmed", Set.of("in_progress", "cancelled"));
+        transitions.put("in_progress", Set.of("completed", "cancelled"));
+        transitions.put("completed", Collections.emptySet());
+        transitions.put("cancelled", Collections.emptySet());
+        TRANSITIONS = Collections.unmodifiableMap(transitions);
+    }
+
+    private BookingStatusMachine() {
+    }
+
+    /**
+     * 判断状态转换是否合法；未知的源状态允许转换（兼容历史数据）
+     */
+    public static boolean canTransition(String fromStatus, String toStatus) {
+        Set<String> targets = TRANSITIONS.get(fromStatus);
+        return targets == null || targets.contains(toStatus);
+    }
+}
@@ -0,0 +1,218 @@
+package com.carwash.service.booking;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.BookingRequest;
+import com.carwash.dto.WaitlistResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.Service;
+import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.service.outbox.OutboxPublisher;
+import com.carwash.utils.IdGenerator;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * 时间段候补与自动晋升
+ * - 时间段约满后用户加入候补队列，不再反复重试下单
+ * - 订单取消或支付超时释放名额时，名额直接转给队首用户：在同一事务内为其创建订单，
+ *   time_slots.current_bookings 与 Redis 库存都不变，其他请求无法在释放与晋升之间抢到该名额
+ * - 事务回滚时候补请求放回队首；晋升结果写入发件箱，提交后通过 WebSocket 推送给用户
+ */
+@Component
+public class BookingWaitlist {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingWaitlist.class);
+
+    /** 晋升订单通知中的原状态 */
+    public static final String STATUS_WAITLISTED = "waitlisted";
+
+    private final BookingMapper bookingMapper;
+    private final ServiceMapper serviceMapper;
+    private final TimeSlotMapper timeSlotMapper;
+    private final SlotWaitlist slotWaitlist;
+    private final SlotReservationEngine slotReservationEngine;
+    private final OutboxPublisher outboxPublisher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxQueueSize;
+
+    @Autowired
+    public BookingWaitlist(BookingMapper bookingMapper,
+                           ServiceMapper serviceMapper,
+                           TimeSlotMapper timeSlotMapper,
+                           SlotWaitlist slotWaitlist,
+                           SlotReservationEngine slotReservationEngine,
+                           OutboxPublisher outboxPublisher,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${booking.waitlist.max-size:50}") int maxQueueSize) {
+        this.bookingMapper = bookingMapper;
+        this.serviceMapper = serviceMapper;
+        this.timeSlotMapper = timeSlotMapper;
+        this.slotWaitlist = slotWaitlist;
+        this.slotReservationEngine = slotReservationEngine;
+        this.outboxPublisher = outboxPublisher;
+        this.eventPublisher = eventPublisher;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * 加入已约满时间段的候补队列；重复加入返回当前位置
+     */
+    public WaitlistResponse join(BookingRequest request) {
+        if (request.getUserId() == null || request.getServiceId() == null || request.getTimeSlotId() == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "用户ID、服务ID和时间段ID不能为空");
+        }
+        TimeSlot slot = timeSlotMapper.selectById(request.getTimeSlotId());
+        if (!isBookable(slot)) {
+            throw new BusinessException(ResultCode.APPOINTMENT_CONFLICT, "该时间段不可用");
+        }
+        int max = slot.getMaxBookings() == null ? 0 : slot.getMaxBookings();
+        int current = slot.getCurrentBookings() == null ? 0 : slot.getCurrentBookings();
+        if (current < max) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "该时间段仍有名额，请直接预约");
+        }
+        if (serviceMapper.selectById(request.getServiceId()) == null) {
+            throw new BusinessException(ResultCode.SERVICE_NOT_FOUND, "服务不存在");
+        }
+        request.setBookingDate(slot.getDate());
+
+        int position = slotWaitlist.join(slot.getId(), request, maxQueueSize, ttlSeconds(slot));
+        if (position <= 0) {
+            throw new BusinessException(ResultCode.WAITLIST_FULL, "该时间段候补人数已满");
+        }
+        log.info("用户加入候补队列，用户ID: {}, 时间段ID: {}, 位置: {}", request.getUserId(), slot.getId(), position);
+        return response(slot.getId(), request.getUserId(), position);
+    }
+
+    /**
+     * 查询排队位置
+     */
+    public WaitlistResponse position(Long timeSlotId, Long userId) {
+        return response(timeSlotId, userId, slotWaitlist.position(timeSlotId, userId));
+    }
+
+    /**
+     * 离开候补队列
+     */
+    public void leave(Long timeSlotId, Long userId) {
+        if (!slotWaitlist.leave(timeSlotId, userId)) {
+            throw new BusinessException(ResultCode.NOT_FOUND, "不在该时间段的候补队列中");
+        }
+        log.info("用户离开候补队列，用户ID: {}, 时间段ID: {}", userId, timeSlotId);
+    }
+
+    /**
+     * 释放一个名额：有候补时转给队首用户，否则归还时间段名额
+     * 须在释放名额的事务内调用
+     * @return 为候补用户创建的订单；没有晋升时返回 null
+     */
+    public Booking releaseOrPromote(Long timeSlotId) {
+        if (timeSlotId == null) {
+            return null;
+        }
+        TimeSlot slot = timeSlotMapper.selectById(timeSlotId);
+        if (isBookable(slot)) {
+            BookingRequest next;
+            while ((next = slotWaitlist.poll(timeSlotId)) != null) {
+                Booking promoted = promote(slot, next);
+                if (promoted != null) {
+                    return promoted;
+                }
+            }
+        }
+        slotReservationEngine.release(timeSlotId);
+        return null;
+    }
+
+    /**
+     * 为候补用户创建订单，沿用被释放的名额
+     * @return 候补请求已失效（服务下架、已有同时间段订单）时返回 null
+     */
+    private Booking promote(TimeSlot slot, BookingRequest request) {
+        Service service = serviceMapper.selectById(request.getServiceId());
+        if (service == null) {
+            log.info("候补请求的服务已不存在，跳过，用户ID: {}", request.getUserId());
+            return null;
+        }
+        Long existing = bookingMapper.selectCount(new QueryWrapper<Booking>()
+                .eq("user_id", request.getUserId())
+                .eq("time_slot_id", slot.getId())
+                .in("status", Arrays.asList("pending", "confirmed", "in_progress")));
+        if (existing != null && existing > 0) {
+            log.info("候补用户已有该时间段订单，跳过，用户ID: {}", request.getUserId());
+            return null;
+        }
+
+        Booking booking = new Booking();
+        BeanUtils.copyProperties(request, booking);
+        booking.setOrderNo(IdGenerator.nextOrderNo());
+        booking.setTimeSlotId(slot.getId());
+        booking.setBookingDate(slot.getDate());
+        booking.setBookingTime(slot.getStartTime() + "-" + slot.getEndTime());
+        booking.setTotalPrice(service.getPrice());
+        booking.setStatus("pending");
+        booking.setPaymentStatus("unpaid");
+        booking.setCreatedAt(TimeUtils.now());
+        booking.setUpdatedAt(TimeUtils.now());
+        booking.setDeleted(0);
+        bookingMapper.insert(booking);
+
+        requeueOnRollback(slot, request);
+        eventPublisher.publishEvent(BookingChangedEvent.created(booking));
+        outboxPublisher.publishOrderStatus(booking, STATUS_WAITLISTED, "pending", "候补成功，已为您自动预约该时间段", false);
+        log.info("候补晋升成功，用户ID: {}, 时间段ID: {}, 订单号: {}", request.getUserId(), slot.getId(), booking.getOrderNo());
+        return booking;
+    }
+
+    private void requeueOnRollback(TimeSlot slot, BookingRequest request) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    slotWaitlist.requeueHead(slot.getId(), request, ttlSeconds(slot));
+                }
+            }
+        });
+    }
+
+    private static boolean isBookable(TimeSlot slot) {
+        return slot != null && Integer.valueOf(1).equals(slot.getStatus())
+                && slot.getDate() != null && !slot.getDate().isBefore(TimeUtils.today());
+    }
+
+    /**
+     * 队列保留到时间段当天结束
+     */
+    private static long ttlSeconds(TimeSlot slot) {
+        long seconds = Duration.between(TimeUtils.now(), slot.getDate().plusDays(1).atStartOfDay()).getSeconds();
+        return Math.max(seconds, 1);
+    }
+
+    private WaitlistResponse response(Long timeSlotId, Long userId, int position) {
+        WaitlistResponse response = new WaitlistResponse();
+        response.setTimeSlotId(timeSlotId);
+        response.setUserId(userId);
+        response.setPosition(position);
+        response.setQueueSize(slotWaitlist.size(timeSlotId));
+        return response;
+    }
+}
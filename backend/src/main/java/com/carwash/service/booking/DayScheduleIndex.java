@@ -0,0 +1,397 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.BookingResponse;
+import com.carwash.dto.DayScheduleResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 运营看板排班索引：今天起若干天内每天的时间段及订单，常驻内存
+ * - 启动时、每天零点及定时兜底时全量加载（两条范围查询 + 一次批量组装）
+ * - 订单变更事件提交后直接应用事件携带的订单快照更新所在日期，不回查数据库；支付变更只合并支付字段
+ * - 其他节点的变更通过订单缓存失效频道感知，重新读取该订单；本节点发出的消息跳过
+ * - 每次变更后重建当天的只读快照，读取直接返回快照，不访问数据库
+ * - 时间段自身的调整（容量、启停）不产生事件，由定时全量加载兜底
+ */
+@Component
+public class DayScheduleIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(DayScheduleIndex.class);
+
+    private static final Comparator<BookingResponse> BY_BOOKING_TIME = Comparator
+            .comparing(BookingResponse::getBookingTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(BookingResponse::getId);
+
+    private static final Comparator<BookingResponse> BY_CREATED = Comparator
+            .comparing(BookingResponse::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(BookingResponse::getId);
+
+    private final BookingMapper bookingMapper;
+    private final TimeSlotMapper timeSlotMapper;
+    private final BookingResponseAssembler assembler;
+    private final int daysAhead;
+
+    private final Map<LocalDate, DayState> days = new ConcurrentHashMap<>();
+    private final Map<Long, LocalDate> dayOfBooking = new ConcurrentHashMap<>();
+
+    /** 服务ID -> 名称，全量加载时刷新，组装事件快照时免去按服务查询 */
+    private final Map<Long, String> serviceNames = new ConcurrentHashMap<>();
+
+    /** 全量加载期间收到的变更，加载完成后重新应用，避免被加载前读到的旧数据覆盖 */
+    private final Map<Long, BookingChangedEvent> changedDuringReload = new ConcurrentHashMap<>();
+    private volatile boolean reloading;
+
+    /** 零点滚动、定时兜底与手动加载可能在不同调度线程上同时触发，全量加载逐个执行 */
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private final Object writeLock = new Object();
+
+    @Autowired
+    public DayScheduleIndex(BookingMapper bookingMapper,
+                            TimeSlotMapper timeSlotMapper,
+                            BookingResponseAssembler assembler,
+                            RedisMessageListenerContainer listenerContainer,
+                            @Value("${booking.schedule.days-ahead:7}") int daysAhead) {
+        this.bookingMapper = bookingMapper;
+        this.timeSlotMapper = timeSlotMapper;
+        this.assembler = assembler;
+        this.daysAhead = daysAhead;
+        listenerContainer.addMessageListener(this::onRemoteChange, new ChannelTopic(BookingCache.EVICT_CHANNEL));
+    }
+
+    /**
+     * 查询单日排班；索引范围之外的日期直接查库组装，不进入索引
+     */
+    public DayScheduleResponse getSchedule(LocalDate date) {
+        if (date == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "日期不能为空");
+        }
+        DayState day = days.get(date);
+        if (day != null) {
+            return day.snapshot;
+        }
+        List<Booking> bookings = bookingMapper.selectByDateRange(date, date);
+        DayState state = new DayState(date, timeSlotMapper.selectByDateRange(date, date));
+        assembler.toResponses(bookings).forEach(state::put);
+        state.rebuild();
+        return state.snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    /**
+     * 每天零点滚动窗口
+     */
+    @Scheduled(cron = "${booking.schedule.rollover-cron:0 0 0 * * *}")
+    public void rollover() {
+        reload();
+    }
+
+    /**
+     * 定时兜底全量加载（覆盖时间段调整等不产生事件的变更）
+     */
+    @Scheduled(fixedDelayString = "${booking.schedule.refresh-interval-ms:600000}",
+               initialDelayString = "${booking.schedule.refresh-interval-ms:600000}")
+    public void refresh() {
+        reload();
+    }
+
+    /**
+     * 全量加载今天起 daysAhead 天的排班
+     * 并发调用依次执行，避免后一次加载清掉前一次缓冲的变更或提前结束加载状态
+     */
+    public void reload() {
+        reloadLock.lock();
+        try {
+            doReload();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void doReload() {
+        LocalDate start = TimeUtils.today();
+        LocalDate end = start.plusDays(daysAhead);
+        reloading = true;
+        changedDuringReload.clear();
+        try {
+            Map<LocalDate, DayState> loaded = new HashMap<>();
+            for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+                loaded.put(date, new DayState(date, new ArrayList<>()));
+            }
+            for (TimeSlot slot : timeSlotMapper.selectByDateRange(start, end)) {
+                loaded.get(slot.getDate()).slots.put(slot.getId(), slot);
+            }
+            Map<Long, LocalDate> locations = new HashMap<>();
+            Map<Long, String> names = new HashMap<>();
+            for (BookingResponse booking : assembler.toResponses(bookingMapper.selectByDateRange(start, end))) {
+                loaded.get(booking.getBookingDate()).put(booking);
+                locations.put(booking.getId(), booking.getBookingDate());
+                if (booking.getServiceId() != null && booking.getServiceName() != null) {
+                    names.put(booking.getServiceId(), booking.getServiceName());
+                }
+            }
+            loaded.values().forEach(DayState::rebuild);
+
+            synchronized (writeLock) {
+                days.putAll(loaded);
+                days.keySet().removeIf(date -> date.isBefore(start) || date.isAfter(end));
+                dayOfBooking.clear();
+                dayOfBooking.putAll(locations);
+                serviceNames.clear();
+                serviceNames.putAll(names);
+                reloading = false;
+            }
+            log.info("排班索引加载完成，日期范围: {} ~ {}, 订单数: {}", start, end, locations.size());
+        } catch (Exception e) {
+            log.warn("排班索引加载失败，继续使用现有数据: {}", e.getMessage());
+        } finally {
+            reloading = false;
+        }
+        // 加载完成后直接应用的更新事件会先移除对应条目，这里只回放仍未被更新覆盖的变更
+        for (Long bookingId : new ArrayList<>(changedDuringReload.keySet())) {
+            BookingChangedEvent event = changedDuringReload.remove(bookingId);
+            if (event != null) {
+                apply(event);
+            }
+        }
+    }
+
+    /**
+     * 订单变更提交后增量更新
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.getBookingId() != null) {
+            apply(event);
+        }
+    }
+
+    /**
+     * 应用单个订单的变更：携带快照的事件直接使用快照，不带快照的（其他节点的变更）重新读取该订单
+     */
+    void apply(BookingChangedEvent event) {
+        Long bookingId = event.getBookingId();
+        if (reloading) {
+            // 加载期间同一订单多次变更时，加载完成后改为重新读取一次
+            changedDuringReload.merge(bookingId, event,
+                    (previous, latest) -> new BookingChangedEvent(bookingId, latest.getOrderNo()));
+        } else {
+            changedDuringReload.remove(bookingId);
+        }
+        try {
+            if (event.isRemoved()) {
+                place(bookingId, null, null);
+            } else if (event.isPaymentUpdate()) {
+                mergePayment(event.getBooking());
+            } else {
+                // 已删除的订单 selectById 返回 null，从索引中移除
+                Booking booking = event.getBooking() != null ? event.getBooking() : bookingMapper.selectById(bookingId);
+                BookingResponse response = null;
+                DayState target = null;
+                if (booking != null && booking.getBookingDate() != null) {
+                    target = days.get(booking.getBookingDate());
+                    if (target != null) {
+                        response = toResponse(booking);
+                        ensureSlotLoaded(target, booking.getTimeSlotId());
+                    }
+                }
+                place(bookingId, target, response);
+            }
+        } catch (Exception e) {
+            log.warn("排班索引更新失败，订单ID: {}, 等待下次全量加载: {}", bookingId, e.getMessage());
+        }
+    }
+
+    /**
+     * 把订单移动到其当前所在日期；target 为 null 时只从原日期移除
+     */
+    private void place(Long bookingId, DayState target, BookingResponse response) {
+        synchronized (writeLock) {
+            LocalDate previous = dayOfBooking.remove(bookingId);
+            DayState previousDay = previous == null ? null : days.get(previous);
+            if (previousDay != null && previousDay != target) {
+                previousDay.remove(bookingId);
+                previousDay.rebuild();
+            }
+            if (target != null && days.get(target.date) == target) {
+                target.remove(bookingId);
+                target.put(response);
+                target.rebuild();
+                dayOfBooking.put(bookingId, target.date);
+            }
+        }
+    }
+
+    /**
+     * 支付变更只合并支付字段：支付更新不校验版本号，快照中的订单状态可能早于索引中已有的状态
+     */
+    private void mergePayment(Booking booking) {
+        synchronized (writeLock) {
+            LocalDate date = dayOfBooking.get(booking.getId());
+            DayState day = date == null ? null : days.get(date);
+            BookingResponse current = day == null ? null : day.bookings.get(booking.getId());
+            if (current == null) {
+                return;
+            }
+            BookingResponse merged = new BookingResponse();
+            BeanUtils.copyProperties(current, merged);
+            merged.setPaymentStatus(booking.getPaymentStatus());
+            merged.setPaymentMethod(booking.getPaymentMethod());
+            merged.setPaidAt(booking.getPaidAt());
+            day.put(merged);
+            day.rebuild();
+        }
+    }
+
+    /**
+     * 服务名称已知时直接组装，未知（加载后新增的服务）才按ID查询
+     */
+    private BookingResponse toResponse(Booking booking) {
+        Long serviceId = booking.getServiceId();
+        String serviceName = serviceId == null ? null : serviceNames.get(serviceId);
+        if (serviceId == null || serviceName != null) {
+            return assembler.toResponse(booking, serviceName);
+        }
+        BookingResponse response = assembler.toResponse(booking);
+        if (response.getServiceName() != null) {
+            serviceNames.put(serviceId, response.getServiceName());
+        }
+        return response;
+    }
+
+    /**
+     * 加载索引后新建的时间段
+     */
+    private void ensureSlotLoaded(DayState day, Long timeSlotId) {
+        if (timeSlotId == null || day.slots.containsKey(timeSlotId)) {
+            return;
+        }
+        TimeSlot slot = timeSlotMapper.selectById(timeSlotId);
+        if (slot != null && day.date.equals(slot.getDate())) {
+            synchronized (writeLock) {
+                day.slots.putIfAbsent(timeSlotId, slot);
+            }
+        }
+    }
+
+    private void onRemoteChange(Message message, byte[] pattern) {
+        try {
+            BookingChangedEvent event = BookingCache.parseRemoteChange(message);
+            if (event != null && event.getBookingId() != null) {
+                apply(event);
+            }
+        } catch (Exception e) {
+            log.warn("排班索引变更消息解析失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 单日可变状态，只在持有 writeLock 时修改；读取方只访问 volatile 快照
+     */
+    private static final class DayState {
+        private final LocalDate date;
+        private final Map<Long, TimeSlot> slots = new HashMap<>();
+        private final Map<Long, BookingResponse> bookings = new HashMap<>();
+        private long version;
+        private volatile DayScheduleResponse snapshot;
+
+        private DayState(LocalDate date, List<TimeSlot> slotList) {
+            this.date = date;
+            for (TimeSlot slot : slotList) {
+                slots.put(slot.getId(), slot);
+            }
+        }
+
+        private void put(BookingResponse booking) {
+            bookings.put(booking.getId(), booking);
+        }
+
+        private void remove(Long bookingId) {
+            bookings.remove(bookingId);
+        }
+
+        private void rebuild() {
+            Map<Long, List<BookingResponse>> bySlot = new HashMap<>();
+            List<BookingResponse> unassigned = new ArrayList<>();
+            int active = 0;
+            for (BookingResponse booking : bookings.values()) {
+                if (SlotReservationEngine.holdsCapacity(booking.getStatus())) {
+                    active++;
+                }
+                if (booking.getTimeSlotId() != null && slots.containsKey(booking.getTimeSlotId())) {
+                    bySlot.computeIfAbsent(booking.getTimeSlotId(), id -> new ArrayList<>()).add(booking);
+                } else {
+                    unassigned.add(booking);
+                }
+            }
+
+            List<TimeSlot> orderedSlots = new ArrayList<>(slots.values());
+            orderedSlots.sort(Comparator.comparing(TimeSlot::getStartTime, Comparator.nullsLast(LocalTime::compareTo))
+                    .thenComparing(TimeSlot::getId));
+            List<DayScheduleResponse.SlotSchedule> slotSchedules = new ArrayList<>(orderedSlots.size());
+            for (TimeSlot slot : orderedSlots) {
+                List<BookingResponse> slotBookings = bySlot.getOrDefault(slot.getId(), new ArrayList<>());
+                slotBookings.sort(BY_CREATED);
+                int occupied = (int) slotBookings.stream()
+                        .filter(b -> SlotReservationEngine.holdsCapacity(b.getStatus()))
+                        .count();
+                int max = slot.getMaxBookings() == null ? 0 : slot.getMaxBookings();
+
+                DayScheduleResponse.SlotSchedule schedule = new DayScheduleResponse.SlotSchedule();
+                schedule.setTimeSlotId(slot.getId());
+                schedule.setStartTime(slot.getStartTime());
+                schedule.setEndTime(slot.getEndTime());
+                schedule.setStatus(slot.getStatus());
+                schedule.setMaxBookings(max);
+                schedule.setOccupied(occupied);
+                schedule.setAvailable(Math.max(max - occupied, 0));
+                schedule.setBookings(List.copyOf(slotBookings));
+                slotSchedules.add(schedule);
+            }
+            unassigned.sort(BY_BOOKING_TIME);
+
+            DayScheduleResponse response = new DayScheduleResponse();
+            response.setDate(date);
+            response.setActiveBookings(active);
+            response.setSlots(List.copyOf(slotSchedules));
+            response.setUnassigned(List.copyOf(unassigned));
+            response.setVersion(++version);
+            response.setUpdatedAt(TimeUtils.now());
+            snapshot = response;
+        }
+    }
+}
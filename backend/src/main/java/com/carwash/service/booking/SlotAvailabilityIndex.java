@@ -0,0 +1,402 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.entity.Booking;
+import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 时间段剩余名额索引：可预约范围（今天起 MAX_ADVANCE_DAYS 天）内每天一组紧凑数组，常驻内存
+ * - 每天的可用时间段按开始时间排序，时间段信息只读，剩余名额保存在 int 数组中
+ * - 订单变更事件提交后按事件携带的状态变化（是否占用名额）直接增减对应下标，不回查数据库；
+ *   事件早于该时间段最近一次读取时，读取结果可能已包含本次变更，改为按主键重新读取该时间段
+ * - 其他节点的订单变更通过订单缓存失效频道感知（跳过本节点发出的消息），按主键重新读取订单和时间段；
+ *   订单已被删除时无法确定所在时间段，标记后由定时任务合并为一次全量加载
+ * - 时间段自身的调整（新建、启停、删除）提交后重新加载所在日期；启动、每天零点及定时兜底时全量加载
+ * - 全量加载、单日加载、单个时间段刷新与事件增减都持有同一把写锁，读取不加锁
+ * - 查询可用时间段直接读取数组，不再执行 current_bookings < max_bookings 扫描
+ */
+@Component
+public class SlotAvailabilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotAvailabilityIndex.class);
+
+    private final TimeSlotMapper timeSlotMapper;
+    private final BookingMapper bookingMapper;
+
+    private final Map<LocalDate, DaySlots> days = new ConcurrentHashMap<>();
+
+    /** 其他节点删除了订单、需要全量加载 */
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    /** 所有写入（加载、刷新、增减）串行执行，保证后提交的变更总是后写入 */
+    private final Object writeLock = new Object();
+
+    @Autowired
+    public SlotAvailabilityIndex(TimeSlotMapper timeSlotMapper,
+                                 BookingMapper bookingMapper,
+                                 RedisMessageListenerContainer listenerContainer) {
+        this.timeSlotMapper = timeSlotMapper;
+        this.bookingMapper = bookingMapper;
+        listenerContainer.addMessageListener(this::onRemoteChange, new ChannelTopic(BookingCache.EVICT_CHANNEL));
+    }
+
+    /**
+     * 查询单日仍有名额的时间段（按开始时间排序）
+     * @return 日期不在索引范围内时返回 null，由调用方查库
+     */
+    public List<TimeSlot> available(LocalDate date) {
+        DaySlots day = date == null ? null : days.get(date);
+        if (day == null) {
+            return null;
+        }
+        List<TimeSlot> result = new ArrayList<>(day.ids.length);
+        for (int i = 0; i < day.ids.length; i++) {
+            int remaining = day.remaining.get(i);
+            if (remaining > 0) {
+                result.add(day.toTimeSlot(i, remaining));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按日期和起止时间查找可用状态的时间段（含已约满的）
+     * @return 日期不在索引范围内或没有匹配的时间段时返回 null
+     */
+    public TimeSlot find(LocalDate date, LocalTime startTime, LocalTime endTime) {
+        DaySlots day = date == null ? null : days.get(date);
+        if (day == null) {
+            return null;
+        }
+        for (int i = 0; i < day.ids.length; i++) {
+            if (day.starts[i].equals(startTime) && day.ends[i].equals(endTime)) {
+                return day.toTimeSlot(i, day.remaining.get(i));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 日期是否在索引范围内
+     */
+    public boolean covers(LocalDate date) {
+        return date != null && days.containsKey(date);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    /**
+     * 每天零点滚动窗口
+     */
+    @Scheduled(cron = "${booking.availability.rollover-cron:0 0 0 * * *}")
+    public void rollover() {
+        reload();
+    }
+
+    /**
+     * 定时兜底全量加载（覆盖其他节点调整时间段等未通知到本节点的变更）
+     */
+    @Scheduled(fixedDelayString = "${booking.availability.refresh-interval-ms:300000}",
+               initialDelayString = "${booking.availability.refresh-interval-ms:300000}")
+    public void refresh() {
+        reload();
+    }
+
+    /**
+     * 合并处理其他节点的订单删除：批量清理会连续产生大量删除消息，只做一次全量加载
+     */
+    @Scheduled(fixedDelayString = "${booking.availability.stale-check-ms:1000}")
+    public void reloadIfStale() {
+        if (stale.compareAndSet(true, false)) {
+            reload();
+        }
+    }
+
+    /**
+     * 全量加载今天起 MAX_ADVANCE_DAYS 天的时间段
+     */
+    public void reload() {
+        LocalDate start = TimeUtils.today();
+        LocalDate end = start.plusDays(Constants.Appointment.MAX_ADVANCE_DAYS);
+        // 一次范围查询（几千行）期间暂停增量写入，加载结果替换后不会被加载前的事件覆盖
+        synchronized (writeLock) {
+            try {
+                Map<LocalDate, List<TimeSlot>> byDate = new HashMap<>();
+                for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+                    byDate.put(date, new ArrayList<>());
+                }
+                int count = 0;
+                for (TimeSlot slot : timeSlotMapper.selectByDateRange(start, end)) {
+                    if (isActive(slot)) {
+                        byDate.get(slot.getDate()).add(slot);
+                        count++;
+                    }
+                }
+                long readNanos = System.nanoTime();
+                Map<LocalDate, DaySlots> loaded = new HashMap<>();
+                byDate.forEach((date, slots) -> loaded.put(date, new DaySlots(date, slots, readNanos)));
+                days.putAll(loaded);
+                days.keySet().removeIf(date -> date.isBefore(start) || date.isAfter(end));
+                log.info("时间段名额索引加载完成，日期范围: {} ~ {}, 时间段数量: {}", start, end, count);
+            } catch (Exception e) {
+                log.warn("时间段名额索引加载失败，继续使用现有数据: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 重新加载单日的时间段（时间段新建、启停、删除后调用）
+     * 在事务中调用时推迟到提交之后执行
+     */
+    public void reloadDate(LocalDate date) {
+        if (date == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    loadDate(date);
+                }
+            });
+            return;
+        }
+        loadDate(date);
+    }
+
+    /**
+     * 订单变更提交后更新所在时间段的剩余名额
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.getBookingId() == null) {
+            return;
+        }
+        if (event.getBooking() == null) {
+            applyBooking(event.getBookingId());
+        } else if (event.isTransition()) {
+            applyTransition(event);
+        }
+    }
+
+    /**
+     * 按事件携带的状态变化增减剩余名额；支付变更、归档不改变名额，不会进入这里
+     */
+    void applyTransition(BookingChangedEvent event) {
+        int delta = (holdsCapacity(event.getToStatus()) ? 1 : 0) - (holdsCapacity(event.getFromStatus()) ? 1 : 0);
+        Long timeSlotId = event.getTimeSlotId();
+        if (delta == 0 || timeSlotId == null || !covers(event.getBookingDate())) {
+            return;
+        }
+        try {
+            synchronized (writeLock) {
+                DaySlots day = days.get(event.getBookingDate());
+                int index = day == null ? -1 : day.indexOf(timeSlotId);
+                if (index < 0 || event.getCreatedNanos() <= day.readNanos[index]) {
+                    // 新建的时间段，或最近一次读取可能已包含本次变更：以数据库为准
+                    refreshSlot(timeSlotId);
+                    return;
+                }
+                int remaining = day.remaining.get(index) - delta;
+                day.remaining.set(index, Math.max(0, Math.min(remaining, day.max[index])));
+            }
+        } catch (Exception e) {
+            log.warn("时间段名额索引更新失败，订单ID: {}, 等待下次全量加载: {}", event.getBookingId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 不带状态的变更（其他节点）：按订单找到所在时间段并重新读取；订单已被删除时无法确定时间段，标记等待全量加载
+     */
+    void applyBooking(Long bookingId) {
+        try {
+            Booking booking = bookingMapper.selectById(bookingId);
+            if (booking == null) {
+                stale.set(true);
+                return;
+            }
+            if (covers(booking.getBookingDate())) {
+                refreshSlot(booking.getTimeSlotId());
+            }
+        } catch (Exception e) {
+            log.warn("时间段名额索引更新失败，订单ID: {}, 等待下次全量加载: {}", bookingId, e.getMessage());
+        }
+    }
+
+    /**
+     * 按主键重新读取时间段并更新剩余名额
+     * 持有写锁时定位并读取，期间所在日期不会被重新加载替换
+     */
+    void refreshSlot(Long timeSlotId) {
+        if (timeSlotId == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            DaySlots located = locate(timeSlotId);
+            TimeSlot slot = timeSlotMapper.selectById(timeSlotId);
+            if (located == null) {
+                // 加载索引后新建的时间段
+                if (slot != null && covers(slot.getDate())) {
+                    loadDate(slot.getDate());
+                }
+                return;
+            }
+            int index = located.indexOf(timeSlotId);
+            if (slot == null || !isActive(slot) || !located.date.equals(slot.getDate())) {
+                // 时间段被停用、删除或改期
+                located.remaining.set(index, 0);
+                loadDate(located.date);
+                return;
+            }
+            if (slot.getMaxBookings() == null || slot.getMaxBookings() != located.max[index]) {
+                loadDate(located.date);
+                return;
+            }
+            located.remaining.set(index, SlotInventory.remainingOf(slot));
+            located.readNanos[index] = System.nanoTime();
+        }
+    }
+
+    private void loadDate(LocalDate date) {
+        synchronized (writeLock) {
+            if (!covers(date)) {
+                return;
+            }
+            try {
+                List<TimeSlot> slots = new ArrayList<>();
+                for (TimeSlot slot : timeSlotMapper.selectByDateRange(date, date)) {
+                    if (isActive(slot)) {
+                        slots.add(slot);
+                    }
+                }
+                days.replace(date, new DaySlots(date, slots, System.nanoTime()));
+            } catch (Exception e) {
+                log.warn("时间段名额索引加载失败，日期: {}, 等待下次全量加载: {}", date, e.getMessage());
+            }
+        }
+    }
+
+    private DaySlots locate(Long timeSlotId) {
+        for (DaySlots day : days.values()) {
+            if (day.indexOf(timeSlotId) >= 0) {
+                return day;
+            }
+        }
+        return null;
+    }
+
+    private void onRemoteChange(Message message, byte[] pattern) {
+        try {
+            BookingChangedEvent event = BookingCache.parseRemoteChange(message);
+            if (event != null && event.getBookingId() != null) {
+                applyBooking(event.getBookingId());
+            }
+        } catch (Exception e) {
+            log.warn("时间段名额索引变更消息解析失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 新建订单的变化前状态、删除订单的变化后状态为 null，不占用名额
+     */
+    private static boolean holdsCapacity(String status) {
+        return status != null && SlotReservationEngine.holdsCapacity(status);
+    }
+
+    private static boolean isActive(TimeSlot slot) {
+        return Integer.valueOf(1).equals(slot.getStatus())
+                && (slot.getDeleted() == null || slot.getDeleted() == 0)
+                && slot.getDate() != null && slot.getStartTime() != null && slot.getEndTime() != null;
+    }
+
+    /**
+     * 单日时间段：信息数组只读，剩余名额原子更新；readNanos 记录每个时间段最近一次从数据库读取完成的时刻，只在持有写锁时访问
+     */
+    private static final class DaySlots {
+        private final LocalDate date;
+        private final long[] ids;
+        private final LocalTime[] starts;
+        private final LocalTime[] ends;
+        private final int[] max;
+        private final AtomicIntegerArray remaining;
+        private final long[] readNanos;
+
+        private DaySlots(LocalDate date, List<TimeSlot> slots, long readNanos) {
+            slots.sort(Comparator.comparing(TimeSlot::getStartTime).thenComparing(TimeSlot::getId));
+            int n = slots.size();
+            this.date = date;
+            this.ids = new long[n];
+            this.starts = new LocalTime[n];
+            this.ends = new LocalTime[n];
+            this.max = new int[n];
+            this.remaining = new AtomicIntegerArray(n);
+            this.readNanos = new long[n];
+            for (int i = 0; i < n; i++) {
+                TimeSlot slot = slots.get(i);
+                ids[i] = slot.getId();
+                starts[i] = slot.getStartTime();
+                ends[i] = slot.getEndTime();
+                max[i] = slot.getMaxBookings() == null ? 0 : slot.getMaxBookings();
+                remaining.set(i, SlotInventory.remainingOf(slot));
+                this.readNanos[i] = readNanos;
+            }
+        }
+
+        /**
+         * 单日时间段数量很少（几十个），线性查找即可
+         */
+        private int indexOf(Long timeSlotId) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == timeSlotId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private TimeSlot toTimeSlot(int i, int remainingCount) {
+            TimeSlot slot = new TimeSlot();
+            slot.setId(ids[i]);
+            slot.setDate(date);
+            slot.setStartTime(starts[i]);
+            slot.setEndTime(ends[i]);
+            slot.setMaxBookings(max[i]);
+            slot.setCurrentBookings(Math.max(max[i] - remainingCount, 0));
+            slot.setStatus(1);
+            slot.setDeleted(0);
+            return slot;
+        }
+    }
+}
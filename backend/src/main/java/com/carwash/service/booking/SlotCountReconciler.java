@@ -0,0 +1,194 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.constants.Constants;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.SlotCountDrift;
+import com.carwash.dto.SlotReconcileResult;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 时间段名额计数校正：以实际订单数为准修正 time_slots.current_bookings
+ * - 按日期窗口执行，每个窗口一次分组聚合找出计数不一致的时间段
+ * - 分批条件更新：只有计数仍等于聚合时读到的值才写入，期间被在线预约修改过的时间段留给下次执行，不会覆盖并发预约
+ * - 校正后刷新 Redis 库存与名额索引；偏差统计通过 stats() 对外暴露
+ */
+@Component
+public class SlotCountReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotCountReconciler.class);
+
+    /** 手动校正的最大天数 */
+    static final int MAX_RANGE_DAYS = 366;
+
+    /** 单批事务超时时间（秒） */
+    private static final int CHUNK_TIMEOUT_SECONDS = 30;
+
+    private final TimeSlotMapper timeSlotMapper;
+    private final SlotInventory slotInventory;
+    private final SlotAvailabilityIndex slotAvailabilityIndex;
+    private final TransactionTemplate chunkTransaction;
+    private final boolean enabled;
+    private final int daysBack;
+    private final int windowDays;
+    private final int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalDrifted = new AtomicLong();
+    private final AtomicLong totalFixed = new AtomicLong();
+    private final AtomicLong totalSkipped = new AtomicLong();
+    private volatile SlotReconcileResult lastResult;
+
+    @Autowired
+    public SlotCountReconciler(TimeSlotMapper timeSlotMapper,
+                               SlotInventory slotInventory,
+                               SlotAvailabilityIndex slotAvailabilityIndex,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${booking.reconcile.enabled:true}") boolean enabled,
+                               @Value("${booking.reconcile.days-back:1}") int daysBack,
+                               @Value("${booking.reconcile.window-days:7}") int windowDays,
+                               @Value("${booking.reconcile.batch-size:200}") int batchSize) {
+        this.timeSlotMapper = timeSlotMapper;
+        this.slotInventory = slotInventory;
+        this.slotAvailabilityIndex = slotAvailabilityIndex;
+        this.enabled = enabled;
+        this.daysBack = Math.max(daysBack, 0);
+        this.windowDays = Math.max(windowDays, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkTransaction.setTimeout(CHUNK_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * 定时校正最近 daysBack 天到最远可预约日期的时间段
+     */
+    @Scheduled(cron = "${booking.reconcile.cron:0 20 * * * *}")
+    public void reconcileScheduled() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate today = TimeUtils.today();
+        try {
+            reconcile(today.minusDays(daysBack), today.plusDays(Constants.Appointment.MAX_ADVANCE_DAYS));
+        } catch (Exception e) {
+            log.error("时间段名额计数校正失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 校正日期范围内的时间段计数
+     * @return 本次校正结果；已有校正在执行时返回 null
+     */
+    public SlotReconcileResult reconcile(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "日期范围不正确");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= MAX_RANGE_DAYS) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "单次最多校正" + MAX_RANGE_DAYS + "天");
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.info("时间段名额计数校正正在执行，跳过本次请求");
+            return null;
+        }
+        try {
+            long startNanos = System.nanoTime();
+            SlotReconcileResult result = new SlotReconcileResult();
+            result.setStartDate(startDate);
+            result.setEndDate(endDate);
+            result.setScanned(0L);
+            result.setDrifted(0);
+            result.setFixed(0);
+            result.setSkipped(0);
+            result.setOverbooked(0);
+            result.setTotalDrift(0L);
+
+            for (LocalDate from = startDate; !from.isAfter(endDate); from = from.plusDays(windowDays)) {
+                LocalDate to = from.plusDays(windowDays - 1L);
+                reconcileWindow(from, to.isAfter(endDate) ? endDate : to, result);
+            }
+
+            result.setFinishedAt(TimeUtils.now());
+            result.setElapsedMillis((System.nanoTime() - startNanos) / 1_000_000);
+            runs.incrementAndGet();
+            totalDrifted.addAndGet(result.getDrifted());
+            totalFixed.addAndGet(result.getFixed());
+            totalSkipped.addAndGet(result.getSkipped());
+            lastResult = result;
+            if (result.getDrifted() > 0) {
+                log.warn("时间段名额计数校正完成，日期范围: {} ~ {}, 检查: {}, 偏差: {}, 已校正: {}, 跳过: {}, 超订: {}",
+                        startDate, endDate, result.getScanned(), result.getDrifted(), result.getFixed(),
+                        result.getSkipped(), result.getOverbooked());
+            } else {
+                log.info("时间段名额计数校正完成，日期范围: {} ~ {}, 检查: {}, 无偏差", startDate, endDate, result.getScanned());
+            }
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void reconcileWindow(LocalDate from, LocalDate to, SlotReconcileResult result) {
+        result.setScanned(result.getScanned() + timeSlotMapper.countByDateRange(from, to));
+        List<SlotCountDrift> drifts = timeSlotMapper.selectCountDrift(from, to);
+        if (drifts.isEmpty()) {
+            return;
+        }
+        for (SlotCountDrift drift : drifts) {
+            result.setTotalDrift(result.getTotalDrift() + Math.abs(drift.getActual() - drift.getRecorded()));
+            if (drift.getMaxBookings() != null && drift.getActual() > drift.getMaxBookings()) {
+                result.setOverbooked(result.getOverbooked() + 1);
+                log.warn("时间段超订，时间段ID: {}, 最大预约数: {}, 实际订单数: {}",
+                        drift.getTimeSlotId(), drift.getMaxBookings(), drift.getActual());
+            }
+        }
+
+        int fixed = 0;
+        for (int offset = 0; offset < drifts.size(); offset += batchSize) {
+            List<SlotCountDrift> batch = drifts.subList(offset, Math.min(offset + batchSize, drifts.size()));
+            Integer updated = chunkTransaction.execute(tx -> timeSlotMapper.fixCountDrift(batch));
+            fixed += updated == null ? 0 : updated;
+        }
+        for (SlotCountDrift drift : drifts) {
+            slotInventory.evict(drift.getTimeSlotId());
+            slotAvailabilityIndex.refreshSlot(drift.getTimeSlotId());
+        }
+        result.setDrifted(result.getDrifted() + drifts.size());
+        result.setFixed(result.getFixed() + fixed);
+        result.setSkipped(result.getSkipped() + drifts.size() - fixed);
+    }
+
+    /**
+     * 校正统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.get());
+        stats.put("running", running.get());
+        stats.put("totalDrifted", totalDrifted.get());
+        stats.put("totalFixed", totalFixed.get());
+        stats.put("totalSkipped", totalSkipped.get());
+        stats.put("lastResult", lastResult);
+        return stats;
+    }
+}
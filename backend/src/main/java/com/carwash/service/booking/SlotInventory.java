@@ -0,0 +1,210 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.entity.TimeSlot;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 时间段库存
+ * - 预约高峰时先在 Redis 中用 Lua 脚本原子扣减剩余名额，已约满的请求无需访问 MySQL 即可快速失败
+ * - MySQL 的 time_slots.current_bookings 条件更新仍是最终裁决，Redis 仅作为前置过滤
+ * - 定时从 MySQL 重新加载剩余名额，修正 Redis 与数据库之间的偏差
+ * - Redis 不可用时短暂熔断，全部请求回退到数据库路径
+ */
+@Component
+public class SlotInventory {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotInventory.class);
+
+    private static final String STOCK_KEY_PREFIX = Constants.Cache.TIME_SLOT_PREFIX + "stock:";
+
+    /** Redis 故障后的熔断时长 */
+    private static final long CIRCUIT_OPEN_MILLIS = 30_000L;
+
+    /** 扣减：不存在返回-1，已约满返回0，扣减成功返回1 */
+    private static final RedisScript<Long> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+            "if not stock then return -1 end " +
+            "if tonumber(stock) <= 0 then return 0 end " +
+            "redis.call('DECR', KEYS[1]) " +
+            "return 1", Long.class);
+
+    /** 归还：仅在库存已加载时加一，避免凭空生成库存键 */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return redis.call('INCR', KEYS[1]) end " +
+            "return -1", Long.class);
+
+    /** 标记约满：保留原有过期时间 */
+    private static final RedisScript<Long> SOLD_OUT_SCRIPT = new DefaultRedisScript<>(
+            "local stock = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+            "if stock > 0 then redis.call('DECRBY', KEYS[1], stock) end " +
+            "return 0", Long.class);
+
+    /**
+     * 扣减结果
+     */
+    public enum ClaimResult {
+        /** Redis 扣减成功 */
+        CLAIMED,
+        /** Redis 显示已约满 */
+        SOLD_OUT,
+        /** 库存未加载或 Redis 不可用，需由数据库裁决 */
+        UNKNOWN
+    }
+
+    private final RedisUtils redisUtils;
+    private final TimeSlotMapper timeSlotMapper;
+
+    private volatile long circuitOpenUntil = 0L;
+
+    @Autowired
+    public SlotInventory(RedisUtils redisUtils, TimeSlotMapper timeSlotMapper) {
+        this.redisUtils = redisUtils;
+        this.timeSlotMapper = timeSlotMapper;
+    }
+
+    /**
+     * 原子扣减一个名额
+     */
+    public ClaimResult claim(Long timeSlotId) {
+        Long result = executeScript(CLAIM_SCRIPT, timeSlotId);
+        if (result == null || result < 0) {
+            return ClaimResult.UNKNOWN;
+        }
+        return result == 0 ? ClaimResult.SOLD_OUT : ClaimResult.CLAIMED;
+    }
+
+    /**
+     * 归还一个名额
+     */
+    public void release(Long timeSlotId) {
+        executeScript(RELEASE_SCRIPT, timeSlotId);
+    }
+
+    /**
+     * 数据库判定已约满时，同步把 Redis 库存置零
+     */
+    public void markSoldOut(Long timeSlotId) {
+        executeScript(SOLD_OUT_SCRIPT, timeSlotId);
+    }
+
+    /**
+     * 移除时间段库存（时间段状态变更或删除后调用，下次预约回退到数据库路径）
+     */
+    public void evict(Long timeSlotId) {
+        if (timeSlotId == null || isCircuitOpen()) {
+            return;
+        }
+        try {
+            redisUtils.delete(stockKey(timeSlotId));
+        } catch (Exception e) {
+            openCircuit(e);
+        }
+    }
+
+    /**
+     * 启动后预加载可预约范围内的库存
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadOnStartup() {
+        reconcile();
+    }
+
+    /**
+     * 以 MySQL 为准重新加载库存
+     * 进行中的预约事务可能导致 Redis 短暂偏多，此时由数据库条件更新兜底，不会超卖
+     */
+    @Scheduled(fixedDelayString = "${booking.inventory.reconcile-interval-ms:300000}",
+               initialDelayString = "${booking.inventory.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        LocalDate start = TimeUtils.today();
+        LocalDate end = start.plusDays(Constants.Appointment.MAX_ADVANCE_DAYS);
+        try {
+            int loaded = load(start, end);
+            log.info("时间段库存同步完成，日期范围: {} ~ {}, 时间段数量: {}", start, end, loaded);
+        } catch (Exception e) {
+            log.warn("时间段库存同步失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从 MySQL 加载指定日期范围内的剩余名额
+     * @return 加载的时间段数量
+     */
+    public int load(LocalDate startDate, LocalDate endDate) {
+        if (isCircuitOpen()) {
+            return 0;
+        }
+        List<TimeSlot> slots = timeSlotMapper.selectByDateRange(startDate, endDate);
+        LocalDateTime now = TimeUtils.now();
+        int loaded = 0;
+        try {
+            for (TimeSlot slot : slots) {
+                long ttlSeconds = Duration.between(now, slot.getDate().plusDays(1).atStartOfDay()).getSeconds();
+                if (ttlSeconds <= 0) {
+                    continue;
+                }
+                redisUtils.set(stockKey(slot.getId()), remainingOf(slot), ttlSeconds, TimeUnit.SECONDS);
+                loaded++;
+            }
+        } catch (Exception e) {
+            openCircuit(e);
+        }
+        return loaded;
+    }
+
+    /**
+     * 计算时间段剩余名额
+     */
+    static int remainingOf(TimeSlot slot) {
+        if (slot.getStatus() == null || slot.getStatus() != 1) {
+            return 0;
+        }
+        int max = slot.getMaxBookings() != null ? slot.getMaxBookings() : 0;
+        int current = slot.getCurrentBookings() != null ? slot.getCurrentBookings() : 0;
+        return Math.max(max - current, 0);
+    }
+
+    private Long executeScript(RedisScript<Long> script, Long timeSlotId) {
+        if (timeSlotId == null || isCircuitOpen()) {
+            return null;
+        }
+        try {
+            return redisUtils.execute(script, Collections.singletonList(stockKey(timeSlotId)));
+        } catch (Exception e) {
+            openCircuit(e);
+            return null;
+        }
+    }
+
+    private boolean isCircuitOpen() {
+        return System.currentTimeMillis() < circuitOpenUntil;
+    }
+
+    private void openCircuit(Exception e) {
+        circuitOpenUntil = System.currentTimeMillis() + CIRCUIT_OPEN_MILLIS;
+        log.warn("Redis 时间段库存不可用，{} 秒内回退到数据库路径: {}", CIRCUIT_OPEN_MILLIS / 1000, e.getMessage());
+    }
+
+    private static String stockKey(Long timeSlotId) {
+        return STOCK_KEY_PREFIX + timeSlotId;
+    }
+}
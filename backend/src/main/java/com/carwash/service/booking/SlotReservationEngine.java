@@ -0,0 +1,155 @@
+package com.carwash.service.booking;
+
+import com.carwash.mapper.TimeSlotMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 时间段容量预占引擎
+ * - 通过 time_slots.current_bookings 上的条件更新一次完成"校验+占用"，避免先 COUNT 再插入导致的并发超卖
+ * - current_bookings 表示该时间段内未取消订单的数量，与 BookingMapper.countByTimeSlot 的口径保持一致
+ * - 占用在预约事务内完成，事务回滚时计数随之回滚
+ * - 前置 Redis 库存（SlotInventory），已约满的请求直接失败，不再访问数据库
+ */
+@Component
+public class SlotReservationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotReservationEngine.class);
+
+    /**
+     * 占用结果
+     */
+    public enum Outcome {
+        /** 占用成功 */
+        RESERVED,
+        /** Redis 库存显示已约满，未访问数据库 */
+        SOLD_OUT,
+        /** 数据库条件更新未命中：已约满、不可用或时间段不存在 */
+        REJECTED
+    }
+
+    private final TimeSlotMapper timeSlotMapper;
+    private final SlotInventory slotInventory;
+
+    @Autowired
+    public SlotReservationEngine(TimeSlotMapper timeSlotMapper, SlotInventory slotInventory) {
+        this.timeSlotMapper = timeSlotMapper;
+        this.slotInventory = slotInventory;
+    }
+
+    /**
+     * 尝试占用一个预约名额：先扣 Redis 库存，再执行数据库条件更新
+     */
+    public Outcome reserve(Long timeSlotId) {
+        if (timeSlotId == null) {
+            return Outcome.REJECTED;
+        }
+        SlotInventory.ClaimResult claim = slotInventory.claim(timeSlotId);
+        if (claim == SlotInventory.ClaimResult.SOLD_OUT) {
+            log.info("Redis 库存显示时间段已约满，时间段ID: {}", timeSlotId);
+            return Outcome.SOLD_OUT;
+        }
+
+        boolean reserved = timeSlotMapper.reserveCapacity(timeSlotId) > 0;
+        if (claim == SlotInventory.ClaimResult.CLAIMED) {
+            if (reserved) {
+                // 预约事务回滚时归还 Redis 库存
+                afterCompletion(timeSlotId, false);
+            } else {
+                slotInventory.markSoldOut(timeSlotId);
+            }
+        }
+        if (!reserved) {
+            log.info("时间段容量不足或不可用，时间段ID: {}", timeSlotId);
+            return Outcome.REJECTED;
+        }
+        return Outcome.RESERVED;
+    }
+
+    /**
+     * 不做容量校验直接计数（用于未指定时间段、落到默认时间段的订单）
+     * 保证后续取消时的释放与占用对称
+     * - Redis 扣减成功时同 reserve 一样登记回滚补偿
+     * - Redis 已约满时数据库计数已超出库存，移除库存键，避免之后的释放把 Redis 库存加到超过实际剩余名额
+     */
+    public void reserveUnchecked(Long timeSlotId) {
+        if (timeSlotId == null) {
+            return;
+        }
+        timeSlotMapper.incrementCurrentBookings(timeSlotId);
+        SlotInventory.ClaimResult claim = slotInventory.claim(timeSlotId);
+        if (claim == SlotInventory.ClaimResult.CLAIMED) {
+            afterCompletion(timeSlotId, false);
+        } else if (claim == SlotInventory.ClaimResult.SOLD_OUT) {
+            slotInventory.evict(timeSlotId);
+        }
+    }
+
+    /**
+     * 释放一个预约名额
+     */
+    public void release(Long timeSlotId) {
+        if (timeSlotId == null) {
+            return;
+        }
+        if (timeSlotMapper.decrementCurrentBookings(timeSlotId) <= 0) {
+            log.warn("释放时间段名额未生效（计数已为0或时间段不存在），时间段ID: {}", timeSlotId);
+            return;
+        }
+        // 事务提交后归还 Redis 库存
+        afterCompletion(timeSlotId, true);
+    }
+
+    /**
+     * 一次归还同一时间段的多个名额（批量删除订单时使用）
+     */
+    public void release(Long timeSlotId, int count) {
+        if (timeSlotId == null || count <= 0) {
+            return;
+        }
+        if (count == 1) {
+            release(timeSlotId);
+            return;
+        }
+        if (timeSlotMapper.releaseCapacity(timeSlotId, count) <= 0) {
+            log.warn("释放时间段名额未生效（计数已为0或时间段不存在），时间段ID: {}", timeSlotId);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            afterCompletion(timeSlotId, true);
+        }
+    }
+
+    /**
+     * 判断处于该状态的订单是否占用时间段名额
+     */
+    public static boolean holdsCapacity(String status) {
+        return !"cancelled".equals(status);
+    }
+
+    /**
+     * 在事务结束后归还 Redis 库存
+     * @param onCommit true 提交后归还（释放名额）；false 回滚后归还（补偿预扣）
+     */
+    private void afterCompletion(Long timeSlotId, boolean onCommit) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (onCommit) {
+                slotInventory.release(timeSlotId);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                int expected = onCommit ? STATUS_COMMITTED : STATUS_ROLLED_BACK;
+                if (status == expected) {
+                    slotInventory.release(timeSlotId);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,273 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.dto.BookingRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 时间段候补队列（先进先出，每个用户在同一时间段最多排一次）
+ * - Redis 中每个时间段一个列表（用户ID顺序）和一个哈希（用户ID -> 预约请求），入队、出队均由 Lua 脚本原子完成
+ * - 队列在时间段当天结束后过期
+ * - Redis 不可用时短暂熔断，改用本节点内存队列；熔断期间加入的候补只在本节点可见
+ */
+@Component
+public class SlotWaitlist {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotWaitlist.class);
+
+    private static final String KEY_PREFIX = Constants.Cache.WAITLIST_PREFIX;
+
+    /** Redis 故障后的熔断时长 */
+    private static final long CIRCUIT_OPEN_MILLIS = 30_000L;
+
+    /** 入队：已在队列中返回当前位置，队列已满返回0，否则追加到队尾并返回位置 */
+    private static final RedisScript<Long> JOIN_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 1 then " +
+            "  local pos = redis.call('LPOS', KEYS[1], ARGV[1]) " +
+            "  if pos then return pos + 1 end " +
+            "  redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "end " +
+            "if redis.call('LLEN', KEYS[1]) >= tonumber(ARGV[3]) then return 0 end " +
+            "redis.call('RPUSH', KEYS[1], ARGV[1]) " +
+            "redis.call('HSET', KEYS[2], ARGV[1], ARGV[2]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[4]) " +
+            "redis.call('EXPIRE', KEYS[2], ARGV[4]) " +
+            "return redis.call('LLEN', KEYS[1])", Long.class);
+
+    /** 出队：弹出队首用户并取走其预约请求，跳过请求已丢失的用户 */
+    private static final RedisScript<String> POLL_SCRIPT = new DefaultRedisScript<>(
+            "while true do " +
+            "  local uid = redis.call('LPOP', KEYS[1]) " +
+            "  if not uid then return false end " +
+            "  local payload = redis.call('HGET', KEYS[2], uid) " +
+            "  if payload then redis.call('HDEL', KEYS[2], uid) return payload end " +
+            "end", String.class);
+
+    /** 放回队首（晋升事务回滚时使用） */
+    private static final RedisScript<Long> REQUEUE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 1 then return 0 end " +
+            "redis.call('LPUSH', KEYS[1], ARGV[1]) " +
+            "redis.call('HSET', KEYS[2], ARGV[1], ARGV[2]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+            "redis.call('EXPIRE', KEYS[2], ARGV[3]) " +
+            "return 1", Long.class);
+
+    /** 离开队列 */
+    private static final RedisScript<Long> LEAVE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('LREM', KEYS[1], 0, ARGV[1]) " +
+            "return redis.call('HDEL', KEYS[2], ARGV[1])", Long.class);
+
+    /** 查询位置：不在队列中返回0 */
+    private static final RedisScript<Long> POSITION_SCRIPT = new DefaultRedisScript<>(
+            "local pos = redis.call('LPOS', KEYS[1], ARGV[1]) " +
+            "if pos then return pos + 1 end " +
+            "return 0", Long.class);
+
+    /** 队列长度 */
+    private static final RedisScript<Long> SIZE_SCRIPT = new DefaultRedisScript<>(
+            "return redis.call('LLEN', KEYS[1])", Long.class);
+
+    private final RedisUtils redisUtils;
+
+    /** 熔断期间使用的本地队列：时间段ID -> (用户ID -> 预约请求)，按插入顺序排队 */
+    private final Map<Long, LinkedHashMap<Long, BookingRequest>> localQueues = new ConcurrentHashMap<>();
+
+    private volatile long circuitOpenUntil = 0L;
+
+    @Autowired
+    public SlotWaitlist(RedisUtils redisUtils) {
+        this.redisUtils = redisUtils;
+    }
+
+    /**
+     * 加入候补队列
+     * @param ttlSeconds 队列过期时间（时间段当天结束）
+     * @return 排队位置（从1开始）；队列已满返回0
+     */
+    public int join(Long timeSlotId, BookingRequest request, int maxSize, long ttlSeconds) {
+        if (!isCircuitOpen()) {
+            try {
+                Long position = redisUtils.execute(JOIN_SCRIPT, keys(timeSlotId), request.getUserId(),
+                        BookingJson.MAPPER.writeValueAsString(request), maxSize, ttlSeconds);
+                return position == null ? 0 : position.intValue();
+            } catch (Exception e) {
+                openCircuit(e);
+            }
+        }
+        LinkedHashMap<Long, BookingRequest> queue = localQueue(timeSlotId);
+        synchronized (queue) {
+            if (!queue.containsKey(request.getUserId())) {
+                if (queue.size() >= maxSize) {
+                    return 0;
+                }
+                queue.put(request.getUserId(), request);
+            }
+            return localPosition(queue, request.getUserId());
+        }
+    }
+
+    /**
+     * 取出队首的候补请求
+     * @return 队列为空时返回 null
+     */
+    public BookingRequest poll(Long timeSlotId) {
+        if (!isCircuitOpen()) {
+            try {
+                String payload = redisUtils.execute(POLL_SCRIPT, keys(timeSlotId));
+                if (payload != null) {
+                    return BookingJson.MAPPER.readValue(payload, BookingRequest.class);
+                }
+            } catch (Exception e) {
+                openCircuit(e);
+            }
+        }
+        LinkedHashMap<Long, BookingRequest> queue = localQueues.get(timeSlotId);
+        if (queue == null) {
+            return null;
+        }
+        synchronized (queue) {
+            Iterator<BookingRequest> it = queue.values().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+            BookingRequest head = it.next();
+            it.remove();
+            return head;
+        }
+    }
+
+    /**
+     * 将取出的请求放回队首
+     */
+    public void requeueHead(Long timeSlotId, BookingRequest request, long ttlSeconds) {
+        if (!isCircuitOpen()) {
+            try {
+                redisUtils.execute(REQUEUE_SCRIPT, keys(timeSlotId), request.getUserId(),
+                        BookingJson.MAPPER.writeValueAsString(request), ttlSeconds);
+                return;
+            } catch (Exception e) {
+                openCircuit(e);
+            }
+        }
+        LinkedHashMap<Long, BookingRequest> queue = localQueue(timeSlotId);
+        synchronized (queue) {
+            if (queue.containsKey(request.getUserId())) {
+                return;
+            }
+            List<Map.Entry<Long, BookingRequest>> rest = new ArrayList<>(queue.entrySet());
+            queue.clear();
+            queue.put(request.getUserId(), request);
+            rest.forEach(entry -> queue.put(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * 离开候补队列
+     * @return 是否在队列中
+     */
+    public boolean leave(Long timeSlotId, Long userId) {
+        boolean removed = false;
+        if (!isCircuitOpen()) {
+            try {
+                Long count = redisUtils.execute(LEAVE_SCRIPT, keys(timeSlotId), userId);
+                removed = count != null && count > 0;
+            } catch (Exception e) {
+                openCircuit(e);
+            }
+        }
+        LinkedHashMap<Long, BookingRequest> queue = localQueues.get(timeSlotId);
+        if (queue != null) {
+            synchronized (queue) {
+                removed |= queue.remove(userId) != null;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 查询排队位置（从1开始），不在队列中返回0
+     */
+    public int position(Long timeSlotId, Long userId) {
+        if (!isCircuitOpen()) {
+            try {
+                Long position = redisUtils.execute(POSITION_SCRIPT, keys(timeSlotId), userId);
+                if (position != null && position > 0) {
+                    return position.intValue();
+                }
+            } catch (Exception e) {
+                openCircuit(e);
+            }
+        }
+        LinkedHashMap<Long, BookingRequest> queue = localQueues.get(timeSlotId);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return localPosition(queue, userId);
+        }
+    }
+
+    /**
+     * 队列长度
+     */
+    public int size(Long timeSlotId) {
+        int size = 0;
+        if (!isCircuitOpen()) {
+            try {
+                Long length = redisUtils.execute(SIZE_SCRIPT, keys(timeSlotId));
+                size = length == null ? 0 : length.intValue();
+            } catch (Exception e) {
+                openCircuit(e);
+            }
+        }
+        LinkedHashMap<Long, BookingRequest> queue = localQueues.get(timeSlotId);
+        if (queue != null) {
+            synchronized (queue) {
+                size += queue.size();
+            }
+        }
+        return size;
+    }
+
+    private LinkedHashMap<Long, BookingRequest> localQueue(Long timeSlotId) {
+        return localQueues.computeIfAbsent(timeSlotId, id -> new LinkedHashMap<>());
+    }
+
+    private static int localPosition(LinkedHashMap<Long, BookingRequest> queue, Long userId) {
+        int position = 0;
+        for (Long queued : queue.keySet()) {
+            position++;
+            if (queued.equals(userId)) {
+                return position;
+            }
+        }
+        return 0;
+    }
+
+    private static List<String> keys(Long timeSlotId) {
+        return Arrays.asList(KEY_PREFIX + timeSlotId + ":queue", KEY_PREFIX + timeSlotId + ":entries");
+    }
+
+    private boolean isCircuitOpen() {
+        return System.currentTimeMillis() < circuitOpenUntil;
+    }
+
+    private void openCircuit(Exception e) {
+        circuitOpenUntil = System.currentTimeMillis() + CIRCUIT_OPEN_MILLIS;
+        log.warn("Redis 候补队列不可用，{} 秒内使用本地队列: {}", CIRCUIT_OPEN_MILLIS / 1000, e.getMessage());
+    }
+}
@@ -0,0 +1,164 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.TimeSlotGenerationResult;
+import com.carwash.dto.TimeSlotTemplateRequest;
+import com.carwash.entity.TimeSlot;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按营业时间模板批量生成时间段
+ * - 在日期范围内按星期和开门/打烊时间展开，时间段首尾相接，最后一个不超过打烊时间
+ * - 多行 INSERT IGNORE 写入，已存在的 (date, start_time, end_time) 由唯一键跳过，可重复执行
+ * - 每若干批在一个独立的短事务中提交，生成一年的时间段不会形成长事务
+ */
+@Component
+public class TimeSlotGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(TimeSlotGenerator.class);
+
+    /** 单次生成的最大天数 */
+    static final int MAX_RANGE_DAYS = 366;
+
+    /** 单个事务超时时间（秒） */
+    private static final int CHUNK_TIMEOUT_SECONDS = 30;
+
+    private final TimeSlotMapper timeSlotMapper;
+    private final TransactionTemplate chunkTransaction;
+    private final int batchSize;
+    private final int batchesPerTransaction;
+
+    @Autowired
+    public TimeSlotGenerator(TimeSlotMapper timeSlotMapper,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${booking.slot-generator.batch-size:500}") int batchSize,
+                             @Value("${booking.slot-generator.batches-per-transaction:4}") int batchesPerTransaction) {
+        this.timeSlotMapper = timeSlotMapper;
+        this.batchSize = Math.max(batchSize, 1);
+        this.batchesPerTransaction = Math.max(batchesPerTransaction, 1);
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkTransaction.setTimeout(CHUNK_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * 按模板生成时间段
+     */
+    public TimeSlotGenerationResult generate(TimeSlotTemplateRequest template) {
+        long startNanos = System.nanoTime();
+        List<TimeSlot> slots = expand(template);
+
+        int inserted = 0;
+        int batches = 0;
+        int transactions = 0;
+        int chunkRows = batchSize * batchesPerTransaction;
+        for (int from = 0; from < slots.size(); from += chunkRows) {
+            List<TimeSlot> chunk = slots.subList(from, Math.min(from + chunkRows, slots.size()));
+            Integer count = chunkTransaction.execute(status -> insertChunk(chunk));
+            inserted += count == null ? 0 : count;
+            batches += (chunk.size() + batchSize - 1) / batchSize;
+            transactions++;
+        }
+
+        TimeSlotGenerationResult result = new TimeSlotGenerationResult();
+        result.setRequested(slots.size());
+        result.setInserted(inserted);
+        result.setSkipped(slots.size() - inserted);
+        result.setBatches(batches);
+        result.setTransactions(transactions);
+        result.setElapsedMillis((System.nanoTime() - startNanos) / 1_000_000);
+        log.info("批量生成时间段完成，日期范围: {} ~ {}, 展开: {}, 新增: {}, 跳过: {}, 事务数: {}, 耗时: {}ms",
+                template.getStartDate(), template.getEndDate(), result.getRequested(), inserted,
+                result.getSkipped(), transactions, result.getElapsedMillis());
+        return result;
+    }
+
+    private int insertChunk(List<TimeSlot> chunk) {
+        int inserted = 0;
+        for (int from = 0; from < chunk.size(); from += batchSize) {
+            inserted += timeSlotMapper.insertIgnoreBatch(chunk.subList(from, Math.min(from + batchSize, chunk.size())));
+        }
+        return inserted;
+    }
+
+    /**
+     * 校验模板并展开为时间段列表（按日期、开始时间排序）
+     */
+    List<TimeSlot> expand(TimeSlotTemplateRequest template) {
+        validate(template);
+        int open = template.getOpenTime().toSecondOfDay() / 60;
+        int close = template.getCloseTime().toSecondOfDay() / 60;
+        int length = template.getSlotMinutes();
+        Set<Integer> days = template.getDaysOfWeek();
+        LocalDateTime now = TimeUtils.now();
+
+        List<TimeSlot> slots = new ArrayList<>();
+        for (LocalDate date = template.getStartDate(); !date.isAfter(template.getEndDate()); date = date.plusDays(1)) {
+            if (days != null && !days.isEmpty() && !days.contains(date.getDayOfWeek().getValue())) {
+                continue;
+            }
+            for (int start = open; start + length <= close; start += length) {
+                TimeSlot slot = new TimeSlot();
+                slot.setDate(date);
+                slot.setStartTime(LocalTime.ofSecondOfDay(start * 60L));
+                slot.setEndTime(LocalTime.ofSecondOfDay((start + length) * 60L));
+                slot.setMaxBookings(template.getCapacity());
+                slot.setCurrentBookings(0);
+                slot.setStatus(1);
+                slot.setCreatedAt(now);
+                slot.setUpdatedAt(now);
+                slot.setDeleted(0);
+                slots.add(slot);
+            }
+        }
+        return slots;
+    }
+
+    private static void validate(TimeSlotTemplateRequest template) {
+        if (template == null || template.getStartDate() == null || template.getEndDate() == null
+                || template.getOpenTime() == null || template.getCloseTime() == null
+                || template.getSlotMinutes() == null || template.getCapacity() == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "日期范围、营业时间、时间段时长和容量不能为空");
+        }
+        if (template.getEndDate().isBefore(template.getStartDate())) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "结束日期不能早于开始日期");
+        }
+        if (template.getStartDate().isBefore(TimeUtils.today())) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "不能为过去的日期生成时间段");
+        }
+        if (ChronoUnit.DAYS.between(template.getStartDate(), template.getEndDate()) >= MAX_RANGE_DAYS) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "单次最多生成" + MAX_RANGE_DAYS + "天的时间段");
+        }
+        if (!template.getOpenTime().isBefore(template.getCloseTime())) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "开门时间必须早于打烊时间");
+        }
+        if (template.getSlotMinutes() < 10 || template.getSlotMinutes() > 480) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "时间段时长须在10~480分钟之间");
+        }
+        if (template.getCapacity() < 1 || template.getCapacity() > 100) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "时间段容量须在1~100之间");
+        }
+        if (template.getDaysOfWeek() != null
+                && template.getDaysOfWeek().stream().anyMatch(d -> d == null || d < 1 || d > 7)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "星期取值须在1~7之间");
+        }
+    }
+}
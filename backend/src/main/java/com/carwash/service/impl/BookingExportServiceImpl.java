@@ -0,0 +1,217 @@
+package com.carwash.service.impl;
+
+import com.carwash.entity.Booking;
+import com.carwash.entity.Service;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.service.BookingExportService;
+import com.carwash.service.booking.BookingExportFormat;
+import com.carwash.utils.TimeUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 订单导出服务实现类
+ * - 通过 MyBatis Cursor 流式读取 bookings，每读一行即写出一行，不在内存中累积结果集
+ * - 游标需要在整个导出期间持有数据库连接，因此在只读事务内执行
+ */
+@org.springframework.stereotype.Service
+public class BookingExportServiceImpl implements BookingExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingExportServiceImpl.class);
+
+    /** 每写出多少行刷新一次输出流，让客户端尽早收到数据 */
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private static final String[] CSV_HEADER = {
+            "订单ID", "订单号", "用户ID", "服务ID", "服务名称", "预约日期", "预约时间", "车牌号", "车型",
+            "联系电话", "订单金额", "订单状态", "支付状态", "支付方式", "支付时间", "完成时间", "取消时间",
+            "取消原因", "创建时间"
+    };
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    @Autowired
+    private BookingMapper bookingMapper;
+
+    @Autowired
+    private ServiceMapper serviceMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    public long export(BookingExportFormat format, LocalDate startDate, LocalDate endDate, String status,
+                       OutputStream out) throws IOException {
+        log.info("开始导出订单，格式: {}, 日期范围: {} ~ {}, 状态: {}", format, startDate, endDate, status);
+        long start = System.currentTimeMillis();
+
+        // 服务表很小，一次性加载名称，避免逐行查询
+        Map<Long, String> serviceNames = loadServiceNames();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        Long rows;
+        try {
+            rows = template.execute(txStatus -> {
+                try (Cursor<Booking> cursor = bookingMapper.streamForExport(startDate, endDate, status)) {
+                    return writeRows(format, cursor, serviceNames, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+
+        log.info("订单导出完成，行数: {}, 耗时: {} ms", rows, System.currentTimeMillis() - start);
+        return rows != null ? rows : 0L;
+    }
+
+    private long writeRows(BookingExportFormat format, Iterable<Booking> bookings, Map<Long, String> serviceNames,
+                           Writer writer) throws IOException {
+        JsonGenerator json = null;
+        if (format == BookingExportFormat.CSV) {
+            writer.write('\uFEFF');
+            writeCsvLine(writer, CSV_HEADER);
+        } else {
+            json = JSON_FACTORY.createGenerator(writer);
+            json.setRootValueSeparator(null);
+        }
+
+        long rows = 0;
+        for (Booking booking : bookings) {
+            String serviceName = serviceNames.get(booking.getServiceId());
+            if (json != null) {
+                writeJsonLine(json, booking, serviceName);
+            } else {
+                writeCsvLine(writer, toCsvFields(booking, serviceName));
+            }
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                if (json != null) {
+                    json.flush();
+                }
+                writer.flush();
+            }
+        }
+        if (json != null) {
+            json.close();
+        }
+        return rows;
+    }
+
+    private String[] toCsvFields(Booking booking, String serviceName) {
+        return new String[] {
+                text(booking.getId()), booking.getOrderNo(), text(booking.getUserId()), text(booking.getServiceId()),
+                serviceName, TimeUtils.formatDate(booking.getBookingDate()), booking.getBookingTime(),
+                booking.getCarNumber(), booking.getCarModel(), booking.getContactPhone(), amount(booking.getTotalPrice()),
+                booking.getStatus(), booking.getPaymentStatus(), booking.getPaymentMethod(),
+                TimeUtils.formatDateTime(booking.getPaidAt()), TimeUtils.formatDateTime(booking.getCompletedAt()),
+                TimeUtils.formatDateTime(booking.getCancelledAt()), booking.getCancelReason(),
+                TimeUtils.formatDateTime(booking.getCreatedAt())
+        };
+    }
+
+    private void writeJsonLine(JsonGenerator json, Booking booking, String serviceName) throws IOException {
+        json.writeStartObject();
+        writeNumber(json, "id", booking.getId());
+        json.writeStringField("orderNo", booking.getOrderNo());
+        writeNumber(json, "userId", booking.getUserId());
+        writeNumber(json, "serviceId", booking.getServiceId());
+        json.writeStringField("serviceName", serviceName);
+        json.writeStringField("bookingDate", emptyToNull(TimeUtils.formatDate(booking.getBookingDate())));
+        json.writeStringField("bookingTime", booking.getBookingTime());
+        json.writeStringField("carNumber", booking.getCarNumber());
+        json.writeStringField("carModel", booking.getCarModel());
+        json.writeStringField("contactPhone", booking.getContactPhone());
+        if (booking.getTotalPrice() != null) {
+            json.writeNumberField("totalPrice", booking.getTotalPrice());
+        } else {
+            json.writeNullField("totalPrice");
+        }
+        json.writeStringField("status", booking.getStatus());
+        json.writeStringField("paymentStatus", booking.getPaymentStatus());
+        json.writeStringField("paymentMethod", booking.getPaymentMethod());
+        json.writeStringField("paidAt", emptyToNull(TimeUtils.formatDateTime(booking.getPaidAt())));
+        json.writeStringField("completedAt", emptyToNull(TimeUtils.formatDateTime(booking.getCompletedAt())));
+        json.writeStringField("cancelledAt", emptyToNull(TimeUtils.formatDateTime(booking.getCancelledAt())));
+        json.writeStringField("cancelReason", booking.getCancelReason());
+        json.writeStringField("createdAt", emptyToNull(TimeUtils.formatDateTime(booking.getCreatedAt())));
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static void writeNumber(JsonGenerator json, String name, Long value) throws IOException {
+        if (value != null) {
+            json.writeNumberField(name, value);
+        } else {
+            json.writeNullField(name);
+        }
+    }
+
+    /**
+     * 写出一行 CSV，包含逗号、引号或换行的字段按 RFC 4180 加引号转义
+     */
+    static void writeCsvLine(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i];
+            if (field == null || field.isEmpty()) {
+                continue;
+            }
+            boolean quote = field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0;
+            if (quote) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private Map<Long, String> loadServiceNames() {
+        Map<Long, String> names = new HashMap<>();
+        for (Service service : serviceMapper.selectList(null)) {
+            names.put(service.getId(), service.getName());
+        }
+        return names;
+    }
+
+    private static String text(Long value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static String amount(BigDecimal value) {
+        return value != null ? value.toPlainString() : null;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -1,39 +1,56 @@
 package com.carwash.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.carwash.common.BusinessException;
+import com.carwash.common.constants.Constants;
 import com.carwash.common.result.ResultCode;
+import com.carwash.dto.BatchStatusUpdateResponse;
 import com.carwash.dto.BookingRequest;
 import com.carwash.dto.BookingResponse;
+import com.carwash.dto.CursorPageResponse;
 import com.carwash.entity.Booking;
-import com.carwash.entity.Feedback;
-import com.carwash.entity.Payment;
 import com.carwash.entity.Service;
 import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingArchiveMapper;
 import com.carwash.mapper.BookingMapper;
-import com.carwash.mapper.FeedbackMapper;
-import com.carwash.mapper.PaymentMapper;
 import com.carwash.mapper.ServiceMapper;
 import com.carwash.mapper.TimeSlotMapper;
-import com.carwash.mapper.UserMapper;
 import com.carwash.service.BookingService;
-import com.carwash.service.WebSocketService;
 import com.carwash.service.NotificationService;
-import com.carwash.service.SmsService;
+import com.carwash.service.booking.BookingBatchWriter;
+import com.carwash.service.booking.BookingCache;
+import com.carwash.service.booking.BookingCascadeDeleter;
+import com.carwash.service.booking.BookingCursor;
+import com.carwash.service.booking.BookingResponseAssembler;
+import com.carwash.service.booking.BookingSearchIndex;
+import com.carwash.service.booking.BookingStatusMachine;
+import com.carwash.service.booking.BookingWaitlist;
+import com.carwash.service.booking.SlotReservationEngine;
+import com.carwash.service.outbox.OrderStatusNotice;
+import com.carwash.service.outbox.OutboxPublisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import com.carwash.utils.IdGenerator;
 import com.carwash.utils.TimeUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * 预约订单服务实现类
@@ -46,9 +63,15 @@ public class BookingServiceImpl implements BookingService {
 
     private static final Logger log = LoggerFactory.getLogger(BookingServiceImpl.class);
 
+    /** 批量更新订单状态的单次上限 */
+    private static final int MAX_BATCH_STATUS_SIZE = 500;
+
     @Autowired
     private BookingMapper bookingMapper;
 
+    @Autowired
+    private BookingArchiveMapper bookingArchiveMapper;
+
     @Autowired
     private ServiceMapper serviceMapper;
 
@@ -56,22 +79,34 @@ public class BookingServiceImpl implements BookingService {
     private TimeSlotMapper timeSlotMapper;
 
     @Autowired
-    private PaymentMapper paymentMapper;
+    private NotificationService notificationService;
 
     @Autowired
-    private FeedbackMapper feedbackMapper;
+    private SlotReservationEngine slotReservationEngine;
 
     @Autowired
-    private WebSocketService webSocketService;
+    private BookingResponseAssembler bookingResponseAssembler;
 
     @Autowired
-    private NotificationService notificationService;
+    private OutboxPublisher outboxPublisher;
 
     @Autowired
-    private SmsService smsService;
+    private BookingSearchIndex bookingSearchIndex;
 
     @Autowired
-    private UserMapper userMapper;
+    private BookingBatchWriter bookingBatchWriter;
+
+    @Autowired
+    private BookingCascadeDeleter bookingCascadeDeleter;
+
+    @Autowired
+    private BookingCache bookingCache;
+
+    @Autowired
+    private BookingWaitlist bookingWaitlist;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -89,36 +124,35 @@ public class BookingServiceImpl implements BookingService {
                 throw new BusinessException(ResultCode.PARAM_ERROR, "服务ID不能为空");
             }
             
-            // 验证服务是否存在
-            Service service = serviceMapper.selectById(request.getServiceId());
-            if (service == null) {
-                log.error("服务不存在，服务ID: {}", request.getServiceId());
-                throw new BusinessException(ResultCode.SERVICE_NOT_FOUND, "服务不存在");
-            }
-            log.info("找到服务: {}", service.getName());
-
-            // 验证时间段是否可用（如果提供了时间段ID）
+            // 占用时间段名额（如果提供了时间段ID）：Redis 库存预扣 + time_slots 条件更新
             TimeSlot timeSlot = null;
             if (request.getTimeSlotId() != null) {
+                SlotReservationEngine.Outcome outcome = slotReservationEngine.reserve(request.getTimeSlotId());
+                if (outcome == SlotReservationEngine.Outcome.SOLD_OUT) {
+                    throw new BusinessException(ResultCode.APPOINTMENT_CONFLICT, "该时间段已被预约满，可加入候补队列");
+                }
                 timeSlot = timeSlotMapper.selectById(request.getTimeSlotId());
                 if (timeSlot == null) {
                     log.warn("时间段不存在，时间段ID: {}，将使用默认设置", request.getTimeSlotId());
-                } else {
+                } else if (outcome == SlotReservationEngine.Outcome.REJECTED) {
                     // 检查时间段状态
                     if (timeSlot.getStatus() == 0) {
                         throw new BusinessException(ResultCode.APPOINTMENT_CONFLICT, "该时间段不可用");
                     }
-
-                    // 检查时间段是否已被预约
-                    int bookedCount = bookingMapper.countByTimeSlot(request.getTimeSlotId());
-                    if (bookedCount >= timeSlot.getMaxBookings()) {
-                        throw new BusinessException(ResultCode.APPOINTMENT_CONFLICT, "该时间段已被预约满");
-                    }
+                    throw new BusinessException(ResultCode.APPOINTMENT_CONFLICT, "该时间段已被预约满，可加入候补队列");
                 }
             } else {
                 log.info("未指定时间段ID，将使用默认时间设置");
             }
 
+            // 验证服务是否存在
+            Service service = serviceMapper.selectById(request.getServiceId());
+            if (service == null) {
+                log.error("服务不存在，服务ID: {}", request.getServiceId());
+                throw new BusinessException(ResultCode.SERVICE_NOT_FOUND, "服务不存在");
+            }
+            log.info("找到服务: {}", service.getName());
+
             // 创建订单
             Booking booking = new Booking();
             BeanUtils.copyProperties(request, booking);
@@ -135,6 +169,7 @@ public class BookingServiceImpl implements BookingService {
                 // 如果没有时间段，设置默认值
                 booking.setTimeSlotId(1L); // 设置默认时间段ID
                 booking.setBookingTime("09:00-10:00");
+                slotReservationEngine.reserveUnchecked(booking.getTimeSlotId());
             }
             
             // 设置预约日期 - 如果没有提供，使用当前日期
@@ -162,6 +197,7 @@ public class BookingServiceImpl implements BookingService {
                 throw new BusinessException(ResultCode.SYSTEM_ERROR, "创建预约订单失败，未获取到订单ID");
             }
 
+            eventPublisher.publishEvent(BookingChangedEvent.created(booking));
             log.info("预约订单创建成功，订单ID: {}, 订单号: {}", booking.getId(), booking.getOrderNo());
             return booking.getId();
             
@@ -185,35 +221,58 @@ public class BookingServiceImpl implements BookingService {
 
         List<Booking> bookings = bookingMapper.selectList(queryWrapper);
 
-        return bookings.stream().map(this::convertToResponse).collect(Collectors.toList());
+        return bookingResponseAssembler.toResponses(bookings);
+    }
+
+    @Override
+    public CursorPageResponse<BookingResponse> getUserBookingsPage(Long userId, String cursor, Integer size) {
+        log.info("游标分页获取用户订单列表，用户ID: {}, 分页大小: {}", userId, size);
+        if (userId == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "用户ID不能为空");
+        }
+        return queryPage(userId, cursor, size);
     }
 
     @Override
     public BookingResponse getBookingById(Long bookingId) {
         log.info("获取订单详情，订单ID: {}", bookingId);
+        return bookingCache.getById(bookingId, this::loadBookingById);
+    }
 
+    private BookingResponse loadBookingById(Long bookingId) {
         Booking booking = bookingMapper.selectById(bookingId);
         if (booking == null || booking.getDeleted() == 1) {
+            // 热表中不存在时回落到归档表
+            booking = bookingArchiveMapper.selectById(bookingId);
+        }
+        if (booking == null) {
             throw new BusinessException(ResultCode.ORDER_NOT_FOUND, "订单不存在");
         }
 
-        return convertToResponse(booking);
+        return bookingResponseAssembler.toResponse(booking);
     }
 
     @Override
     public BookingResponse getBookingByOrderNo(String orderNo) {
         log.info("根据订单号获取订单详情，订单号: {}", orderNo);
+        return bookingCache.getByOrderNo(orderNo, this::loadBookingByOrderNo);
+    }
 
+    private BookingResponse loadBookingByOrderNo(String orderNo) {
         QueryWrapper<Booking> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("order_no", orderNo)
                    .eq("deleted", 0);
 
         Booking booking = bookingMapper.selectOne(queryWrapper);
+        if (booking == null) {
+            // 热表中不存在时回落到归档表
+            booking = bookingArchiveMapper.selectByOrderNo(orderNo);
+        }
         if (booking == null) {
             throw new BusinessException(ResultCode.ORDER_NOT_FOUND, "订单不存在");
         }
 
-        return convertToResponse(booking);
+        return bookingResponseAssembler.toResponse(booking);
     }
 
     @Override
@@ -231,28 +290,17 @@ public class BookingServiceImpl implements BookingService {
             throw new BusinessException(ResultCode.ORDER_CANNOT_CANCEL, "当前订单状态无法取消");
         }
 
-        // 更新订单状态
-        booking.setStatus("cancelled");
-        booking.setCancelReason(reason);
-        booking.setCancelledAt(TimeUtils.now());
-        booking.setUpdatedAt(TimeUtils.now());
+        // 按读取时的状态和版本号更新订单状态
+        String oldStatus = booking.getStatus();
+        compareAndSetStatus(booking, "cancelled", reason);
 
-        int result = bookingMapper.updateById(booking);
-        if (result <= 0) {
-            throw new BusinessException(ResultCode.SYSTEM_ERROR, "取消订单失败");
-        }
+        // 释放时间段名额：有候补时直接转给队首用户
+        bookingWaitlist.releaseOrPromote(booking.getTimeSlotId());
 
         log.info("订单取消成功，订单ID: {}", bookingId);
 
-        // 推送订单取消状态到WebSocket客户端
-        try {
-            webSocketService.pushOrderStatusUpdate(booking.getUserId(), bookingId, booking.getOrderNo(), "pending", "cancelled", "用户取消订单");
-            log.info("订单取消WebSocket推送成功，用户ID: {}, 订单ID: {}", booking.getUserId(), bookingId);
-        } catch (Exception e) {
-            log.error("订单取消WebSocket推送失败，用户ID: {}, 订单ID: {}, 错误: {}", 
-                booking.getUserId(), bookingId, e.getMessage(), e);
-            // WebSocket推送失败不影响主业务流程
-        }
+        // 订单取消通知写入发件箱，事务提交后异步推送
+        outboxPublisher.publishOrderStatus(booking, oldStatus, "cancelled", "用户取消订单", false);
     }
 
     @Override
@@ -271,142 +319,161 @@ public class BookingServiceImpl implements BookingService {
         log.info("订单当前状态: {}, 目标状态: {}", oldStatus, status);
 
         // 验证状态转换是否合法
-        if (!isValidStatusTransition(oldStatus, status)) {
+        if (!BookingStatusMachine.canTransition(oldStatus, status)) {
             log.warn("无效的状态转换: {} -> {}", oldStatus, status);
             throw new BusinessException(ResultCode.INVALID_STATUS_TRANSITION, 
                 String.format("无效的状态转换: %s -> %s", oldStatus, status));
         }
 
-        // 更新订单状态
-        booking.setStatus(status);
-        booking.setUpdatedAt(TimeUtils.now());
-
-        // 根据状态设置相应的时间戳
-        switch (status) {
-            case "confirmed":
-                // 设置确认时间
-                log.info("设置订单确认时间");
-                break;
-            case "in_progress":
-                // 设置开始服务时间
-                log.info("设置服务开始时间");
-                break;
-            case "completed":
-                booking.setCompletedAt(TimeUtils.now());
-                log.info("设置订单完成时间");
-                break;
-            case "cancelled":
-                booking.setCancelledAt(TimeUtils.now());
-                log.info("设置订单取消时间");
-                break;
+        // 单条条件更新完成状态流转，状态或版本号已变化时返回冲突
+        compareAndSetStatus(booking, status, null);
+
+        // 取消订单时释放时间段名额
+        if (SlotReservationEngine.holdsCapacity(oldStatus) && !SlotReservationEngine.holdsCapacity(status)) {
+            slotReservationEngine.release(booking.getTimeSlotId());
         }
 
-        // 执行数据库更新
-        log.info("执行数据库更新操作");
-        int result = bookingMapper.updateById(booking);
-        log.info("数据库更新结果: {}", result);
-        
-        if (result <= 0) {
-            log.error("数据库更新失败，影响行数: {}", result);
-            throw new BusinessException(ResultCode.SYSTEM_ERROR, "更新订单状态失败，数据库操作失败");
+        log.info("订单状态更新成功，订单ID: {}, 状态变更: {} -> {}, 版本号: {}", 
+            bookingId, oldStatus, status, booking.getVersion());
+
+        // 状态变更通知（WebSocket + 短信）写入发件箱，事务提交后异步投递，不阻塞状态更新
+        outboxPublisher.publishOrderStatus(booking, oldStatus, status, "订单状态更新", true);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public BatchStatusUpdateResponse updateBookingStatusBatch(List<Long> bookingIds, String status) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(bookingIds != null ? bookingIds : new ArrayList<>()));
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "订单ID列表不能为空");
+        }
+        if (ids.size() > MAX_BATCH_STATUS_SIZE) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "单次最多更新" + MAX_BATCH_STATUS_SIZE + "个订单");
         }
+        log.info("批量更新订单状态，订单数量: {}, 目标状态: {}", ids.size(), status);
 
-        // 强制刷新并验证更新结果
-        log.info("验证数据库更新结果");
-        Booking updatedBooking = bookingMapper.selectById(bookingId);
-        
-        if (updatedBooking == null) {
-            log.error("验证失败：更新后无法查询到订单，订单ID: {}", bookingId);
-            throw new BusinessException(ResultCode.SYSTEM_ERROR, "数据库状态验证失败：订单不存在");
+        // 一次查询读取全部订单，在内存中校验状态转换
+        Map<Long, Booking> loaded = new HashMap<>(ids.size() * 2);
+        for (Booking booking : bookingMapper.selectBatchIds(ids)) {
+            loaded.put(booking.getId(), booking);
         }
-        
-        if (!status.equals(updatedBooking.getStatus())) {
-            log.error("数据库状态同步失败，订单ID: {}, 期望状态: {}, 实际状态: {}", 
-                bookingId, status, updatedBooking.getStatus());
-            
-            // 尝试重新更新一次
-            log.info("尝试重新更新订单状态");
-            updatedBooking.setStatus(status);
-            updatedBooking.setUpdatedAt(TimeUtils.now());
-            int retryResult = bookingMapper.updateById(updatedBooking);
-            
-            if (retryResult <= 0) {
-                throw new BusinessException(ResultCode.SYSTEM_ERROR, "重试更新订单状态失败");
+        Map<Long, BatchStatusUpdateResponse.Item> results = new HashMap<>(ids.size() * 2);
+        List<Booking> candidates = new ArrayList<>();
+        for (Long id : ids) {
+            Booking booking = loaded.get(id);
+            if (booking == null || Integer.valueOf(1).equals(booking.getDeleted())) {
+                results.put(id, BatchStatusUpdateResponse.Item.failure(id, null,
+                        ResultCode.ORDER_NOT_FOUND.getCode(), "订单不存在"));
+            } else if (!BookingStatusMachine.canTransition(booking.getStatus(), status)) {
+                results.put(id, BatchStatusUpdateResponse.Item.failure(id, booking.getStatus(),
+                        ResultCode.INVALID_STATUS_TRANSITION.getCode(),
+                        String.format("无效的状态转换: %s -> %s", booking.getStatus(), status)));
+            } else {
+                candidates.add(booking);
             }
-            
-            // 再次验证
-            Booking finalBooking = bookingMapper.selectById(bookingId);
-            if (!status.equals(finalBooking.getStatus())) {
-                throw new BusinessException(ResultCode.SYSTEM_ERROR, 
-                    String.format("数据库状态同步失败，期望: %s, 实际: %s", status, finalBooking.getStatus()));
+        }
+
+        // 合法的订单通过 JDBC 批量条件更新一次提交
+        LocalDateTime now = TimeUtils.now();
+        int[] counts = bookingBatchWriter.transitionAll(candidates, status, now);
+        Map<Long, Booking> verified = resolveUnknownCounts(candidates, counts);
+
+        List<OrderStatusNotice> notices = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            Booking booking = candidates.get(i);
+            String oldStatus = booking.getStatus();
+            int version = booking.getVersion() != null ? booking.getVersion() : 0;
+            boolean applied = counts[i] == Statement.SUCCESS_NO_INFO
+                    ? isApplied(verified.get(booking.getId()), status, version)
+                    : counts[i] > 0;
+            if (!applied) {
+                results.put(booking.getId(), BatchStatusUpdateResponse.Item.failure(booking.getId(), oldStatus,
+                        ResultCode.ORDER_CONCURRENT_MODIFIED.getCode(), ResultCode.ORDER_CONCURRENT_MODIFIED.getMessage()));
+                continue;
+            }
+            if (SlotReservationEngine.holdsCapacity(oldStatus) && !SlotReservationEngine.holdsCapacity(status)) {
+                slotReservationEngine.release(booking.getTimeSlotId());
             }
+            notices.add(new OrderStatusNotice(booking.getUserId(), booking.getId(), booking.getOrderNo(),
+                    oldStatus, status, "订单状态更新"));
+            applyTransition(booking, status, version, null, now);
+            eventPublisher.publishEvent(BookingChangedEvent.transitioned(booking, oldStatus, status));
+            results.put(booking.getId(), BatchStatusUpdateResponse.Item.success(booking.getId(), oldStatus, status));
         }
 
-        log.info("订单状态更新成功，订单ID: {}, 状态变更: {} -> {}, 更新时间: {}", 
-            bookingId, oldStatus, status, updatedBooking.getUpdatedAt());
+        // 整批通知一次写入发件箱
+        outboxPublisher.publishOrderStatusBatch(notices, true);
 
-        // 推送订单状态更新到WebSocket客户端
-        try {
-            webSocketService.pushOrderStatusUpdate(updatedBooking.getUserId(), bookingId, updatedBooking.getOrderNo(), oldStatus, status, "订单状态更新");
-            log.info("WebSocket推送成功，用户ID: {}, 订单ID: {}, 状态: {}", 
-                updatedBooking.getUserId(), bookingId, status);
-        } catch (Exception e) {
-            log.error("WebSocket推送失败，用户ID: {}, 订单ID: {}, 错误: {}", 
-                updatedBooking.getUserId(), bookingId, e.getMessage(), e);
-            // WebSocket推送失败不影响主业务流程
+        BatchStatusUpdateResponse response = new BatchStatusUpdateResponse();
+        for (Long id : ids) {
+            response.getResults().add(results.get(id));
         }
+        response.setTotal(ids.size());
+        response.setSucceeded(notices.size());
+        response.setFailed(ids.size() - notices.size());
+        log.info("批量更新订单状态完成，成功: {}, 失败: {}", response.getSucceeded(), response.getFailed());
+        return response;
+    }
 
-        // 发送短信通知
-        try {
-            // 获取用户信息
-            com.carwash.entity.User user = userMapper.selectById(updatedBooking.getUserId());
-            if (user != null && user.getPhone() != null && !user.getPhone().trim().isEmpty()) {
-                String customerName = user.getRealName() != null ? user.getRealName() : user.getUsername();
-                
-                // 发送订单状态变更短信通知
-                boolean smsResult = smsService.sendOrderStatusNotification(
-                    user.getPhone(), 
-                    updatedBooking.getOrderNo(), 
-                    oldStatus, 
-                    status, 
-                    customerName
-                );
-                
-                if (smsResult) {
-                    log.info("短信通知发送成功，用户ID: {}, 手机号: {}, 订单号: {}, 状态变更: {} -> {}", 
-                        updatedBooking.getUserId(), user.getPhone(), updatedBooking.getOrderNo(), oldStatus, status);
-                } else {
-                    log.warn("短信通知发送失败，用户ID: {}, 手机号: {}, 订单号: {}", 
-                        updatedBooking.getUserId(), user.getPhone(), updatedBooking.getOrderNo());
-                }
-            } else {
-                log.warn("用户手机号为空，跳过短信通知，用户ID: {}", updatedBooking.getUserId());
+    /**
+     * 驱动开启 rewriteBatchedStatements 时批量更新只返回 SUCCESS_NO_INFO，需回读确认哪些订单已更新
+     */
+    private Map<Long, Booking> resolveUnknownCounts(List<Booking> candidates, int[] counts) {
+        List<Long> unknown = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                unknown.add(candidates.get(i).getId());
+            }
+        }
+        Map<Long, Booking> current = new HashMap<>(unknown.size() * 2);
+        if (!unknown.isEmpty()) {
+            for (Booking booking : bookingMapper.selectBatchIds(unknown)) {
+                current.put(booking.getId(), booking);
             }
-        } catch (Exception e) {
-            log.error("短信通知发送异常，用户ID: {}, 订单ID: {}, 错误: {}", 
-                updatedBooking.getUserId(), bookingId, e.getMessage(), e);
-            // 短信发送失败不影响主业务流程
         }
+        return current;
+    }
+
+    private static boolean isApplied(Booking current, String status, int expectedVersion) {
+        return current != null && status.equals(current.getStatus())
+                && current.getVersion() != null && current.getVersion() == expectedVersion + 1;
     }
 
     /**
-     * 验证状态转换是否合法
+     * 以读取时的状态和版本号为条件更新订单状态，成功后同步内存中的订单对象
      */
-    private boolean isValidStatusTransition(String fromStatus, String toStatus) {
-        // 定义合法的状态转换规则
-        switch (fromStatus) {
-            case "pending":
-                return "confirmed".equals(toStatus) || "cancelled".equals(toStatus);
-            case "confirmed":
-                return "in_progress".equals(toStatus) || "cancelled".equals(toStatus);
-            case "in_progress":
-                return "completed".equals(toStatus) || "cancelled".equals(toStatus);
-            case "completed":
-                return false; // 已完成的订单不能再转换状态
-            case "cancelled":
-                return false; // 已取消的订单不能再转换状态
-            default:
-                return true; // 未知状态允许转换（兼容性考虑）
+    private void compareAndSetStatus(Booking booking, String status, String cancelReason) {
+        LocalDateTime now = TimeUtils.now();
+        int version = booking.getVersion() != null ? booking.getVersion() : 0;
+        int updated = bookingMapper.transitionStatus(booking.getId(), booking.getStatus(), status, version,
+                cancelReason, now);
+        if (updated <= 0) {
+            log.warn("订单状态并发修改冲突，订单ID: {}, 期望状态: {}, 期望版本号: {}", 
+                booking.getId(), booking.getStatus(), version);
+            throw new BusinessException(ResultCode.ORDER_CONCURRENT_MODIFIED);
+        }
+
+        String oldStatus = booking.getStatus();
+        applyTransition(booking, status, version, cancelReason, now);
+        eventPublisher.publishEvent(BookingChangedEvent.transitioned(booking, oldStatus, status));
+    }
+
+    /**
+     * 状态写入成功后同步内存中的订单对象（与 transitionStatus 写入的列一致），事件快照据此生成
+     */
+    private static void applyTransition(Booking booking, String status, int version, String cancelReason,
+                                        LocalDateTime now) {
+        booking.setStatus(status);
+        booking.setVersion(version + 1);
+        booking.setUpdatedAt(now);
+        if ("completed".equals(status)) {
+            booking.setCompletedAt(now);
+        } else if ("cancelled".equals(status)) {
+            booking.setCancelledAt(now);
+        }
+        if (cancelReason != null) {
+            booking.setCancelReason(cancelReason);
         }
     }
 
@@ -420,103 +487,66 @@ public class BookingServiceImpl implements BookingService {
 
         List<Booking> bookings = bookingMapper.selectList(queryWrapper);
 
-        return bookings.stream().map(this::convertToResponse).collect(Collectors.toList());
+        return bookingResponseAssembler.toResponses(bookings);
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public void deleteBooking(Long bookingId) {
-        log.info("删除订单（硬删除），订单ID: {}", bookingId);
+    public CursorPageResponse<BookingResponse> getAllBookingsPage(String cursor, Integer size) {
+        log.info("游标分页获取所有订单列表，分页大小: {}", size);
+        return queryPage(null, cursor, size);
+    }
 
-        // 验证订单ID
-        if (bookingId == null) {
-            log.error("订单ID为空");
-            throw new BusinessException(ResultCode.PARAM_ERROR, "订单ID不能为空");
+    @Override
+    public IPage<BookingResponse> searchBookings(String keyword, Long current, Long size) {
+        long pageNum = current == null || current <= 0 ? Constants.Page.DEFAULT_PAGE_NUM : current;
+        long pageSize = size == null || size <= 0 ? Constants.Page.DEFAULT_PAGE_SIZE : Math.min(size, Constants.Page.MAX_PAGE_SIZE);
+        long offset = (pageNum - 1) * pageSize;
+
+        BookingSearchIndex.Hits hits = bookingSearchIndex.search(keyword,
+                (int) Math.min(offset, Integer.MAX_VALUE), (int) pageSize);
+        Page<BookingResponse> page = new Page<>(pageNum, pageSize, hits.getTotal());
+        if (hits.getBookingIds().isEmpty()) {
+            return page;
         }
-
-        // 检查订单是否存在
-        Booking booking = bookingMapper.selectById(bookingId);
-        if (booking == null) {
-            log.error("订单不存在，订单ID: {}", bookingId);
-            throw new BusinessException(ResultCode.ORDER_NOT_FOUND, "订单不存在");
+        // 批量加载后按索引给出的顺序排列；索引滞后于删除时缺失的订单直接跳过
+        Map<Long, Booking> loaded = new HashMap<>();
+        for (Booking booking : bookingMapper.selectBatchIds(hits.getBookingIds())) {
+            loaded.put(booking.getId(), booking);
         }
-
-        String orderNo = booking.getOrderNo();
-        log.info("订单删除前状态 - 订单ID: {}, 订单号: {}, deleted: {}, 状态: {}", 
-            bookingId, orderNo, booking.getDeleted(), booking.getStatus());
-
-        // 级联删除关联的支付记录
-        try {
-            QueryWrapper<Payment> paymentWrapper = new QueryWrapper<>();
-            paymentWrapper.eq("booking_id", bookingId);
-            List<Payment> payments = paymentMapper.selectList(paymentWrapper);
-            if (payments != null && !payments.isEmpty()) {
-                log.info("删除订单关联的支付记录，数量: {}", payments.size());
-                for (Payment payment : payments) {
-                    paymentMapper.deleteById(payment.getId());
-                    log.info("已删除支付记录，支付ID: {}", payment.getId());
-                }
+        List<Booking> ordered = new ArrayList<>(loaded.size());
+        for (Long id : hits.getBookingIds()) {
+            Booking booking = loaded.get(id);
+            if (booking != null) {
+                ordered.add(booking);
             }
-        } catch (Exception e) {
-            log.error("删除关联支付记录失败", e);
-            throw new BusinessException(ResultCode.SYSTEM_ERROR, "删除关联支付记录失败");
         }
+        page.setRecords(bookingResponseAssembler.toResponses(ordered));
+        return page;
+    }
 
-        // 级联删除关联的反馈记录
-        try {
-            List<Feedback> feedbacks = feedbackMapper.selectByBookingId(bookingId);
-            if (feedbacks != null && !feedbacks.isEmpty()) {
-                log.info("删除订单关联的反馈记录，数量: {}", feedbacks.size());
-                for (Feedback feedback : feedbacks) {
-                    feedbackMapper.deleteById(feedback.getId());
-                    log.info("已删除反馈记录，反馈ID: {}", feedback.getId());
-                }
-            }
-        } catch (Exception e) {
-            log.error("删除关联反馈记录失败", e);
-            throw new BusinessException(ResultCode.SYSTEM_ERROR, "删除关联反馈记录失败");
-        }
+    /**
+     * 键集分页查询：多取一条判断是否还有下一页
+     */
+    private CursorPageResponse<BookingResponse> queryPage(Long userId, String cursor, Integer size) {
+        int pageSize = BookingCursor.normalizePageSize(size);
+        BookingCursor position = BookingCursor.decode(cursor);
 
-        // 执行硬删除，从数据库中完全移除记录
-        log.info("执行数据库删除操作");
-        int result = bookingMapper.deleteById(bookingId);
-        log.info("数据库删除结果: {}", result);
-        
-        if (result <= 0) {
-            log.error("硬删除订单失败，数据库操作失败，订单ID: {}, 影响行数: {}", bookingId, result);
-            throw new BusinessException(ResultCode.SYSTEM_ERROR, "删除订单失败，数据库操作失败");
-        }
+        List<Booking> rows = bookingMapper.selectPageByCursor(userId,
+                position != null ? position.getCreatedAt() : null,
+                position != null ? position.getId() : null,
+                pageSize + 1);
 
-        // 验证删除结果，确认记录不再存在
-        log.info("验证数据库删除结果");
-        Booking deletedBooking = bookingMapper.selectById(bookingId);
-        
-        if (deletedBooking != null) {
-            log.error("验证失败：删除后订单仍然存在，订单ID: {}", bookingId);
-            
-            // 尝试重新删除一次
-            log.info("尝试重新删除订单");
-            int retryResult = bookingMapper.deleteById(bookingId);
-            
-            if (retryResult <= 0) {
-                throw new BusinessException(ResultCode.SYSTEM_ERROR, "重试硬删除订单失败");
-            }
-            
-            // 再次验证
-            Booking finalBooking = bookingMapper.selectById(bookingId);
-            if (finalBooking != null) {
-                throw new BusinessException(ResultCode.SYSTEM_ERROR, 
-                    "数据库删除验证失败，记录仍然存在");
-            }
-        }
+        boolean hasMore = rows.size() > pageSize;
+        List<Booking> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? BookingCursor.after(page.get(page.size() - 1)).encode() : null;
 
-        log.info("订单删除成功，订单ID: {}, 订单号: {}, 记录已从数据库中完全移除", bookingId, orderNo);
+        return new CursorPageResponse<>(bookingResponseAssembler.toResponses(page), pageSize, hasMore, nextCursor);
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public void permanentlyDeleteBooking(Long bookingId) {
-        log.info("永久删除订单（硬删除），订单ID: {}", bookingId);
+    public void deleteBooking(Long bookingId) {
+        log.info("删除订单（硬删除），订单ID: {}", bookingId);
 
         // 验证订单ID
         if (bookingId == null) {
@@ -524,7 +554,7 @@ public class BookingServiceImpl implements BookingService {
             throw new BusinessException(ResultCode.PARAM_ERROR, "订单ID不能为空");
         }
 
-        // 检查订单是否存在（包括已软删除的订单）
+        // 检查订单是否存在
         Booking booking = bookingMapper.selectById(bookingId);
         if (booking == null) {
             log.error("订单不存在，订单ID: {}", bookingId);
@@ -532,67 +562,31 @@ public class BookingServiceImpl implements BookingService {
         }
 
         String orderNo = booking.getOrderNo();
-        log.info("订单硬删除前状态 - 订单ID: {}, 订单号: {}, deleted: {}, 状态: {}", 
+        log.info("订单删除前状态 - 订单ID: {}, 订单号: {}, deleted: {}, 状态: {}", 
             bookingId, orderNo, booking.getDeleted(), booking.getStatus());
 
-        // 执行硬删除，从数据库中完全移除记录
-        log.info("执行数据库删除操作");
-        int result = bookingMapper.deleteById(bookingId);
-        log.info("数据库删除结果: {}", result);
-        
+        // 关联的支付记录、反馈记录和订单各用一条语句删除，并归还占用的时间段名额
+        int result = bookingCascadeDeleter.deleteAll(Collections.singletonList(booking));
         if (result <= 0) {
-            log.error("硬删除订单失败，数据库操作失败，订单ID: {}, 影响行数: {}", bookingId, result);
-            throw new BusinessException(ResultCode.SYSTEM_ERROR, "硬删除订单失败，数据库操作失败");
+            log.error("删除订单失败，订单可能已被删除，订单ID: {}", bookingId);
+            throw new BusinessException(ResultCode.SYSTEM_ERROR, "删除订单失败，数据库操作失败");
         }
 
-        // 验证删除结果，确认记录不再存在
-        log.info("验证数据库删除结果");
-        Booking deletedBooking = bookingMapper.selectById(bookingId);
-        
-        if (deletedBooking != null) {
-            log.error("验证失败：删除后订单仍然存在，订单ID: {}", bookingId);
-            
-            // 尝试重新删除一次
-            log.info("尝试重新删除订单");
-            int retryResult = bookingMapper.deleteById(bookingId);
-            
-            if (retryResult <= 0) {
-                throw new BusinessException(ResultCode.SYSTEM_ERROR, "重试硬删除订单失败");
-            }
-            
-            // 再次验证
-            Booking finalBooking = bookingMapper.selectById(bookingId);
-            if (finalBooking != null) {
-                throw new BusinessException(ResultCode.SYSTEM_ERROR, 
-                    "数据库删除验证失败，记录仍然存在");
-            }
-        }
+        log.info("订单删除成功，订单ID: {}, 订单号: {}", bookingId, orderNo);
+    }
 
-        log.info("订单硬删除成功，订单ID: {}, 订单号: {}, 记录已从数据库中完全移除", bookingId, orderNo);
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void permanentlyDeleteBooking(Long bookingId) {
+        log.info("永久删除订单（硬删除），订单ID: {}", bookingId);
+        // 与删除订单走同一条级联删除路径
+        deleteBooking(bookingId);
     }
 
     /**
      * 生成订单号
      */
     private String generateOrderNo() {
-        return "CW" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-    }
-
-    /**
-     * 转换为响应对象
-     */
-    private BookingResponse convertToResponse(Booking booking) {
-        BookingResponse response = new BookingResponse();
-        BeanUtils.copyProperties(booking, response);
-        
-        // 填充服务名称
-        if (booking.getServiceId() != null) {
-            Service service = serviceMapper.selectById(booking.getServiceId());
-            if (service != null) {
-                response.setServiceName(service.getName());
-            }
-        }
-        
-        return response;
+        return IdGenerator.nextOrderNo();
     }
-}
\ No newline at end of file
+}
@@ -14,6 +14,7 @@ import com.carwash.entity.Booking;
 import com.carwash.entity.Payment;
 import com.carwash.entity.Refund;
 import com.carwash.entity.PaymentAudit;
+import com.carwash.event.BookingChangedEvent;
 import com.carwash.mapper.BookingMapper;
 import com.carwash.mapper.PaymentMapper;
 import com.carwash.mapper.RefundMapper;
@@ -22,12 +23,17 @@ import com.carwash.service.PaymentService;
 import com.carwash.service.payment.PaymentGateway;
 import com.carwash.service.payment.PaymentGatewayFactory;
 import com.carwash.service.payment.security.CallbackSignatureVerifier;
+import com.carwash.service.booking.BookingWaitlist;
+import com.carwash.service.booking.SlotReservationEngine;
+import com.carwash.service.outbox.OutboxPublisher;
+import com.carwash.utils.IdGenerator;
 import com.carwash.utils.TimeUtils;
 import com.carwash.monitor.PaymentMonitor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -35,7 +41,6 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * 支付服务实现类
@@ -69,6 +74,15 @@ public class PaymentServiceImpl extends ServiceImpl<PaymentMapper, Payment> impl
     @Autowired(required = false)
     private PaymentAuditMapper paymentAuditMapper;
 
+    @Autowired
+    private OutboxPublisher outboxPublisher;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BookingWaitlist bookingWaitlist;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public PaymentResponse createPayment(PaymentRequest request, Long userId) {
@@ -218,10 +232,10 @@ public class PaymentServiceImpl extends ServiceImpl<PaymentMapper, Payment> impl
         // 更新订单支付状态
         Booking booking = bookingMapper.selectByOrderNo(payment.getOrderNo());
         if (booking != null) {
-            booking.setPaymentStatus("paid");
-            booking.setPaymentMethod(payment.getPaymentMethod());
-            booking.setPaidAt(payment.getPaidAt());
-            bookingMapper.updateById(booking);
+            markPaid(booking, payment);
+
+            // 支付成功通知写入发件箱，回调事务提交后异步推送
+            outboxPublisher.publishOrderStatus(booking, booking.getStatus(), booking.getStatus(), "订单支付成功", false);
         }
 
         log.info("支付回调处理成功，支付流水号: {}", paymentNo);
@@ -282,8 +296,9 @@ public class PaymentServiceImpl extends ServiceImpl<PaymentMapper, Payment> impl
             if (request.getAmount().compareTo(payment.getAmount()) == 0) {
                 Booking booking = bookingMapper.selectByOrderNo(payment.getOrderNo());
                 if (booking != null) {
+                    bookingMapper.updatePaymentStatus(booking.getId(), "refunded", null, null);
                     booking.setPaymentStatus("refunded");
-                    bookingMapper.updateById(booking);
+                    eventPublisher.publishEvent(BookingChangedEvent.paymentUpdated(booking));
                 }
             }
         } else {
@@ -344,10 +359,26 @@ public class PaymentServiceImpl extends ServiceImpl<PaymentMapper, Payment> impl
             // 更新订单状态
             Booking booking = bookingMapper.selectByOrderNo(payment.getOrderNo());
             if (booking != null && "unpaid".equals(booking.getPaymentStatus())) {
-                booking.setStatus("cancelled");
-                booking.setCancelReason("支付超时自动取消");
-                booking.setCancelledAt(TimeUtils.now());
-                bookingMapper.updateById(booking);
+                // 按读取时的状态和版本号取消，期间订单被其他操作修改则跳过
+                int version = booking.getVersion() != null ? booking.getVersion() : 0;
+                LocalDateTime now = TimeUtils.now();
+                int cancelled = bookingMapper.transitionStatus(booking.getId(), booking.getStatus(), "cancelled",
+                        version, "支付超时自动取消", now);
+                if (cancelled <= 0) {
+                    log.warn("订单状态已变化，跳过超时取消，订单号: {}", booking.getOrderNo());
+                } else {
+                    String oldStatus = booking.getStatus();
+                    booking.setStatus("cancelled");
+                    booking.setVersion(version + 1);
+                    booking.setUpdatedAt(now);
+                    booking.setCancelledAt(now);
+                    booking.setCancelReason("支付超时自动取消");
+                    eventPublisher.publishEvent(BookingChangedEvent.transitioned(booking, oldStatus, "cancelled"));
+                    if (SlotReservationEngine.holdsCapacity(oldStatus)) {
+                        // 有候补时名额直接转给队首用户
+                        bookingWaitlist.releaseOrPromote(booking.getTimeSlotId());
+                    }
+                }
             }
         }
 
@@ -383,14 +414,14 @@ public class PaymentServiceImpl extends ServiceImpl<PaymentMapper, Payment> impl
      * 生成支付流水号
      */
     private String generatePaymentNo() {
-        return "PAY" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return IdGenerator.nextPaymentNo();
     }
 
     /**
      * 生成退款单号
      */
     private String generateRefundNo() {
-        return "REF" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return IdGenerator.nextRefundNo();
     }
 
     /**
@@ -411,6 +442,17 @@ public class PaymentServiceImpl extends ServiceImpl<PaymentMapper, Payment> impl
         }
     }
 
+    /**
+     * 订单支付状态更新为已支付（只写支付相关列），同步内存中的订单对象后发布支付变更事件
+     */
+    private void markPaid(Booking booking, Payment payment) {
+        bookingMapper.updatePaymentStatus(booking.getId(), "paid", payment.getPaymentMethod(), payment.getPaidAt());
+        booking.setPaymentStatus("paid");
+        booking.setPaymentMethod(payment.getPaymentMethod());
+        booking.setPaidAt(payment.getPaidAt());
+        eventPublisher.publishEvent(BookingChangedEvent.paymentUpdated(booking));
+    }
+
     /**
      * 查询第三方支付平台状态
      */
@@ -431,10 +473,7 @@ public class PaymentServiceImpl extends ServiceImpl<PaymentMapper, Payment> impl
                     // 更新订单支付状态
                     Booking booking = bookingMapper.selectByOrderNo(payment.getOrderNo());
                     if (booking != null) {
-                        booking.setPaymentStatus("paid");
-                        booking.setPaymentMethod(payment.getPaymentMethod());
-                        booking.setPaidAt(payment.getPaidAt());
-                        bookingMapper.updateById(booking);
+                        markPaid(booking, payment);
                     }
                 }
                 paymentMapper.updateById(payment);
@@ -8,12 +8,14 @@ import com.carwash.common.result.ResultCode;
 import com.carwash.dto.ServiceRequest;
 import com.carwash.dto.ServiceResponse;
 import com.carwash.entity.Service;
+import com.carwash.event.ServiceChangedEvent;
 import com.carwash.mapper.ServiceMapper;
 import com.carwash.service.ServiceManagementService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -33,6 +35,9 @@ public class ServiceManagementServiceImpl implements ServiceManagementService {
     @Autowired
     private ServiceMapper serviceMapper;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     @Transactional
     public Long createService(ServiceRequest request) {
@@ -47,6 +52,7 @@ public class ServiceManagementServiceImpl implements ServiceManagementService {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "创建服务项目失败");
         }
 
+        eventPublisher.publishEvent(new ServiceChangedEvent(service.getId()));
         log.info("服务项目创建成功，服务ID: {}", service.getId());
         return service.getId();
     }
@@ -69,6 +75,7 @@ public class ServiceManagementServiceImpl implements ServiceManagementService {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "更新服务项目失败");
         }
 
+        eventPublisher.publishEvent(new ServiceChangedEvent(serviceId));
         log.info("服务项目更新成功，服务ID: {}", serviceId);
     }
 
@@ -87,6 +94,7 @@ public class ServiceManagementServiceImpl implements ServiceManagementService {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "删除服务项目失败");
         }
 
+        eventPublisher.publishEvent(new ServiceChangedEvent(serviceId));
         log.info("服务项目删除成功，服务ID: {}", serviceId);
     }
 
@@ -169,6 +177,7 @@ public class ServiceManagementServiceImpl implements ServiceManagementService {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "更新服务状态失败");
         }
 
+        eventPublisher.publishEvent(new ServiceChangedEvent(serviceId));
         log.info("服务状态更新成功，服务ID: {}", serviceId);
     }
 
@@ -227,6 +236,7 @@ public class ServiceManagementServiceImpl implements ServiceManagementService {
             }
         }
 
+        eventPublisher.publishEvent(new ServiceChangedEvent(serviceId));
         log.info("服务硬删除成功，服务ID: {}, 服务名称: {}, 记录已从数据库中完全移除", serviceId, serviceName);
     }
 }
\ No newline at end of file
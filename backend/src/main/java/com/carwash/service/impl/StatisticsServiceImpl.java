@@ -1,10 +1,19 @@
 package com.carwash.service.impl;
 
+import com.carwash.dto.AnalyticsSeriesResponse;
+import com.carwash.dto.BookingTotals;
 import com.carwash.dto.StatisticsResponse;
+import com.carwash.mapper.BookingArchiveMapper;
 import com.carwash.mapper.BookingMapper;
 import com.carwash.mapper.ServiceMapper;
 import com.carwash.mapper.UserMapper;
 import com.carwash.service.StatisticsService;
+import com.carwash.service.statistics.BookingStatsCube;
+import com.carwash.service.statistics.DailyStatsRollup;
+import com.carwash.service.statistics.StatisticsCache;
+import com.carwash.service.statistics.StatisticsCounters;
+import com.carwash.service.statistics.StatisticsFanout;
+import com.carwash.utils.TimeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +21,7 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * 数据统计服务实现类
@@ -33,62 +43,138 @@ public class StatisticsServiceImpl implements StatisticsService {
     @Autowired
     private BookingMapper bookingMapper;
 
+    @Autowired
+    private BookingArchiveMapper bookingArchiveMapper;
+
+    @Autowired
+    private StatisticsCounters statisticsCounters;
+
+    @Autowired
+    private DailyStatsRollup dailyStatsRollup;
+
+    @Autowired
+    private StatisticsFanout statisticsFanout;
+
+    @Autowired
+    private StatisticsCache statisticsCache;
+
+    @Autowired
+    private BookingStatsCube bookingStatsCube;
+
     @Override
     public StatisticsResponse getOverview() {
         log.info("获取系统统计概览");
+        return statisticsCache.get(StatisticsCache.OVERVIEW, this::loadOverview);
+    }
 
-        StatisticsResponse response = new StatisticsResponse();
-        
-        // 用户统计
-        response.setTotalUsers(userMapper.countTotalUsers());
-        response.setTodayNewUsers(userMapper.countTodayNewUsers());
-        
-        // 服务统计
-        response.setTotalServices(serviceMapper.countTotalServices());
-        response.setAvailableServices(serviceMapper.countAvailableServices());
-        
-        // 订单统计
-        response.setTotalBookings(bookingMapper.countTotalBookings());
-        response.setTodayBookings(bookingMapper.countTodayBookings());
-        response.setCompletedBookings(bookingMapper.countCompletedBookings());
-        response.setPendingBookings(bookingMapper.countPendingBookings());
-        
-        // 收入统计
-        BigDecimal totalRevenue = bookingMapper.getTotalRevenue();
-        BigDecimal todayRevenue = bookingMapper.getTodayRevenue();
-        response.setTotalRevenue(totalRevenue != null ? totalRevenue : BigDecimal.ZERO);
-        response.setTodayRevenue(todayRevenue != null ? todayRevenue : BigDecimal.ZERO);
+    private StatisticsResponse loadOverview() {
+        if (statisticsCounters.isReady()) {
+            return statisticsCounters.overview();
+        }
+
+        // 计数器尚未初始化时直接统计，各项查询并行执行
+        StatisticsFanout.Batch batch = statisticsFanout.batch();
+        LocalDate today = TimeUtils.today();
+        StatisticsFanout.Pending<Integer> totalUsers = batch.submit("totalUsers", userMapper::countTotalUsers);
+        StatisticsFanout.Pending<Integer> todayNewUsers = batch.submit("todayNewUsers", userMapper::countTodayNewUsers);
+        StatisticsFanout.Pending<Integer> totalServices = batch.submit("totalServices", serviceMapper::countTotalServices);
+        StatisticsFanout.Pending<Integer> availableServices = batch.submit("availableServices",
+                serviceMapper::countAvailableServices);
+        // 累计口径包含已归档订单
+        StatisticsFanout.Pending<Integer> totalBookings = batch.submit("totalBookings",
+                () -> bookingMapper.countTotalBookings() + bookingArchiveMapper.countArchived());
+        StatisticsFanout.Pending<Integer> completedBookings = batch.submit("completedBookings",
+                () -> bookingMapper.countCompletedBookings() + bookingArchiveMapper.countArchivedCompleted());
+        StatisticsFanout.Pending<Integer> pendingBookings = batch.submit("pendingBookings",
+                bookingMapper::countPendingBookings);
+        StatisticsFanout.Pending<BigDecimal> totalRevenue = batch.submit("totalRevenue",
+                () -> orZero(bookingMapper.getTotalRevenue()).add(orZero(bookingArchiveMapper.getArchivedRevenue())));
+        StatisticsFanout.Pending<BookingTotals> todayTotals = batch.submit("todayTotals",
+                List.of("todayBookings", "todayRevenue"), () -> dailyStatsRollup.day(today));
 
+        StatisticsResponse response = new StatisticsResponse();
+        response.setTotalUsers(totalUsers.get());
+        response.setTodayNewUsers(todayNewUsers.get());
+        response.setTotalServices(totalServices.get());
+        response.setAvailableServices(availableServices.get());
+        response.setTotalBookings(totalBookings.get());
+        response.setCompletedBookings(completedBookings.get());
+        response.setPendingBookings(pendingBookings.get());
+        response.setTotalRevenue(totalRevenue.get());
+        BookingTotals todayResult = todayTotals.get();
+        if (todayResult != null) {
+            response.setTodayBookings(todayResult.getBookings().intValue());
+            response.setTodayRevenue(todayResult.getRevenue());
+        }
+        response.setStaleFields(batch.staleFields());
         return response;
     }
 
     @Override
     public StatisticsResponse getTodayStatistics() {
         log.info("获取今日统计");
+        return statisticsCache.get(StatisticsCache.TODAY, this::loadTodayStatistics);
+    }
 
-        StatisticsResponse response = new StatisticsResponse();
-        
-        response.setTodayNewUsers(userMapper.countTodayNewUsers());
-        response.setTodayBookings(bookingMapper.countTodayBookings());
-        
-        BigDecimal todayRevenue = bookingMapper.getTodayRevenue();
-        response.setTodayRevenue(todayRevenue != null ? todayRevenue : BigDecimal.ZERO);
+    private StatisticsResponse loadTodayStatistics() {
+        if (statisticsCounters.isReady()) {
+            return statisticsCounters.today();
+        }
+
+        StatisticsFanout.Batch batch = statisticsFanout.batch();
+        LocalDate today = TimeUtils.today();
+        StatisticsFanout.Pending<Integer> todayNewUsers = batch.submit("todayNewUsers", userMapper::countTodayNewUsers);
+        StatisticsFanout.Pending<BookingTotals> todayTotals = batch.submit("todayTotals",
+                List.of("todayBookings", "todayRevenue"), () -> dailyStatsRollup.day(today));
 
+        StatisticsResponse response = new StatisticsResponse();
+        response.setTodayNewUsers(todayNewUsers.get());
+        BookingTotals todayResult = todayTotals.get();
+        if (todayResult != null) {
+            response.setTodayBookings(todayResult.getBookings().intValue());
+            response.setTodayRevenue(todayResult.getRevenue());
+        }
+        response.setStaleFields(batch.staleFields());
         return response;
     }
 
     @Override
     public StatisticsResponse getMonthlyStatistics() {
         log.info("获取月度统计");
+        return statisticsCache.get(StatisticsCache.MONTHLY, this::loadMonthlyStatistics);
+    }
 
-        StatisticsResponse response = new StatisticsResponse();
-        
-        response.setTotalUsers(userMapper.countMonthlyNewUsers());
-        response.setTotalBookings(bookingMapper.countMonthlyBookings());
-        
-        BigDecimal monthlyRevenue = bookingMapper.getMonthlyRevenue();
-        response.setTotalRevenue(monthlyRevenue != null ? monthlyRevenue : BigDecimal.ZERO);
+    private StatisticsResponse loadMonthlyStatistics() {
+        if (statisticsCounters.isReady()) {
+            return statisticsCounters.monthly();
+        }
 
+        StatisticsFanout.Batch batch = statisticsFanout.batch();
+        LocalDate today = TimeUtils.today();
+        StatisticsFanout.Pending<Integer> monthlyUsers = batch.submit("monthlyNewUsers",
+                List.of("totalUsers"), userMapper::countMonthlyNewUsers);
+        // 月初至昨天读日汇总表，今天按 created_at 范围实时统计
+        StatisticsFanout.Pending<BookingTotals> monthTotals = batch.submit("monthTotals",
+                List.of("totalBookings", "totalRevenue"), () -> dailyStatsRollup.monthToDate(today));
+
+        StatisticsResponse response = new StatisticsResponse();
+        response.setTotalUsers(monthlyUsers.get());
+        BookingTotals monthResult = monthTotals.get();
+        if (monthResult != null) {
+            response.setTotalBookings(monthResult.getBookings().intValue());
+            response.setTotalRevenue(monthResult.getRevenue());
+        }
+        response.setStaleFields(batch.staleFields());
         return response;
     }
-}
\ No newline at end of file
+
+    @Override
+    public AnalyticsSeriesResponse getSeries(LocalDate startDate, LocalDate endDate, String granularity, String groupBy) {
+        log.info("获取订单趋势，范围: {} ~ {}, 粒度: {}, 分组: {}", startDate, endDate, granularity, groupBy);
+        return bookingStatsCube.series(startDate, endDate, granularity, groupBy);
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
@@ -4,12 +4,21 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.carwash.common.BusinessException;
+import com.carwash.common.constants.Constants;
 import com.carwash.common.result.ResultCode;
+import com.carwash.dto.AvailabilityCalendarResponse;
+import com.carwash.dto.TimeSlotGenerationResult;
+import com.carwash.dto.TimeSlotTemplateRequest;
 import com.carwash.entity.Booking;
 import com.carwash.entity.TimeSlot;
 import com.carwash.mapper.BookingMapper;
 import com.carwash.mapper.TimeSlotMapper;
 import com.carwash.service.TimeSlotService;
+import com.carwash.service.booking.AvailabilityCalendar;
+import com.carwash.service.booking.SlotAvailabilityIndex;
+import com.carwash.service.booking.SlotInventory;
+import com.carwash.service.booking.TimeSlotGenerator;
+import com.carwash.utils.TimeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +26,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -36,6 +49,18 @@ public class TimeSlotServiceImpl implements TimeSlotService {
     @Autowired
     private BookingMapper bookingMapper;
 
+    @Autowired
+    private SlotInventory slotInventory;
+
+    @Autowired
+    private TimeSlotGenerator timeSlotGenerator;
+
+    @Autowired
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+
+    @Autowired
+    private AvailabilityCalendar availabilityCalendar;
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Long createTimeSlot(TimeSlot timeSlot) {
@@ -46,10 +71,26 @@ public class TimeSlotServiceImpl implements TimeSlotService {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "创建时间段失败");
         }
         
+        slotAvailabilityIndex.reloadDate(timeSlot.getDate());
+        availabilityCalendar.evict(timeSlot.getDate());
         log.info("时间段创建成功，时间段ID: {}", timeSlot.getId());
         return timeSlot.getId();
     }
 
+    /**
+     * 生成器按批次各自提交事务，此处不开启外层事务
+     */
+    @Override
+    public TimeSlotGenerationResult generateTimeSlots(TimeSlotTemplateRequest template) {
+        log.info("按模板批量生成时间段，日期范围: {} ~ {}", template.getStartDate(), template.getEndDate());
+        TimeSlotGenerationResult result = timeSlotGenerator.generate(template);
+        if (result.getInserted() > 0) {
+            slotAvailabilityIndex.reload();
+            availabilityCalendar.clear();
+        }
+        return result;
+    }
+
     @Override
     public List<TimeSlot> getTimeSlotsByDate(LocalDate date) {
         QueryWrapper<TimeSlot> wrapper = new QueryWrapper<>();
@@ -57,16 +98,96 @@ public class TimeSlotServiceImpl implements TimeSlotService {
         return timeSlotMapper.selectList(wrapper);
     }
 
+    /**
+     * 可预约范围内的日期直接读取名额索引，范围外的日期查库
+     */
     @Override
     public List<TimeSlot> getAvailableTimeSlots(LocalDate date) {
+        if (date == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "日期不能为空");
+        }
+        List<TimeSlot> cached = slotAvailabilityIndex.available(date);
+        if (cached != null) {
+            return cached;
+        }
         QueryWrapper<TimeSlot> wrapper = new QueryWrapper<>();
         wrapper.eq("date", date)
                .eq("status", 1)
                .eq("deleted", 0)
-               .apply("current_bookings < max_bookings");
+               .apply("current_bookings < max_bookings")
+               .orderByAsc("start_time");
         return timeSlotMapper.selectList(wrapper);
     }
 
+    @Override
+    public List<TimeSlot> getAvailableTimeSlots(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "开始日期和结束日期不能为空");
+        }
+        if (endDate.isBefore(startDate)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "结束日期不能早于开始日期");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) > Constants.Appointment.MAX_ADVANCE_DAYS) {
+            throw new BusinessException(ResultCode.PARAM_ERROR,
+                "单次最多查询" + (Constants.Appointment.MAX_ADVANCE_DAYS + 1) + "天的时间段");
+        }
+        List<TimeSlot> result = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            result.addAll(getAvailableTimeSlots(date));
+        }
+        return result;
+    }
+
+    @Override
+    public AvailabilityCalendarResponse getAvailabilityCalendar(LocalDate startDate, LocalDate endDate) {
+        LocalDate start = startDate != null ? startDate : TimeUtils.today();
+        LocalDate end = endDate != null ? endDate : start.plusDays(Constants.Appointment.MAX_ADVANCE_DAYS);
+        return availabilityCalendar.getCalendar(start, end);
+    }
+
+    @Override
+    public TimeSlot getTimeSlotById(Long timeSlotId) {
+        TimeSlot timeSlot = timeSlotId == null ? null : timeSlotMapper.selectById(timeSlotId);
+        if (timeSlot == null) {
+            throw new BusinessException(ResultCode.NOT_FOUND, "时间段不存在");
+        }
+        return timeSlot;
+    }
+
+    @Override
+    public TimeSlot findTimeSlot(LocalDate date, String timeRange) {
+        if (date == null || timeRange == null) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "日期和时间范围不能为空");
+        }
+        String[] parts = timeRange.split("-");
+        if (parts.length != 2) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "时间范围格式应为 HH:mm-HH:mm");
+        }
+        LocalTime startTime;
+        LocalTime endTime;
+        try {
+            startTime = LocalTime.parse(parts[0].trim());
+            endTime = LocalTime.parse(parts[1].trim());
+        } catch (DateTimeParseException e) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "时间范围格式应为 HH:mm-HH:mm");
+        }
+
+        TimeSlot cached = slotAvailabilityIndex.find(date, startTime, endTime);
+        if (cached != null) {
+            return cached;
+        }
+        QueryWrapper<TimeSlot> wrapper = new QueryWrapper<>();
+        wrapper.eq("date", date)
+               .eq("start_time", startTime)
+               .eq("end_time", endTime)
+               .eq("deleted", 0);
+        TimeSlot timeSlot = timeSlotMapper.selectOne(wrapper);
+        if (timeSlot == null) {
+            throw new BusinessException(ResultCode.NOT_FOUND, "时间段不存在");
+        }
+        return timeSlot;
+    }
+
     @Override
     public IPage<TimeSlot> getAllTimeSlots(Page<TimeSlot> page) {
         QueryWrapper<TimeSlot> wrapper = new QueryWrapper<>();
@@ -89,6 +210,9 @@ public class TimeSlotServiceImpl implements TimeSlotService {
         if (result <= 0) {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "更新时间段状态失败");
         }
+        slotInventory.evict(timeSlotId);
+        slotAvailabilityIndex.reloadDate(timeSlot.getDate());
+        availabilityCalendar.evict(timeSlot.getDate());
         
         log.info("时间段状态更新成功");
     }
@@ -109,6 +233,9 @@ public class TimeSlotServiceImpl implements TimeSlotService {
         if (result <= 0) {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "删除时间段失败");
         }
+        slotInventory.evict(timeSlotId);
+        slotAvailabilityIndex.reloadDate(timeSlot.getDate());
+        availabilityCalendar.evict(timeSlot.getDate());
         
         log.info("时间段删除成功");
     }
@@ -177,6 +304,9 @@ public class TimeSlotServiceImpl implements TimeSlotService {
             }
         }
 
+        slotInventory.evict(timeSlotId);
+        slotAvailabilityIndex.reloadDate(timeSlot.getDate());
+        availabilityCalendar.evict(timeSlot.getDate());
         log.info("时间段硬删除成功，时间段ID: {}, 记录已从数据库中完全移除", timeSlotId);
     }
 }
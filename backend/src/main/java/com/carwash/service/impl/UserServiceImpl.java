@@ -10,6 +10,7 @@ import com.carwash.dto.UserInfoResponse;
 import com.carwash.entity.Booking;
 import com.carwash.entity.Feedback;
 import com.carwash.entity.User;
+import com.carwash.event.UserChangedEvent;
 import com.carwash.mapper.BookingMapper;
 import com.carwash.mapper.FeedbackMapper;
 import com.carwash.mapper.UserMapper;
@@ -20,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -64,6 +66,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private SmsService smsService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     @Transactional
     public void register(RegisterRequest request) {
@@ -110,6 +115,7 @@ public class UserServiceImpl implements UserService {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "用户注册失败");
         }
 
+        eventPublisher.publishEvent(UserChangedEvent.registered(user));
         log.info("用户注册成功，用户ID: {}", user.getId());
     }
 
@@ -291,6 +297,7 @@ public class UserServiceImpl implements UserService {
             throw new BusinessException(ResultCode.SYSTEM_ERROR, "删除用户失败");
         }
 
+        eventPublisher.publishEvent(UserChangedEvent.removed(user));
         log.info("用户删除成功，用户ID: {}", userId);
     }
 
@@ -369,6 +376,7 @@ public class UserServiceImpl implements UserService {
             }
         }
 
+        eventPublisher.publishEvent(UserChangedEvent.removed(user));
         log.info("用户硬删除成功，用户ID: {}, 用户名: {}, 记录已从数据库中完全移除", userId, username);
     }
 
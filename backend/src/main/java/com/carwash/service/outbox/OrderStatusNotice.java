@@ -0,0 +1,34 @@
+package com.carwash.service.outbox;
+
+import lombok.Data;
+
+/**
+ * 订单状态变更通知内容（发件箱事件 payload）
+ */
+@Data
+public class OrderStatusNotice {
+
+    private Long userId;
+
+    private Long bookingId;
+
+    private String orderNo;
+
+    private String oldStatus;
+
+    private String newStatus;
+
+    private String reason;
+
+    public OrderStatusNotice() {
+    }
+
+    public OrderStatusNotice(Long userId, Long bookingId, String orderNo, String oldStatus, String newStatus, String reason) {
+        this.userId = userId;
+        this.bookingId = bookingId;
+        this.orderNo = orderNo;
+        this.oldStatus = oldStatus;
+        this.newStatus = newStatus;
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,33 @@
+package com.carwash.service.outbox;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.entity.OutboxEvent;
+import com.carwash.service.WebSocketService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单状态 WebSocket 推送
+ */
+@Component
+public class OrderStatusPushHandler implements OutboxHandler {
+
+    private final WebSocketService webSocketService;
+
+    @Autowired
+    public OrderStatusPushHandler(WebSocketService webSocketService) {
+        this.webSocketService = webSocketService;
+    }
+
+    @Override
+    public String eventType() {
+        return Constants.Outbox.TYPE_ORDER_STATUS_PUSH;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        OrderStatusNotice notice = OutboxPublisher.PAYLOAD_MAPPER.readValue(event.getPayload(), OrderStatusNotice.class);
+        webSocketService.pushOrderStatusUpdate(notice.getUserId(), notice.getBookingId(), notice.getOrderNo(),
+                notice.getOldStatus(), notice.getNewStatus(), notice.getReason());
+    }
+}
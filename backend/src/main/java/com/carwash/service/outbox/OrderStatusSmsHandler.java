@@ -0,0 +1,53 @@
+package com.carwash.service.outbox;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.entity.OutboxEvent;
+import com.carwash.entity.User;
+import com.carwash.mapper.UserMapper;
+import com.carwash.service.SmsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单状态短信通知
+ * 短信平台返回失败时抛出异常，交由发件箱重试
+ */
+@Component
+public class OrderStatusSmsHandler implements OutboxHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStatusSmsHandler.class);
+
+    private final UserMapper userMapper;
+    private final SmsService smsService;
+
+    @Autowired
+    public OrderStatusSmsHandler(UserMapper userMapper, SmsService smsService) {
+        this.userMapper = userMapper;
+        this.smsService = smsService;
+    }
+
+    @Override
+    public String eventType() {
+        return Constants.Outbox.TYPE_ORDER_STATUS_SMS;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) throws Exception {
+        OrderStatusNotice notice = OutboxPublisher.PAYLOAD_MAPPER.readValue(event.getPayload(), OrderStatusNotice.class);
+        User user = userMapper.selectById(notice.getUserId());
+        if (user == null || user.getPhone() == null || user.getPhone().trim().isEmpty()) {
+            log.warn("用户手机号为空，跳过短信通知，用户ID: {}", notice.getUserId());
+            return;
+        }
+        String customerName = user.getRealName() != null ? user.getRealName() : user.getUsername();
+        boolean sent = smsService.sendOrderStatusNotification(user.getPhone(), notice.getOrderNo(),
+                notice.getOldStatus(), notice.getNewStatus(), customerName);
+        if (!sent) {
+            throw new IllegalStateException("短信平台发送失败，订单号: " + notice.getOrderNo());
+        }
+        log.info("短信通知发送成功，用户ID: {}, 订单号: {}, 状态变更: {} -> {}",
+                notice.getUserId(), notice.getOrderNo(), notice.getOldStatus(), notice.getNewStatus());
+    }
+}
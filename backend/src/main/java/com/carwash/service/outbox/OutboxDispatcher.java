@@ -0,0 +1,155 @@
+package com.carwash.service.outbox;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.entity.OutboxEvent;
+import com.carwash.mapper.OutboxEventMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 发件箱投递器
+ * - 事务提交后由 OutboxPublisher 触发即时投递，运行在独立线程池，不占用请求线程和数据库事务
+ * - 定时轮询到期事件，负责失败重试（指数退避）以及进程重启后的补投
+ * - 通过条件更新领取事件，多线程或多实例下同一事件只会被投递一次
+ */
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    /** 每轮轮询最多处理的事件数 */
+    private static final int POLL_BATCH_SIZE = 100;
+
+    /** 首次重试间隔，之后按 2 倍递增 */
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(5);
+
+    /** 最大重试间隔 */
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(30);
+
+    /** 领取后超过该时长仍未完成视为投递线程已退出 */
+    private static final Duration STALE_LOCK = Duration.ofMinutes(5);
+
+    private final OutboxEventMapper outboxEventMapper;
+    private final Executor outboxExecutor;
+    private final Map<String, OutboxHandler> handlers = new HashMap<>();
+
+    @Autowired
+    public OutboxDispatcher(OutboxEventMapper outboxEventMapper, List<OutboxHandler> handlers,
+                            @Qualifier("outboxExecutor") Executor outboxExecutor) {
+        this.outboxEventMapper = outboxEventMapper;
+        this.outboxExecutor = outboxExecutor;
+        for (OutboxHandler handler : handlers) {
+            this.handlers.put(handler.eventType(), handler);
+        }
+    }
+
+    /**
+     * 提交到投递线程池；线程池已满时留给定时轮询处理
+     */
+    public void dispatchAsync(Long eventId) {
+        try {
+            outboxExecutor.execute(() -> dispatch(eventId));
+        } catch (RejectedExecutionException e) {
+            log.warn("发件箱投递线程池已满，事件将由定时轮询投递，事件ID: {}", eventId);
+        }
+    }
+
+    /**
+     * 整批事件作为一个任务提交，按顺序逐个投递
+     */
+    public void dispatchAsync(List<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        try {
+            outboxExecutor.execute(() -> eventIds.forEach(this::dispatch));
+        } catch (RejectedExecutionException e) {
+            log.warn("发件箱投递线程池已满，{} 个事件将由定时轮询投递", eventIds.size());
+        }
+    }
+
+    /**
+     * 定时投递到期事件
+     */
+    @Scheduled(fixedDelayString = "${booking.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        LocalDateTime now = TimeUtils.now();
+        try {
+            int recovered = outboxEventMapper.recoverStale(now.minus(STALE_LOCK));
+            if (recovered > 0) {
+                log.warn("回收超时未完成的发件箱事件 {} 条", recovered);
+            }
+            for (Long eventId : outboxEventMapper.selectDueIds(now, POLL_BATCH_SIZE)) {
+                dispatch(eventId);
+            }
+        } catch (Exception e) {
+            log.error("发件箱轮询失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 投递单个事件
+     * @return 本线程领取并投递成功返回 true
+     */
+    public boolean dispatch(Long eventId) {
+        if (outboxEventMapper.claim(eventId, TimeUtils.now()) <= 0) {
+            return false;
+        }
+        OutboxEvent event = outboxEventMapper.selectById(eventId);
+        if (event == null) {
+            return false;
+        }
+        try {
+            OutboxHandler handler = handlers.get(event.getEventType());
+            if (handler == null) {
+                throw new IllegalStateException("未注册的发件箱事件类型: " + event.getEventType());
+            }
+            handler.handle(event);
+            outboxEventMapper.markSent(eventId, TimeUtils.now());
+            return true;
+        } catch (Exception e) {
+            int attempts = (event.getAttempts() != null ? event.getAttempts() : 0) + 1;
+            boolean giveUp = attempts >= Constants.Outbox.MAX_ATTEMPTS;
+            String status = giveUp ? Constants.Outbox.STATUS_FAILED : Constants.Outbox.STATUS_PENDING;
+            outboxEventMapper.markAttemptFailed(eventId, status, TimeUtils.now().plus(backoff(attempts)),
+                    truncate(e.getMessage()));
+            if (giveUp) {
+                log.error("发件箱事件投递失败且已达最大次数，事件ID: {}, 类型: {}, 错误: {}",
+                        eventId, event.getEventType(), e.getMessage());
+            } else {
+                log.warn("发件箱事件投递失败，第 {} 次，稍后重试，事件ID: {}, 类型: {}, 错误: {}",
+                        attempts, eventId, event.getEventType(), e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 第 n 次失败后的重试间隔：5s、10s、20s ... 最长 30 分钟
+     */
+    static Duration backoff(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 20);
+        Duration delay = BASE_BACKOFF.multipliedBy(1L << shift);
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+}
@@ -0,0 +1,20 @@
+package com.carwash.service.outbox;
+
+import com.carwash.entity.OutboxEvent;
+
+/**
+ * 发件箱事件处理器
+ * 抛出异常表示本次投递失败，由 OutboxDispatcher 按退避策略重试
+ */
+public interface OutboxHandler {
+
+    /**
+     * 处理的事件类型
+     */
+    String eventType();
+
+    /**
+     * 投递事件
+     */
+    void handle(OutboxEvent event) throws Exception;
+}
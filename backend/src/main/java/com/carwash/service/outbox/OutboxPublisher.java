@@ -0,0 +1,129 @@
+package com.carwash.service.outbox;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.entity.Booking;
+import com.carwash.entity.OutboxEvent;
+import com.carwash.mapper.OutboxEventMapper;
+import com.carwash.utils.TimeUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 事务发件箱写入器
+ * - 在调用方事务内插入事件行，事件与业务数据一起提交或回滚
+ * - 事务提交后立即交给 OutboxDispatcher 异步投递；投递失败或进程退出时由定时轮询兜底
+ */
+@Component
+public class OutboxPublisher {
+
+    static final ObjectMapper PAYLOAD_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final OutboxEventMapper outboxEventMapper;
+    private final OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    public OutboxPublisher(OutboxEventMapper outboxEventMapper, OutboxDispatcher outboxDispatcher) {
+        this.outboxEventMapper = outboxEventMapper;
+        this.outboxDispatcher = outboxDispatcher;
+    }
+
+    /**
+     * 发布订单状态变更通知
+     * @param sms 是否同时发送短信
+     */
+    public void publishOrderStatus(Booking booking, String oldStatus, String newStatus, String reason, boolean sms) {
+        OrderStatusNotice notice = new OrderStatusNotice(booking.getUserId(), booking.getId(), booking.getOrderNo(),
+                oldStatus, newStatus, reason);
+        publish(Constants.Outbox.TYPE_ORDER_STATUS_PUSH, booking.getId(), notice);
+        if (sms) {
+            publish(Constants.Outbox.TYPE_ORDER_STATUS_SMS, booking.getId(), notice);
+        }
+    }
+
+    /**
+     * 批量发布订单状态变更通知：一次多行插入，提交后作为一个任务投递
+     * 每个订单、每个渠道仍是独立事件，失败时各自重试
+     */
+    public void publishOrderStatusBatch(List<OrderStatusNotice> notices, boolean sms) {
+        if (notices == null || notices.isEmpty()) {
+            return;
+        }
+        List<OutboxEvent> events = new ArrayList<>(notices.size() * (sms ? 2 : 1));
+        for (OrderStatusNotice notice : notices) {
+            events.add(newEvent(Constants.Outbox.TYPE_ORDER_STATUS_PUSH, notice.getBookingId(), notice));
+            if (sms) {
+                events.add(newEvent(Constants.Outbox.TYPE_ORDER_STATUS_SMS, notice.getBookingId(), notice));
+            }
+        }
+        outboxEventMapper.insertBatch(events);
+
+        List<Long> eventIds = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            if (event.getId() != null) {
+                eventIds.add(event.getId());
+            }
+        }
+        afterCommit(() -> outboxDispatcher.dispatchAsync(eventIds));
+    }
+
+    /**
+     * 写入一条发件箱事件
+     */
+    public void publish(String eventType, Long aggregateId, Object payload) {
+        OutboxEvent event = newEvent(eventType, aggregateId, payload);
+        outboxEventMapper.insert(event);
+
+        Long eventId = event.getId();
+        afterCommit(() -> outboxDispatcher.dispatchAsync(eventId));
+    }
+
+    private OutboxEvent newEvent(String eventType, Long aggregateId, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(eventType);
+        event.setAggregateId(aggregateId);
+        event.setPayload(toJson(payload));
+        event.setStatus(Constants.Outbox.STATUS_PENDING);
+        event.setAttempts(0);
+        // next_attempt_at 为 DATETIME（精度到秒），MySQL 会把毫秒四舍五入到下一秒，
+        // 导致提交后立即投递时领取条件 next_attempt_at <= now 不成立，只能等定时轮询；这里先截断到秒
+        LocalDateTime now = TimeUtils.now().truncatedTo(ChronoUnit.SECONDS);
+        event.setNextAttemptAt(now);
+        event.setCreatedAt(now);
+        return event;
+    }
+
+    /**
+     * 事务提交后执行；无事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static String toJson(Object payload) {
+        try {
+            return PAYLOAD_MAPPER.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("发件箱事件序列化失败", e);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.carwash.service.statistics;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.AnalyticsSeriesResponse;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingCubeMapper;
+import com.carwash.mapper.StatsRollupProgressMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单分析立方体
+ * - 按订单创建时间预聚合到小时表和天表，维度为服务、订单状态、支付状态、支付方式，含已归档订单
+ * - 订单或支付变更事务提交后标记待汇总，定时任务按 updated_at 水位线找出有变更的日期，整天重新汇总
+ *   （小时表先删后插，再由小时表生成天表，每天一个短事务，水位线推进见 WatermarkRollup）；
+ *   长时间无事件时也会执行一次，覆盖其他节点和直接改库的变更
+ * - 趋势查询只读立方体：小时粒度读小时表，天、周、月粒度读天表；时间桶数超过上限时自动降为更粗的粒度
+ */
+@Component
+public class BookingStatsCube {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingStatsCube.class);
+
+    /** 由细到粗的粒度 */
+    static final List<String> GRANULARITIES = List.of("hour", "day", "week", "month");
+
+    /** 自动选择粒度：取时间桶数不超过上限的最细粒度 */
+    static final String AUTO = "auto";
+
+    static final List<String> GROUP_BYS = List.of("none", "service", "category", "paymentMethod", "status");
+
+    private final BookingCubeMapper bookingCubeMapper;
+    private final WatermarkRollup rollup;
+    private final long maxIdleMillis;
+    private final int maxPoints;
+    private final int maxRangeDays;
+
+    /** 有订单或支付变更尚未汇总；启动后先执行一次 */
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private volatile long lastRunMillis;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryMicros = new AtomicLong();
+
+    @Autowired
+    public BookingStatsCube(BookingCubeMapper bookingCubeMapper,
+                            StatsRollupProgressMapper progressMapper,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${statistics.cube.overlap-seconds:120}") long overlapSeconds,
+                            @Value("${statistics.cube.max-idle-ms:300000}") long maxIdleMillis,
+                            @Value("${statistics.cube.max-points:400}") int maxPoints,
+                            @Value("${statistics.cube.max-range-days:1830}") int maxRangeDays) {
+        this.bookingCubeMapper = bookingCubeMapper;
+        this.maxIdleMillis = maxIdleMillis;
+        this.maxPoints = maxPoints;
+        this.maxRangeDays = maxRangeDays;
+        this.rollup = new WatermarkRollup(BookingCubeMapper.JOB, progressMapper, transactionManager, overlapSeconds,
+                this::rollDay);
+    }
+
+    /**
+     * 订单状态、支付状态变化或删除后标记待汇总
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        dirty.set(true);
+    }
+
+    /**
+     * 有待汇总的变更或距上次汇总超过 maxIdle 时增量汇总
+     */
+    @Scheduled(fixedDelayString = "${statistics.cube.interval-ms:15000}")
+    public void tick() {
+        boolean idle = System.currentTimeMillis() - lastRunMillis >= maxIdleMillis;
+        if (!dirty.getAndSet(false) && !idle) {
+            return;
+        }
+        try {
+            catchUp();
+        } catch (Exception e) {
+            dirty.set(true);
+            log.warn("订单分析立方体汇总失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 汇总水位线之后有变更的日期（首次执行时汇总全部日期）
+     * @return 重新汇总的天数
+     */
+    public int catchUp() {
+        int days = rollup.catchUp();
+        lastRunMillis = System.currentTimeMillis();
+        return days;
+    }
+
+    /**
+     * 重新汇总某天：小时表先删后插，再由小时表生成天表（在 WatermarkRollup 的单日事务中执行）
+     */
+    private void rollDay(LocalDate day) {
+        LocalDateTime start = day.atStartOfDay();
+        LocalDateTime end = day.plusDays(1).atStartOfDay();
+        bookingCubeMapper.deleteHourly(start, end);
+        bookingCubeMapper.insertHourly(start, end);
+        bookingCubeMapper.deleteDaily(day);
+        bookingCubeMapper.insertDaily(day, start, end);
+    }
+
+    /**
+     * 查询 [startDate, endDate] 的订单趋势
+     * @param granularity hour / day / week / month，为空或 auto 时自动选择
+     * @param groupBy none / service / category / paymentMethod / status，为空时不分组
+     */
+    public AnalyticsSeriesResponse series(LocalDate startDate, LocalDate endDate, String granularity, String groupBy) {
+        LocalDate end = endDate != null ? endDate : TimeUtils.today();
+        LocalDate start = startDate != null ? startDate : end.minusDays(29);
+        if (start.isAfter(end)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "开始日期不能晚于结束日期");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= maxRangeDays) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "查询范围不能超过 " + maxRangeDays + " 天");
+        }
+        String requested = granularity == null || granularity.isBlank() ? AUTO : granularity;
+        if (!AUTO.equals(requested) && !GRANULARITIES.contains(requested)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "粒度只能是 " + GRANULARITIES + " 或 auto");
+        }
+        String dimension = groupBy == null || groupBy.isBlank() ? "none" : groupBy;
+        if (!GROUP_BYS.contains(dimension)) {
+            throw new BusinessException(ResultCode.PARAM_ERROR, "分组维度只能是 " + GROUP_BYS);
+        }
+        String effective = downsample(start, end, AUTO.equals(requested) ? GRANULARITIES.get(0) : requested);
+
+        long begin = System.nanoTime();
+        List<Map<String, Object>> rows = "hour".equals(effective)
+                ? bookingCubeMapper.selectHourly(start.atStartOfDay(), end.plusDays(1).atStartOfDay(), dimension)
+                : bookingCubeMapper.selectDaily(start, end.plusDays(1), effective, dimension);
+        AnalyticsSeriesResponse response = assemble(start, end, effective, rows);
+        response.setRequestedGranularity(requested);
+        response.setGroupBy(dimension);
+        response.setDataAsOf(rollup.watermark());
+        queries.incrementAndGet();
+        queryMicros.addAndGet((System.nanoTime() - begin) / 1000);
+        return response;
+    }
+
+    /**
+     * 从 granularity 开始逐级变粗，直到时间桶数不超过上限（月粒度不再降）
+     */
+    String downsample(LocalDate start, LocalDate end, String granularity) {
+        int level = GRANULARITIES.indexOf(granularity);
+        while (level < GRANULARITIES.size() - 1 && bucketCount(start, end, GRANULARITIES.get(level)) > maxPoints) {
+            level++;
+        }
+        return GRANULARITIES.get(level);
+    }
+
+    static long bucketCount(LocalDate start, LocalDate end, String granularity) {
+        LocalDateTime first = bucketStart(start, granularity);
+        LocalDateTime last = bucketStart(end, granularity);
+        return switch (granularity) {
+            case "hour" -> (ChronoUnit.DAYS.between(start, end) + 1) * 24;
+            case "week" -> ChronoUnit.WEEKS.between(first, last) + 1;
+            case "month" -> ChronoUnit.MONTHS.between(first, last) + 1;
+            default -> ChronoUnit.DAYS.between(first, last) + 1;
+        };
+    }
+
+    /**
+     * 按时间桶补零并拆分为各分组的序列；周、月粒度首尾时间桶只包含范围内的天
+     */
+    static AnalyticsSeriesResponse assemble(LocalDate start, LocalDate end, String granularity,
+                                            List<Map<String, Object>> rows) {
+        List<String> buckets = new ArrayList<>();
+        Map<LocalDateTime, Integer> index = new HashMap<>();
+        LocalDateTime limit = end.plusDays(1).atStartOfDay();
+        for (LocalDateTime t = bucketStart(start, granularity); t.isBefore(limit); t = next(t, granularity)) {
+            index.put(t, buckets.size());
+            buckets.add("hour".equals(granularity) ? t.toString() : t.toLocalDate().toString());
+        }
+
+        Map<String, SeriesBuilder> builders = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            Object rawBucket = row.get("bucket");
+            LocalDateTime bucket = "hour".equals(granularity)
+                    ? TimeUtils.toLocalDateTime(rawBucket)
+                    : TimeUtils.toLocalDate(rawBucket).atStartOfDay();
+            Integer i = index.get(bucket);
+            if (i == null) {
+                continue;
+            }
+            String dim = row.get("dim") == null || row.get("dim").toString().isEmpty() ? "none" : row.get("dim").toString();
+            Object label = row.get("label");
+            builders.computeIfAbsent(dim, key -> new SeriesBuilder(key, label == null ? null : label.toString(), buckets.size()))
+                    .add(i, row);
+        }
+
+        List<SeriesBuilder> ordered = new ArrayList<>(builders.values());
+        ordered.sort(Comparator.comparingLong((SeriesBuilder builder) -> builder.total).reversed());
+        List<AnalyticsSeriesResponse.Series> series = new ArrayList<>(ordered.size());
+        for (SeriesBuilder builder : ordered) {
+            series.add(builder.build());
+        }
+
+        AnalyticsSeriesResponse response = new AnalyticsSeriesResponse();
+        response.setStartDate(start);
+        response.setEndDate(end);
+        response.setGranularity(granularity);
+        response.setBuckets(buckets);
+        response.setSeries(series);
+        return response;
+    }
+
+    private static LocalDateTime bucketStart(LocalDate day, String granularity) {
+        return switch (granularity) {
+            case "week" -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+            case "month" -> day.withDayOfMonth(1).atStartOfDay();
+            default -> day.atStartOfDay();
+        };
+    }
+
+    private static LocalDateTime next(LocalDateTime bucket, String granularity) {
+        return switch (granularity) {
+            case "hour" -> bucket.plusHours(1);
+            case "week" -> bucket.plusWeeks(1);
+            case "month" -> bucket.plusMonths(1);
+            default -> bucket.plusDays(1);
+        };
+    }
+
+    /**
+     * 立方体汇总与查询指标
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", rollup.runs());
+        stats.put("daysRolled", rollup.daysRolled());
+        stats.put("failures", rollup.failures());
+        stats.put("pending", dirty.get());
+        stats.put("queries", queries.get());
+        stats.put("avgQueryMillis", queries.get() == 0 ? 0.0 : queryMicros.get() / 1000.0 / queries.get());
+        stats.put("maxPoints", maxPoints);
+        return stats;
+    }
+
+    private static final class SeriesBuilder {
+
+        private final String key;
+        private final String label;
+        private final long[] bookings;
+        private final long[] completed;
+        private final long[] cancelled;
+        private final BigDecimal[] revenue;
+        private final BigDecimal[] paidAmount;
+        private long total;
+
+        private SeriesBuilder(String key, String label, int size) {
+            this.key = key;
+            this.label = label;
+            this.bookings = new long[size];
+            this.completed = new long[size];
+            this.cancelled = new long[size];
+            this.revenue = new BigDecimal[size];
+            this.paidAmount = new BigDecimal[size];
+            Arrays.fill(revenue, BigDecimal.ZERO);
+            Arrays.fill(paidAmount, BigDecimal.ZERO);
+        }
+
+        private void add(int i, Map<String, Object> row) {
+            long count = longOf(row.get("bookings"));
+            bookings[i] += count;
+            completed[i] += longOf(row.get("completed"));
+            cancelled[i] += longOf(row.get("cancelled"));
+            revenue[i] = revenue[i].add(decimalOf(row.get("revenue")));
+            paidAmount[i] = paidAmount[i].add(decimalOf(row.get("paid_amount")));
+            total += count;
+        }
+
+        private AnalyticsSeriesResponse.Series build() {
+            AnalyticsSeriesResponse.Series series = new AnalyticsSeriesResponse.Series();
+            series.setKey(key);
+            series.setLabel(label);
+            series.setBookings(Arrays.stream(bookings).boxed().toList());
+            series.setCompleted(Arrays.stream(completed).boxed().toList());
+            series.setCancelled(Arrays.stream(cancelled).boxed().toList());
+            series.setRevenue(Arrays.asList(revenue));
+            series.setPaidAmount(Arrays.asList(paidAmount));
+            return series;
+        }
+
+        private static long longOf(Object value) {
+            return value instanceof Number number ? number.longValue() : 0L;
+        }
+
+        private static BigDecimal decimalOf(Object value) {
+            if (value instanceof BigDecimal decimal) {
+                return decimal;
+            }
+            return value instanceof Number number ? new BigDecimal(number.toString()) : BigDecimal.ZERO;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.carwash.service.statistics;
+
+import com.carwash.dto.BookingTotals;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.DailyStatsMapper;
+import com.carwash.mapper.StatsRollupProgressMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 订单按日汇总（daily_stats）
+ * - 按订单创建日期 × 状态 × 服务汇总订单数和金额，热表与归档表合并计算，归档不改变汇总结果
+ * - 增量任务按 updated_at 水位线找出有变更订单所属的日期，整天重新汇总（先删后插，每天一个短事务），
+ *   水位线推进与逐天事务见 WatermarkRollup
+ * - 每晚重新汇总最近若干天，修正未更新 updated_at 的物理删除造成的偏差
+ * - 当月数据 = 月初至昨天的汇总行 + 今天创建订单的索引范围查询，不再扫描整月订单
+ */
+@Component
+public class DailyStatsRollup {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyStatsRollup.class);
+
+    private final DailyStatsMapper dailyStatsMapper;
+    private final BookingMapper bookingMapper;
+    private final WatermarkRollup rollup;
+    private final int verifyDays;
+
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+
+    @Autowired
+    public DailyStatsRollup(DailyStatsMapper dailyStatsMapper,
+                            BookingMapper bookingMapper,
+                            StatsRollupProgressMapper progressMapper,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${statistics.rollup.overlap-seconds:120}") long overlapSeconds,
+                            @Value("${statistics.rollup.verify-days:35}") int verifyDays) {
+        this.dailyStatsMapper = dailyStatsMapper;
+        this.bookingMapper = bookingMapper;
+        this.verifyDays = verifyDays;
+        this.rollup = new WatermarkRollup(DailyStatsMapper.JOB, progressMapper, transactionManager, overlapSeconds,
+                this::rollDay);
+    }
+
+    /**
+     * 定时增量汇总
+     */
+    @Scheduled(fixedDelayString = "${statistics.rollup.interval-ms:300000}")
+    public void scheduledCatchUp() {
+        try {
+            catchUp();
+        } catch (Exception e) {
+            log.warn("订单日汇总失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每晚重新汇总最近 verifyDays 天
+     */
+    @Scheduled(cron = "${statistics.rollup.verify-cron:0 15 4 * * *}")
+    public void scheduledVerify() {
+        try {
+            LocalDate today = TimeUtils.today();
+            TreeSet<LocalDate> days = new TreeSet<>();
+            for (LocalDate day = today.minusDays(verifyDays); !day.isAfter(today); day = day.plusDays(1)) {
+                days.add(day);
+            }
+            rollup.rollDays(days);
+            log.info("订单日汇总校验完成，重新汇总 {} 天", days.size());
+        } catch (Exception e) {
+            log.warn("订单日汇总校验失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 汇总水位线之后有变更的日期（首次执行时汇总全部日期）
+     * @return 重新汇总的天数
+     */
+    public int catchUp() {
+        long start = System.currentTimeMillis();
+        int days = rollup.catchUp();
+        lastRunAt = TimeUtils.now();
+        lastRunMillis = System.currentTimeMillis() - start;
+        if (days > 0) {
+            log.debug("订单日汇总完成，重新汇总 {} 天", days);
+        }
+        return days;
+    }
+
+    /**
+     * 重新汇总某天（在 WatermarkRollup 的单日事务中执行）
+     */
+    private void rollDay(LocalDate day) {
+        dailyStatsMapper.deleteDay(day);
+        dailyStatsMapper.insertDay(day, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+    }
+
+    /**
+     * 某天创建的订单数及已完成订单金额（按 created_at 范围实时查询热表）
+     */
+    public BookingTotals day(LocalDate day) {
+        return orEmpty(bookingMapper.sumCreatedBetween(day.atStartOfDay(), day.plusDays(1).atStartOfDay()));
+    }
+
+    /**
+     * 当月（月初至 today）创建的订单数及已完成订单金额
+     * 先增量汇总，再以月初至昨天的汇总行加今天的实时数据；汇总失败时回退为整月范围查询
+     */
+    public BookingTotals monthToDate(LocalDate today) {
+        LocalDate monthStart = today.withDayOfMonth(1);
+        try {
+            catchUp();
+            BookingTotals rolled = orEmpty(dailyStatsMapper.sumRange(monthStart, today));
+            return BookingTotals.sum(rolled, day(today));
+        } catch (Exception e) {
+            log.warn("读取订单日汇总失败，回退为范围查询: {}", e.getMessage());
+            return orEmpty(bookingMapper.sumCreatedBetween(monthStart.atStartOfDay(), today.plusDays(1).atStartOfDay()));
+        }
+    }
+
+    /**
+     * 汇总任务运行指标
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", rollup.runs());
+        stats.put("daysRolled", rollup.daysRolled());
+        stats.put("failures", rollup.failures());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("overlapSeconds", rollup.overlapSeconds());
+        return stats;
+    }
+
+    private static BookingTotals orEmpty(BookingTotals totals) {
+        return totals != null ? totals : BookingTotals.sum(null, null);
+    }
+}
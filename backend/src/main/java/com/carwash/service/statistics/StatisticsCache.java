@@ -0,0 +1,83 @@
+package com.carwash.service.statistics;
+
+import com.carwash.common.cache.SingleFlightCache;
+import com.carwash.dto.StatisticsResponse;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.event.ServiceChangedEvent;
+import com.carwash.event.UserChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 统计接口结果缓存
+ * - 概览、今日、月度三项统计各缓存一份，同一时刻最多计算一次，打开多少个仪表盘数据库负载都不变
+ * - 过期后先返回旧值并在后台刷新
+ * - 订单状态变化、用户注册/删除、服务变更后标记过期，下次读取触发刷新
+ */
+@Component
+public class StatisticsCache {
+
+    public static final String OVERVIEW = "overview";
+    public static final String TODAY = "today";
+    public static final String MONTHLY = "monthly";
+
+    private final SingleFlightCache<String, StatisticsResponse> cache;
+
+    @Autowired
+    public StatisticsCache(@Qualifier("statisticsRefreshExecutor") Executor refreshExecutor,
+                           @Value("${statistics.cache.ttl-ms:5000}") long ttlMillis,
+                           @Value("${statistics.cache.max-stale-ms:60000}") long maxStaleMillis) {
+        this.cache = new SingleFlightCache<>(ttlMillis, maxStaleMillis, refreshExecutor);
+    }
+
+    /**
+     * 读取统计结果，未命中时由 loader 计算
+     * 有字段未能按时统计的部分结果只作为旧值使用，下次读取即重新计算
+     */
+    public StatisticsResponse get(String key, Supplier<StatisticsResponse> loader) {
+        StatisticsResponse response = cache.get(key, loader);
+        if (response != null && response.getStaleFields() != null) {
+            cache.invalidate(key);
+        }
+        return response;
+    }
+
+    /**
+     * 标记全部统计结果过期
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.isTransition()) {
+            cache.invalidateAll();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        cache.invalidateAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onServiceChanged(ServiceChangedEvent event) {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,560 @@
+package com.carwash.service.statistics;
+
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.dto.BookingTotals;
+import com.carwash.dto.StatisticsResponse;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.event.ServiceChangedEvent;
+import com.carwash.event.UserChangedEvent;
+import com.carwash.mapper.BookingArchiveMapper;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.mapper.UserMapper;
+import com.carwash.utils.TimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 统计计数器：仪表盘概览不再每次执行十余条 COUNT/SUM，而是读取增量维护的计数
+ * - 订单、用户、服务的变更事务提交后按变化前后的统计口径计算增量，同时累加到本节点内存和 Redis（多节点共享）
+ * - 各节点每秒从 Redis 刷新内存快照，读取概览只访问内存
+ * - 定时以 SQL 结果校正：只有计数在查询期间未被修改才覆盖，避免吞掉并发增量，未覆盖的留给下次校正
+ * - Redis 不可用时短暂熔断，仅维护内存计数，恢复后先校正再使用 Redis 中的数据
+ * - 当日、当月计数按订单/用户的创建时间归属，与原 SQL 口径一致
+ */
+@Component
+public class StatisticsCounters {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticsCounters.class);
+
+    static final String KEY_PREFIX = "stats:counter:";
+
+    static final String USERS = "users";
+    static final String SERVICES = "services";
+    static final String SERVICES_AVAILABLE = "servicesAvailable";
+    static final String BOOKINGS = "bookings";
+    static final String BOOKINGS_COMPLETED = "bookingsCompleted";
+    static final String BOOKINGS_PENDING = "bookingsPending";
+    static final String REVENUE_CENTS = "revenueCents";
+
+    /** 累计计数 */
+    private static final List<String> TOTALS = List.of(USERS, SERVICES, SERVICES_AVAILABLE,
+            BOOKINGS, BOOKINGS_COMPLETED, BOOKINGS_PENDING, REVENUE_CENTS);
+
+    /** 按日、按月计数，键为 名称:日期 / 名称:年月 */
+    private static final List<String> PERIODIC = List.of(USERS, BOOKINGS, REVENUE_CENTS);
+
+    private static final long DAY_TTL_SECONDS = 3 * 24 * 3600L;
+    private static final long MONTH_TTL_SECONDS = 62 * 24 * 3600L;
+
+    /** Redis 故障后的熔断时长 */
+    private static final long CIRCUIT_OPEN_MILLIS = 30_000L;
+
+    /** 累加：累计计数仅在已初始化时累加（缺失时由校正补齐），按日/月计数不存在时从零开始并设置过期时间 */
+    private static final RedisScript<Long> INCR_SCRIPT = new DefaultRedisScript<>(
+            "for i, key in ipairs(KEYS) do " +
+            "local ttl = tonumber(ARGV[2 * i]) " +
+            "if ttl > 0 or redis.call('EXISTS', key) == 1 then " +
+            "redis.call('INCRBY', key, ARGV[2 * i - 1]) " +
+            "if ttl > 0 then redis.call('EXPIRE', key, ttl) end " +
+            "end " +
+            "end " +
+            "return #KEYS", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>(
+            "return redis.call('MGET', unpack(KEYS))", List.class);
+
+    /** 校正：计数仍等于读取时的值（或仍不存在）才写入 SQL 结果，返回写入个数 */
+    private static final RedisScript<Long> CORRECT_SCRIPT = new DefaultRedisScript<>(
+            "local fixed = 0 " +
+            "for i, key in ipairs(KEYS) do " +
+            "local cur = redis.call('GET', key) " +
+            "local existed = tonumber(ARGV[4 * i - 3]) == 1 " +
+            "if (not cur and not existed) or (cur and existed and tonumber(cur) == tonumber(ARGV[4 * i - 2])) then " +
+            "redis.call('SET', key, ARGV[4 * i - 1]) " +
+            "local ttl = tonumber(ARGV[4 * i]) " +
+            "if ttl > 0 then redis.call('EXPIRE', key, ttl) end " +
+            "fixed = fixed + 1 " +
+            "end " +
+            "end " +
+            "return fixed", Long.class);
+
+    private final RedisUtils redisUtils;
+    private final UserMapper userMapper;
+    private final ServiceMapper serviceMapper;
+    private final BookingMapper bookingMapper;
+    private final BookingArchiveMapper bookingArchiveMapper;
+    private final DailyStatsRollup dailyStatsRollup;
+
+    private final Map<String, Long> values = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    private volatile long circuitOpenUntil = 0L;
+    /** Redis 故障期间有增量未写入，恢复后需先校正 */
+    private volatile boolean redisBehind;
+
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+    private final AtomicLong deltasApplied = new AtomicLong();
+    private final AtomicLong reconcileRuns = new AtomicLong();
+    private final AtomicLong totalCorrections = new AtomicLong();
+    private volatile LocalDateTime lastReconciledAt;
+    private volatile Map<String, Long> lastDrift = new LinkedHashMap<>();
+
+    @Autowired
+    public StatisticsCounters(RedisUtils redisUtils,
+                              UserMapper userMapper,
+                              ServiceMapper serviceMapper,
+                              BookingMapper bookingMapper,
+                              BookingArchiveMapper bookingArchiveMapper,
+                              DailyStatsRollup dailyStatsRollup) {
+        this.redisUtils = redisUtils;
+        this.userMapper = userMapper;
+        this.serviceMapper = serviceMapper;
+        this.bookingMapper = bookingMapper;
+        this.bookingArchiveMapper = bookingArchiveMapper;
+        this.dailyStatsRollup = dailyStatsRollup;
+    }
+
+    /**
+     * 计数是否已初始化；未初始化时调用方应回退到 SQL 统计
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 系统概览
+     */
+    public StatisticsResponse overview() {
+        LocalDate today = TimeUtils.today();
+        StatisticsResponse response = new StatisticsResponse();
+        response.setTotalUsers(intValue(USERS));
+        response.setTodayNewUsers(intValue(dayKey(USERS, today)));
+        response.setTotalServices(intValue(SERVICES));
+        response.setAvailableServices(intValue(SERVICES_AVAILABLE));
+        response.setTotalBookings(intValue(BOOKINGS));
+        response.setTodayBookings(intValue(dayKey(BOOKINGS, today)));
+        response.setCompletedBookings(intValue(BOOKINGS_COMPLETED));
+        response.setPendingBookings(intValue(BOOKINGS_PENDING));
+        response.setTotalRevenue(amount(REVENUE_CENTS));
+        response.setTodayRevenue(amount(dayKey(REVENUE_CENTS, today)));
+        return response;
+    }
+
+    /**
+     * 今日统计
+     */
+    public StatisticsResponse today() {
+        LocalDate today = TimeUtils.today();
+        StatisticsResponse response = new StatisticsResponse();
+        response.setTodayNewUsers(intValue(dayKey(USERS, today)));
+        response.setTodayBookings(intValue(dayKey(BOOKINGS, today)));
+        response.setTodayRevenue(amount(dayKey(REVENUE_CENTS, today)));
+        return response;
+    }
+
+    /**
+     * 本月统计
+     */
+    public StatisticsResponse monthly() {
+        LocalDate today = TimeUtils.today();
+        StatisticsResponse response = new StatisticsResponse();
+        response.setTotalUsers(intValue(monthKey(USERS, today)));
+        response.setTotalBookings(intValue(monthKey(BOOKINGS, today)));
+        response.setTotalRevenue(amount(monthKey(REVENUE_CENTS, today)));
+        return response;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onBookingChanged(BookingChangedEvent event) {
+        if (event.isTransition()) {
+            apply(bookingDeltas(event, TimeUtils.today()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        LocalDate today = TimeUtils.today();
+        Map<String, Long> deltas = new HashMap<>();
+        deltas.put(USERS, (long) event.getDelta());
+        for (String suffix : periodsOf(event.getCreatedAt(), today)) {
+            deltas.put(USERS + ":" + suffix, (long) event.getDelta());
+        }
+        apply(deltas);
+    }
+
+    /**
+     * 服务表很小，变更后直接重新计数
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onServiceChanged(ServiceChangedEvent event) {
+        try {
+            correct(List.of(SERVICES, SERVICES_AVAILABLE), () -> {
+                Map<String, Long> actual = new HashMap<>();
+                actual.put(SERVICES, (long) serviceMapper.countTotalServices());
+                actual.put(SERVICES_AVAILABLE, (long) serviceMapper.countAvailableServices());
+                return actual;
+            });
+        } catch (Exception e) {
+            log.warn("服务计数更新失败，等待下次校正: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 订单状态变化对各计数的增量：减去变化前的贡献，加上变化后的贡献
+     */
+    static Map<String, Long> bookingDeltas(BookingChangedEvent event, LocalDate today) {
+        Map<String, Long> deltas = new HashMap<>();
+        contribute(deltas, event.getFromStatus(), event, today, -1);
+        contribute(deltas, event.getToStatus(), event, today, 1);
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+
+    private static void contribute(Map<String, Long> deltas, String status, BookingChangedEvent event,
+                                   LocalDate today, int sign) {
+        if (status == null) {
+            return;
+        }
+        boolean completed = "completed".equals(status);
+        long cents = completed ? cents(event.getTotalPrice()) : 0L;
+        deltas.merge(BOOKINGS, (long) sign, Long::sum);
+        if ("pending".equals(status)) {
+            deltas.merge(BOOKINGS_PENDING, (long) sign, Long::sum);
+        }
+        if (completed) {
+            deltas.merge(BOOKINGS_COMPLETED, (long) sign, Long::sum);
+            deltas.merge(REVENUE_CENTS, sign * cents, Long::sum);
+        }
+        for (String suffix : periodsOf(event.getCreatedAt(), today)) {
+            deltas.merge(BOOKINGS + ":" + suffix, (long) sign, Long::sum);
+            if (completed) {
+                deltas.merge(REVENUE_CENTS + ":" + suffix, sign * cents, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * 创建时间落在今天/本月时返回对应的计数后缀；创建时间缺失视为刚创建
+     */
+    private static List<String> periodsOf(LocalDateTime createdAt, LocalDate today) {
+        LocalDate date = createdAt != null ? createdAt.toLocalDate() : today;
+        List<String> suffixes = new ArrayList<>(2);
+        if (date.equals(today)) {
+            suffixes.add(today.toString());
+        }
+        if (YearMonth.from(date).equals(YearMonth.from(today))) {
+            suffixes.add(YearMonth.from(today).toString());
+        }
+        return suffixes;
+    }
+
+    /**
+     * 累加增量到内存和 Redis
+     */
+    void apply(Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        deltasApplied.incrementAndGet();
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            if (TOTALS.contains(entry.getKey())) {
+                values.computeIfPresent(entry.getKey(), (key, value) -> value + entry.getValue());
+            } else {
+                values.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+        }
+        if (isCircuitOpen()) {
+            redisBehind = true;
+            return;
+        }
+        List<String> keys = new ArrayList<>(deltas.size());
+        Object[] args = new Object[deltas.size() * 2];
+        int i = 0;
+        for (Map.Entry<String, Long> entry : deltas.entrySet()) {
+            keys.add(KEY_PREFIX + entry.getKey());
+            args[i++] = entry.getValue();
+            args[i++] = ttlOf(entry.getKey());
+        }
+        try {
+            redisUtils.execute(INCR_SCRIPT, keys, args);
+        } catch (Exception e) {
+            redisBehind = true;
+            openCircuit(e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        refresh();
+        if (!ready) {
+            reconcileQuietly();
+        }
+    }
+
+    /**
+     * 从 Redis 刷新内存快照；Redis 中计数缺失或落后时改为校正
+     */
+    @Scheduled(fixedDelayString = "${statistics.counters.refresh-ms:1000}")
+    public void refresh() {
+        if (isCircuitOpen()) {
+            return;
+        }
+        List<String> keys = trackedKeys(TimeUtils.today());
+        Map<String, Long> current;
+        try {
+            current = readRedis(keys);
+        } catch (Exception e) {
+            openCircuit(e);
+            return;
+        }
+        if (redisBehind || TOTALS.stream().anyMatch(key -> current.get(key) == null)) {
+            reconcileQuietly();
+            return;
+        }
+        values.keySet().retainAll(keys);
+        for (String key : keys) {
+            Long value = current.get(key);
+            values.put(key, value != null ? value : 0L);
+        }
+        ready = true;
+    }
+
+    @Scheduled(cron = "${statistics.counters.reconcile-cron:0 */10 * * * *}")
+    public void reconcileScheduled() {
+        reconcileQuietly();
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.warn("统计计数校正失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 以 SQL 结果校正全部计数
+     * @return 各计数的偏差（SQL 结果 - 计数值）；已有校正在执行时返回 null
+     */
+    public Map<String, Long> reconcile() {
+        if (!reconciling.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            LocalDate today = TimeUtils.today();
+            Map<String, Long> drift = correct(trackedKeys(today), () -> querySql(today));
+            reconcileRuns.incrementAndGet();
+            lastReconciledAt = TimeUtils.now();
+            lastDrift = drift;
+            ready = true;
+            if (!drift.isEmpty()) {
+                log.warn("统计计数校正完成，偏差: {}", drift);
+            }
+            return drift;
+        } finally {
+            reconciling.set(false);
+        }
+    }
+
+    /**
+     * 读取当前计数 -> 执行 SQL -> 仅对期间未变化的计数写入 SQL 结果
+     */
+    private Map<String, Long> correct(List<String> keys, Supplier<Map<String, Long>> sql) {
+        boolean useRedis = !isCircuitOpen();
+        Map<String, Long> before = null;
+        if (useRedis) {
+            try {
+                before = readRedis(keys);
+            } catch (Exception e) {
+                openCircuit(e);
+                useRedis = false;
+            }
+        }
+        if (before == null) {
+            before = new HashMap<>();
+            for (String key : keys) {
+                before.put(key, values.get(key));
+            }
+        }
+        Map<String, Long> actual = sql.get();
+
+        Map<String, Long> drift = new TreeMap<>();
+        for (String key : keys) {
+            Long was = before.get(key);
+            long now = actual.getOrDefault(key, 0L);
+            if (was == null || was != now) {
+                drift.put(key, now - (was != null ? was : 0L));
+            }
+        }
+
+        if (useRedis) {
+            List<String> redisKeys = new ArrayList<>(keys.size());
+            Object[] args = new Object[keys.size() * 4];
+            int i = 0;
+            for (String key : keys) {
+                Long was = before.get(key);
+                redisKeys.add(KEY_PREFIX + key);
+                args[i++] = was != null ? 1 : 0;
+                args[i++] = was != null ? was : 0L;
+                args[i++] = actual.getOrDefault(key, 0L);
+                args[i++] = ttlOf(key);
+            }
+            try {
+                Long fixed = redisUtils.execute(CORRECT_SCRIPT, redisKeys, args);
+                totalCorrections.addAndGet(fixed != null ? Math.min(fixed, drift.size()) : 0);
+                redisBehind = false;
+                Map<String, Long> current = readRedis(keys);
+                for (String key : keys) {
+                    Long value = current.get(key);
+                    values.put(key, value != null ? value : actual.getOrDefault(key, 0L));
+                }
+                return drift;
+            } catch (Exception e) {
+                openCircuit(e);
+            }
+        }
+        for (String key : keys) {
+            Long was = before.get(key);
+            long now = actual.getOrDefault(key, 0L);
+            boolean written = was == null ? values.putIfAbsent(key, now) == null : values.replace(key, was, now);
+            if (written && drift.containsKey(key)) {
+                totalCorrections.incrementAndGet();
+            }
+        }
+        redisBehind = true;
+        return drift;
+    }
+
+    private Map<String, Long> querySql(LocalDate today) {
+        Map<String, Long> actual = new HashMap<>();
+        actual.put(USERS, (long) userMapper.countTotalUsers());
+        actual.put(SERVICES, (long) serviceMapper.countTotalServices());
+        actual.put(SERVICES_AVAILABLE, (long) serviceMapper.countAvailableServices());
+        // 累计口径包含已归档订单
+        actual.put(BOOKINGS, (long) bookingMapper.countTotalBookings() + bookingArchiveMapper.countArchived());
+        actual.put(BOOKINGS_COMPLETED, (long) bookingMapper.countCompletedBookings()
+                + bookingArchiveMapper.countArchivedCompleted());
+        actual.put(BOOKINGS_PENDING, (long) bookingMapper.countPendingBookings());
+        actual.put(REVENUE_CENTS, cents(bookingMapper.getTotalRevenue()) + cents(bookingArchiveMapper.getArchivedRevenue()));
+
+        // 当日订单走 created_at 索引范围，当月订单由日汇总表加当日数据得出
+        BookingTotals day = dailyStatsRollup.day(today);
+        BookingTotals month = dailyStatsRollup.monthToDate(today);
+        actual.put(dayKey(USERS, today), (long) userMapper.countTodayNewUsers());
+        actual.put(dayKey(BOOKINGS, today), day.getBookings());
+        actual.put(dayKey(REVENUE_CENTS, today), cents(day.getRevenue()));
+        actual.put(monthKey(USERS, today), (long) userMapper.countMonthlyNewUsers());
+        actual.put(monthKey(BOOKINGS, today), month.getBookings());
+        actual.put(monthKey(REVENUE_CENTS, today), cents(month.getRevenue()));
+        return actual;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> readRedis(List<String> keys) {
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            redisKeys.add(KEY_PREFIX + key);
+        }
+        List<Object> result = redisUtils.execute(READ_SCRIPT, redisKeys);
+        Map<String, Long> current = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = result != null && i < result.size() ? result.get(i) : null;
+            if (value != null) {
+                current.put(keys.get(i), Long.parseLong(String.valueOf(value)));
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 计数统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("redisAvailable", !isCircuitOpen());
+        stats.put("redisBehind", redisBehind);
+        stats.put("deltasApplied", deltasApplied.get());
+        stats.put("reconcileRuns", reconcileRuns.get());
+        stats.put("totalCorrections", totalCorrections.get());
+        stats.put("lastReconciledAt", lastReconciledAt);
+        stats.put("lastDrift", lastDrift);
+        stats.put("counters", new TreeMap<>(values));
+        return stats;
+    }
+
+    private static List<String> trackedKeys(LocalDate today) {
+        List<String> keys = new ArrayList<>(TOTALS);
+        for (String name : PERIODIC) {
+            keys.add(dayKey(name, today));
+            keys.add(monthKey(name, today));
+        }
+        return keys;
+    }
+
+    static String dayKey(String name, LocalDate date) {
+        return name + ":" + date;
+    }
+
+    static String monthKey(String name, LocalDate date) {
+        return name + ":" + YearMonth.from(date);
+    }
+
+    /**
+     * 累计计数不过期；按日计数的后缀为 yyyy-MM-dd，按月为 yyyy-MM
+     */
+    private static long ttlOf(String key) {
+        int colon = key.indexOf(':');
+        if (colon < 0) {
+            return 0L;
+        }
+        return key.length() - colon - 1 == 10 ? DAY_TTL_SECONDS : MONTH_TTL_SECONDS;
+    }
+
+    private Integer intValue(String key) {
+        return (int) Math.max(values.getOrDefault(key, 0L), 0L);
+    }
+
+    private BigDecimal amount(String key) {
+        return BigDecimal.valueOf(values.getOrDefault(key, 0L), 2);
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount == null ? 0L : amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+    }
+
+    private boolean isCircuitOpen() {
+        return System.currentTimeMillis() < circuitOpenUntil;
+    }
+
+    private void openCircuit(Exception e) {
+        circuitOpenUntil = System.currentTimeMillis() + CIRCUIT_OPEN_MILLIS;
+        log.warn("Redis 统计计数不可用，{} 秒内仅维护本节点内存计数: {}", CIRCUIT_OPEN_MILLIS / 1000, e.getMessage());
+    }
+}
@@ -0,0 +1,204 @@
+package com.carwash.service.statistics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 统计查询并行执行
+ * - 一次统计中互不依赖的聚合查询同时提交到统计线程池，总耗时取决于最慢的一条而不是各条之和
+ * - 同一批查询共用一个截止时间，超时、失败或线程池已满的查询返回 null，并记入 staleFields，其余字段照常返回
+ * - 按查询名记录调用次数、耗时、超时和失败次数，便于定位慢查询
+ */
+@Component
+public class StatisticsFanout {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticsFanout.class);
+
+    private final Executor executor;
+    private final long timeoutMillis;
+
+    private final Map<String, QueryStats> queryStats = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StatisticsFanout(@Qualifier("statisticsExecutor") Executor executor,
+                            @Value("${statistics.query.timeout-ms:2000}") long timeoutMillis) {
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 开始一批并行查询，截止时间从此刻起算
+     */
+    public Batch batch() {
+        return new Batch(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * 各查询的耗时统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("timeoutMillis", timeoutMillis);
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            stats.put("poolSize", pool.getPoolSize());
+            stats.put("activeThreads", pool.getActiveCount());
+            stats.put("queued", pool.getThreadPoolExecutor().getQueue().size());
+        }
+        Map<String, Object> queries = new TreeMap<>();
+        queryStats.forEach((name, query) -> queries.put(name, query.snapshot()));
+        stats.put("queries", queries);
+        return stats;
+    }
+
+    /**
+     * 一批并行查询
+     */
+    public final class Batch {
+
+        private final long deadlineNanos;
+        private final Set<String> stale = new LinkedHashSet<>();
+
+        private Batch(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * 提交查询，name 同时作为耗时统计的名称和过期字段名
+         */
+        public <T> Pending<T> submit(String name, Supplier<T> query) {
+            return submit(name, List.of(name), query);
+        }
+
+        /**
+         * 提交一条填充多个字段的查询，失败时 fields 全部标记为过期
+         */
+        public <T> Pending<T> submit(String name, List<String> fields, Supplier<T> query) {
+            QueryStats stats = queryStats.computeIfAbsent(name, key -> new QueryStats());
+            CompletableFuture<T> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> stats.time(query), executor);
+            } catch (RejectedExecutionException e) {
+                stats.rejected.increment();
+                future = CompletableFuture.failedFuture(e);
+            }
+            return new Pending<>(this, name, fields, stats, future);
+        }
+
+        /**
+         * 未能按时取得结果的字段，全部成功时返回 null
+         */
+        public List<String> staleFields() {
+            synchronized (stale) {
+                return stale.isEmpty() ? null : new ArrayList<>(stale);
+            }
+        }
+
+        private void markStale(List<String> fields) {
+            synchronized (stale) {
+                stale.addAll(fields);
+            }
+        }
+    }
+
+    /**
+     * 已提交的查询
+     */
+    public static final class Pending<T> {
+
+        private final Batch batch;
+        private final String name;
+        private final List<String> fields;
+        private final QueryStats stats;
+        private final CompletableFuture<T> future;
+
+        private Pending(Batch batch, String name, List<String> fields, QueryStats stats, CompletableFuture<T> future) {
+            this.batch = batch;
+            this.name = name;
+            this.fields = fields;
+            this.stats = stats;
+            this.future = future;
+        }
+
+        /**
+         * 在本批截止时间前等待结果；超时、失败或被拒绝时返回 null 并标记为过期字段
+         */
+        public T get() {
+            try {
+                return future.get(Math.max(0, batch.deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // 查询线程不可中断，结果到达后丢弃；耗时仍会计入统计
+                stats.timeouts.increment();
+                log.warn("统计查询超时: {}", name);
+            } catch (ExecutionException e) {
+                log.warn("统计查询失败: {}, {}", name, e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batch.markStale(fields);
+            return null;
+        }
+    }
+
+    static final class QueryStats {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalMicros = new LongAdder();
+        private final AtomicLong maxMicros = new AtomicLong();
+        private volatile long lastMicros;
+
+        <T> T time(Supplier<T> query) {
+            long start = System.nanoTime();
+            try {
+                return query.get();
+            } catch (RuntimeException e) {
+                failures.increment();
+                throw e;
+            } finally {
+                long micros = (System.nanoTime() - start) / 1000;
+                calls.increment();
+                totalMicros.add(micros);
+                maxMicros.accumulateAndGet(micros, Math::max);
+                lastMicros = micros;
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            long count = calls.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("calls", count);
+            snapshot.put("avgMillis", count == 0 ? 0.0 : totalMicros.sum() / 1000.0 / count);
+            snapshot.put("maxMillis", maxMicros.get() / 1000.0);
+            snapshot.put("lastMillis", lastMicros / 1000.0);
+            snapshot.put("timeouts", timeouts.sum());
+            snapshot.put("failures", failures.sum());
+            snapshot.put("rejected", rejected.sum());
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.carwash.service.statistics;
+
+import com.carwash.mapper.StatsRollupProgressMapper;
+import com.carwash.utils.TimeUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 按 updated_at 水位线逐天重建的汇总任务（daily_stats、订单分析立方体共用）
+ * - 找出水位线（回退一段重叠时间，覆盖提交晚于 updated_at 的长事务）之后有变更订单所属的创建日期
+ * - 每天一个短事务：锁定进度行后调用 rollDay 重建当天汇总，全部成功后在最后一个事务中推进水位线，中途失败则下次从旧水位线重做
+ * - 同一节点内串行执行；多节点之间由进度行锁串行化写入
+ */
+final class WatermarkRollup {
+
+    /** 单日汇总事务超时时间（秒） */
+    private static final int DAY_TIMEOUT_SECONDS = 30;
+
+    private final String job;
+    private final StatsRollupProgressMapper progressMapper;
+    private final TransactionTemplate dayTransaction;
+    private final long overlapSeconds;
+    private final Consumer<LocalDate> rollDay;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong daysRolled = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param job     stats_rollup_progress.job
+     * @param rollDay 在单日事务中删除并重新生成当天的汇总行
+     */
+    WatermarkRollup(String job,
+                    StatsRollupProgressMapper progressMapper,
+                    PlatformTransactionManager transactionManager,
+                    long overlapSeconds,
+                    Consumer<LocalDate> rollDay) {
+        this.job = job;
+        this.progressMapper = progressMapper;
+        this.overlapSeconds = overlapSeconds;
+        this.rollDay = rollDay;
+        this.dayTransaction = new TransactionTemplate(transactionManager);
+        this.dayTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.dayTransaction.setTimeout(DAY_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * 汇总水位线之后有变更的日期（首次执行时汇总全部日期）
+     * @return 重新汇总的天数
+     */
+    int catchUp() {
+        lock.lock();
+        try {
+            LocalDateTime watermark = progressMapper.selectWatermark(job);
+            LocalDateTime since = watermark == null ? null : watermark.minusSeconds(overlapSeconds);
+            TreeSet<LocalDate> days = new TreeSet<>();
+            LocalDateTime newWatermark = watermark;
+            for (Map<String, Object> row : progressMapper.selectChangedDays(since)) {
+                LocalDate day = TimeUtils.toLocalDate(row.get("day"));
+                LocalDateTime lastUpdated = TimeUtils.toLocalDateTime(row.get("last_updated"));
+                if (day != null) {
+                    days.add(day);
+                }
+                if (lastUpdated != null && (newWatermark == null || lastUpdated.isAfter(newWatermark))) {
+                    newWatermark = lastUpdated;
+                }
+            }
+            rollDays(days, newWatermark != null && !newWatermark.equals(watermark) ? newWatermark : null);
+            runs.incrementAndGet();
+            return days.size();
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 重新汇总指定日期，不推进水位线（定时校验用）
+     */
+    void rollDays(TreeSet<LocalDate> days) {
+        lock.lock();
+        try {
+            rollDays(days, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前水位线：汇总数据截至的订单 updated_at
+     */
+    LocalDateTime watermark() {
+        return progressMapper.selectWatermark(job);
+    }
+
+    long runs() {
+        return runs.get();
+    }
+
+    long daysRolled() {
+        return daysRolled.get();
+    }
+
+    long failures() {
+        return failures.get();
+    }
+
+    long overlapSeconds() {
+        return overlapSeconds;
+    }
+
+    private void rollDays(TreeSet<LocalDate> days, LocalDateTime newWatermark) {
+        if (days.isEmpty()) {
+            if (newWatermark != null) {
+                dayTransaction.executeWithoutResult(tx -> progressMapper.advanceWatermark(job, newWatermark));
+            }
+            return;
+        }
+        LocalDate lastDay = days.last();
+        for (LocalDate day : days) {
+            dayTransaction.executeWithoutResult(tx -> {
+                progressMapper.lockWatermark(job);
+                rollDay.accept(day);
+                if (newWatermark != null && day.equals(lastDay)) {
+                    progressMapper.advanceWatermark(job, newWatermark);
+                }
+            });
+            daysRolled.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.carwash.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 业务单号生成器（订单号 / 支付流水号 / 退款单号）
+ * - 64 位ID：41 位毫秒时间戳 + 10 位节点号 + 12 位序列号，按时间递增，不同节点互不冲突
+ * - 时间戳与序列号合并在一个 AtomicLong 中以 CAS 推进，无锁且不依赖 SecureRandom
+ * - 时钟回拨或同一毫秒序列号用尽时沿用/借用逻辑时间继续递增，保证不重复
+ * - 单号为前缀 + 13 位定长 Base36，字典序与生成顺序一致，比原先的 29 位单号更短
+ *
+ * 节点号取自系统属性 carwash.node-id 或环境变量 CARWASH_NODE_ID（0~1023），未配置时由主机名散列得到
+ */
+public final class IdGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(IdGenerator.class);
+
+    public static final String ORDER_PREFIX = "CW";
+    public static final String PAYMENT_PREFIX = "PAY";
+    public static final String REFUND_PREFIX = "REF";
+
+    /** 起始时间 2024-01-01T00:00:00Z，41 位时间戳可用约 69 年 */
+    static final long EPOCH_MILLIS = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /** Long.MAX_VALUE 的 Base36 长度，定长编码保证字典序 */
+    private static final int ENCODED_LENGTH = 13;
+
+    /** 逻辑时间领先系统时钟超过该值时告警（时钟大幅回拨） */
+    private static final long DRIFT_WARN_MILLIS = 1000L;
+
+    private static final IdGenerator DEFAULT = new IdGenerator(resolveNodeId(), System::currentTimeMillis);
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    /** 高位为相对 EPOCH 的毫秒数，低 12 位为序列号 */
+    private final AtomicLong state = new AtomicLong();
+
+    IdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点号必须在 0~" + MAX_NODE_ID + " 之间: " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    /**
+     * 生成订单号
+     */
+    public static String nextOrderNo() {
+        return DEFAULT.next(ORDER_PREFIX);
+    }
+
+    /**
+     * 生成支付流水号
+     */
+    public static String nextPaymentNo() {
+        return DEFAULT.next(PAYMENT_PREFIX);
+    }
+
+    /**
+     * 生成退款单号
+     */
+    public static String nextRefundNo() {
+        return DEFAULT.next(REFUND_PREFIX);
+    }
+
+    /**
+     * 生成带前缀的单号
+     */
+    String next(String prefix) {
+        return prefix + encode(nextId());
+    }
+
+    /**
+     * 生成 64 位ID
+     */
+    long nextId() {
+        long now = clock.getAsLong() - EPOCH_MILLIS;
+        long prev;
+        long next;
+        do {
+            prev = state.get();
+            long lastMillis = prev >>> SEQUENCE_BITS;
+            // 新的毫秒从序列号 0 开始；时钟未前进或回拨时在上一个值基础上加一，序列号溢出自然进位到下一毫秒
+            next = now > lastMillis ? now << SEQUENCE_BITS : prev + 1;
+        } while (!state.compareAndSet(prev, next));
+
+        long millis = next >>> SEQUENCE_BITS;
+        if (millis - now > DRIFT_WARN_MILLIS && (next & SEQUENCE_MASK) == 0) {
+            log.warn("单号生成器逻辑时间领先系统时钟 {} ms，可能发生了时钟回拨", millis - now);
+        }
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+
+    /**
+     * 定长 Base36 编码（大写）
+     */
+    static String encode(long id) {
+        String raw = Long.toString(id, 36).toUpperCase();
+        if (raw.length() >= ENCODED_LENGTH) {
+            return raw;
+        }
+        StringBuilder sb = new StringBuilder(ENCODED_LENGTH);
+        for (int i = raw.length(); i < ENCODED_LENGTH; i++) {
+            sb.append('0');
+        }
+        return sb.append(raw).toString();
+    }
+
+    private static long resolveNodeId() {
+        String configured = System.getProperty("carwash.node-id", System.getenv("CARWASH_NODE_ID"));
+        if (configured != null && !configured.trim().isEmpty()) {
+            try {
+                long nodeId = Long.parseLong(configured.trim());
+                if (nodeId >= 0 && nodeId <= MAX_NODE_ID) {
+                    return nodeId;
+                }
+            } catch (NumberFormatException ignored) {
+                // 落到主机名散列
+            }
+            log.warn("节点号配置无效，将由主机名生成: {}", configured);
+        }
+        try {
+            String host = InetAddress.getLocalHost().getHostName();
+            return (host.hashCode() & Integer.MAX_VALUE) % (MAX_NODE_ID + 1);
+        } catch (Exception e) {
+            return (ProcessHandle.current().pid() & Integer.MAX_VALUE) % (MAX_NODE_ID + 1);
+        }
+    }
+}
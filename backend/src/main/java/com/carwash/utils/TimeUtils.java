@@ -1,5 +1,6 @@
 package com.carwash.utils;
 
+import java.sql.Timestamp;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.TimeZone;
@@ -167,6 +168,45 @@ public class TimeUtils {
         }
     }
     
+    /**
+     * 将 JDBC 返回的日期值（DATE 列、DATE() 表达式等，驱动可能返回 java.sql.Date、LocalDate 或字符串）转换为 LocalDate
+     * @param value 查询结果中的值
+     * @return LocalDate，值为 null 时返回 null
+     */
+    public static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.toLocalDate();
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toLocalDate();
+        }
+        return value == null ? null : LocalDate.parse(value.toString().substring(0, 10));
+    }
+    
+    /**
+     * 将 JDBC 返回的日期时间值（Timestamp、LocalDateTime 或字符串）转换为 LocalDateTime
+     * @param value 查询结果中的值
+     * @return LocalDateTime，值为 null 时返回 null
+     */
+    public static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime;
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        if (value instanceof LocalDate date) {
+            return date.atStartOfDay();
+        }
+        return value == null ? null : LocalDateTime.parse(value.toString().replace(' ', 'T'));
+    }
+    
     /**
      * 判断是否为同一天
      * @param date1 日期1
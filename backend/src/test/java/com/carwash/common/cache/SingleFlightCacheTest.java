@@ -0,0 +1,131 @@
+package com.carwash.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 合并加载缓存测试
+ * 验证并发未命中只加载一次、过期后返回旧值并只触发一次后台刷新、失效与加载并发时不会把旧结果当作新值，
+ * 以及加载失败时所有等待者收到同一异常且下次读取重新加载。
+ */
+public class SingleFlightCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final List<Runnable> refreshTasks = new ArrayList<>();
+
+    @Test
+    void testConcurrentMissesCoalesce() throws Exception {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(5000, 60000, refreshTasks::add, now::get);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(12);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(pool.submit(() -> cache.get("overview", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return 42;
+            })));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 11; i++) {
+                results.add(pool.submit(() -> cache.get("overview", () -> {
+                    loads.incrementAndGet();
+                    return -1;
+                })));
+            }
+            // 等待其余请求进入等待状态后再放行
+            while ((long) cache.stats().get("coalesced") < 11) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(42, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(42, cache.get("overview", () -> -1));
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    @Test
+    void testServesStaleWhileRefreshing() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(5000, 60000, refreshTasks::add, now::get);
+        AtomicInteger version = new AtomicInteger();
+        assertEquals(1, cache.get("today", version::incrementAndGet));
+
+        now.addAndGet(6000);
+        assertEquals(1, cache.get("today", version::incrementAndGet));
+        assertEquals(1, cache.get("today", version::incrementAndGet));
+        // 同一键只排队一个刷新任务
+        assertEquals(1, refreshTasks.size());
+        refreshTasks.remove(0).run();
+        assertEquals(2, cache.get("today", version::incrementAndGet));
+
+        // 超过旧值保留时间后按未命中同步加载
+        now.addAndGet(61000);
+        assertEquals(3, cache.get("today", version::incrementAndGet));
+        assertTrue(refreshTasks.isEmpty());
+    }
+
+    @Test
+    void testInvalidateDuringLoadKeepsResultStale() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(5000, 60000, refreshTasks::add, now::get);
+        assertEquals(1, cache.get("monthly", () -> {
+            // 加载期间订单状态发生变化
+            cache.invalidateAll();
+            return 1;
+        }));
+        assertEquals(1, cache.get("monthly", () -> 2));
+        assertEquals(1, refreshTasks.size());
+        refreshTasks.remove(0).run();
+        assertEquals(2, cache.get("monthly", () -> 3));
+
+        cache.invalidate("monthly");
+        assertEquals(2, cache.get("monthly", () -> 4));
+        refreshTasks.remove(0).run();
+        assertEquals(4, cache.get("monthly", () -> 5));
+    }
+
+    @Test
+    void testLoadFailurePropagatesAndRetries() {
+        SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(5000, 60000, refreshTasks::add, now::get);
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> cache.get("overview", () -> {
+                    throw new IllegalStateException("db down");
+                }));
+        assertEquals("db down", error.getMessage());
+        assertEquals(7, cache.get("overview", () -> 7));
+        assertEquals(1L, cache.stats().get("loadFailures"));
+
+        // 后台刷新失败时保留旧值
+        now.addAndGet(6000);
+        assertEquals(7, cache.get("overview", () -> {
+            throw new IllegalStateException("db down");
+        }));
+        refreshTasks.remove(0).run();
+        assertEquals(7, cache.get("overview", () -> 8));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.dto.AvailabilityCalendarResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 可预约日历测试
+ * 验证一次范围查询加分组计数生成多天位图、按天缓存、订单变更后按事件携带的日期只失效所在日期（不回查订单）、
+ * 其他节点不带日期的变更、查询范围限制在可预约窗口内，以及响应体大小。
+ */
+public class AvailabilityCalendarTest {
+
+    private final Map<Long, TimeSlot> slots = new HashMap<>();
+    private final Map<Long, Booking> bookings = new HashMap<>();
+
+    private TimeSlotMapper timeSlotMapper;
+    private BookingMapper bookingMapper;
+    private AvailabilityCalendar calendar;
+    private LocalDate today;
+    private long nextBookingId = 1;
+
+    @BeforeEach
+    void setup() {
+        today = TimeUtils.today();
+        long id = 1;
+        for (int d = 0; d <= 30; d++) {
+            for (int half = 0; half < 20; half++) {
+                TimeSlot slot = new TimeSlot();
+                slot.setId(id++);
+                slot.setDate(today.plusDays(d));
+                slot.setStartTime(LocalTime.of(8, 0).plusMinutes(30L * half));
+                slot.setEndTime(LocalTime.of(8, 30).plusMinutes(30L * half));
+                slot.setMaxBookings(1);
+                slot.setStatus(1);
+                slots.put(slot.getId(), slot);
+            }
+        }
+
+        timeSlotMapper = mock(TimeSlotMapper.class);
+        when(timeSlotMapper.selectByDateRange(any(), any())).thenAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(0);
+            LocalDate end = invocation.getArgument(1);
+            return slots.values().stream()
+                    .filter(s -> !s.getDate().isBefore(start) && !s.getDate().isAfter(end))
+                    .collect(Collectors.toList());
+        });
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.countActiveBySlot(any(), any())).thenAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(0);
+            LocalDate end = invocation.getArgument(1);
+            Map<Long, Long> counts = bookings.values().stream()
+                    .filter(b -> !"cancelled".equals(b.getStatus()))
+                    .filter(b -> !b.getBookingDate().isBefore(start) && !b.getBookingDate().isAfter(end))
+                    .collect(Collectors.groupingBy(Booking::getTimeSlotId, Collectors.counting()));
+            List<Map<String, Object>> rows = new ArrayList<>();
+            counts.forEach((slotId, count) -> {
+                Map<String, Object> row = new HashMap<>();
+                row.put("time_slot_id", slotId);
+                row.put("cnt", count);
+                rows.add(row);
+            });
+            return rows;
+        });
+        when(bookingMapper.selectById(anyLong())).thenAnswer(invocation -> bookings.get((Long) invocation.getArgument(0)));
+
+        calendar = new AvailabilityCalendar(timeSlotMapper, bookingMapper, mock(RedisMessageListenerContainer.class));
+    }
+
+    @Test
+    void testBitmapAndFreeCounts() {
+        // 今天 08:00 和 09:30 已约满，明天没有时间段
+        book(slotAt(today, 0));
+        book(slotAt(today, 3));
+        slots.values().removeIf(s -> s.getDate().equals(today.plusDays(1)));
+        // 停用的时间段不计入
+        slotAt(today.plusDays(2), 19).setStatus(0);
+
+        AvailabilityCalendarResponse response = calendar.getCalendar(today, today.plusDays(2));
+
+        assertEquals(20, response.getTimes().size());
+        assertEquals("08:00-08:30", response.getTimes().get(0));
+        assertEquals("17:30-18:00", response.getTimes().get(19));
+        AvailabilityCalendarResponse.Day first = response.getDays().get(0);
+        assertEquals(20, first.getTotal());
+        assertEquals(18, first.getFree());
+        // 位 0 与位 3 清零：0xf6、0xff、0x0f
+        assertEquals("f6ff0f", first.getBitmap());
+        AvailabilityCalendarResponse.Day empty = response.getDays().get(1);
+        assertEquals(0, empty.getTotal());
+        assertEquals("000000", empty.getBitmap());
+        AvailabilityCalendarResponse.Day third = response.getDays().get(2);
+        assertEquals(19, third.getTotal());
+        assertEquals("ffff07", third.getBitmap());
+    }
+
+    @Test
+    void testComputedOncePerRangeAndCachedPerDay() {
+        calendar.getCalendar(today, today.plusDays(30));
+        verify(timeSlotMapper, times(1)).selectByDateRange(today, today.plusDays(30));
+        verify(bookingMapper, times(1)).countActiveBySlot(today, today.plusDays(30));
+
+        // 子范围完全命中缓存
+        calendar.getCalendar(today.plusDays(5), today.plusDays(10));
+        verifyNoMoreInteractions(timeSlotMapper);
+
+        // 订单变更只失效所在日期，再次查询只重算这一天
+        Booking booking = book(slotAt(today.plusDays(7), 4));
+        calendar.onBookingChanged(BookingChangedEvent.created(booking));
+        AvailabilityCalendarResponse response = calendar.getCalendar(today, today.plusDays(30));
+        verify(timeSlotMapper, times(1)).selectByDateRange(today.plusDays(7), today.plusDays(7));
+        assertEquals(19, response.getDays().get(7).getFree());
+        assertEquals(20, response.getDays().get(6).getFree());
+
+        // 取消后恢复
+        booking.setStatus("cancelled");
+        calendar.onBookingChanged(BookingChangedEvent.transitioned(booking, "pending", "cancelled"));
+        assertEquals(20, calendar.getCalendar(today.plusDays(7), today.plusDays(7)).getDays().get(0).getFree());
+
+        // 支付变更不影响名额，不失效
+        calendar.onBookingChanged(BookingChangedEvent.paymentUpdated(booking));
+        calendar.getCalendar(today.plusDays(7), today.plusDays(7));
+        verify(timeSlotMapper, times(2)).selectByDateRange(today.plusDays(7), today.plusDays(7));
+        verify(bookingMapper, never()).selectById(anyLong());
+
+        // 其他节点的变更不带日期，读取订单确定日期
+        calendar.onBookingChanged(new BookingChangedEvent(booking.getId(), booking.getOrderNo()));
+        calendar.getCalendar(today.plusDays(7), today.plusDays(7));
+        verify(bookingMapper).selectById(booking.getId());
+        verify(timeSlotMapper, times(3)).selectByDateRange(today.plusDays(7), today.plusDays(7));
+
+        // 订单已删除：无法定位日期，清空全部
+        calendar.onBookingChanged(new BookingChangedEvent(999L, "CW999"));
+        calendar.getCalendar(today, today.plusDays(30));
+        verify(timeSlotMapper, times(2)).selectByDateRange(today, today.plusDays(30));
+    }
+
+    @Test
+    void testRangeValidationAndPayloadSize() throws Exception {
+        assertThrows(BusinessException.class, () -> calendar.getCalendar(today, today.minusDays(1)));
+        assertThrows(BusinessException.class, () -> calendar.getCalendar(today, today.plusDays(31)));
+
+        // 只允许查询可预约窗口内的日期，部分越界时截取
+        assertThrows(BusinessException.class, () -> calendar.getCalendar(today.minusDays(10), today.minusDays(1)));
+        assertThrows(BusinessException.class, () -> calendar.getCalendar(today.plusDays(31), today.plusDays(40)));
+        AvailabilityCalendarResponse clamped = calendar.getCalendar(today.minusDays(3), today.plusDays(2));
+        assertEquals(today, clamped.getStartDate());
+        assertEquals(3, clamped.getDays().size());
+        clamped = calendar.getCalendar(today.plusDays(20), today.plusDays(45));
+        assertEquals(today.plusDays(30), clamped.getEndDate());
+        assertTrue(calendar.cachedDays() <= 31);
+
+        AvailabilityCalendarResponse response = calendar.getCalendar(today, today.plusDays(30));
+        String json = BookingJson.MAPPER.writeValueAsString(response);
+        // 31 天 × 20 个时间段，逐个返回时间段对象需要数十 KB
+        assertTrue(json.length() < 4_096, "日历响应体过大: " + json.length());
+    }
+
+    private TimeSlot slotAt(LocalDate date, int index) {
+        return slots.values().stream()
+                .filter(s -> s.getDate().equals(date)
+                        && s.getStartTime().equals(LocalTime.of(8, 0).plusMinutes(30L * index)))
+                .findFirst().orElseThrow();
+    }
+
+    private Booking book(TimeSlot slot) {
+        Booking booking = new Booking();
+        booking.setId(nextBookingId);
+        booking.setOrderNo("CW" + nextBookingId);
+        booking.setTimeSlotId(slot.getId());
+        booking.setBookingDate(slot.getDate());
+        booking.setStatus("confirmed");
+        bookings.put(nextBookingId++, booking);
+        return booking;
+    }
+}
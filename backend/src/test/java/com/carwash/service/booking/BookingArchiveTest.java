@@ -0,0 +1,234 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.dto.BookingResponse;
+import com.carwash.entity.Booking;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingArchiveMapper;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.service.impl.BookingServiceImpl;
+import com.carwash.utils.TimeUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单归档测试
+ * 用内存中的热表 / 归档表模拟数据库，验证按批次移动、跳过有反馈的订单、提交后发布归档事件、行数不一致时回滚以及按订单号回落查询归档表。
+ */
+public class BookingArchiveTest {
+
+    private static final int CHUNK_SIZE = 100;
+
+    private final Map<Long, Booking> hot = new TreeMap<>();
+    private final Map<Long, Booking> archive = new TreeMap<>();
+    private final Set<Long> withFeedback = new HashSet<>();
+    private final List<Integer> lockedChunkSizes = new ArrayList<>();
+
+    private BookingMapper bookingMapper;
+    private BookingArchiveMapper archiveMapper;
+    private PlatformTransactionManager transactionManager;
+    private ApplicationEventPublisher eventPublisher;
+    private LocalDate cutoff;
+
+    @BeforeEach
+    void setup() {
+        LocalDate today = TimeUtils.today();
+        cutoff = today.minusMonths(6).withDayOfMonth(1);
+        long id = 1;
+        // 过去 12 个月每天 3 单：已完成、已取消、以及一单 pending（历史遗留，不应归档）
+        for (LocalDate date = today.minusMonths(12); date.isBefore(today); date = date.plusDays(1)) {
+            hot.put(id, booking(id++, date, "completed"));
+            hot.put(id, booking(id++, date, "cancelled"));
+            hot.put(id, booking(id++, date, "pending"));
+        }
+        // 早期的部分已完成订单有反馈记录
+        withFeedback.add(1L);
+        withFeedback.add(31L);
+
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.lockArchiveChunk(anyString(), any(), any(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            String status = invocation.getArgument(0);
+            LocalDate before = invocation.getArgument(1);
+            LocalDate afterDate = invocation.getArgument(2);
+            long afterId = invocation.getArgument(3);
+            int limit = invocation.getArgument(4);
+            List<Booking> chunk = hot.values().stream()
+                    .filter(b -> b.getStatus().equals(status) && b.getBookingDate().isBefore(before))
+                    .filter(b -> b.getBookingDate().isAfter(afterDate)
+                            || (b.getBookingDate().equals(afterDate) && b.getId() > afterId))
+                    .filter(b -> !withFeedback.contains(b.getId()))
+                    .sorted(Comparator.comparing(Booking::getBookingDate).thenComparing(Booking::getId))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+            lockedChunkSizes.add(chunk.size());
+            return chunk;
+        });
+        when(bookingMapper.deleteArchived(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            int deleted = 0;
+            for (Long bookingId : ids) {
+                Booking booking = hot.get(bookingId);
+                if (booking != null && BookingArchiver.ARCHIVABLE_STATUSES.contains(booking.getStatus())) {
+                    hot.remove(bookingId);
+                    deleted++;
+                }
+            }
+            return deleted;
+        });
+
+        archiveMapper = mock(BookingArchiveMapper.class);
+        when(archiveMapper.copyFromBookings(anyList(), any())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            int copied = 0;
+            for (Long bookingId : ids) {
+                Booking booking = hot.get(bookingId);
+                if (booking != null) {
+                    archive.put(bookingId, booking);
+                    copied++;
+                }
+            }
+            return copied;
+        });
+        when(archiveMapper.selectByOrderNo(anyString())).thenAnswer(invocation -> archive.values().stream()
+                .filter(b -> b.getOrderNo().equals(invocation.getArgument(0)))
+                .findFirst().orElse(null));
+
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        eventPublisher = mock(ApplicationEventPublisher.class);
+    }
+
+    @Test
+    void testArchivesTerminalBookingsInChunks() {
+        long expected = hot.values().stream()
+                .filter(b -> b.getBookingDate().isBefore(cutoff))
+                .filter(b -> BookingArchiver.ARCHIVABLE_STATUSES.contains(b.getStatus()))
+                .filter(b -> !withFeedback.contains(b.getId()))
+                .count();
+        int hotBefore = hot.size();
+
+        long archived = newArchiver().archiveBefore(cutoff);
+
+        assertEquals(expected, archived);
+        assertEquals(expected, archive.size());
+        assertEquals(hotBefore - expected, hot.size());
+        assertTrue(lockedChunkSizes.stream().allMatch(size -> size <= CHUNK_SIZE));
+        // 每个状态最后一次为空查询
+        assertEquals(0, lockedChunkSizes.get(lockedChunkSizes.size() - 1));
+
+        // 热表中只剩：截止日期之后的订单、未结束的订单、有反馈的订单
+        assertTrue(hot.values().stream().allMatch(b -> !b.getBookingDate().isBefore(cutoff)
+                || !BookingArchiver.ARCHIVABLE_STATUSES.contains(b.getStatus())
+                || withFeedback.contains(b.getId())));
+        assertTrue(hot.containsKey(1L));
+        assertTrue(hot.containsKey(31L));
+        assertTrue(archive.values().stream().allMatch(b -> b.getBookingDate().isBefore(cutoff)));
+        // 每批一个短事务
+        verify(transactionManager, times(lockedChunkSizes.size())).commit(any());
+        // 每个归档订单发布一次归档事件，不携带状态变化（不影响统计）
+        ArgumentCaptor<BookingChangedEvent> events = ArgumentCaptor.forClass(BookingChangedEvent.class);
+        verify(eventPublisher, times((int) expected)).publishEvent(events.capture());
+        assertTrue(events.getAllValues().stream().allMatch(e -> e.isRemoved() && !e.isTransition()));
+        assertEquals(archive.keySet(), events.getAllValues().stream().map(BookingChangedEvent::getBookingId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testChunkRollsBackOnRowCountMismatch() {
+        when(bookingMapper.deleteArchived(anyList())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> newArchiver().archiveBefore(cutoff));
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verifyNoInteractions(eventPublisher);
+        // 失败后释放运行标记，下次可以重新执行
+        when(bookingMapper.deleteArchived(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        assertDoesNotThrow(() -> newArchiver().archiveBefore(cutoff));
+    }
+
+    @Test
+    void testCutoffMustBeInThePast() {
+        BookingArchiver archiver = newArchiver();
+        assertThrows(BusinessException.class, () -> archiver.archiveBefore(TimeUtils.today()));
+        assertThrows(BusinessException.class, () -> archiver.archiveBefore(null));
+        assertEquals(cutoff, archiver.cutoffDate());
+        verify(bookingMapper, never()).lockArchiveChunk(anyString(), any(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOrderNoLookupFallsThroughToArchive() throws Exception {
+        newArchiver().archiveBefore(cutoff);
+        Booking archived = archive.values().iterator().next();
+
+        BookingCache cache = mock(BookingCache.class);
+        when(cache.getByOrderNo(anyString(), any())).thenAnswer(invocation ->
+                ((Function<String, BookingResponse>) invocation.getArgument(1)).apply(invocation.getArgument(0)));
+        BookingResponseAssembler assembler = mock(BookingResponseAssembler.class);
+        when(assembler.toResponse(any(Booking.class))).thenAnswer(invocation -> {
+            Booking booking = invocation.getArgument(0);
+            BookingResponse response = new BookingResponse();
+            response.setId(booking.getId());
+            response.setOrderNo(booking.getOrderNo());
+            return response;
+        });
+        BookingServiceImpl service = new BookingServiceImpl();
+        inject(service, "bookingMapper", bookingMapper);
+        inject(service, "bookingArchiveMapper", archiveMapper);
+        inject(service, "bookingCache", cache);
+        inject(service, "bookingResponseAssembler", assembler);
+
+        BookingResponse response = service.getBookingByOrderNo(archived.getOrderNo());
+
+        assertEquals(archived.getId(), response.getId());
+        verify(bookingMapper).selectOne(any());
+        verify(archiveMapper).selectByOrderNo(archived.getOrderNo());
+        assertThrows(BusinessException.class, () -> service.getBookingByOrderNo("CW-MISSING"));
+    }
+
+    private BookingArchiver newArchiver() {
+        return new BookingArchiver(bookingMapper, archiveMapper, transactionManager, eventPublisher, true, 6, CHUNK_SIZE, 0);
+    }
+
+    private static Booking booking(long id, LocalDate date, String status) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setOrderNo("CW" + id);
+        booking.setUserId(1L);
+        booking.setTimeSlotId(id);
+        booking.setBookingDate(date);
+        booking.setStatus(status);
+        booking.setDeleted(0);
+        return booking;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
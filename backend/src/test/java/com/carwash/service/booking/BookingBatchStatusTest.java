@@ -0,0 +1,153 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.BatchStatusUpdateResponse;
+import com.carwash.entity.Booking;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.service.impl.BookingServiceImpl;
+import com.carwash.service.outbox.OrderStatusNotice;
+import com.carwash.service.outbox.OutboxPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量更新订单状态测试
+ * 验证 300 个订单一次请求完成：一次批量读取、一次 JDBC 批量更新、一次通知写入，并逐条返回结果。
+ */
+public class BookingBatchStatusTest {
+
+    private static final int ORDER_COUNT = 300;
+
+    private BookingServiceImpl bookingService;
+    private BookingMapper bookingMapper;
+    private BookingBatchWriter batchWriter;
+    private OutboxPublisher outboxPublisher;
+    private SlotReservationEngine slotReservationEngine;
+    private Map<Long, Booking> table;
+
+    @BeforeEach
+    void setup() throws Exception {
+        List<Booking> rows = new ArrayList<>();
+        for (long id = 1; id <= ORDER_COUNT; id++) {
+            Booking booking = new Booking();
+            booking.setId(id);
+            booking.setUserId(id);
+            booking.setTimeSlotId(100 + id % 8);
+            booking.setOrderNo("CW" + id);
+            // 每 50 个订单中有一个已完成，不能再被确认
+            booking.setStatus(id % 50 == 0 ? "completed" : "pending");
+            booking.setVersion(3);
+            booking.setDeleted(0);
+            rows.add(booking);
+        }
+        table = rows.stream().collect(Collectors.toMap(Booking::getId, Function.identity()));
+
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(table::get).filter(b -> b != null).collect(Collectors.toList());
+        });
+
+        batchWriter = mock(BookingBatchWriter.class);
+        outboxPublisher = mock(OutboxPublisher.class);
+        slotReservationEngine = mock(SlotReservationEngine.class);
+
+        bookingService = new BookingServiceImpl();
+        inject("bookingMapper", bookingMapper);
+        inject("bookingBatchWriter", batchWriter);
+        inject("outboxPublisher", outboxPublisher);
+        inject("eventPublisher", mock(ApplicationEventPublisher.class));
+        inject("slotReservationEngine", slotReservationEngine);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCloseOfDayInSingleRequest() {
+        // 第 7 个合法订单在批量更新前被其他管理员修改
+        when(batchWriter.transitionAll(anyList(), eq("confirmed"), any())).thenAnswer(invocation -> {
+            List<Booking> candidates = invocation.getArgument(0);
+            int[] counts = new int[candidates.size()];
+            Arrays.fill(counts, 1);
+            counts[6] = 0;
+            return counts;
+        });
+
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= ORDER_COUNT; id++) {
+            ids.add(id);
+        }
+        ids.add(9999L);
+        ids.add(1L);
+
+        BatchStatusUpdateResponse response = bookingService.updateBookingStatusBatch(ids, "confirmed");
+
+        int invalid = ORDER_COUNT / 50;
+        assertEquals(ORDER_COUNT + 1, response.getTotal(), "重复ID应去重");
+        assertEquals(ORDER_COUNT - invalid - 1, response.getSucceeded());
+        assertEquals(invalid + 2, response.getFailed());
+        assertEquals(ids.get(0), response.getResults().get(0).getBookingId(), "结果顺序与请求一致");
+        assertEquals(ResultCode.INVALID_STATUS_TRANSITION.getCode(), response.getResults().get(49).getCode());
+        assertEquals(ResultCode.ORDER_CONCURRENT_MODIFIED.getCode(), response.getResults().get(6).getCode());
+        assertEquals(ResultCode.ORDER_NOT_FOUND.getCode(), response.getResults().get(ORDER_COUNT).getCode());
+
+        // 常数次数据库交互，不再逐条 select/update
+        verify(bookingMapper, times(1)).selectBatchIds(anyCollection());
+        verify(batchWriter, times(1)).transitionAll(anyList(), eq("confirmed"), any());
+        verify(bookingMapper, never()).selectById(anyLong());
+        verify(bookingMapper, never()).transitionStatus(any(), any(), any(), any(), any(), any());
+        verifyNoInteractions(slotReservationEngine);
+
+        ArgumentCaptor<List<OrderStatusNotice>> notices = ArgumentCaptor.forClass(List.class);
+        verify(outboxPublisher, times(1)).publishOrderStatusBatch(notices.capture(), eq(true));
+        assertEquals(response.getSucceeded(), notices.getValue().size());
+        verify(outboxPublisher, never()).publishOrderStatus(any(), any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void testUnknownBatchCountsAreVerifiedByReadBack() {
+        when(batchWriter.transitionAll(anyList(), eq("cancelled"), any())).thenAnswer(invocation -> {
+            List<Booking> candidates = invocation.getArgument(0);
+            int[] counts = new int[candidates.size()];
+            Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+            // 模拟数据库：只有订单 1 实际被更新
+            Booking updated = new Booking();
+            updated.setId(1L);
+            updated.setStatus("cancelled");
+            updated.setVersion(4);
+            table.put(1L, updated);
+            return counts;
+        });
+
+        BatchStatusUpdateResponse response = bookingService.updateBookingStatusBatch(Arrays.asList(1L, 2L), "cancelled");
+
+        assertTrue(response.getResults().get(0).getSuccess());
+        assertFalse(response.getResults().get(1).getSuccess());
+        verify(bookingMapper, times(2)).selectBatchIds(anyCollection());
+        verify(slotReservationEngine, times(1)).release(101L);
+    }
+
+    private void inject(String fieldName, Object value) throws Exception {
+        var field = BookingServiceImpl.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(bookingService, value);
+    }
+}
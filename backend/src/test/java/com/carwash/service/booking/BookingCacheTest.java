@@ -0,0 +1,223 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.dto.BookingResponse;
+import com.carwash.entity.Booking;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.service.impl.BookingServiceImpl;
+import com.carwash.service.outbox.OutboxPublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单详情两级缓存测试
+ * 用内存 Map 模拟 Redis 及其发布/订阅，验证支付页轮询只访问一次数据库、两个节点共享二级缓存、
+ * 状态变更后各节点缓存被精确清理，以及加载期间发生失效时不回填旧数据。
+ */
+public class BookingCacheTest {
+
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+    private final List<MessageListener> subscribers = new ArrayList<>();
+
+    private RedisUtils redisUtils;
+    private BookingMapper bookingMapper;
+    private Booking row;
+
+    @BeforeEach
+    void setup() {
+        redisUtils = mockRedis();
+        row = new Booking();
+        row.setId(10L);
+        row.setUserId(1L);
+        row.setOrderNo("CW10");
+        row.setStatus("pending");
+        row.setPaymentStatus("unpaid");
+        row.setVersion(0);
+        row.setDeleted(0);
+        row.setBookingDate(LocalDate.of(2026, 10, 18));
+        row.setCreatedAt(LocalDateTime.of(2026, 10, 17, 9, 30));
+
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectById(10L)).thenAnswer(invocation -> copy(row));
+        when(bookingMapper.selectOne(any())).thenAnswer(invocation -> copy(row));
+        when(bookingMapper.transitionStatus(eq(10L), anyString(), anyString(), anyInt(), any(), any()))
+                .thenAnswer(invocation -> {
+                    row.setStatus(invocation.getArgument(2));
+                    row.setVersion(row.getVersion() + 1);
+                    return 1;
+                });
+    }
+
+    @Test
+    void testPaymentPagePollingHitsDatabaseOnce() throws Exception {
+        BookingCache cache = newCache(100);
+        BookingServiceImpl service = newService(cache);
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals("CW10", service.getBookingByOrderNo("CW10").getOrderNo());
+        }
+        // 创建后按ID回读与按订单号轮询共用同一份缓存
+        assertEquals(10L, service.getBookingById(10L).getId());
+
+        verify(bookingMapper, times(1)).selectOne(any());
+        verify(bookingMapper, never()).selectById(anyLong());
+        Map<String, Object> stats = cache.stats();
+        assertEquals(1L, stats.get("databaseLoads"));
+        assertTrue((Double) stats.get("hitRatio") > 0.95, "命中率: " + stats.get("hitRatio"));
+    }
+
+    @Test
+    void testStatusUpdateInvalidatesEveryNode() throws Exception {
+        BookingCache nodeA = newCache(100);
+        BookingCache nodeB = newCache(100);
+        BookingServiceImpl serviceA = newService(nodeA);
+        BookingServiceImpl serviceB = newService(nodeB);
+
+        assertEquals("pending", serviceA.getBookingByOrderNo("CW10").getStatus());
+        // 节点 B 从 Redis 二级缓存读取，不访问数据库
+        assertEquals("pending", serviceB.getBookingByOrderNo("CW10").getStatus());
+        verify(bookingMapper, times(1)).selectOne(any());
+
+        serviceA.updateBookingStatus(10L, "confirmed");
+
+        assertEquals("confirmed", serviceA.getBookingByOrderNo("CW10").getStatus());
+        assertEquals("confirmed", serviceB.getBookingById(10L).getStatus(), "其他节点的一级缓存也应被清理");
+    }
+
+    @Test
+    void testInvalidationDuringLoadSkipsRefill() throws Exception {
+        BookingCache cache = newCache(100);
+        AtomicInteger loads = new AtomicInteger();
+
+        BookingResponse first = cache.getById(10L, id -> {
+            loads.incrementAndGet();
+            BookingResponse stale = response(id, "pending");
+            // 加载过程中订单被修改并提交
+            cache.onBookingChanged(new BookingChangedEvent(id, "CW10"));
+            return stale;
+        });
+        BookingResponse second = cache.getById(10L, id -> {
+            loads.incrementAndGet();
+            return response(id, "confirmed");
+        });
+
+        assertEquals("pending", first.getStatus());
+        assertEquals("confirmed", second.getStatus(), "失效前读到的旧数据不能被写回缓存");
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testLocalCacheIsBounded() {
+        BookingCache cache = newCache(2);
+        for (long id = 1; id <= 5; id++) {
+            cache.getById(id, id1 -> response(id1, "pending"));
+        }
+        assertEquals(2, cache.stats().get("localSize"));
+        assertEquals(3L, cache.stats().get("localEvictions"));
+    }
+
+    private BookingCache newCache(int localMaxSize) {
+        RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        BookingCache cache = new BookingCache(redisUtils, container, localMaxSize, 30, 600);
+        verify(container).addMessageListener(listener.capture(), any(Topic.class));
+        subscribers.add(listener.getValue());
+        return cache;
+    }
+
+    private BookingServiceImpl newService(BookingCache cache) throws Exception {
+        BookingServiceImpl service = new BookingServiceImpl();
+        BookingResponseAssembler assembler = mock(BookingResponseAssembler.class);
+        when(assembler.toResponse(any(Booking.class))).thenAnswer(invocation -> {
+            Booking booking = invocation.getArgument(0);
+            BookingResponse response = response(booking.getId(), booking.getStatus());
+            response.setOrderNo(booking.getOrderNo());
+            return response;
+        });
+        ApplicationEventPublisher publisher = event -> cache.onBookingChanged((BookingChangedEvent) event);
+        inject(service, "bookingMapper", bookingMapper);
+        inject(service, "bookingResponseAssembler", assembler);
+        inject(service, "bookingCache", cache);
+        inject(service, "eventPublisher", publisher);
+        inject(service, "outboxPublisher", mock(OutboxPublisher.class));
+        inject(service, "slotReservationEngine", mock(SlotReservationEngine.class));
+        return service;
+    }
+
+    private static BookingResponse response(Long id, String status) {
+        BookingResponse response = new BookingResponse();
+        response.setId(id);
+        response.setOrderNo("CW" + id);
+        response.setStatus(status);
+        response.setBookingDate(LocalDate.of(2026, 10, 18));
+        response.setCreatedAt(LocalDateTime.of(2026, 10, 17, 9, 30));
+        return response;
+    }
+
+    private static Booking copy(Booking source) {
+        Booking booking = new Booking();
+        booking.setId(source.getId());
+        booking.setUserId(source.getUserId());
+        booking.setOrderNo(source.getOrderNo());
+        booking.setStatus(source.getStatus());
+        booking.setPaymentStatus(source.getPaymentStatus());
+        booking.setVersion(source.getVersion());
+        booking.setDeleted(source.getDeleted());
+        booking.setBookingDate(source.getBookingDate());
+        booking.setCreatedAt(source.getCreatedAt());
+        return booking;
+    }
+
+    /**
+     * 以内存 Map 复现 RedisUtils 的 get / set / delete，发布的消息按 Jackson 序列化后投递给所有订阅者
+     */
+    private RedisUtils mockRedis() {
+        RedisUtils mock = mock(RedisUtils.class);
+        when(mock.get(anyString())).thenAnswer(invocation -> redis.get((String) invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            redis.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(mock).set(anyString(), any(), anyLong(), any());
+        when(mock.delete(anyString())).thenAnswer(invocation -> redis.remove((String) invocation.getArgument(0)) != null);
+        doAnswer(invocation -> {
+            byte[] channel = ((String) invocation.getArgument(0)).getBytes(StandardCharsets.UTF_8);
+            byte[] body = new ObjectMapper().writeValueAsBytes(invocation.getArgument(1));
+            for (MessageListener subscriber : subscribers) {
+                subscriber.onMessage(new DefaultMessage(channel, body), null);
+            }
+            return null;
+        }).when(mock).convertAndSend(anyString(), any());
+        return mock;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        var field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,123 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.constants.Constants;
+import com.carwash.dto.BookingResponse;
+import com.carwash.dto.CursorPageResponse;
+import com.carwash.entity.Booking;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.service.impl.BookingServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单游标分页测试
+ * 通过模拟 Mapper 复现 (created_at, id) 键集条件，验证翻页不重不漏、游标不透明且分页大小受限。
+ */
+public class BookingCursorPaginationTest {
+
+    private static final int TOTAL = 257;
+
+    private BookingServiceImpl bookingService;
+    private BookingMapper bookingMapper;
+    private final List<Booking> table = new ArrayList<>();
+
+    @BeforeEach
+    void setup() throws Exception {
+        // 每 3 条共用一个创建时间，覆盖 created_at 相同需按 id 区分的情况
+        LocalDateTime base = LocalDateTime.of(2026, 10, 1, 8, 0);
+        for (int i = 1; i <= TOTAL; i++) {
+            Booking booking = new Booking();
+            booking.setId((long) i);
+            booking.setUserId(i % 2 == 0 ? 1L : 2L);
+            booking.setCreatedAt(base.plusMinutes(i / 3));
+            booking.setStatus("pending");
+            table.add(booking);
+        }
+
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectPageByCursor(any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            Long userId = invocation.getArgument(0);
+            LocalDateTime createdAt = invocation.getArgument(1);
+            Long id = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            return table.stream()
+                    .filter(b -> userId == null || userId.equals(b.getUserId()))
+                    .filter(b -> createdAt == null || b.getCreatedAt().isBefore(createdAt)
+                            || (b.getCreatedAt().isEqual(createdAt) && b.getId() < id))
+                    .sorted(Comparator.comparing(Booking::getCreatedAt).thenComparing(Booking::getId).reversed())
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        });
+
+        ServiceMapper serviceMapper = mock(ServiceMapper.class);
+        bookingService = new BookingServiceImpl();
+        inject("bookingMapper", bookingMapper);
+        inject("serviceMapper", serviceMapper);
+        inject("bookingResponseAssembler", new BookingResponseAssembler(serviceMapper));
+    }
+
+    @Test
+    void testWalkingAllPagesVisitsEveryRowOnceInOrder() {
+        Set<Long> seen = new HashSet<>();
+        BookingResponse previous = null;
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageResponse<BookingResponse> page = bookingService.getAllBookingsPage(cursor, 20);
+            assertTrue(page.getRecords().size() <= 20);
+            for (BookingResponse response : page.getRecords()) {
+                assertTrue(seen.add(response.getId()), "翻页不应出现重复记录");
+                if (previous != null) {
+                    int order = previous.getCreatedAt().compareTo(response.getCreatedAt());
+                    assertTrue(order > 0 || (order == 0 && previous.getId() > response.getId()), "应按创建时间、ID 倒序");
+                }
+                previous = response;
+            }
+            assertEquals(page.getHasMore(), page.getNextCursor() != null);
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(TOTAL, seen.size(), "翻页不应遗漏记录");
+        assertEquals((TOTAL + 19) / 20, pages);
+    }
+
+    @Test
+    void testUserPagesOnlyContainUserRows() {
+        CursorPageResponse<BookingResponse> page = bookingService.getUserBookingsPage(1L, null, null);
+        assertEquals(Constants.Page.DEFAULT_PAGE_SIZE, page.getSize());
+        assertTrue(page.getRecords().stream().allMatch(r -> r.getUserId() == 1L));
+        verify(bookingMapper).selectPageByCursor(eq(1L), isNull(), isNull(), eq(Constants.Page.DEFAULT_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void testPageSizeIsBoundedAndBadCursorRejected() {
+        bookingService.getAllBookingsPage(null, Constants.Page.MAX_PAGE_SIZE * 10);
+        verify(bookingMapper).selectPageByCursor(isNull(), isNull(), isNull(), eq(Constants.Page.MAX_PAGE_SIZE + 1));
+
+        assertThrows(BusinessException.class, () -> bookingService.getAllBookingsPage("not-a-cursor", 20));
+        verify(bookingMapper, times(1)).selectPageByCursor(any(), any(), any(), anyInt());
+    }
+
+    private void inject(String fieldName, Object value) throws Exception {
+        var field = BookingServiceImpl.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(bookingService, value);
+    }
+}
@@ -0,0 +1,246 @@
+package com.carwash.service.booking;
+
+import com.carwash.entity.Booking;
+import com.carwash.entity.Service;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.service.impl.BookingExportServiceImpl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单流式导出测试
+ * 用按需生成行的模拟游标代替数据库，验证每读一行即写出一行、不在内存中累积结果集。
+ * 100 万行的堆占用压测依赖 JVM 与 GC，默认不执行，需加 -Dbooking.export.benchmark=true。
+ */
+public class BookingExportStreamingTest {
+
+    private static final int ONE_MILLION = 1_000_000;
+    private static final int STREAMED_ROWS = 20_000;
+
+    private BookingExportServiceImpl exportService;
+    private BookingMapper bookingMapper;
+
+    @BeforeEach
+    void setup() throws Exception {
+        bookingMapper = mock(BookingMapper.class);
+        ServiceMapper serviceMapper = mock(ServiceMapper.class);
+        Service service = new Service();
+        service.setId(1L);
+        service.setName("标准洗车");
+        when(serviceMapper.selectList(any())).thenReturn(Collections.singletonList(service));
+
+        exportService = new BookingExportServiceImpl();
+        inject("bookingMapper", bookingMapper);
+        inject("serviceMapper", serviceMapper);
+        inject("transactionManager", mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void testRowsAreWrittenWhileCursorIsRead() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        SyntheticCursor cursor = new SyntheticCursor(STREAMED_ROWS, null, out);
+        when(bookingMapper.streamForExport(any(), any(), any())).thenReturn(cursor);
+
+        long rows = exportService.export(BookingExportFormat.CSV, null, null, null, out);
+
+        assertEquals(STREAMED_ROWS, rows);
+        assertEquals(STREAMED_ROWS + 1, out.lines, "表头 + 每个订单一行");
+        assertFalse(cursor.isOpen(), "导出结束后应关闭游标");
+        // 读取第 N 行时前面的行应已写出（只差写缓冲区中的几百行），而不是读完全部行后再统一输出
+        for (int i = 0; i < cursor.linesWrittenAtRow.size(); i++) {
+            long rowIndex = (long) i * 5000;
+            assertTrue(cursor.linesWrittenAtRow.get(i) >= rowIndex - 1000,
+                    "读取第 " + rowIndex + " 行时只写出了 " + cursor.linesWrittenAtRow.get(i) + " 行");
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "booking.export.benchmark", matches = "true")
+    void testExportMillionRowsWithFlatMemory() throws Exception {
+        List<Long> heapSamples = new ArrayList<>();
+        CountingOutputStream out = new CountingOutputStream();
+        when(bookingMapper.streamForExport(any(), any(), any()))
+                .thenReturn(new SyntheticCursor(ONE_MILLION, heapSamples, out));
+
+        long rows = exportService.export(BookingExportFormat.CSV, null, null, null, out);
+
+        assertEquals(ONE_MILLION, rows);
+        assertEquals(ONE_MILLION + 1, out.lines, "表头 + 每个订单一行");
+        long growth = heapSamples.get(heapSamples.size() - 1) - heapSamples.get(0);
+        // 100 万个 Booking 常驻内存需要数百 MB，流式导出时堆占用应基本持平
+        assertTrue(growth < 32L * 1024 * 1024,
+                "导出过程中堆占用不应随行数增长，堆采样(MB): " + toMegabytes(heapSamples));
+    }
+
+    @Test
+    void testCsvEscapingAndNdjsonRows() throws Exception {
+        when(bookingMapper.streamForExport(any(), any(), any()))
+                .thenReturn(new SyntheticCursor(3, null, null), new SyntheticCursor(3, null, null));
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        exportService.export(BookingExportFormat.CSV, LocalDate.now(), LocalDate.now(), "pending", csv);
+        String[] csvLines = csv.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(4, csvLines.length);
+        assertTrue(csvLines[0].startsWith("\uFEFF订单ID,"));
+        assertTrue(csvLines[1].contains("\"车身有划痕, 请注意\"\"小心\"\"\""), "含逗号和引号的字段应转义");
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exportService.export(BookingExportFormat.NDJSON, null, null, null, ndjson);
+        String[] jsonLines = ndjson.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, jsonLines.length);
+        JsonNode first = new ObjectMapper().readTree(jsonLines[0]);
+        assertEquals(1L, first.get("id").asLong());
+        assertEquals("标准洗车", first.get("serviceName").asText());
+        assertTrue(jsonLines[0].contains("\"totalPrice\":39.00"), "金额应按原精度输出");
+
+        verify(bookingMapper).streamForExport(LocalDate.now(), LocalDate.now(), "pending");
+    }
+
+    private static String toMegabytes(List<Long> samples) {
+        StringBuilder sb = new StringBuilder();
+        for (Long sample : samples) {
+            sb.append(sb.length() > 0 ? "/" : "").append(sample / 1048576);
+        }
+        return sb.toString();
+    }
+
+    private void inject(String fieldName, Object value) throws Exception {
+        var field = BookingExportServiceImpl.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(exportService, value);
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 按需生成订单的游标
+     * 传入 heapSamples 时每 25 万行采样一次 GC 后的堆占用；传入 out 时每 5000 行记录一次已写出的行数
+     */
+    private static class SyntheticCursor implements Cursor<Booking> {
+
+        private final int total;
+        private final List<Long> heapSamples;
+        private final CountingOutputStream out;
+        private final List<Long> linesWrittenAtRow = new ArrayList<>();
+        private int index = -1;
+        private boolean open = true;
+
+        SyntheticCursor(int total, List<Long> heapSamples, CountingOutputStream out) {
+            this.total = total;
+            this.heapSamples = heapSamples;
+            this.out = out;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return index + 1 >= total;
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return index;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public Iterator<Booking> iterator() {
+            LocalDateTime createdAt = LocalDateTime.of(2026, 1, 1, 9, 0);
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return open && index + 1 < total;
+                }
+
+                @Override
+                public Booking next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    index++;
+                    if (heapSamples != null && index % 250_000 == 0) {
+                        heapSamples.add(usedHeapAfterGc());
+                    }
+                    if (out != null && index % 5000 == 0) {
+                        linesWrittenAtRow.add(out.lines);
+                    }
+                    Booking booking = new Booking();
+                    booking.setId((long) index + 1);
+                    booking.setOrderNo("CW" + (100000000L + index));
+                    booking.setUserId((long) (index % 5000) + 1);
+                    booking.setServiceId(1L);
+                    booking.setBookingDate(createdAt.toLocalDate());
+                    booking.setBookingTime("09:00-10:00");
+                    booking.setCarNumber("京A" + (10000 + index % 90000));
+                    booking.setContactPhone("13800000000");
+                    booking.setNotes("备注");
+                    booking.setCancelReason(index % 2 == 0 ? "车身有划痕, 请注意\"小心\"" : null);
+                    booking.setTotalPrice(new BigDecimal("39.00"));
+                    booking.setStatus("completed");
+                    booking.setCreatedAt(createdAt);
+                    if (heapSamples != null && index + 1 == total) {
+                        heapSamples.add(usedHeapAfterGc());
+                    }
+                    return booking;
+                }
+            };
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long bytes;
+        long lines;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    lines++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.Result;
+import com.carwash.common.result.ResultCode;
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.controller.BookingController;
+import com.carwash.dto.BookingRequest;
+import com.carwash.dto.BookingResponse;
+import com.carwash.service.BookingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 预约创建幂等测试
+ * 用内存 Map 模拟 Redis，验证重试请求不再访问数据库、并发重复请求只执行一次、跨节点共享结果以及 Redis 故障时的本地回退。
+ */
+public class BookingIdempotencyTest {
+
+    private static final int THREADS = 20;
+
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+
+    private RedisUtils redisUtils;
+    private BookingService bookingService;
+    private BookingController controller;
+    private final AtomicInteger creations = new AtomicInteger();
+
+    @BeforeEach
+    void setup() throws Exception {
+        redisUtils = mockRedis();
+        bookingService = mock(BookingService.class);
+        when(bookingService.createBooking(any())).thenAnswer(invocation -> {
+            // 模拟较慢的下单事务，使并发请求在执行期间到达
+            Thread.sleep(200);
+            return (long) creations.incrementAndGet();
+        });
+        when(bookingService.getBookingById(anyLong())).thenAnswer(invocation -> {
+            BookingResponse response = new BookingResponse();
+            response.setId(invocation.getArgument(0));
+            response.setOrderNo("CW" + invocation.getArgument(0));
+            response.setBookingDate(LocalDate.of(2026, 10, 18));
+            response.setCreatedAt(LocalDateTime.of(2026, 10, 17, 9, 30));
+            return response;
+        });
+
+        controller = new BookingController();
+        inject(controller, "bookingService", bookingService);
+        inject(controller, "bookingIdempotencyGuard", new BookingIdempotencyGuard(redisUtils, 600, 5, 1000, 120));
+    }
+
+    @Test
+    void testRetryReturnsOriginalBookingWithoutTouchingDatabase() {
+        Result<BookingResponse> first = controller.createBooking(request("京A12345"), "retry-1");
+        Result<BookingResponse> retry = controller.createBooking(request("京A12345"), "retry-1");
+
+        assertEquals(ResultCode.SUCCESS.getCode(), first.getCode());
+        assertEquals(first.getData().getOrderNo(), retry.getData().getOrderNo());
+        verify(bookingService, times(1)).createBooking(any());
+        verify(bookingService, times(1)).getBookingById(anyLong());
+
+        // 不带幂等键的请求保持原有行为
+        controller.createBooking(request("京A12345"), null);
+        verify(bookingService, times(2)).createBooking(any());
+    }
+
+    @Test
+    void testConcurrentDuplicatesAreCoalesced() throws Exception {
+        List<BookingResponse> responses = runConcurrently(controller, "burst-1");
+
+        assertEquals(1, creations.get(), "并发的重复请求只能创建一个订单");
+        assertTrue(responses.stream().allMatch(r -> "CW1".equals(r.getOrderNo())));
+    }
+
+    @Test
+    void testDuplicatesAcrossNodesShareOneExecution() throws Exception {
+        // 第二个节点与第一个节点共享 Redis，但不共享进程内状态
+        BookingController otherNode = new BookingController();
+        inject(otherNode, "bookingService", bookingService);
+        inject(otherNode, "bookingIdempotencyGuard", new BookingIdempotencyGuard(redisUtils, 600, 5, 1000, 120));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Result<BookingResponse>> a = executor.submit(() -> controller.createBooking(request("京B00001"), "node-1"));
+        Future<Result<BookingResponse>> b = executor.submit(() -> otherNode.createBooking(request("京B00001"), "node-1"));
+        String orderA = a.get(10, TimeUnit.SECONDS).getData().getOrderNo();
+        String orderB = b.get(10, TimeUnit.SECONDS).getData().getOrderNo();
+        executor.shutdown();
+
+        assertEquals(orderA, orderB);
+        assertEquals(1, creations.get());
+    }
+
+    @Test
+    void testHealthyRedisKeepsNothingLocally() throws Exception {
+        BookingIdempotencyGuard guard = new BookingIdempotencyGuard(redisUtils, 600, 5, 1000, 120);
+        inject(controller, "bookingIdempotencyGuard", guard);
+        for (int i = 0; i < 50; i++) {
+            controller.createBooking(request("京A12345"), "healthy-" + i);
+        }
+        controller.createBooking(request("京A12345"), "healthy-0");
+
+        assertEquals(0, guard.localSize(), "Redis 正常时结果只保存在 Redis 中");
+        assertEquals(50, creations.get());
+    }
+
+    @Test
+    void testLocalFallbackIsBounded() throws Exception {
+        RedisUtils brokenRedis = mock(RedisUtils.class);
+        when(brokenRedis.get(anyString())).thenThrow(new IllegalStateException("Redis 连接失败"));
+        BookingIdempotencyGuard guard = new BookingIdempotencyGuard(brokenRedis, 600, 5, 10, 120);
+        inject(controller, "bookingIdempotencyGuard", guard);
+        for (int i = 0; i < 30; i++) {
+            controller.createBooking(request("京A12345"), "bounded-" + i);
+        }
+
+        assertEquals(10, guard.localSize());
+    }
+
+    @Test
+    void testKeyReusedWithDifferentPayloadIsRejected() {
+        controller.createBooking(request("京A12345"), "reuse-1");
+        Result<BookingResponse> misuse = controller.createBooking(request("京C99999"), "reuse-1");
+
+        assertNotEquals(ResultCode.SUCCESS.getCode(), misuse.getCode());
+        assertTrue(misuse.getMessage().contains(ResultCode.IDEMPOTENCY_KEY_REUSED.getMessage()));
+        verify(bookingService, times(1)).createBooking(any());
+    }
+
+    @Test
+    void testFailedCreationCanBeRetried() {
+        when(bookingService.createBooking(any()))
+                .thenThrow(new BusinessException(ResultCode.APPOINTMENT_CONFLICT))
+                .thenReturn(7L);
+
+        Result<BookingResponse> failed = controller.createBooking(request("京A12345"), "fail-1");
+        Result<BookingResponse> retried = controller.createBooking(request("京A12345"), "fail-1");
+
+        assertNotEquals(ResultCode.SUCCESS.getCode(), failed.getCode());
+        assertEquals("CW7", retried.getData().getOrderNo());
+    }
+
+    @Test
+    void testFallsBackToLocalStoreWhenRedisIsDown() throws Exception {
+        RedisUtils brokenRedis = mock(RedisUtils.class);
+        when(brokenRedis.get(anyString())).thenThrow(new IllegalStateException("Redis 连接失败"));
+        when(brokenRedis.setIfAbsent(anyString(), any(), anyLong(), any())).thenThrow(new IllegalStateException("Redis 连接失败"));
+        inject(controller, "bookingIdempotencyGuard", new BookingIdempotencyGuard(brokenRedis, 600, 5, 1000, 120));
+
+        List<BookingResponse> responses = runConcurrently(controller, "offline-1");
+        controller.createBooking(request("京A12345"), "offline-1");
+
+        assertEquals(1, creations.get());
+        assertTrue(responses.stream().allMatch(r -> "CW1".equals(r.getOrderNo())));
+    }
+
+    private List<BookingResponse> runConcurrently(BookingController target, String key) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Result<BookingResponse>>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                startGate.await();
+                return target.createBooking(request("京A12345"), key);
+            }));
+        }
+        startGate.countDown();
+        List<BookingResponse> responses = new ArrayList<>();
+        for (Future<Result<BookingResponse>> future : futures) {
+            Result<BookingResponse> result = future.get(10, TimeUnit.SECONDS);
+            assertEquals(ResultCode.SUCCESS.getCode(), result.getCode(), result.getMessage());
+            responses.add(result.getData());
+        }
+        executor.shutdown();
+        return responses;
+    }
+
+    private static BookingRequest request(String carNumber) {
+        BookingRequest request = new BookingRequest();
+        request.setUserId(1L);
+        request.setServiceId(2L);
+        request.setTimeSlotId(3L);
+        request.setBookingDate(LocalDate.of(2026, 10, 18));
+        request.setCarNumber(carNumber);
+        request.setContactPhone("13800000000");
+        return request;
+    }
+
+    /**
+     * 以内存 Map 复现 RedisUtils 中 get / SETNX / set / delete 的语义（忽略过期时间）
+     */
+    private RedisUtils mockRedis() {
+        RedisUtils mock = mock(RedisUtils.class);
+        when(mock.get(anyString())).thenAnswer(invocation -> redis.get((String) invocation.getArgument(0)));
+        when(mock.setIfAbsent(anyString(), any(), anyLong(), any()))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        doAnswer(invocation -> {
+            redis.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(mock).set(anyString(), any(), anyLong(), any());
+        when(mock.delete(anyString())).thenAnswer(invocation -> redis.remove((String) invocation.getArgument(0)) != null);
+        return mock;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        var field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,225 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.dto.BookingPurgeProgress;
+import com.carwash.dto.BookingPurgeRequest;
+import com.carwash.entity.Booking;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.FeedbackMapper;
+import com.carwash.mapper.PaymentMapper;
+import com.carwash.service.impl.BookingServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单级联删除与后台批量清理测试
+ * 用内存表模拟 bookings，验证单个删除与永久删除只需常数条语句、清理任务按批次短事务执行并报告进度、名额按时间段合并归还以及取消。
+ */
+public class BookingPurgeTest {
+
+    private static final long TEST_USER = 3L;
+    private static final int USER_BOOKINGS = 2300;
+    private static final int CHUNK_SIZE = 500;
+
+    private final TreeMap<Long, Booking> table = new TreeMap<>();
+
+    private BookingMapper bookingMapper;
+    private PaymentMapper paymentMapper;
+    private FeedbackMapper feedbackMapper;
+    private SlotReservationEngine slotReservationEngine;
+    private PlatformTransactionManager transactionManager;
+    private BookingCascadeDeleter cascadeDeleter;
+    private final AtomicInteger commits = new AtomicInteger();
+
+    @BeforeEach
+    void setup() {
+        for (long id = 1; id <= USER_BOOKINGS + 100; id++) {
+            Booking booking = new Booking();
+            booking.setId(id);
+            booking.setOrderNo("CW" + id);
+            // 前 100 个订单属于其他用户
+            booking.setUserId(id <= 100 ? 1L : TEST_USER);
+            booking.setTimeSlotId(1000 + id % 4);
+            booking.setStatus(id % 10 == 0 ? "cancelled" : "completed");
+            booking.setDeleted(0);
+            table.put(id, booking);
+        }
+
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectById(anyLong())).thenAnswer(invocation -> table.get((Long) invocation.getArgument(0)));
+        when(bookingMapper.countForPurge(eq(TEST_USER), any(), any(), any()))
+                .thenAnswer(invocation -> table.values().stream().filter(b -> b.getUserId() == TEST_USER).count());
+        when(bookingMapper.lockPurgeChunk(eq(TEST_USER), any(), any(), any(), anyLong(), anyInt()))
+                .thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(4);
+                    int limit = invocation.getArgument(5);
+                    return table.tailMap(afterId, false).values().stream()
+                            .filter(b -> b.getUserId() == TEST_USER)
+                            .limit(limit)
+                            .collect(Collectors.toList());
+                });
+        when(bookingMapper.deleteBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            int removed = 0;
+            for (Long id : ids) {
+                removed += table.remove(id) != null ? 1 : 0;
+            }
+            return removed;
+        });
+
+        paymentMapper = mock(PaymentMapper.class);
+        feedbackMapper = mock(FeedbackMapper.class);
+        slotReservationEngine = mock(SlotReservationEngine.class);
+        cascadeDeleter = new BookingCascadeDeleter(bookingMapper, paymentMapper, feedbackMapper,
+                slotReservationEngine, mock(ApplicationEventPublisher.class));
+
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        doAnswer(invocation -> commits.incrementAndGet()).when(transactionManager).commit(any());
+    }
+
+    @Test
+    void testDeleteBookingUsesConstantStatements() throws Exception {
+        bookingService().deleteBooking(101L);
+
+        assertFalse(table.containsKey(101L));
+        verify(bookingMapper, times(1)).selectById(101L);
+        verify(paymentMapper, times(1)).delete(any());
+        verify(feedbackMapper, times(1)).delete(any());
+        verify(bookingMapper, times(1)).deleteBatchIds(anyCollection());
+        verify(slotReservationEngine).release(1001L, 1);
+        // 不再逐条查询、逐条删除和删除后回查
+        verify(paymentMapper, never()).selectList(any());
+        verify(paymentMapper, never()).deleteById(anyLong());
+        verify(feedbackMapper, never()).deleteById(anyLong());
+        verify(bookingMapper, never()).deleteById(anyLong());
+    }
+
+    @Test
+    void testPermanentlyDeleteBookingCascadesWithoutRetry() throws Exception {
+        bookingService().permanentlyDeleteBooking(102L);
+
+        assertFalse(table.containsKey(102L));
+        verify(bookingMapper, times(1)).selectById(102L);
+        verify(paymentMapper, times(1)).delete(any());
+        verify(feedbackMapper, times(1)).delete(any());
+        verify(bookingMapper, times(1)).deleteBatchIds(anyCollection());
+        verify(slotReservationEngine).release(1002L, 1);
+        // 不再删除后回查、重试
+        verify(bookingMapper, never()).deleteById(anyLong());
+    }
+
+    @Test
+    void testPurgeUserHistoryInBoundedChunks() {
+        List<BookingPurgeProgress> observed = new ArrayList<>();
+        AtomicReference<BookingPurgeJob> jobRef = new AtomicReference<>();
+        AtomicReference<String> jobId = new AtomicReference<>();
+        List<Integer> chunkSizes = new ArrayList<>();
+        when(bookingMapper.deleteBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            chunkSizes.add(ids.size());
+            ids.forEach(table::remove);
+            if (jobId.get() != null) {
+                observed.add(jobRef.get().getProgress(jobId.get()));
+            }
+            return ids.size();
+        });
+        List<Runnable> queued = new ArrayList<>();
+        BookingPurgeJob job = new BookingPurgeJob(bookingMapper, cascadeDeleter, transactionManager, queued::add, CHUNK_SIZE, 0);
+        jobRef.set(job);
+
+        BookingPurgeRequest request = new BookingPurgeRequest();
+        request.setUserId(TEST_USER);
+        BookingPurgeProgress submitted = job.submit(request);
+        assertEquals(BookingPurgeJob.STATE_QUEUED, submitted.getState());
+        jobId.set(submitted.getJobId());
+        queued.forEach(Runnable::run);
+
+        BookingPurgeProgress done = job.getProgress(submitted.getJobId());
+        assertEquals(BookingPurgeJob.STATE_COMPLETED, done.getState());
+        assertEquals(USER_BOOKINGS, done.getPurged());
+        assertEquals(USER_BOOKINGS, done.getEstimatedTotal());
+        assertEquals(100, done.getPercent());
+        assertEquals(5L, done.getChunks());
+        assertTrue(chunkSizes.stream().allMatch(size -> size <= CHUNK_SIZE));
+        assertEquals(100, table.size(), "其他用户的订单不受影响");
+
+        // 每批一个短事务（最后一次为确认无剩余订单的空查询），进度随批次推进
+        assertEquals(6, commits.get());
+        assertEquals(BookingPurgeJob.STATE_RUNNING, observed.get(2).getState());
+        assertEquals(1000L, observed.get(2).getPurged());
+        assertEquals(43, observed.get(2).getPercent());
+
+        // 每批每个时间段只归还一次名额，已取消的订单不归还
+        verify(slotReservationEngine, atMost(5 * 4)).release(anyLong(), anyInt());
+        int released = mockingDetails(slotReservationEngine).getInvocations().stream()
+                .filter(i -> i.getMethod().getName().equals("release"))
+                .mapToInt(i -> (Integer) i.getArgument(1))
+                .sum();
+        assertEquals(USER_BOOKINGS - USER_BOOKINGS / 10, released);
+        verify(paymentMapper, times(5)).delete(any());
+        verify(feedbackMapper, times(5)).delete(any());
+    }
+
+    @Test
+    void testCancelStopsAfterCurrentChunk() {
+        AtomicReference<Runnable> cancel = new AtomicReference<>();
+        when(bookingMapper.deleteBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            ids.forEach(table::remove);
+            cancel.get().run();
+            return ids.size();
+        });
+        List<Runnable> queued = new ArrayList<>();
+        BookingPurgeJob job = new BookingPurgeJob(bookingMapper, cascadeDeleter, transactionManager, queued::add, CHUNK_SIZE, 0);
+
+        BookingPurgeRequest request = new BookingPurgeRequest();
+        request.setUserId(TEST_USER);
+        String jobId = job.submit(request).getJobId();
+        cancel.set(() -> job.cancel(jobId));
+        queued.forEach(Runnable::run);
+
+        BookingPurgeProgress progress = job.getProgress(jobId);
+        assertEquals(BookingPurgeJob.STATE_CANCELLED, progress.getState());
+        assertEquals(CHUNK_SIZE, progress.getPurged());
+        assertEquals(USER_BOOKINGS + 100 - CHUNK_SIZE, table.size());
+    }
+
+    @Test
+    void testPurgeRequiresCriteria() {
+        BookingPurgeJob job = new BookingPurgeJob(bookingMapper, cascadeDeleter, transactionManager, Runnable::run, CHUNK_SIZE, 0);
+        assertThrows(BusinessException.class, () -> job.submit(new BookingPurgeRequest()));
+        assertThrows(BusinessException.class, () -> job.getProgress("missing"));
+        verify(bookingMapper, never()).lockPurgeChunk(any(), any(), any(), any(), anyLong(), anyInt());
+    }
+
+    private BookingServiceImpl bookingService() throws Exception {
+        BookingServiceImpl bookingService = new BookingServiceImpl();
+        var field = BookingServiceImpl.class.getDeclaredField("bookingMapper");
+        field.setAccessible(true);
+        field.set(bookingService, bookingMapper);
+        field = BookingServiceImpl.class.getDeclaredField("bookingCascadeDeleter");
+        field.setAccessible(true);
+        field.set(bookingService, cascadeDeleter);
+        return bookingService;
+    }
+}
@@ -0,0 +1,103 @@
+package com.carwash.service.booking;
+
+import com.carwash.dto.BookingResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.Service;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.service.impl.BookingServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单列表服务名称填充测试
+ * 验证列表接口的服务查询次数为常数，与订单数量无关。
+ */
+public class BookingResponseAssemblerTest {
+
+    private static final int SERVICE_COUNT = 3;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 5000})
+    void testServiceQueryCountIsConstantForAnyListSize(int size) throws Exception {
+        ServiceMapper serviceMapper = mockServiceMapper();
+        BookingMapper bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectList(any())).thenReturn(buildBookings(size));
+
+        BookingServiceImpl bookingService = new BookingServiceImpl();
+        inject(bookingService, "bookingMapper", bookingMapper);
+        inject(bookingService, "serviceMapper", serviceMapper);
+        inject(bookingService, "bookingResponseAssembler", new BookingResponseAssembler(serviceMapper));
+
+        List<BookingResponse> all = bookingService.getAllBookings();
+        List<BookingResponse> mine = bookingService.getUserBookings(1L);
+
+        assertEquals(size, all.size());
+        assertEquals(size, mine.size());
+        for (BookingResponse response : all) {
+            assertEquals("服务" + response.getServiceId(), response.getServiceName(), "应填充服务名称");
+        }
+        // 每个列表接口仅一次批量查询，不再逐条 selectById
+        verify(serviceMapper, times(2)).selectBatchIds(anyCollection());
+        verify(serviceMapper, never()).selectById(any());
+    }
+
+    @Test
+    void testBatchLookupUsesDistinctServiceIds() {
+        ServiceMapper serviceMapper = mockServiceMapper();
+        BookingResponseAssembler assembler = new BookingResponseAssembler(serviceMapper);
+
+        List<Booking> bookings = buildBookings(50);
+        bookings.get(0).setServiceId(null);
+        List<BookingResponse> responses = assembler.toResponses(bookings);
+
+        assertEquals(50, responses.size());
+        assertNull(responses.get(0).getServiceName(), "无服务ID的订单不填充服务名称");
+        verify(serviceMapper).selectBatchIds(argThat((Collection<Long> ids) -> ids.size() == SERVICE_COUNT));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ServiceMapper mockServiceMapper() {
+        ServiceMapper serviceMapper = mock(ServiceMapper.class);
+        when(serviceMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> {
+                Service service = new Service();
+                service.setId(id);
+                service.setName("服务" + id);
+                return service;
+            }).collect(Collectors.toList());
+        });
+        return serviceMapper;
+    }
+
+    private List<Booking> buildBookings(int size) {
+        List<Booking> bookings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Booking booking = new Booking();
+            booking.setId((long) i + 1);
+            booking.setUserId(1L);
+            booking.setServiceId((long) (i % SERVICE_COUNT) + 1);
+            booking.setStatus("pending");
+            bookings.add(booking);
+        }
+        return bookings;
+    }
+
+    private void inject(Object target, String fieldName, Object value) throws Exception {
+        var field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
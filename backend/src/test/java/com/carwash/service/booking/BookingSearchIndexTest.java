@@ -0,0 +1,266 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.entity.Booking;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单搜索索引测试
+ * 验证车牌号、电话、订单号的片段匹配、不跨字段匹配、分页顺序、订单变更、删除与归档后的增量更新；
+ * 10 万订单查询延迟与百万订单基准默认跳过，使用 -Dbooking.search.benchmark=true 运行。
+ */
+public class BookingSearchIndexTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingSearchIndexTest.class);
+
+    private static final char[] BASE36 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private final Map<Long, Booking> bookings = new TreeMap<>();
+    private BookingMapper bookingMapper;
+    private BookingSearchIndex index;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        bookings.put(1L, booking(1L, "京A12345", "13800001111", "CW0000000000AAA"));
+        bookings.put(2L, booking(2L, "京B67890", "13900002222", "CW0000000000BBB"));
+        bookings.put(3L, booking(3L, "沪A12388", "13800003333", "CW0000000000CCC"));
+        bookings.put(4L, booking(4L, "粤C55555", "13700004444", "CW0000000000DDD"));
+
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectById(anyLong())).thenAnswer(invocation -> bookings.get((Long) invocation.getArgument(0)));
+        when(bookingMapper.streamForSearchIndex()).thenAnswer(invocation -> {
+            Cursor<Booking> cursor = mock(Cursor.class);
+            when(cursor.iterator()).thenReturn(new ArrayList<>(bookings.values()).iterator());
+            return cursor;
+        });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+
+        index = new BookingSearchIndex(bookingMapper, transactionManager, mock(RedisMessageListenerContainer.class));
+    }
+
+    @Test
+    void testSearchRequiresBuiltIndexAndMinimumLength() {
+        BusinessException notReady = assertThrows(BusinessException.class, () -> index.search("12345", 0, 10));
+        assertEquals(ResultCode.SYSTEM_ERROR.getCode(), notReady.getCode());
+
+        index.rebuild();
+        BusinessException tooShort = assertThrows(BusinessException.class, () -> index.search(" 1 2 ", 0, 10));
+        assertEquals(ResultCode.PARAM_ERROR.getCode(), tooShort.getCode());
+    }
+
+    @Test
+    void testSubstringMatchOnEachField() {
+        index.rebuild();
+
+        assertEquals(List.of(3L, 1L), index.search("a123", 0, 10).getBookingIds());
+        // 大小写、空白和连字符不影响匹配
+        assertEquals(List.of(2L), index.search("b-678 90", 0, 10).getBookingIds());
+        assertEquals(List.of(4L), index.search("0000444", 0, 10).getBookingIds());
+        assertEquals(List.of(3L, 1L), index.search("1380000", 0, 10).getBookingIds());
+        assertEquals(List.of(2L), index.search("000bbb", 0, 10).getBookingIds());
+        assertEquals(4, index.search("CW000", 0, 10).getTotal());
+        // n-gram 都出现但不连续的不算命中
+        assertEquals(0, index.search("12388A", 0, 10).getTotal());
+        // 不跨字段匹配：车牌结尾 + 电话开头
+        assertEquals(0, index.search("45138", 0, 10).getTotal());
+        assertEquals(0, index.search("XYZ", 0, 10).getTotal());
+    }
+
+    @Test
+    void testPagingIsNewestFirst() {
+        index.rebuild();
+
+        BookingSearchIndex.Hits first = index.search("CW000", 0, 3);
+        assertEquals(4, first.getTotal());
+        assertEquals(List.of(4L, 3L, 2L), first.getBookingIds());
+        assertEquals(List.of(1L), index.search("CW000", 3, 3).getBookingIds());
+        assertTrue(index.search("CW000", 8, 3).getBookingIds().isEmpty());
+    }
+
+    @Test
+    void testBookingChangesUpdateIndex() {
+        index.rebuild();
+
+        // 本节点新建订单：直接使用事件快照，不按主键读取
+        clearInvocations(bookingMapper);
+        Booking created = booking(5L, "京A99999", "13600005555", "CW0000000000EEE");
+        bookings.put(5L, created);
+        index.onBookingChanged(BookingChangedEvent.created(created));
+        assertEquals(List.of(5L), index.search("99999", 0, 10).getBookingIds());
+        verify(bookingMapper, never()).selectById(anyLong());
+
+        // 其他节点修改车牌（消息不带快照，重新读取）：旧车牌不再命中，新车牌命中
+        bookings.put(1L, booking(1L, "京A77777", "13800001111", "CW0000000000AAA"));
+        index.onBookingChanged(new BookingChangedEvent(1L, "CW0000000000AAA"));
+        assertEquals(List.of(3L), index.search("A123", 0, 10).getBookingIds());
+        assertEquals(List.of(1L), index.search("77777", 0, 10).getBookingIds());
+
+        // 删除（或归档）后不再命中
+        bookings.remove(3L);
+        index.onBookingChanged(new BookingChangedEvent(3L, "CW0000000000CCC"));
+        assertEquals(0, index.search("A123", 0, 10).getTotal());
+        assertEquals(4, index.search("CW000", 0, 10).getTotal());
+
+        Map<String, Object> stats = index.stats();
+        assertEquals(4, stats.get("documents"));
+        assertEquals(2, stats.get("deletedDocuments"));
+
+        // 重新构建后回收已删除文档
+        index.rebuild();
+        assertEquals(0, index.stats().get("deletedDocuments"));
+        assertEquals(List.of(1L), index.search("77777", 0, 10).getBookingIds());
+    }
+
+    @Test
+    void testArchivedBookingsAreRemovedWithoutRereading() {
+        index.rebuild();
+        clearInvocations(bookingMapper);
+
+        // 归档事件携带订单ID，直接移除，不再按主键读取
+        Booking archived = bookings.remove(1L);
+        index.onBookingChanged(BookingChangedEvent.archived(archived));
+
+        assertEquals(List.of(3L), index.search("A123", 0, 10).getBookingIds());
+        assertEquals(3, index.search("CW000", 0, 10).getTotal());
+        verify(bookingMapper, never()).selectById(anyLong());
+    }
+
+    @Test
+    void testUnchangedBookingIsNotReindexed() {
+        index.rebuild();
+        index.onBookingChanged(new BookingChangedEvent(2L, "CW0000000000BBB"));
+        index.onBookingChanged(BookingChangedEvent.transitioned(bookings.get(2L), "pending", "confirmed"));
+        assertEquals(0, index.stats().get("deletedDocuments"));
+        assertEquals(List.of(2L), index.search("67890", 0, 10).getBookingIds());
+    }
+
+    @Test
+    void testLongIntMapRemoveKeepsProbeChains() {
+        BookingSearchIndex.LongIntMap map = new BookingSearchIndex.LongIntMap();
+        for (long key = 1; key <= 5000; key++) {
+            map.put(key, (int) key * 2);
+        }
+        for (long key = 1; key <= 5000; key += 3) {
+            map.remove(key);
+        }
+        for (long key = 1; key <= 5000; key++) {
+            assertEquals((key - 1) % 3 == 0 ? -1 : (int) key * 2, map.get(key));
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "booking.search.benchmark", matches = "true")
+    void benchmarkQueryLatencyAtHundredThousandBookings() {
+        List<Booking> data = synthetic(100_000, new Random(7));
+        BookingSearchIndex.Segment segment = BookingSearchIndex.build(data);
+        assertNotNull(segment);
+        double avgMillis = measure(data, new Random(11), 2_000);
+        assertTrue(avgMillis < 10, "10 万订单搜索平均耗时 " + avgMillis + " ms");
+    }
+
+    /**
+     * 百万订单基准：构建耗时、内存占用和查询延迟
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "booking.search.benchmark", matches = "true")
+    void benchmarkOneMillionBookings() {
+        List<Booking> data = synthetic(1_000_000, new Random(7));
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        BookingSearchIndex.Segment segment = BookingSearchIndex.build(data);
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+        assertNotNull(segment);
+
+        double avgMillis = measure(data, new Random(11), 10_000);
+        log.info("百万订单索引: 构建 {} ms, 堆增长 {} MB, 平均查询 {} ms",
+                buildMillis, (heapAfter - heapBefore) / 1024 / 1024, String.format("%.3f", avgMillis));
+    }
+
+    /**
+     * 用随机抽取的字段片段查询，返回平均耗时（毫秒）
+     */
+    private double measure(List<Booking> data, Random random, int queries) {
+        bookings.clear();
+        for (Booking booking : data) {
+            bookings.put(booking.getId(), booking);
+        }
+        index.rebuild();
+        String[] keywords = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            Booking booking = data.get(random.nextInt(data.size()));
+            String field = switch (i % 3) {
+                case 0 -> booking.getCarNumber();
+                case 1 -> booking.getContactPhone();
+                default -> booking.getOrderNo();
+            };
+            int length = 4 + random.nextInt(3);
+            int from = random.nextInt(field.length() - length + 1);
+            keywords[i] = field.substring(from, from + length);
+        }
+        for (int i = 0; i < Math.min(queries, 500); i++) {
+            index.search(keywords[i], 0, 20);
+        }
+        long start = System.nanoTime();
+        for (String keyword : keywords) {
+            assertTrue(index.search(keyword, 0, 20).getTotal() > 0);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / queries;
+    }
+
+    private static List<Booking> synthetic(int count, Random random) {
+        String provinces = "京沪粤浙苏川鄂湘";
+        List<Booking> data = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            StringBuilder plate = new StringBuilder();
+            plate.append(provinces.charAt(random.nextInt(provinces.length())))
+                    .append((char) ('A' + random.nextInt(8)));
+            for (int k = 0; k < 5; k++) {
+                plate.append(BASE36[random.nextInt(BASE36.length)]);
+            }
+            StringBuilder orderNo = new StringBuilder("CW");
+            for (int k = 0; k < 13; k++) {
+                orderNo.append(BASE36[random.nextInt(BASE36.length)]);
+            }
+            String phone = "1" + (3 + random.nextInt(7)) + String.format("%09d", random.nextInt(1_000_000_000));
+            data.add(booking((long) i, plate.toString(), phone, orderNo.toString()));
+        }
+        return data;
+    }
+
+    private static Booking booking(Long id, String carNumber, String contactPhone, String orderNo) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setCarNumber(carNumber);
+        booking.setContactPhone(contactPhone);
+        booking.setOrderNo(orderNo);
+        return booking;
+    }
+}
@@ -0,0 +1,165 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.entity.Booking;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.service.impl.BookingServiceImpl;
+import com.carwash.service.outbox.OutboxPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单状态并发流转测试
+ * 模拟 Mapper 复现 status + version 条件更新语义，多名管理员同时修改同一订单时只有一个成功，其余返回冲突。
+ */
+public class BookingStatusContentionTest {
+
+    private static final long BOOKING_ID = 1L;
+    private static final int CONCURRENT_ADMINS = 200;
+
+    private BookingServiceImpl bookingService;
+    private BookingMapper bookingMapper;
+    private OutboxPublisher outboxPublisher;
+
+    /** 模拟数据库中的订单行 */
+    private final Booking row = new Booking();
+
+    @BeforeEach
+    void setup() throws Exception {
+        row.setId(BOOKING_ID);
+        row.setUserId(1L);
+        row.setTimeSlotId(7L);
+        row.setOrderNo("CW1");
+        row.setStatus("pending");
+        row.setVersion(0);
+        row.setDeleted(0);
+
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectById(BOOKING_ID)).thenAnswer(invocation -> snapshot());
+        // 等价于 UPDATE ... WHERE id = ? AND status = ? AND version = ?
+        when(bookingMapper.transitionStatus(anyLong(), anyString(), anyString(), anyInt(), any(), any()))
+                .thenAnswer(invocation -> {
+                    synchronized (row) {
+                        String from = invocation.getArgument(1);
+                        int version = invocation.getArgument(3);
+                        if (!from.equals(row.getStatus()) || version != row.getVersion()) {
+                            return 0;
+                        }
+                        row.setStatus(invocation.getArgument(2));
+                        row.setVersion(version + 1);
+                        return 1;
+                    }
+                });
+
+        outboxPublisher = mock(OutboxPublisher.class);
+        bookingService = new BookingServiceImpl();
+        inject("bookingMapper", bookingMapper);
+        inject("slotReservationEngine", mock(SlotReservationEngine.class));
+        inject("outboxPublisher", outboxPublisher);
+        inject("eventPublisher", mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    void testConcurrentAdminEditsNeverOverwriteEachOther() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch startGate = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_ADMINS; i++) {
+            // 一半管理员确认订单，一半取消订单
+            final String target = i % 2 == 0 ? "confirmed" : "cancelled";
+            futures.add(executor.submit(() -> {
+                startGate.await();
+                try {
+                    bookingService.updateBookingStatus(BOOKING_ID, target);
+                    succeeded.incrementAndGet();
+                } catch (BusinessException e) {
+                    if (e.getCode().equals(ResultCode.ORDER_CONCURRENT_MODIFIED.getCode())) {
+                        conflicts.incrementAndGet();
+                    } else {
+                        assertEquals(ResultCode.INVALID_STATUS_TRANSITION.getCode(), e.getCode());
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        startGate.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // pending 只能成功流转一次；若先确认，则后续的取消可以在 confirmed 版本上再成功一次
+        int expectedVersion = succeeded.get();
+        assertEquals(expectedVersion, row.getVersion(), "每次成功流转版本号加一，不存在丢失更新");
+        assertTrue(succeeded.get() >= 1 && succeeded.get() <= 2);
+        assertEquals(CONCURRENT_ADMINS, succeeded.get() + conflicts.get() + rejected.get());
+        verify(outboxPublisher, times(succeeded.get())).publishOrderStatus(any(), anyString(), anyString(), anyString(), anyBoolean());
+        // 每次请求仅一次读取 + 一次条件更新
+        verify(bookingMapper, times(CONCURRENT_ADMINS)).selectById(BOOKING_ID);
+        verify(bookingMapper, never()).updateById(any(Booking.class));
+    }
+
+    @Test
+    void testStaleVersionReturnsConflict() {
+        Booking stale = snapshot();
+        row.setVersion(5);
+        when(bookingMapper.selectById(BOOKING_ID)).thenReturn(stale);
+
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> bookingService.updateBookingStatus(BOOKING_ID, "confirmed"));
+        assertEquals(ResultCode.ORDER_CONCURRENT_MODIFIED.getCode(), e.getCode());
+        assertEquals("pending", row.getStatus());
+        verifyNoInteractions(outboxPublisher);
+    }
+
+    @Test
+    void testTransitionTableMatchesBusinessRules() {
+        assertTrue(BookingStatusMachine.canTransition("pending", "confirmed"));
+        assertTrue(BookingStatusMachine.canTransition("confirmed", "in_progress"));
+        assertTrue(BookingStatusMachine.canTransition("in_progress", "completed"));
+        assertTrue(BookingStatusMachine.canTransition("in_progress", "cancelled"));
+        assertFalse(BookingStatusMachine.canTransition("pending", "completed"));
+        assertFalse(BookingStatusMachine.canTransition("completed", "cancelled"));
+        assertFalse(BookingStatusMachine.canTransition("cancelled", "pending"));
+        assertTrue(BookingStatusMachine.canTransition("legacy", "confirmed"), "未知状态保持兼容");
+    }
+
+    private Booking snapshot() {
+        synchronized (row) {
+            Booking copy = new Booking();
+            BeanUtils.copyProperties(row, copy);
+            return copy;
+        }
+    }
+
+    private void inject(String fieldName, Object value) throws Exception {
+        var field = BookingServiceImpl.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(bookingService, value);
+    }
+}
@@ -0,0 +1,243 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.dto.BookingRequest;
+import com.carwash.dto.WaitlistResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.Service;
+import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.service.outbox.OutboxPublisher;
+import com.carwash.utils.TimeUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 候补队列测试
+ * Redis 不可用时使用本地队列，验证先进先出、去重、容量上限、名额释放后转给队首用户以及事务回滚后放回队首。
+ */
+public class BookingWaitlistTest {
+
+    private static final long SLOT_ID = 9L;
+
+    private BookingMapper bookingMapper;
+    private TimeSlotMapper timeSlotMapper;
+    private SlotReservationEngine slotReservationEngine;
+    private OutboxPublisher outboxPublisher;
+    private ApplicationEventPublisher eventPublisher;
+    private SlotWaitlist slotWaitlist;
+    private BookingWaitlist waitlist;
+    private TimeSlot slot;
+    private final List<Booking> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        RedisUtils redisUtils = mock(RedisUtils.class);
+        when(redisUtils.execute(any(), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("redis down"));
+        slotWaitlist = new SlotWaitlist(redisUtils);
+
+        slot = new TimeSlot();
+        slot.setId(SLOT_ID);
+        slot.setDate(TimeUtils.today().plusDays(1));
+        slot.setStartTime(LocalTime.of(10, 0));
+        slot.setEndTime(LocalTime.of(11, 0));
+        slot.setMaxBookings(2);
+        slot.setCurrentBookings(2);
+        slot.setStatus(1);
+        timeSlotMapper = mock(TimeSlotMapper.class);
+        when(timeSlotMapper.selectById(SLOT_ID)).thenReturn(slot);
+
+        Service service = new Service();
+        service.setId(1L);
+        service.setPrice(new BigDecimal("39.00"));
+        ServiceMapper serviceMapper = mock(ServiceMapper.class);
+        when(serviceMapper.selectById(1L)).thenReturn(service);
+
+        AtomicLong ids = new AtomicLong(100);
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectCount(any())).thenReturn(0L);
+        when(bookingMapper.insert(any(Booking.class))).thenAnswer(invocation -> {
+            Booking booking = invocation.getArgument(0);
+            booking.setId(ids.incrementAndGet());
+            inserted.add(booking);
+            return 1;
+        });
+
+        slotReservationEngine = mock(SlotReservationEngine.class);
+        outboxPublisher = mock(OutboxPublisher.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        waitlist = new BookingWaitlist(bookingMapper, serviceMapper, timeSlotMapper, slotWaitlist,
+                slotReservationEngine, outboxPublisher, eventPublisher, 3);
+    }
+
+    @AfterEach
+    void cleanup() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testJoinIsFifoAndIdempotentPerUser() {
+        assertEquals(1, waitlist.join(request(1L)).getPosition());
+        assertEquals(2, waitlist.join(request(2L)).getPosition());
+        // 重复加入返回原位置，不会排到队尾
+        WaitlistResponse again = waitlist.join(request(1L));
+        assertEquals(1, again.getPosition());
+        assertEquals(2, again.getQueueSize());
+        assertEquals(3, waitlist.join(request(3L)).getPosition());
+
+        BusinessException full = assertThrows(BusinessException.class, () -> waitlist.join(request(4L)));
+        assertEquals(ResultCode.WAITLIST_FULL.getCode(), full.getCode());
+
+        waitlist.leave(SLOT_ID, 2L);
+        assertEquals(2, waitlist.position(SLOT_ID, 3L).getPosition());
+        assertEquals(0, waitlist.position(SLOT_ID, 2L).getPosition());
+        assertThrows(BusinessException.class, () -> waitlist.leave(SLOT_ID, 2L));
+    }
+
+    @Test
+    void testJoinRequiresFullSlot() {
+        slot.setCurrentBookings(1);
+        BusinessException e = assertThrows(BusinessException.class, () -> waitlist.join(request(1L)));
+        assertEquals(ResultCode.PARAM_ERROR.getCode(), e.getCode());
+
+        slot.setCurrentBookings(2);
+        slot.setStatus(0);
+        assertThrows(BusinessException.class, () -> waitlist.join(request(1L)));
+    }
+
+    @Test
+    void testFreedCapacityGoesToHeadOfQueue() {
+        waitlist.join(request(1L));
+        waitlist.join(request(2L));
+
+        Booking first = waitlist.releaseOrPromote(SLOT_ID);
+        assertNotNull(first);
+        assertEquals(1L, first.getUserId());
+        assertEquals(SLOT_ID, first.getTimeSlotId());
+        assertEquals(slot.getDate(), first.getBookingDate());
+        assertEquals("10:00-11:00", first.getBookingTime());
+        assertEquals("pending", first.getStatus());
+        assertEquals(new BigDecimal("39.00"), first.getTotalPrice());
+        // 名额转移：不释放也不重新占用
+        verify(slotReservationEngine, never()).release(anyLong());
+        verify(slotReservationEngine, never()).reserve(anyLong());
+        verify(outboxPublisher).publishOrderStatus(eq(first), eq(BookingWaitlist.STATUS_WAITLISTED), eq("pending"), any(), anyBoolean());
+        verify(eventPublisher).publishEvent(any(BookingChangedEvent.class));
+
+        assertEquals(2L, waitlist.releaseOrPromote(SLOT_ID).getUserId());
+        // 队列为空时正常归还名额
+        assertNull(waitlist.releaseOrPromote(SLOT_ID));
+        verify(slotReservationEngine, times(1)).release(SLOT_ID);
+    }
+
+    @Test
+    void testSkipsStaleEntries() {
+        waitlist.join(request(1L));
+        waitlist.join(request(2L));
+        // 用户1已经通过其他途径预约到该时间段
+        when(bookingMapper.selectCount(any())).thenReturn(1L, 0L);
+
+        Booking promoted = waitlist.releaseOrPromote(SLOT_ID);
+        assertEquals(2L, promoted.getUserId());
+        assertEquals(0, slotWaitlist.size(SLOT_ID));
+    }
+
+    @Test
+    void testRollbackPutsEntryBackAtHead() {
+        waitlist.join(request(1L));
+        waitlist.join(request(2L));
+
+        TransactionSynchronizationManager.initSynchronization();
+        waitlist.releaseOrPromote(SLOT_ID);
+        assertEquals(1, waitlist.position(SLOT_ID, 2L).getPosition());
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        assertEquals(1, waitlist.position(SLOT_ID, 1L).getPosition());
+        assertEquals(2, waitlist.position(SLOT_ID, 2L).getPosition());
+    }
+
+    @Test
+    void testConcurrentJoinsRespectCapacity() throws Exception {
+        BookingWaitlist large = new BookingWaitlist(bookingMapper, mockServiceMapper(), timeSlotMapper, slotWaitlist,
+                slotReservationEngine, outboxPublisher, eventPublisher, 50);
+        int users = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Integer> positions = ConcurrentHashMap.newKeySet();
+        AtomicInteger rejected = new AtomicInteger();
+        for (int i = 0; i < users; i++) {
+            long userId = 1000 + i % 100;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    positions.add(large.join(request(userId)).getPosition());
+                } catch (BusinessException e) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(50, slotWaitlist.size(SLOT_ID));
+        assertEquals(50, positions.size());
+        assertTrue(positions.stream().allMatch(p -> p >= 1 && p <= 50));
+        assertTrue(rejected.get() >= 50);
+    }
+
+    private static ServiceMapper mockServiceMapper() {
+        Service service = new Service();
+        service.setId(1L);
+        service.setPrice(new BigDecimal("39.00"));
+        ServiceMapper serviceMapper = mock(ServiceMapper.class);
+        when(serviceMapper.selectById(1L)).thenReturn(service);
+        return serviceMapper;
+    }
+
+    private static BookingRequest request(Long userId) {
+        BookingRequest request = new BookingRequest();
+        request.setUserId(userId);
+        request.setServiceId(1L);
+        request.setTimeSlotId(SLOT_ID);
+        request.setCarNumber("京A" + userId);
+        request.setContactPhone("13800000000");
+        return request;
+    }
+}
@@ -0,0 +1,319 @@
+package com.carwash.service.booking;
+
+import com.carwash.dto.DayScheduleResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.Service;
+import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 排班索引测试
+ * 用内存数据模拟 bookings / time_slots，验证全量加载、按事件快照增量更新（新建、取消、支付、删除）不回查数据库、
+ * 其他节点的变更（改期）重新读取订单且跳过本节点发出的消息，以及读取不访问数据库。
+ */
+public class DayScheduleIndexTest {
+
+    private static final int DAYS_AHEAD = 7;
+
+    private final Map<Long, Booking> bookings = new HashMap<>();
+    private final Map<Long, TimeSlot> slots = new HashMap<>();
+
+    private BookingMapper bookingMapper;
+    private TimeSlotMapper timeSlotMapper;
+    private ServiceMapper serviceMapper;
+    private MessageListener remoteListener;
+    private DayScheduleIndex index;
+    private LocalDate today;
+    private long nextBookingId = 1;
+
+    @BeforeEach
+    void setup() {
+        today = TimeUtils.today();
+        long slotId = 1;
+        for (int d = 0; d <= DAYS_AHEAD; d++) {
+            // 倒序插入，验证按开始时间排序
+            for (int hour = 17; hour >= 9; hour--) {
+                TimeSlot slot = new TimeSlot();
+                slot.setId(slotId++);
+                slot.setDate(today.plusDays(d));
+                slot.setStartTime(LocalTime.of(hour, 0));
+                slot.setEndTime(LocalTime.of(hour + 1, 0));
+                slot.setMaxBookings(3);
+                slot.setStatus(1);
+                slots.put(slot.getId(), slot);
+            }
+        }
+        for (TimeSlot slot : slots.values()) {
+            for (int i = 0; i < 2; i++) {
+                addBooking(slot, "confirmed");
+            }
+        }
+
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectByDateRange(any(), any())).thenAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(0);
+            LocalDate end = invocation.getArgument(1);
+            return bookings.values().stream()
+                    .filter(b -> !b.getBookingDate().isBefore(start) && !b.getBookingDate().isAfter(end))
+                    .collect(Collectors.toList());
+        });
+        when(bookingMapper.selectById(anyLong())).thenAnswer(invocation -> bookings.get((Long) invocation.getArgument(0)));
+
+        timeSlotMapper = mock(TimeSlotMapper.class);
+        when(timeSlotMapper.selectByDateRange(any(), any())).thenAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(0);
+            LocalDate end = invocation.getArgument(1);
+            return slots.values().stream()
+                    .filter(s -> !s.getDate().isBefore(start) && !s.getDate().isAfter(end))
+                    .collect(Collectors.toList());
+        });
+        when(timeSlotMapper.selectById(anyLong())).thenAnswer(invocation -> slots.get((Long) invocation.getArgument(0)));
+
+        serviceMapper = mock(ServiceMapper.class);
+        Service service = new Service();
+        service.setId(1L);
+        service.setName("标准洗车");
+        when(serviceMapper.selectBatchIds(any())).thenReturn(List.of(service));
+
+        RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+        BookingResponseAssembler assembler = new BookingResponseAssembler(serviceMapper);
+        index = new DayScheduleIndex(bookingMapper, timeSlotMapper, assembler, listenerContainer, DAYS_AHEAD);
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(listener.capture(), any(Topic.class));
+        remoteListener = listener.getValue();
+        index.reload();
+    }
+
+    @Test
+    void testLoadGroupsBookingsBySlotInStartTimeOrder() {
+        DayScheduleResponse schedule = index.getSchedule(today.plusDays(2));
+
+        assertEquals(9, schedule.getSlots().size());
+        assertEquals(18, schedule.getActiveBookings());
+        assertTrue(schedule.getUnassigned().isEmpty());
+        List<LocalTime> starts = schedule.getSlots().stream()
+                .map(DayScheduleResponse.SlotSchedule::getStartTime)
+                .collect(Collectors.toList());
+        assertEquals(LocalTime.of(9, 0), starts.get(0));
+        assertEquals(LocalTime.of(17, 0), starts.get(8));
+        DayScheduleResponse.SlotSchedule first = schedule.getSlots().get(0);
+        assertEquals(2, first.getOccupied());
+        assertEquals(1, first.getAvailable());
+        assertEquals(2, first.getBookings().size());
+    }
+
+    @Test
+    void testIncrementalUpdatesFromEvents() {
+        TimeSlot slot = slotAt(today, 10);
+        long versionBefore = index.getSchedule(today).getVersion();
+        clearInvocations(bookingMapper, timeSlotMapper, serviceMapper);
+
+        // 新建订单
+        Booking created = addBooking(slot, "pending");
+        index.onBookingChanged(BookingChangedEvent.created(created));
+        DayScheduleResponse.SlotSchedule updated = slotOf(index.getSchedule(today), slot.getId());
+        assertEquals(3, updated.getOccupied());
+        assertEquals(0, updated.getAvailable());
+        assertEquals(created.getId(), updated.getBookings().get(2).getId());
+        assertEquals("标准洗车", updated.getBookings().get(2).getServiceName());
+        assertTrue(index.getSchedule(today).getVersion() > versionBefore);
+
+        // 取消：仍在看板上，但不占名额
+        index.onBookingChanged(BookingChangedEvent.transitioned(created, "pending", "cancelled"));
+        updated = slotOf(index.getSchedule(today), slot.getId());
+        assertEquals(2, updated.getOccupied());
+        assertEquals(3, updated.getBookings().size());
+        assertEquals("cancelled", updated.getBookings().get(2).getStatus());
+
+        // 取消前读取的订单随后支付：只合并支付字段，不把状态改回 pending
+        Booking paid = copyOf(created);
+        paid.setPaymentStatus("paid");
+        paid.setPaymentMethod("wechat");
+        index.onBookingChanged(BookingChangedEvent.paymentUpdated(paid));
+        updated = slotOf(index.getSchedule(today), slot.getId());
+        assertEquals("paid", updated.getBookings().get(2).getPaymentStatus());
+        assertEquals("cancelled", updated.getBookings().get(2).getStatus());
+        assertEquals(2, updated.getOccupied());
+
+        // 删除
+        index.onBookingChanged(BookingChangedEvent.removed(created));
+        assertEquals(2, slotOf(index.getSchedule(today), slot.getId()).getBookings().size());
+
+        // 本节点的事件直接使用快照，不回查订单、服务，也不重新查询整天
+        verifyNoInteractions(bookingMapper, timeSlotMapper, serviceMapper);
+    }
+
+    @Test
+    void testRemoteChangesRereadBookingAndSkipOwnMessages() {
+        TimeSlot slot = slotAt(today, 10);
+        TimeSlot tomorrowSlot = slotAt(today.plusDays(1), 9);
+        Booking moved = bookings.get(firstBookingOf(slot));
+        moved.setBookingDate(tomorrowSlot.getDate());
+        moved.setTimeSlotId(tomorrowSlot.getId());
+        clearInvocations(bookingMapper);
+
+        // 本节点发出的失效消息已由事务提交后的事件处理，不再重复读取
+        remoteListener.onMessage(message(BookingCache.NODE_ID, moved), null);
+        verify(bookingMapper, never()).selectById(anyLong());
+        assertEquals(2, slotOf(index.getSchedule(today), slot.getId()).getOccupied());
+
+        // 其他节点改期：按主键重新读取并移动到新日期
+        remoteListener.onMessage(message("other-node", moved), null);
+        verify(bookingMapper).selectById(moved.getId());
+        assertEquals(1, slotOf(index.getSchedule(today), slot.getId()).getOccupied());
+        assertEquals(3, slotOf(index.getSchedule(today.plusDays(1)), tomorrowSlot.getId()).getOccupied());
+        verify(bookingMapper, never()).selectByDateRange(any(), any());
+    }
+
+    @Test
+    void testBookingInNewSlotAndOutsideWindow() {
+        TimeSlot late = new TimeSlot();
+        late.setId(10_000L);
+        late.setDate(today);
+        late.setStartTime(LocalTime.of(20, 0));
+        late.setEndTime(LocalTime.of(21, 0));
+        late.setMaxBookings(1);
+        late.setStatus(1);
+        slots.put(late.getId(), late);
+        Booking booking = addBooking(late, "confirmed");
+        index.onBookingChanged(BookingChangedEvent.created(booking));
+
+        DayScheduleResponse schedule = index.getSchedule(today);
+        assertEquals(10, schedule.getSlots().size());
+        assertEquals(late.getId(), schedule.getSlots().get(9).getTimeSlotId());
+        assertEquals(0, schedule.getSlots().get(9).getAvailable());
+
+        // 窗口之外的日期直接查库
+        DayScheduleResponse past = index.getSchedule(today.minusDays(1));
+        assertTrue(past.getSlots().isEmpty());
+        verify(bookingMapper).selectByDateRange(today.minusDays(1), today.minusDays(1));
+    }
+
+    @Test
+    void testReadsAreServedFromMemory() {
+        clearInvocations(bookingMapper, timeSlotMapper);
+        int reads = 200_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            assertNotNull(index.getSchedule(today.plusDays(i % (DAYS_AHEAD + 1))));
+        }
+        long avgNanos = (System.nanoTime() - start) / reads;
+        verifyNoInteractions(bookingMapper, timeSlotMapper);
+        assertTrue(avgNanos < 100_000, "单次读取平均耗时应远低于 1ms，实际: " + avgNanos + "ns");
+    }
+
+    @Test
+    void testConcurrentReloadsRunOneAtATime() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Booking booked = bookings.get(firstBookingOf(slotAt(today, 9)));
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                // 加载期间收到的变更在本次加载完成后应用，不应被同时进行的另一次加载清掉
+                Booking cancelled = copyOf(booked);
+                cancelled.setStatus("cancelled");
+                index.onBookingChanged(BookingChangedEvent.transitioned(cancelled, "confirmed", "cancelled"));
+                Thread.sleep(20);
+                return List.of(booked);
+            } finally {
+                running.decrementAndGet();
+            }
+        }).when(bookingMapper).selectByDateRange(any(), any());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(index::reload));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(1, maxRunning.get(), "全量加载不应并发执行");
+        DayScheduleResponse.SlotSchedule slot = slotOf(index.getSchedule(today), slotAt(today, 9).getId());
+        assertEquals("cancelled", slot.getBookings().get(0).getStatus(), "加载期间的变更应在加载完成后应用");
+    }
+
+    private Booking addBooking(TimeSlot slot, String status) {
+        Booking booking = new Booking();
+        booking.setId(nextBookingId);
+        booking.setOrderNo("CW" + nextBookingId);
+        booking.setUserId(1L);
+        booking.setServiceId(1L);
+        booking.setTimeSlotId(slot.getId());
+        booking.setBookingDate(slot.getDate());
+        booking.setBookingTime(slot.getStartTime() + "-" + slot.getEndTime());
+        booking.setStatus(status);
+        booking.setCreatedAt(LocalDateTime.of(2026, 1, 1, 0, 0).plusSeconds(nextBookingId));
+        booking.setDeleted(0);
+        bookings.put(nextBookingId++, booking);
+        return booking;
+    }
+
+    private TimeSlot slotAt(LocalDate date, int hour) {
+        return slots.values().stream()
+                .filter(s -> s.getDate().equals(date) && s.getStartTime().getHour() == hour)
+                .findFirst().orElseThrow();
+    }
+
+    private static Booking copyOf(Booking booking) {
+        Booking copy = new Booking();
+        BeanUtils.copyProperties(booking, copy);
+        return copy;
+    }
+
+    private static DefaultMessage message(String nodeId, Booking booking) {
+        try {
+            String body = nodeId + "|" + booking.getId() + ":" + booking.getOrderNo();
+            return new DefaultMessage(BookingCache.EVICT_CHANNEL.getBytes(), BookingJson.MAPPER.writeValueAsBytes(body));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long firstBookingOf(TimeSlot slot) {
+        return bookings.values().stream()
+                .filter(b -> b.getTimeSlotId().equals(slot.getId()))
+                .mapToLong(Booking::getId)
+                .min().orElseThrow();
+    }
+
+    private static DayScheduleResponse.SlotSchedule slotOf(DayScheduleResponse schedule, Long slotId) {
+        return schedule.getSlots().stream()
+                .filter(s -> s.getTimeSlotId().equals(slotId))
+                .findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,245 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.entity.Booking;
+import com.carwash.entity.TimeSlot;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 时间段名额索引测试
+ * 用内存数据模拟 time_slots / bookings，验证全量加载、按订单事件携带的状态变化增减剩余名额（不回查）、
+ * 早于最近一次读取的事件改为重新读取、新时间段与停用时间段、其他节点删除订单后的合并重载，以及读取不访问数据库。
+ */
+public class SlotAvailabilityIndexTest {
+
+    private static final int DAYS = Constants.Appointment.MAX_ADVANCE_DAYS;
+
+    private final Map<Long, TimeSlot> slots = new HashMap<>();
+    private final Map<Long, Booking> bookings = new HashMap<>();
+
+    private TimeSlotMapper timeSlotMapper;
+    private BookingMapper bookingMapper;
+    private SlotAvailabilityIndex index;
+    private LocalDate today;
+
+    @BeforeEach
+    void setup() {
+        today = TimeUtils.today();
+        long id = 1;
+        for (int d = 0; d <= DAYS; d++) {
+            // 倒序插入，验证按开始时间排序
+            for (int hour = 17; hour >= 9; hour--) {
+                TimeSlot slot = new TimeSlot();
+                slot.setId(id++);
+                slot.setDate(today.plusDays(d));
+                slot.setStartTime(LocalTime.of(hour, 0));
+                slot.setEndTime(LocalTime.of(hour + 1, 0));
+                slot.setMaxBookings(2);
+                slot.setCurrentBookings(hour == 12 ? 2 : 0);
+                slot.setStatus(1);
+                slot.setDeleted(0);
+                slots.put(slot.getId(), slot);
+            }
+        }
+
+        timeSlotMapper = mock(TimeSlotMapper.class);
+        when(timeSlotMapper.selectByDateRange(any(), any())).thenAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(0);
+            LocalDate end = invocation.getArgument(1);
+            return slots.values().stream()
+                    .filter(s -> !s.getDate().isBefore(start) && !s.getDate().isAfter(end))
+                    .map(SlotAvailabilityIndexTest::copy)
+                    .collect(Collectors.toList());
+        });
+        when(timeSlotMapper.selectById(anyLong())).thenAnswer(invocation -> {
+            TimeSlot slot = slots.get((Long) invocation.getArgument(0));
+            return slot == null ? null : copy(slot);
+        });
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectById(anyLong())).thenAnswer(invocation -> bookings.get((Long) invocation.getArgument(0)));
+
+        index = new SlotAvailabilityIndex(timeSlotMapper, bookingMapper, mock(RedisMessageListenerContainer.class));
+        index.reload();
+    }
+
+    @Test
+    void testLoadSkipsFullSlotsAndSortsByStartTime() {
+        List<TimeSlot> available = index.available(today.plusDays(3));
+
+        assertEquals(8, available.size());
+        assertEquals(LocalTime.of(9, 0), available.get(0).getStartTime());
+        assertEquals(LocalTime.of(17, 0), available.get(7).getStartTime());
+        assertTrue(available.stream().noneMatch(s -> s.getStartTime().getHour() == 12));
+        assertTrue(index.covers(today.plusDays(DAYS)));
+        assertNull(index.available(today.plusDays(DAYS + 1)));
+        assertNull(index.available(today.minusDays(1)));
+
+        // 已约满的时间段仍可按时间查找
+        TimeSlot full = index.find(today, LocalTime.of(12, 0), LocalTime.of(13, 0));
+        assertEquals(2, full.getCurrentBookings());
+        assertNull(index.find(today, LocalTime.of(12, 0), LocalTime.of(12, 30)));
+    }
+
+    @Test
+    void testBookingEventsUpdateRemainingCapacity() {
+        TimeSlot slot = slotAt(today.plusDays(1), 10);
+        clearInvocations(timeSlotMapper);
+
+        Booking booking = book(1L, slot);
+        index.onBookingChanged(BookingChangedEvent.created(booking));
+        assertEquals(1, index.find(slot.getDate(), slot.getStartTime(), slot.getEndTime()).getCurrentBookings());
+
+        Booking second = book(2L, slot);
+        index.onBookingChanged(BookingChangedEvent.created(second));
+        assertTrue(index.available(slot.getDate()).stream().noneMatch(s -> s.getId().equals(slot.getId())));
+
+        // 确认、支付不改变名额
+        index.onBookingChanged(BookingChangedEvent.transitioned(second, "pending", "confirmed"));
+        index.onBookingChanged(BookingChangedEvent.paymentUpdated(second));
+        assertEquals(2, index.find(slot.getDate(), slot.getStartTime(), slot.getEndTime()).getCurrentBookings());
+
+        // 取消后名额恢复，删除已取消的订单不再重复释放
+        index.onBookingChanged(BookingChangedEvent.transitioned(second, "confirmed", "cancelled"));
+        assertTrue(index.available(slot.getDate()).stream().anyMatch(s -> s.getId().equals(slot.getId())));
+        second.setStatus("cancelled");
+        index.onBookingChanged(BookingChangedEvent.removed(second));
+        assertEquals(1, index.find(slot.getDate(), slot.getStartTime(), slot.getEndTime()).getCurrentBookings());
+
+        // 删除占用名额的订单直接释放，不需要全量加载
+        index.onBookingChanged(BookingChangedEvent.removed(booking));
+        assertEquals(0, index.find(slot.getDate(), slot.getStartTime(), slot.getEndTime()).getCurrentBookings());
+        index.reloadIfStale();
+
+        // 本节点的事件不回查订单和时间段
+        verifyNoInteractions(timeSlotMapper, bookingMapper);
+    }
+
+    @Test
+    void testEventOlderThanLastReadRereadsSlot() {
+        TimeSlot slot = slotAt(today.plusDays(1), 10);
+        Booking booking = book(1L, slot);
+        // 事件在重新加载之前创建、之后才提交：加载结果可能已包含本次变更
+        BookingChangedEvent event = BookingChangedEvent.created(booking);
+        slot.setCurrentBookings(1);
+        index.reload();
+        clearInvocations(timeSlotMapper);
+
+        index.onBookingChanged(event);
+        assertEquals(1, index.find(slot.getDate(), slot.getStartTime(), slot.getEndTime()).getCurrentBookings());
+        verify(timeSlotMapper).selectById(slot.getId());
+
+        // 重新读取之后创建的事件直接增减
+        Booking second = book(2L, slot);
+        index.onBookingChanged(BookingChangedEvent.created(second));
+        assertEquals(2, index.find(slot.getDate(), slot.getStartTime(), slot.getEndTime()).getCurrentBookings());
+        verify(timeSlotMapper, times(1)).selectById(slot.getId());
+    }
+
+    @Test
+    void testSlotChangesReloadTheDay() {
+        LocalDate date = today.plusDays(2);
+
+        // 新建的时间段：订单事件触发重新加载当天
+        TimeSlot late = new TimeSlot();
+        late.setId(10_000L);
+        late.setDate(date);
+        late.setStartTime(LocalTime.of(20, 0));
+        late.setEndTime(LocalTime.of(21, 0));
+        late.setMaxBookings(1);
+        late.setCurrentBookings(0);
+        late.setStatus(1);
+        late.setDeleted(0);
+        slots.put(late.getId(), late);
+        Booking booking = book(1L, late);
+        late.setCurrentBookings(1);
+        index.onBookingChanged(BookingChangedEvent.created(booking));
+        assertNotNull(index.find(date, LocalTime.of(20, 0), LocalTime.of(21, 0)));
+        assertEquals(8, index.available(date).size());
+
+        // 停用时间段
+        TimeSlot nine = slotAt(date, 9);
+        nine.setStatus(0);
+        index.reloadDate(date);
+        assertEquals(7, index.available(date).size());
+        assertNull(index.find(date, LocalTime.of(9, 0), LocalTime.of(10, 0)));
+    }
+
+    @Test
+    void testDeletedBookingsCoalesceIntoOneReload() {
+        TimeSlot slot = slotAt(today, 12);
+        clearInvocations(timeSlotMapper);
+
+        // 其他节点批量清理：消息不带状态，订单已删除，释放了名额
+        slot.setCurrentBookings(0);
+        for (long id = 1; id <= 500; id++) {
+            index.onBookingChanged(new BookingChangedEvent(id, "CW" + id));
+        }
+        verify(timeSlotMapper, never()).selectByDateRange(any(), any());
+
+        index.reloadIfStale();
+        index.reloadIfStale();
+        verify(timeSlotMapper, times(1)).selectByDateRange(any(), any());
+        assertEquals(9, index.available(today).size());
+    }
+
+    @Test
+    void testReadsAreServedFromMemory() {
+        clearInvocations(timeSlotMapper, bookingMapper);
+        int reads = 200_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < reads; i++) {
+            assertNotNull(index.available(today.plusDays(i % (DAYS + 1))));
+        }
+        long avgNanos = (System.nanoTime() - start) / reads;
+        verifyNoInteractions(timeSlotMapper, bookingMapper);
+        assertTrue(avgNanos < 50_000, "单次读取平均耗时应远低于 1ms，实际: " + avgNanos + "ns");
+    }
+
+    private TimeSlot slotAt(LocalDate date, int hour) {
+        return slots.values().stream()
+                .filter(s -> s.getDate().equals(date) && s.getStartTime().getHour() == hour)
+                .findFirst().orElseThrow();
+    }
+
+    private Booking book(Long id, TimeSlot slot) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setOrderNo("CW" + id);
+        booking.setTimeSlotId(slot.getId());
+        booking.setBookingDate(slot.getDate());
+        booking.setStatus("pending");
+        bookings.put(id, booking);
+        return booking;
+    }
+
+    private static TimeSlot copy(TimeSlot source) {
+        TimeSlot slot = new TimeSlot();
+        slot.setId(source.getId());
+        slot.setDate(source.getDate());
+        slot.setStartTime(source.getStartTime());
+        slot.setEndTime(source.getEndTime());
+        slot.setMaxBookings(source.getMaxBookings());
+        slot.setCurrentBookings(source.getCurrentBookings());
+        slot.setStatus(source.getStatus());
+        slot.setDeleted(source.getDeleted());
+        return slot;
+    }
+}
@@ -0,0 +1,186 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.dto.SlotCountDrift;
+import com.carwash.dto.SlotReconcileResult;
+import com.carwash.entity.TimeSlot;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 时间段名额计数校正测试
+ * 用内存数据模拟 time_slots 计数与实际订单数，验证按窗口聚合、分批条件更新、
+ * 并发预约修改过的计数不被覆盖，以及统计信息。
+ */
+public class SlotCountReconcilerTest {
+
+    private static final int BATCH_SIZE = 3;
+
+    /** 时间段ID -> 时间段（current_bookings 为记录值） */
+    private final Map<Long, TimeSlot> slots = new HashMap<>();
+    /** 时间段ID -> 实际订单数 */
+    private final Map<Long, Integer> actual = new HashMap<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final AtomicInteger commits = new AtomicInteger();
+
+    private TimeSlotMapper timeSlotMapper;
+    private SlotInventory slotInventory;
+    private SlotAvailabilityIndex slotAvailabilityIndex;
+    private SlotCountReconciler reconciler;
+    private LocalDate today;
+    /** 聚合之后、校正之前执行的操作（模拟在线预约） */
+    private Runnable afterAggregate = () -> { };
+
+    @BeforeEach
+    void setup() {
+        today = TimeUtils.today();
+        long id = 1;
+        for (int d = 0; d < 14; d++) {
+            for (int h = 0; h < 5; h++) {
+                TimeSlot slot = new TimeSlot();
+                slot.setId(id);
+                slot.setDate(today.plusDays(d));
+                slot.setMaxBookings(3);
+                slot.setCurrentBookings(1);
+                slots.put(id, slot);
+                actual.put(id, 1);
+                id++;
+            }
+        }
+
+        timeSlotMapper = mock(TimeSlotMapper.class);
+        when(timeSlotMapper.countByDateRange(any(), any())).thenAnswer(invocation ->
+                slotsBetween(invocation.getArgument(0), invocation.getArgument(1)).count());
+        when(timeSlotMapper.selectCountDrift(any(), any())).thenAnswer(invocation -> {
+            List<SlotCountDrift> drifts = new ArrayList<>();
+            slotsBetween(invocation.getArgument(0), invocation.getArgument(1))
+                    .filter(s -> !s.getCurrentBookings().equals(actual.get(s.getId())))
+                    .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
+                    .forEach(s -> {
+                        SlotCountDrift drift = new SlotCountDrift();
+                        drift.setTimeSlotId(s.getId());
+                        drift.setMaxBookings(s.getMaxBookings());
+                        drift.setRecorded(s.getCurrentBookings());
+                        drift.setActual(actual.get(s.getId()));
+                        drifts.add(drift);
+                    });
+            afterAggregate.run();
+            return drifts;
+        });
+        when(timeSlotMapper.fixCountDrift(anyList())).thenAnswer(invocation -> {
+            List<SlotCountDrift> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            int updated = 0;
+            for (SlotCountDrift drift : batch) {
+                TimeSlot slot = slots.get(drift.getTimeSlotId());
+                if (slot.getCurrentBookings().equals(drift.getRecorded())) {
+                    slot.setCurrentBookings(drift.getActual());
+                    updated++;
+                }
+            }
+            return updated;
+        });
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        doAnswer(invocation -> commits.incrementAndGet()).when(transactionManager).commit(any());
+        slotInventory = mock(SlotInventory.class);
+        slotAvailabilityIndex = mock(SlotAvailabilityIndex.class);
+        reconciler = new SlotCountReconciler(timeSlotMapper, slotInventory, slotAvailabilityIndex,
+                transactionManager, true, 1, 7, BATCH_SIZE);
+    }
+
+    @Test
+    void testFixesDriftInBatches() {
+        // createBooking 未累加计数：计数偏小
+        for (long id = 1; id <= 5; id++) {
+            actual.put(id, 3);
+        }
+        // 取消未归还：计数偏大
+        slots.get(20L).setCurrentBookings(3);
+        // 超订
+        actual.put(40L, 4);
+
+        SlotReconcileResult result = reconciler.reconcile(today, today.plusDays(13));
+
+        assertEquals(70, result.getScanned());
+        assertEquals(7, result.getDrifted());
+        assertEquals(7, result.getFixed());
+        assertEquals(0, result.getSkipped());
+        assertEquals(1, result.getOverbooked());
+        assertEquals(5 * 2 + 2 + 3, result.getTotalDrift());
+        for (TimeSlot slot : slots.values()) {
+            assertEquals(actual.get(slot.getId()), slot.getCurrentBookings());
+        }
+        // 两个7天窗口各一次聚合；第一个窗口6个偏差分两批，第二个窗口1个
+        verify(timeSlotMapper).selectCountDrift(today, today.plusDays(6));
+        verify(timeSlotMapper).selectCountDrift(today.plusDays(7), today.plusDays(13));
+        assertEquals(List.of(3, 3, 1), batchSizes);
+        assertEquals(3, commits.get());
+        verify(slotInventory).evict(20L);
+        verify(slotAvailabilityIndex).refreshSlot(40L);
+    }
+
+    @Test
+    void testConcurrentBookingIsNotOverwritten() {
+        actual.put(3L, 2);
+        actual.put(4L, 2);
+        // 聚合之后在线预约占用了时间段3的名额（计数和订单同时加一）
+        afterAggregate = () -> {
+            slots.get(3L).setCurrentBookings(2);
+            actual.put(3L, 3);
+            afterAggregate = () -> { };
+        };
+
+        SlotReconcileResult first = reconciler.reconcile(today, today.plusDays(6));
+        assertEquals(2, first.getDrifted());
+        assertEquals(1, first.getFixed());
+        assertEquals(1, first.getSkipped());
+        // 未用旧的聚合结果覆盖并发预约
+        assertEquals(2, slots.get(3L).getCurrentBookings());
+        assertEquals(2, slots.get(4L).getCurrentBookings());
+
+        SlotReconcileResult second = reconciler.reconcile(today, today.plusDays(6));
+        assertEquals(1, second.getFixed());
+        assertEquals(3, slots.get(3L).getCurrentBookings());
+
+        Map<String, Object> stats = reconciler.stats();
+        assertEquals(2L, stats.get("runs"));
+        assertEquals(3L, stats.get("totalDrifted"));
+        assertEquals(2L, stats.get("totalFixed"));
+        assertEquals(1L, stats.get("totalSkipped"));
+        assertSame(second, stats.get("lastResult"));
+    }
+
+    @Test
+    void testNoDriftAndValidation() {
+        SlotReconcileResult result = reconciler.reconcile(today, today.plusDays(13));
+        assertEquals(0, result.getDrifted());
+        verify(timeSlotMapper, never()).fixCountDrift(anyList());
+        verifyNoInteractions(slotInventory, slotAvailabilityIndex);
+
+        assertThrows(BusinessException.class, () -> reconciler.reconcile(today, today.minusDays(1)));
+        assertThrows(BusinessException.class, () -> reconciler.reconcile(today, today.plusDays(366)));
+    }
+
+    private Stream<TimeSlot> slotsBetween(LocalDate start, LocalDate end) {
+        return slots.values().stream().filter(s -> !s.getDate().isBefore(start) && !s.getDate().isAfter(end));
+    }
+}
@@ -0,0 +1,225 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.dto.BookingRequest;
+import com.carwash.entity.Booking;
+import com.carwash.entity.Service;
+import com.carwash.entity.TimeSlot;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.service.impl.BookingServiceImpl;
+import com.carwash.service.outbox.OutboxPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 时间段容量预占并发测试
+ * 通过模拟 Mapper 层复现 time_slots 上的条件更新语义，验证高并发下不超卖且不再执行 COUNT(*) 查询。
+ */
+public class SlotReservationConcurrencyTest {
+
+    private static final long SLOT_ID = 7L;
+    private static final int MAX_BOOKINGS = 5;
+    private static final int CONCURRENT_REQUESTS = 400;
+
+    private BookingServiceImpl bookingService;
+    private BookingMapper bookingMapper;
+    private TimeSlotMapper timeSlotMapper;
+
+    /** 模拟数据库中的 current_bookings 列 */
+    private final AtomicInteger currentBookings = new AtomicInteger();
+    private final AtomicInteger insertedRows = new AtomicInteger();
+
+    @BeforeEach
+    void setup() {
+        bookingMapper = mock(BookingMapper.class);
+        timeSlotMapper = mock(TimeSlotMapper.class);
+        ServiceMapper serviceMapper = mock(ServiceMapper.class);
+
+        Service service = new Service();
+        service.setId(1L);
+        service.setName("标准洗车");
+        service.setPrice(new BigDecimal("39.00"));
+        when(serviceMapper.selectById(1L)).thenReturn(service);
+
+        TimeSlot slot = new TimeSlot();
+        slot.setId(SLOT_ID);
+        slot.setDate(LocalDate.now());
+        slot.setStartTime(LocalTime.of(9, 0));
+        slot.setEndTime(LocalTime.of(10, 0));
+        slot.setMaxBookings(MAX_BOOKINGS);
+        slot.setCurrentBookings(0);
+        slot.setStatus(1);
+        when(timeSlotMapper.selectById(SLOT_ID)).thenReturn(slot);
+
+        // 等价于 UPDATE ... SET current_bookings = current_bookings + 1 WHERE current_bookings < max_bookings
+        when(timeSlotMapper.reserveCapacity(SLOT_ID)).thenAnswer(invocation -> {
+            while (true) {
+                int current = currentBookings.get();
+                if (current >= MAX_BOOKINGS) {
+                    return 0;
+                }
+                if (currentBookings.compareAndSet(current, current + 1)) {
+                    return 1;
+                }
+            }
+        });
+        when(timeSlotMapper.decrementCurrentBookings(SLOT_ID)).thenAnswer(invocation ->
+                currentBookings.getAndUpdate(v -> v > 0 ? v - 1 : v) > 0 ? 1 : 0);
+
+        AtomicLong ids = new AtomicLong();
+        when(bookingMapper.insert(any(Booking.class))).thenAnswer(invocation -> {
+            Booking booking = invocation.getArgument(0);
+            booking.setId(ids.incrementAndGet());
+            insertedRows.incrementAndGet();
+            return 1;
+        });
+
+        bookingService = new BookingServiceImpl();
+        inject("bookingMapper", bookingMapper);
+        inject("serviceMapper", serviceMapper);
+        inject("timeSlotMapper", timeSlotMapper);
+        inject("outboxPublisher", mock(OutboxPublisher.class));
+        inject("eventPublisher", mock(ApplicationEventPublisher.class));
+        SlotReservationEngine engine = new SlotReservationEngine(timeSlotMapper,
+                new SlotInventory(mock(RedisUtils.class), timeSlotMapper));
+        inject("slotReservationEngine", engine);
+        inject("bookingWaitlist", new BookingWaitlist(bookingMapper, serviceMapper, timeSlotMapper,
+                new SlotWaitlist(mock(RedisUtils.class)), engine, mock(OutboxPublisher.class),
+                mock(ApplicationEventPublisher.class), 50));
+    }
+
+    @Test
+    void testParallelBookingsNeverOverbookSlot() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch startGate = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            final long userId = i + 1;
+            futures.add(executor.submit(() -> {
+                startGate.await();
+                try {
+                    bookingService.createBooking(buildRequest(userId));
+                    succeeded.incrementAndGet();
+                } catch (BusinessException e) {
+                    assertEquals(ResultCode.APPOINTMENT_CONFLICT.getCode(), e.getCode());
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        startGate.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(MAX_BOOKINGS, succeeded.get(), "成功预约数应等于时间段容量");
+        assertEquals(CONCURRENT_REQUESTS - MAX_BOOKINGS, conflicts.get(), "其余请求应返回约满");
+        assertEquals(MAX_BOOKINGS, currentBookings.get(), "current_bookings 不应超过容量");
+        assertEquals(MAX_BOOKINGS, insertedRows.get(), "只应插入容量数量的订单");
+        verify(bookingMapper, never()).countByTimeSlot(anyLong());
+    }
+
+    @Test
+    void testCancelReleasesCapacityForNextBooking() {
+        for (int i = 0; i < MAX_BOOKINGS; i++) {
+            bookingService.createBooking(buildRequest(i + 1));
+        }
+        BusinessException full = assertThrows(BusinessException.class,
+                () -> bookingService.createBooking(buildRequest(99L)));
+        assertEquals(ResultCode.APPOINTMENT_CONFLICT.getCode(), full.getCode());
+
+        Booking existing = new Booking();
+        existing.setId(1L);
+        existing.setUserId(1L);
+        existing.setTimeSlotId(SLOT_ID);
+        existing.setStatus("pending");
+        existing.setDeleted(0);
+        when(bookingMapper.selectById(1L)).thenReturn(existing);
+        when(bookingMapper.transitionStatus(eq(1L), eq("pending"), eq("cancelled"), anyInt(), any(), any())).thenReturn(1);
+
+        bookingService.cancelBooking(1L, "行程变更");
+        assertEquals(MAX_BOOKINGS - 1, currentBookings.get(), "取消后应释放一个名额");
+
+        assertNotNull(bookingService.createBooking(buildRequest(99L)), "释放后的名额应可再次预约");
+        assertEquals(MAX_BOOKINGS, currentBookings.get());
+    }
+
+    @Test
+    void testUncheckedReserveKeepsRedisStockInLine() {
+        SlotInventory inventory = mock(SlotInventory.class);
+        SlotReservationEngine engine = new SlotReservationEngine(timeSlotMapper, inventory);
+
+        // Redis 扣减成功：事务回滚后归还
+        when(inventory.claim(SLOT_ID)).thenReturn(SlotInventory.ClaimResult.CLAIMED);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.reserveUnchecked(SLOT_ID);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(inventory).release(SLOT_ID);
+
+        // Redis 已约满：移除库存键，不登记补偿
+        when(inventory.claim(SLOT_ID)).thenReturn(SlotInventory.ClaimResult.SOLD_OUT);
+        engine.reserveUnchecked(SLOT_ID);
+        verify(inventory).evict(SLOT_ID);
+        verify(inventory, times(1)).release(SLOT_ID);
+        verify(timeSlotMapper, times(2)).incrementCurrentBookings(SLOT_ID);
+    }
+
+    private BookingRequest buildRequest(long userId) {
+        BookingRequest request = new BookingRequest();
+        request.setUserId(userId);
+        request.setServiceId(1L);
+        request.setTimeSlotId(SLOT_ID);
+        request.setBookingDate(LocalDate.now());
+        request.setCarNumber("京A" + userId);
+        request.setContactPhone("13800000000");
+        return request;
+    }
+
+    private void inject(String fieldName, Object value) {
+        try {
+            var field = BookingServiceImpl.class.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(bookingService, value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.carwash.service.booking;
+
+import com.carwash.common.BusinessException;
+import com.carwash.dto.TimeSlotGenerationResult;
+import com.carwash.dto.TimeSlotTemplateRequest;
+import com.carwash.entity.TimeSlot;
+import com.carwash.mapper.TimeSlotMapper;
+import com.carwash.utils.TimeUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量生成时间段测试
+ * 用内存集合模拟 uk_date_time 唯一键，验证模板展开、多行插入分批、按批次提交事务、重复执行跳过已存在的时间段，
+ * 以及生成一整年时间段所需的语句数和事务数。
+ */
+public class TimeSlotGeneratorTest {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int BATCHES_PER_TRANSACTION = 4;
+
+    private final Set<String> uniqueKeys = new HashSet<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final AtomicInteger commits = new AtomicInteger();
+
+    private TimeSlotMapper timeSlotMapper;
+    private TimeSlotGenerator generator;
+
+    @BeforeEach
+    void setup() {
+        timeSlotMapper = mock(TimeSlotMapper.class);
+        when(timeSlotMapper.insertIgnoreBatch(anyList())).thenAnswer(invocation -> {
+            List<TimeSlot> slots = invocation.getArgument(0);
+            batchSizes.add(slots.size());
+            int inserted = 0;
+            for (TimeSlot slot : slots) {
+                if (uniqueKeys.add(slot.getDate() + " " + slot.getStartTime() + "-" + slot.getEndTime())) {
+                    inserted++;
+                }
+            }
+            return inserted;
+        });
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        doAnswer(invocation -> commits.incrementAndGet()).when(transactionManager).commit(any());
+        generator = new TimeSlotGenerator(timeSlotMapper, transactionManager, BATCH_SIZE, BATCHES_PER_TRANSACTION);
+    }
+
+    @Test
+    void testExpandTemplate() {
+        LocalDate monday = TimeUtils.today().with(DayOfWeek.MONDAY).plusWeeks(1);
+        TimeSlotTemplateRequest template = template(monday, monday.plusDays(13), 45, 3);
+        template.setDaysOfWeek(Set.of(1, 3, 5));
+        template.setCloseTime(LocalTime.of(12, 0));
+
+        List<TimeSlot> slots = generator.expand(template);
+
+        // 两周共6个营业日；09:00-12:00 按45分钟切分为4个，剩余的15分钟不足一个时间段
+        assertEquals(24, slots.size());
+        TimeSlot first = slots.get(0);
+        assertEquals(monday, first.getDate());
+        assertEquals(LocalTime.of(9, 0), first.getStartTime());
+        assertEquals(LocalTime.of(9, 45), first.getEndTime());
+        assertEquals(3, first.getMaxBookings());
+        assertEquals(0, first.getCurrentBookings());
+        assertEquals(1, first.getStatus());
+        TimeSlot last = slots.get(3);
+        assertEquals(LocalTime.of(11, 15), last.getStartTime());
+        assertEquals(LocalTime.of(12, 0), last.getEndTime());
+        assertTrue(slots.stream().allMatch(s -> Set.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.FRIDAY)
+                .contains(s.getDate().getDayOfWeek())));
+    }
+
+    @Test
+    void testRerunSkipsExistingSlots() {
+        LocalDate start = TimeUtils.today().plusDays(1);
+        TimeSlotGenerationResult first = generator.generate(template(start, start.plusDays(9), 60, 2));
+        assertEquals(120, first.getRequested());
+        assertEquals(120, first.getInserted());
+        assertEquals(0, first.getSkipped());
+
+        // 范围重叠：前10天已存在，只插入后5天
+        TimeSlotGenerationResult second = generator.generate(template(start, start.plusDays(14), 60, 2));
+        assertEquals(180, second.getRequested());
+        assertEquals(60, second.getInserted());
+        assertEquals(120, second.getSkipped());
+        assertEquals(180, uniqueKeys.size());
+    }
+
+    @Test
+    void testInvalidTemplates() {
+        LocalDate start = TimeUtils.today().plusDays(1);
+        assertThrows(BusinessException.class, () -> generator.generate(template(start, start.minusDays(1), 30, 1)));
+        assertThrows(BusinessException.class, () -> generator.generate(template(start.minusDays(2), start, 30, 1)));
+        assertThrows(BusinessException.class, () -> generator.generate(template(start, start.plusDays(400), 30, 1)));
+        assertThrows(BusinessException.class, () -> generator.generate(template(start, start, 5, 1)));
+        assertThrows(BusinessException.class, () -> generator.generate(template(start, start, 30, 0)));
+
+        TimeSlotTemplateRequest closed = template(start, start, 30, 1);
+        closed.setCloseTime(LocalTime.of(9, 0));
+        assertThrows(BusinessException.class, () -> generator.generate(closed));
+
+        TimeSlotTemplateRequest badDay = template(start, start, 30, 1);
+        badDay.setDaysOfWeek(Set.of(0));
+        assertThrows(BusinessException.class, () -> generator.generate(badDay));
+        verifyNoInteractions(timeSlotMapper);
+    }
+
+    /**
+     * 生成一整年（每天 08:00-20:00，每30分钟一个时间段）
+     * 逐条插入需要 8760 条 INSERT 和同样多的事务；多行插入只需 18 条语句、5 个事务
+     */
+    @Test
+    void testGenerateOneYearInFewStatements() {
+        LocalDate start = TimeUtils.today().plusDays(1);
+        TimeSlotTemplateRequest template = template(start, start.plusDays(364), 30, 4);
+        template.setOpenTime(LocalTime.of(8, 0));
+        template.setCloseTime(LocalTime.of(20, 0));
+
+        TimeSlotGenerationResult result = generator.generate(template);
+
+        int expected = 365 * 24;
+        assertEquals(expected, result.getRequested());
+        assertEquals(expected, result.getInserted());
+        int statements = (expected + BATCH_SIZE - 1) / BATCH_SIZE;
+        assertEquals(statements, result.getBatches());
+        assertEquals(statements, batchSizes.size());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= BATCH_SIZE));
+        int transactions = (expected + BATCH_SIZE * BATCHES_PER_TRANSACTION - 1) / (BATCH_SIZE * BATCHES_PER_TRANSACTION);
+        assertEquals(transactions, result.getTransactions());
+        assertEquals(transactions, commits.get());
+    }
+
+    private static TimeSlotTemplateRequest template(LocalDate start, LocalDate end, int slotMinutes, int capacity) {
+        TimeSlotTemplateRequest template = new TimeSlotTemplateRequest();
+        template.setStartDate(start);
+        template.setEndDate(end);
+        template.setOpenTime(LocalTime.of(9, 0));
+        template.setCloseTime(LocalTime.of(21, 0));
+        template.setSlotMinutes(slotMinutes);
+        template.setCapacity(capacity);
+        return template;
+    }
+}
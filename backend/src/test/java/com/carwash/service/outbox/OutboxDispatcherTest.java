@@ -0,0 +1,240 @@
+package com.carwash.service.outbox;
+
+import com.carwash.common.constants.Constants;
+import com.carwash.entity.Booking;
+import com.carwash.entity.OutboxEvent;
+import com.carwash.entity.User;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.OutboxEventMapper;
+import com.carwash.mapper.UserMapper;
+import com.carwash.service.SmsService;
+import com.carwash.service.WebSocketService;
+import com.carwash.service.booking.SlotReservationEngine;
+import com.carwash.service.impl.BookingServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 事务发件箱测试
+ * 用内存表模拟 outbox_events 的条件更新语义，验证状态更新不再同步调用通知渠道、失败按退避重试、事件只被投递一次。
+ */
+public class OutboxDispatcherTest {
+
+    private final Map<Long, OutboxEvent> table = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private OutboxEventMapper outboxEventMapper;
+    private WebSocketService webSocketService;
+    private SmsService smsService;
+    private OutboxDispatcher dispatcher;
+    private OutboxPublisher publisher;
+
+    @BeforeEach
+    void setup() {
+        outboxEventMapper = mockOutboxTable();
+        webSocketService = mock(WebSocketService.class);
+        smsService = mock(SmsService.class);
+
+        UserMapper userMapper = mock(UserMapper.class);
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("张三");
+        user.setPhone("13800000000");
+        when(userMapper.selectById(1L)).thenReturn(user);
+
+        dispatcher = new OutboxDispatcher(outboxEventMapper,
+                Arrays.asList(new OrderStatusPushHandler(webSocketService), new OrderStatusSmsHandler(userMapper, smsService)),
+                queued::add);
+        publisher = new OutboxPublisher(outboxEventMapper, dispatcher);
+    }
+
+    @Test
+    void testStatusUpdateDoesNotWaitForNotificationChannels() throws Exception {
+        when(smsService.sendOrderStatusNotification(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(true);
+
+        Booking booking = new Booking();
+        booking.setId(10L);
+        booking.setUserId(1L);
+        booking.setOrderNo("CW10");
+        booking.setStatus("pending");
+        booking.setDeleted(0);
+        BookingMapper bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.selectById(10L)).thenReturn(booking);
+        when(bookingMapper.transitionStatus(eq(10L), eq("pending"), anyString(), anyInt(), any(), any())).thenReturn(1);
+
+        BookingServiceImpl bookingService = new BookingServiceImpl();
+        inject(bookingService, "bookingMapper", bookingMapper);
+        inject(bookingService, "slotReservationEngine", mock(SlotReservationEngine.class));
+        inject(bookingService, "outboxPublisher", publisher);
+        inject(bookingService, "eventPublisher", mock(ApplicationEventPublisher.class));
+
+        bookingService.updateBookingStatus(10L, "confirmed");
+
+        // 状态更新只写入事件，不在请求线程上调用推送与短信
+        verifyNoInteractions(smsService, webSocketService);
+        assertEquals(2, table.size(), "应写入 WebSocket 与短信两条事件");
+
+        runQueued();
+        verify(webSocketService).pushOrderStatusUpdate(1L, 10L, "CW10", "pending", "confirmed", "订单状态更新");
+        verify(smsService).sendOrderStatusNotification("13800000000", "CW10", "pending", "confirmed", "张三");
+        assertTrue(table.values().stream().allMatch(e -> Constants.Outbox.STATUS_SENT.equals(e.getStatus())));
+    }
+
+    @Test
+    void testFailedDeliveryIsRetriedWithBackoffUntilGivingUp() {
+        when(smsService.sendOrderStatusNotification(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(false);
+        publisher.publish(Constants.Outbox.TYPE_ORDER_STATUS_SMS, 10L,
+                new OrderStatusNotice(1L, 10L, "CW10", "pending", "confirmed", "订单状态更新"));
+        OutboxEvent event = table.values().iterator().next();
+
+        runQueued();
+        assertEquals(Constants.Outbox.STATUS_PENDING, event.getStatus());
+        assertEquals(1, event.getAttempts());
+        assertTrue(event.getNextAttemptAt().isAfter(LocalDateTime.now()), "失败后应延迟重试");
+
+        for (int i = 1; i < Constants.Outbox.MAX_ATTEMPTS; i++) {
+            event.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+            dispatcher.poll();
+        }
+        assertEquals(Constants.Outbox.STATUS_FAILED, event.getStatus());
+        assertEquals(Constants.Outbox.MAX_ATTEMPTS, event.getAttempts());
+        verify(smsService, times(Constants.Outbox.MAX_ATTEMPTS))
+                .sendOrderStatusNotification(anyString(), anyString(), anyString(), anyString(), anyString());
+
+        // 已放弃的事件不再被轮询投递
+        dispatcher.poll();
+        verify(smsService, times(Constants.Outbox.MAX_ATTEMPTS))
+                .sendOrderStatusNotification(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testEventIsDeliveredOnlyOnceWhenPollerRacesAfterCommitDispatch() {
+        publisher.publish(Constants.Outbox.TYPE_ORDER_STATUS_PUSH, 10L,
+                new OrderStatusNotice(1L, 10L, "CW10", "pending", "confirmed", "订单状态更新"));
+        Long eventId = table.keySet().iterator().next();
+
+        assertTrue(dispatcher.dispatch(eventId));
+        assertFalse(dispatcher.dispatch(eventId), "已投递的事件不能被再次领取");
+        dispatcher.poll();
+        runQueued();
+        verify(webSocketService, times(1)).pushOrderStatusUpdate(anyLong(), anyLong(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testNewEventIsClaimableRightAfterCommitWithSecondPrecision() throws Exception {
+        // 在一秒的后半段发布：若写入带毫秒的时间，DATETIME 会进位到下一秒，立即投递时领取失败
+        awaitLateInSecond();
+        publisher.publish(Constants.Outbox.TYPE_ORDER_STATUS_PUSH, 10L,
+                new OrderStatusNotice(1L, 10L, "CW10", "pending", "confirmed", "订单状态更新"));
+        runQueued();
+
+        OutboxEvent event = table.values().iterator().next();
+        assertEquals(Constants.Outbox.STATUS_SENT, event.getStatus(), "提交后的立即投递不应等待定时轮询");
+        verify(webSocketService).pushOrderStatusUpdate(1L, 10L, "CW10", "pending", "confirmed", "订单状态更新");
+    }
+
+    @Test
+    void testBackoffGrowsExponentiallyAndIsCapped() {
+        assertEquals(Duration.ofSeconds(5), OutboxDispatcher.backoff(1));
+        assertEquals(Duration.ofSeconds(10), OutboxDispatcher.backoff(2));
+        assertEquals(Duration.ofSeconds(40), OutboxDispatcher.backoff(4));
+        assertEquals(Duration.ofMinutes(30), OutboxDispatcher.backoff(50));
+    }
+
+    private static void awaitLateInSecond() throws InterruptedException {
+        while (LocalDateTime.now().getNano() < 600_000_000) {
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * 与 MySQL DATETIME 列一致，写入时把时间四舍五入到秒
+     */
+    private static LocalDateTime toDatetimeColumn(LocalDateTime value) {
+        return value == null ? null : value.plusNanos(500_000_000).truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    private void runQueued() {
+        List<Runnable> tasks = new ArrayList<>(queued);
+        queued.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    /**
+     * 以内存 Map 复现 OutboxEventMapper 中各条件更新的语义，next_attempt_at 按 DATETIME 精度（秒）保存
+     */
+    private OutboxEventMapper mockOutboxTable() {
+        OutboxEventMapper mapper = mock(OutboxEventMapper.class);
+        when(mapper.insert(any(OutboxEvent.class))).thenAnswer(invocation -> {
+            OutboxEvent event = invocation.getArgument(0);
+            event.setId(ids.incrementAndGet());
+            event.setNextAttemptAt(toDatetimeColumn(event.getNextAttemptAt()));
+            table.put(event.getId(), event);
+            return 1;
+        });
+        when(mapper.selectById(anyLong())).thenAnswer(invocation -> table.get((Long) invocation.getArgument(0)));
+        when(mapper.selectDueIds(any(), anyInt())).thenAnswer(invocation -> {
+            LocalDateTime now = invocation.getArgument(0);
+            List<Long> due = new ArrayList<>();
+            table.values().stream()
+                    .filter(e -> Constants.Outbox.STATUS_PENDING.equals(e.getStatus()) && !e.getNextAttemptAt().isAfter(now))
+                    .forEach(e -> due.add(e.getId()));
+            return due;
+        });
+        when(mapper.claim(anyLong(), any())).thenAnswer(invocation -> {
+            OutboxEvent event = table.get((Long) invocation.getArgument(0));
+            LocalDateTime now = invocation.getArgument(1);
+            synchronized (event) {
+                if (!Constants.Outbox.STATUS_PENDING.equals(event.getStatus()) || event.getNextAttemptAt().isAfter(now)) {
+                    return 0;
+                }
+                event.setStatus(Constants.Outbox.STATUS_PROCESSING);
+                event.setLockedAt(now);
+                return 1;
+            }
+        });
+        when(mapper.markSent(anyLong(), any())).thenAnswer(invocation -> {
+            OutboxEvent event = table.get((Long) invocation.getArgument(0));
+            event.setStatus(Constants.Outbox.STATUS_SENT);
+            event.setAttempts(event.getAttempts() + 1);
+            event.setSentAt(invocation.getArgument(1));
+            return 1;
+        });
+        when(mapper.markAttemptFailed(anyLong(), anyString(), any(), any())).thenAnswer(invocation -> {
+            OutboxEvent event = table.get((Long) invocation.getArgument(0));
+            event.setStatus(invocation.getArgument(1));
+            event.setAttempts(event.getAttempts() + 1);
+            event.setNextAttemptAt(toDatetimeColumn(invocation.getArgument(2)));
+            event.setLastError(invocation.getArgument(3));
+            return 1;
+        });
+        return mapper;
+    }
+
+    private static void inject(Object target, String fieldName, Object value) throws Exception {
+        var field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -11,6 +11,7 @@ import com.carwash.service.payment.PaymentGatewayFactory;
 import com.carwash.service.payment.PaymentGateway;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 
@@ -59,6 +60,9 @@ public class PaymentServiceImplVirtualGatewayTest {
             var f3 = PaymentServiceImpl.class.getDeclaredField("paymentGatewayFactory");
             f3.setAccessible(true);
             f3.set(paymentService, gatewayFactory);
+            var f4 = PaymentServiceImpl.class.getDeclaredField("eventPublisher");
+            f4.setAccessible(true);
+            f4.set(paymentService, mock(ApplicationEventPublisher.class));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,177 @@
+package com.carwash.service.statistics;
+
+import com.carwash.common.BusinessException;
+import com.carwash.common.result.ResultCode;
+import com.carwash.dto.AnalyticsSeriesResponse;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.mapper.BookingCubeMapper;
+import com.carwash.mapper.StatsRollupProgressMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单分析立方体测试
+ * 验证按范围自动降采样、时间桶补零与分组序列、参数校验、查询选择小时表或天表，
+ * 以及订单事件触发增量汇总、逐天重建小时表和天表并推进水位线。
+ */
+public class BookingStatsCubeTest {
+
+    private BookingCubeMapper bookingCubeMapper;
+    private StatsRollupProgressMapper progressMapper;
+    private BookingStatsCube cube;
+
+    @BeforeEach
+    void setup() {
+        bookingCubeMapper = mock(BookingCubeMapper.class);
+        progressMapper = mock(StatsRollupProgressMapper.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        cube = new BookingStatsCube(bookingCubeMapper, progressMapper, transactionManager, 120, 300_000, 400, 1830);
+    }
+
+    @Test
+    void testDownsampleKeepsPointsUnderLimit() {
+        LocalDate end = LocalDate.of(2026, 10, 17);
+        assertEquals("hour", cube.downsample(end.minusDays(6), end, "hour"));
+        assertEquals("day", cube.downsample(end.minusDays(29), end, "hour"));
+        assertEquals("day", cube.downsample(end.minusDays(364), end, "hour"));
+        assertEquals("week", cube.downsample(end.minusYears(3), end, "day"));
+        assertEquals("month", cube.downsample(end.minusYears(3), end, "month"));
+        assertEquals(53, BookingStatsCube.bucketCount(end.minusDays(364), end, "week"));
+    }
+
+    @Test
+    void testAssembleFillsGapsAndSplitsSeries() {
+        List<Map<String, Object>> rows = List.of(
+                row(java.sql.Date.valueOf("2026-10-05"), "1", "标准洗车", 3, 2, 1, "60.00", "90.00"),
+                row(java.sql.Date.valueOf("2026-10-12"), "1", "标准洗车", 1, 1, 0, "30.00", "30.00"),
+                row(java.sql.Date.valueOf("2026-10-12"), "2", "精洗", 5, 4, 0, "400.00", "500.00"));
+        AnalyticsSeriesResponse response = BookingStatsCube.assemble(
+                LocalDate.of(2026, 10, 1), LocalDate.of(2026, 10, 17), "week", rows);
+
+        // 10-01 是周四，首个时间桶从所在周的周一开始
+        assertEquals(List.of("2026-09-28", "2026-10-05", "2026-10-12"), response.getBuckets());
+        assertEquals(2, response.getSeries().size());
+        AnalyticsSeriesResponse.Series premium = response.getSeries().get(0);
+        assertEquals("2", premium.getKey());
+        assertEquals("精洗", premium.getLabel());
+        assertEquals(List.of(0L, 0L, 5L), premium.getBookings());
+        AnalyticsSeriesResponse.Series standard = response.getSeries().get(1);
+        assertEquals(List.of(0L, 3L, 1L), standard.getBookings());
+        assertEquals(List.of(0L, 1L, 0L), standard.getCancelled());
+        assertEquals(List.of(BigDecimal.ZERO, new BigDecimal("60.00"), new BigDecimal("30.00")), standard.getRevenue());
+    }
+
+    @Test
+    void testHourlyBucketsFromTimestamps() {
+        List<Map<String, Object>> rows = List.of(
+                row(Timestamp.valueOf("2026-10-17 09:00:00"), "all", null, 2, 0, 0, "0", "0"),
+                row(LocalDateTime.of(2026, 10, 17, 23, 0), "all", null, 1, 1, 0, "45.00", "45.00"));
+        AnalyticsSeriesResponse response = BookingStatsCube.assemble(
+                LocalDate.of(2026, 10, 17), LocalDate.of(2026, 10, 17), "hour", rows);
+        assertEquals(24, response.getBuckets().size());
+        assertEquals("2026-10-17T09:00", response.getBuckets().get(9));
+        List<Long> bookings = response.getSeries().get(0).getBookings();
+        assertEquals(2L, bookings.get(9));
+        assertEquals(1L, bookings.get(23));
+        assertEquals(3L, bookings.stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    void testSeriesPicksTableByGranularity() {
+        LocalDate end = LocalDate.of(2026, 10, 17);
+        when(bookingCubeMapper.selectDaily(any(), any(), anyString(), anyString())).thenReturn(List.of());
+        when(bookingCubeMapper.selectHourly(any(), any(), anyString())).thenReturn(List.of());
+
+        AnalyticsSeriesResponse year = cube.series(end.minusDays(364), end, null, "category");
+        assertEquals("auto", year.getRequestedGranularity());
+        assertEquals("day", year.getGranularity());
+        assertEquals(365, year.getBuckets().size());
+        verify(bookingCubeMapper).selectDaily(end.minusDays(364), end.plusDays(1), "day", "category");
+
+        AnalyticsSeriesResponse week = cube.series(end.minusDays(6), end, "hour", null);
+        assertEquals("hour", week.getGranularity());
+        assertEquals("none", week.getGroupBy());
+        verify(bookingCubeMapper).selectHourly(end.minusDays(6).atStartOfDay(), end.plusDays(1).atStartOfDay(), "none");
+    }
+
+    @Test
+    void testSeriesRejectsInvalidParameters() {
+        LocalDate end = LocalDate.of(2026, 10, 17);
+        assertParamError(() -> cube.series(end, end.minusDays(1), "day", null));
+        assertParamError(() -> cube.series(end.minusYears(6), end, "month", null));
+        assertParamError(() -> cube.series(end.minusDays(1), end, "minute", null));
+        assertParamError(() -> cube.series(end.minusDays(1), end, "day", "user_id"));
+        verifyNoInteractions(bookingCubeMapper);
+    }
+
+    @Test
+    void testEventsTriggerIncrementalRollup() {
+        LocalDateTime[] watermark = {null};
+        when(progressMapper.selectWatermark(BookingCubeMapper.JOB)).thenAnswer(invocation -> watermark[0]);
+        when(progressMapper.advanceWatermark(eq(BookingCubeMapper.JOB), any())).thenAnswer(invocation -> {
+            watermark[0] = invocation.getArgument(1);
+            return 1;
+        });
+        when(progressMapper.selectChangedDays(isNull())).thenReturn(List.of(
+                changed("2026-10-16", "2026-10-16 20:00:00"), changed("2026-10-17", "2026-10-17 10:00:00")));
+
+        // 启动后首次执行全量汇总
+        cube.tick();
+        verify(bookingCubeMapper).insertHourly(LocalDateTime.of(2026, 10, 16, 0, 0), LocalDateTime.of(2026, 10, 17, 0, 0));
+        verify(bookingCubeMapper).insertDaily(eq(LocalDate.of(2026, 10, 17)), any(), any());
+        assertEquals(LocalDateTime.of(2026, 10, 17, 10, 0), watermark[0]);
+
+        // 没有新事件时不查询
+        cube.tick();
+        verify(progressMapper, times(1)).selectChangedDays(any());
+
+        when(progressMapper.selectChangedDays(LocalDateTime.of(2026, 10, 17, 9, 58))).thenReturn(List.of(
+                changed("2026-10-17", "2026-10-17 10:05:00")));
+        cube.onBookingChanged(new BookingChangedEvent(1L, "CW0000000000001"));
+        cube.tick();
+        verify(bookingCubeMapper, times(2)).deleteDaily(LocalDate.of(2026, 10, 17));
+        assertEquals(LocalDateTime.of(2026, 10, 17, 10, 5), watermark[0]);
+        assertEquals(3L, cube.stats().get("daysRolled"));
+    }
+
+    private static void assertParamError(org.junit.jupiter.api.function.Executable executable) {
+        BusinessException error = assertThrows(BusinessException.class, executable);
+        assertEquals(ResultCode.PARAM_ERROR.getCode(), error.getCode());
+    }
+
+    private static Map<String, Object> changed(String day, String lastUpdated) {
+        return Map.of("day", java.sql.Date.valueOf(day), "last_updated", Timestamp.valueOf(lastUpdated));
+    }
+
+    private static Map<String, Object> row(Object bucket, String dim, String label, long bookings, long completed,
+                                           long cancelled, String revenue, String paidAmount) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("bucket", bucket);
+        row.put("dim", dim);
+        row.put("label", label);
+        row.put("bookings", BigDecimal.valueOf(bookings));
+        row.put("completed", BigDecimal.valueOf(completed));
+        row.put("cancelled", BigDecimal.valueOf(cancelled));
+        row.put("revenue", new BigDecimal(revenue));
+        row.put("paid_amount", new BigDecimal(paidAmount));
+        return row;
+    }
+}
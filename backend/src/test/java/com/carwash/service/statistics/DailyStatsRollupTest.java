@@ -0,0 +1,137 @@
+package com.carwash.service.statistics;
+
+import com.carwash.dto.BookingTotals;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.DailyStatsMapper;
+import com.carwash.mapper.StatsRollupProgressMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * 订单日汇总测试
+ * 验证首次全量汇总、按水位线（减去重叠时间）增量汇总、中途失败不推进水位线，
+ * 以及当月数据 = 月初至昨天的汇总行 + 今天的范围查询，汇总失败时回退为整月范围查询。
+ */
+public class DailyStatsRollupTest {
+
+    private static final LocalDate DAY1 = LocalDate.of(2026, 10, 15);
+    private static final LocalDate DAY2 = LocalDate.of(2026, 10, 16);
+
+    private DailyStatsMapper dailyStatsMapper;
+    private StatsRollupProgressMapper progressMapper;
+    private BookingMapper bookingMapper;
+    private DailyStatsRollup rollup;
+    private LocalDateTime watermark;
+    private final List<LocalDate> rolled = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        progressMapper = mock(StatsRollupProgressMapper.class);
+        when(progressMapper.selectWatermark(DailyStatsMapper.JOB)).thenAnswer(invocation -> watermark);
+        when(progressMapper.advanceWatermark(eq(DailyStatsMapper.JOB), any())).thenAnswer(invocation -> {
+            watermark = invocation.getArgument(1);
+            return 1;
+        });
+        dailyStatsMapper = mock(DailyStatsMapper.class);
+        when(dailyStatsMapper.insertDay(any(), any(), any())).thenAnswer(invocation -> {
+            rolled.add(invocation.getArgument(0));
+            return 3;
+        });
+        bookingMapper = mock(BookingMapper.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        rollup = new DailyStatsRollup(dailyStatsMapper, bookingMapper, progressMapper, transactionManager, 120, 35);
+    }
+
+    @Test
+    void testFirstRunRollsAllDaysAndAdvancesWatermark() {
+        when(progressMapper.selectChangedDays(isNull())).thenReturn(List.of(
+                row(java.sql.Date.valueOf(DAY2), Timestamp.valueOf("2026-10-16 18:00:00")),
+                row(java.sql.Date.valueOf(DAY1), Timestamp.valueOf("2026-10-17 09:30:00"))));
+
+        assertEquals(2, rollup.catchUp());
+        assertEquals(List.of(DAY1, DAY2), rolled);
+        verify(dailyStatsMapper).insertDay(DAY1, DAY1.atStartOfDay(), DAY2.atStartOfDay());
+        verify(dailyStatsMapper).deleteDay(DAY1);
+        verify(progressMapper, times(2)).lockWatermark(DailyStatsMapper.JOB);
+        assertEquals(LocalDateTime.of(2026, 10, 17, 9, 30), watermark);
+        assertEquals(2L, rollup.stats().get("daysRolled"));
+    }
+
+    @Test
+    void testIncrementalRunStartsBeforeWatermark() {
+        watermark = LocalDateTime.of(2026, 10, 17, 9, 30);
+        when(progressMapper.selectChangedDays(any())).thenReturn(List.of());
+
+        assertEquals(0, rollup.catchUp());
+        verify(progressMapper).selectChangedDays(LocalDateTime.of(2026, 10, 17, 9, 28));
+        verify(progressMapper, never()).advanceWatermark(any(), any());
+        assertTrue(rolled.isEmpty());
+
+        // 重叠窗口内的变更只重新汇总对应日期，水位线不后退
+        when(progressMapper.selectChangedDays(any())).thenReturn(List.of(
+                row(DAY2, LocalDateTime.of(2026, 10, 17, 9, 29))));
+        assertEquals(1, rollup.catchUp());
+        assertEquals(List.of(DAY2), rolled);
+        verify(progressMapper, never()).advanceWatermark(any(), any());
+    }
+
+    @Test
+    void testFailureKeepsOldWatermark() {
+        when(progressMapper.selectChangedDays(isNull())).thenReturn(List.of(
+                row("2026-10-15", "2026-10-15 12:00:00"),
+                row("2026-10-16", "2026-10-16 12:00:00")));
+        when(dailyStatsMapper.insertDay(eq(DAY2), any(), any())).thenThrow(new IllegalStateException("lock wait timeout"));
+
+        assertThrows(IllegalStateException.class, () -> rollup.catchUp());
+        assertNull(watermark);
+        assertEquals(1L, rollup.stats().get("failures"));
+    }
+
+    @Test
+    void testMonthToDateCombinesRollupAndToday() {
+        LocalDate today = LocalDate.of(2026, 10, 17);
+        when(progressMapper.selectChangedDays(any())).thenReturn(List.of());
+        when(dailyStatsMapper.sumRange(LocalDate.of(2026, 10, 1), today))
+                .thenReturn(new BookingTotals(400L, new BigDecimal("12000.00")));
+        when(bookingMapper.sumCreatedBetween(today.atStartOfDay(), today.plusDays(1).atStartOfDay()))
+                .thenReturn(new BookingTotals(25L, new BigDecimal("350.50")));
+
+        BookingTotals month = rollup.monthToDate(today);
+        assertEquals(425L, month.getBookings());
+        assertEquals(new BigDecimal("12350.50"), month.getRevenue());
+        verify(bookingMapper, never()).sumCreatedBetween(eq(LocalDate.of(2026, 10, 1).atStartOfDay()), any());
+    }
+
+    @Test
+    void testMonthToDateFallsBackToRangeQuery() {
+        LocalDate today = LocalDate.of(2026, 10, 17);
+        when(progressMapper.selectWatermark(DailyStatsMapper.JOB)).thenThrow(new IllegalStateException("table daily_stats doesn't exist"));
+        when(bookingMapper.sumCreatedBetween(LocalDate.of(2026, 10, 1).atStartOfDay(), today.plusDays(1).atStartOfDay()))
+                .thenReturn(new BookingTotals(425L, new BigDecimal("12350.50")));
+
+        BookingTotals month = rollup.monthToDate(today);
+        assertEquals(425L, month.getBookings());
+        verify(dailyStatsMapper, never()).sumRange(any(), any());
+    }
+
+    private static Map<String, Object> row(Object day, Object lastUpdated) {
+        return Map.of("day", day, "last_updated", lastUpdated);
+    }
+}
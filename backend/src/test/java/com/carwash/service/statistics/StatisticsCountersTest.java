@@ -0,0 +1,228 @@
+package com.carwash.service.statistics;
+
+import com.carwash.common.utils.RedisUtils;
+import com.carwash.dto.BookingTotals;
+import com.carwash.dto.StatisticsResponse;
+import com.carwash.entity.Booking;
+import com.carwash.entity.User;
+import com.carwash.event.BookingChangedEvent;
+import com.carwash.event.UserChangedEvent;
+import com.carwash.mapper.BookingArchiveMapper;
+import com.carwash.mapper.BookingMapper;
+import com.carwash.mapper.ServiceMapper;
+import com.carwash.mapper.UserMapper;
+import com.carwash.utils.TimeUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 统计计数器测试
+ * 用内存 Map 模拟 Redis 中的计数键，验证订单/用户事件增量、多节点共享计数、SQL 校正，
+ * 以及 Redis 不可用时仅维护内存计数且读取概览不访问数据库。
+ */
+public class StatisticsCountersTest {
+
+    private final Map<String, Long> redis = new ConcurrentHashMap<>();
+
+    private RedisUtils redisUtils;
+    private UserMapper userMapper;
+    private ServiceMapper serviceMapper;
+    private BookingMapper bookingMapper;
+    private BookingArchiveMapper bookingArchiveMapper;
+    private DailyStatsRollup dailyStatsRollup;
+    private LocalDate today;
+
+    @BeforeEach
+    void setup() {
+        today = TimeUtils.today();
+        redisUtils = mock(RedisUtils.class);
+        when(redisUtils.execute(any(), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            RedisScript<?> script = invocation.getArgument(0);
+            List<String> keys = invocation.getArgument(1);
+            Object[] args = invocation.getArguments().length > 2
+                    ? Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length)
+                    : new Object[0];
+            return fakeRedis(script.getScriptAsString(), keys, args);
+        });
+
+        userMapper = mock(UserMapper.class);
+        when(userMapper.countTotalUsers()).thenReturn(10);
+        when(userMapper.countTodayNewUsers()).thenReturn(1);
+        when(userMapper.countMonthlyNewUsers()).thenReturn(3);
+        serviceMapper = mock(ServiceMapper.class);
+        when(serviceMapper.countTotalServices()).thenReturn(5);
+        when(serviceMapper.countAvailableServices()).thenReturn(4);
+        bookingMapper = mock(BookingMapper.class);
+        when(bookingMapper.countTotalBookings()).thenReturn(100);
+        when(bookingMapper.countCompletedBookings()).thenReturn(70);
+        when(bookingMapper.countPendingBookings()).thenReturn(8);
+        when(bookingMapper.getTotalRevenue()).thenReturn(new BigDecimal("7000.00"));
+        bookingArchiveMapper = mock(BookingArchiveMapper.class);
+        when(bookingArchiveMapper.countArchived()).thenReturn(50);
+        when(bookingArchiveMapper.countArchivedCompleted()).thenReturn(45);
+        when(bookingArchiveMapper.getArchivedRevenue()).thenReturn(new BigDecimal("3000.00"));
+        dailyStatsRollup = mock(DailyStatsRollup.class);
+        when(dailyStatsRollup.day(any())).thenReturn(new BookingTotals(6L, new BigDecimal("120.50")));
+        when(dailyStatsRollup.monthToDate(any())).thenReturn(new BookingTotals(40L, new BigDecimal("2000.00")));
+    }
+
+    @Test
+    void testInitializeFromSqlThenApplyBookingLifecycle() {
+        StatisticsCounters counters = newCounters();
+        counters.initialize();
+        assertTrue(counters.isReady());
+
+        StatisticsResponse overview = counters.overview();
+        assertEquals(10, overview.getTotalUsers());
+        assertEquals(150, overview.getTotalBookings());
+        assertEquals(115, overview.getCompletedBookings());
+        assertEquals(new BigDecimal("10000.00"), overview.getTotalRevenue());
+        assertEquals(new BigDecimal("120.50"), overview.getTodayRevenue());
+
+        Booking booking = booking("pending", new BigDecimal("39.90"));
+        counters.onBookingChanged(BookingChangedEvent.created(booking));
+        counters.onBookingChanged(BookingChangedEvent.transitioned(booking, "pending", "confirmed"));
+        counters.onBookingChanged(BookingChangedEvent.transitioned(booking, "confirmed", "completed"));
+        // 不带状态变化信息的事件（如支付状态更新、跨节点缓存失效）不影响计数
+        counters.onBookingChanged(new BookingChangedEvent(booking.getId(), booking.getOrderNo()));
+
+        overview = counters.overview();
+        assertEquals(151, overview.getTotalBookings());
+        assertEquals(7, overview.getTodayBookings());
+        assertEquals(8, overview.getPendingBookings());
+        assertEquals(116, overview.getCompletedBookings());
+        assertEquals(new BigDecimal("10039.90"), overview.getTotalRevenue());
+        assertEquals(new BigDecimal("160.40"), overview.getTodayRevenue());
+        assertEquals(41, counters.monthly().getTotalBookings());
+
+        booking.setStatus("completed");
+        counters.onBookingChanged(BookingChangedEvent.removed(booking));
+        overview = counters.overview();
+        assertEquals(150, overview.getTotalBookings());
+        assertEquals(new BigDecimal("10000.00"), overview.getTotalRevenue());
+
+        User user = new User();
+        user.setId(1L);
+        counters.onUserChanged(UserChangedEvent.registered(user));
+        assertEquals(11, counters.overview().getTotalUsers());
+        assertEquals(2, counters.today().getTodayNewUsers());
+
+        // 读取概览只访问内存计数
+        verify(bookingMapper, times(1)).countTotalBookings();
+    }
+
+    @Test
+    void testOldBookingOnlyChangesTotals() {
+        Booking booking = booking("confirmed", new BigDecimal("10.00"));
+        booking.setCreatedAt(today.minusMonths(2).atStartOfDay());
+        Map<String, Long> deltas = StatisticsCounters.bookingDeltas(
+                BookingChangedEvent.transitioned(booking, "confirmed", "completed"), today);
+        assertEquals(Map.of(StatisticsCounters.BOOKINGS_COMPLETED, 1L, StatisticsCounters.REVENUE_CENTS, 1000L), deltas);
+    }
+
+    @Test
+    void testNodesShareCountersThroughRedis() {
+        StatisticsCounters nodeA = newCounters();
+        StatisticsCounters nodeB = newCounters();
+        nodeA.initialize();
+        nodeB.initialize();
+
+        nodeA.onBookingChanged(BookingChangedEvent.created(booking("pending", new BigDecimal("20.00"))));
+        assertEquals(151, nodeA.overview().getTotalBookings());
+        assertEquals(150, nodeB.overview().getTotalBookings());
+        nodeB.refresh();
+        assertEquals(151, nodeB.overview().getTotalBookings());
+        assertEquals(9, nodeB.overview().getPendingBookings());
+        assertEquals(151L, redis.get(StatisticsCounters.KEY_PREFIX + StatisticsCounters.BOOKINGS));
+    }
+
+    @Test
+    void testReconcileCorrectsDrift() {
+        StatisticsCounters counters = newCounters();
+        counters.initialize();
+
+        // 计数之外的写入（如直接改库）造成偏差
+        when(bookingMapper.countPendingBookings()).thenReturn(5);
+        Map<String, Long> drift = counters.reconcile();
+        assertEquals(Map.of(StatisticsCounters.BOOKINGS_PENDING, -3L), drift);
+        assertEquals(5, counters.overview().getPendingBookings());
+        assertEquals(5L, redis.get(StatisticsCounters.KEY_PREFIX + StatisticsCounters.BOOKINGS_PENDING));
+        assertTrue(counters.reconcile().isEmpty());
+    }
+
+    @Test
+    void testFallsBackToMemoryWhenRedisDown() {
+        reset(redisUtils);
+        when(redisUtils.execute(any(), anyList(), any(Object[].class))).thenThrow(new IllegalStateException("redis down"));
+        StatisticsCounters counters = newCounters();
+        counters.initialize();
+        assertTrue(counters.isReady());
+        assertEquals(150, counters.overview().getTotalBookings());
+
+        counters.onBookingChanged(BookingChangedEvent.created(booking("pending", new BigDecimal("20.00"))));
+        assertEquals(151, counters.overview().getTotalBookings());
+        assertEquals(Boolean.TRUE, counters.stats().get("redisBehind"));
+    }
+
+    private StatisticsCounters newCounters() {
+        return new StatisticsCounters(redisUtils, userMapper, serviceMapper, bookingMapper, bookingArchiveMapper,
+                dailyStatsRollup);
+    }
+
+    /**
+     * 按脚本内容模拟三个计数脚本
+     */
+    private Object fakeRedis(String script, List<String> keys, Object[] args) {
+        if (script.contains("MGET")) {
+            List<Object> values = new ArrayList<>();
+            for (String key : keys) {
+                values.add(redis.get(key));
+            }
+            return values;
+        }
+        if (script.contains("INCRBY")) {
+            for (int i = 0; i < keys.size(); i++) {
+                long ttl = ((Number) args[2 * i + 1]).longValue();
+                if (ttl > 0 || redis.containsKey(keys.get(i))) {
+                    redis.merge(keys.get(i), ((Number) args[2 * i]).longValue(), Long::sum);
+                }
+            }
+            return (long) keys.size();
+        }
+        long fixed = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            Long current = redis.get(keys.get(i));
+            boolean existed = ((Number) args[4 * i]).intValue() == 1;
+            long expected = ((Number) args[4 * i + 1]).longValue();
+            if ((current == null && !existed) || (current != null && existed && current == expected)) {
+                redis.put(keys.get(i), ((Number) args[4 * i + 2]).longValue());
+                fixed++;
+            }
+        }
+        return fixed;
+    }
+
+    private Booking booking(String status, BigDecimal price) {
+        Booking booking = new Booking();
+        booking.setId(1L);
+        booking.setOrderNo("CW0000000000001");
+        booking.setStatus(status);
+        booking.setTotalPrice(price);
+        booking.setCreatedAt(TimeUtils.now());
+        return booking;
+    }
+}
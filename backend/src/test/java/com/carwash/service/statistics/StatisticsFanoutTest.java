@@ -0,0 +1,131 @@
+package com.carwash.service.statistics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 统计查询并行执行测试
+ * 验证多条查询并行执行、超时与失败的查询返回 null 并标记过期字段、线程池已满时立即降级，以及按查询名记录耗时。
+ */
+public class StatisticsFanoutTest {
+
+    private ThreadPoolTaskExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testQueriesRunConcurrently() {
+        StatisticsFanout fanout = new StatisticsFanout(executor(4, 10), 10_000);
+        StatisticsFanout.Batch batch = fanout.batch();
+        // 四条查询都到达屏障后才能返回：串行执行时屏障永远无法凑齐，查询失败并标记为过期
+        CyclicBarrier allRunning = new CyclicBarrier(4);
+        List<StatisticsFanout.Pending<Integer>> pending = List.of(
+                batch.submit("a", () -> awaitThen(allRunning, 1)),
+                batch.submit("b", () -> awaitThen(allRunning, 2)),
+                batch.submit("c", () -> awaitThen(allRunning, 3)),
+                batch.submit("d", () -> awaitThen(allRunning, 4)));
+        int sum = 0;
+        for (StatisticsFanout.Pending<Integer> query : pending) {
+            Integer value = query.get();
+            assertNotNull(value, "查询未能并行执行，过期字段: " + batch.staleFields());
+            sum += value;
+        }
+
+        assertEquals(10, sum);
+        assertNull(batch.staleFields());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSlowAndFailedQueriesDegradeToPartialResult() {
+        StatisticsFanout fanout = new StatisticsFanout(executor(4, 10), 150);
+        StatisticsFanout.Batch batch = fanout.batch();
+        CountDownLatch release = new CountDownLatch(1);
+        StatisticsFanout.Pending<Integer> fast = batch.submit("fast", () -> 7);
+        StatisticsFanout.Pending<Integer> slow = batch.submit("slow", () -> {
+            await(release);
+            return 8;
+        });
+        StatisticsFanout.Pending<Integer> broken = batch.submit("broken", List.of("brokenA", "brokenB"), () -> {
+            throw new IllegalStateException("deadlock");
+        });
+
+        assertEquals(7, fast.get());
+        assertNull(slow.get());
+        assertNull(broken.get());
+        assertEquals(List.of("slow", "brokenA", "brokenB"), batch.staleFields());
+        release.countDown();
+
+        Map<String, Object> queries = (Map<String, Object>) fanout.stats().get("queries");
+        assertEquals(1L, ((Map<String, Object>) queries.get("slow")).get("timeouts"));
+        assertEquals(1L, ((Map<String, Object>) queries.get("broken")).get("failures"));
+        assertEquals(1L, ((Map<String, Object>) queries.get("fast")).get("calls"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRejectedWhenPoolIsFull() {
+        StatisticsFanout fanout = new StatisticsFanout(executor(1, 1), 60_000);
+        CountDownLatch release = new CountDownLatch(1);
+        StatisticsFanout.Batch batch = fanout.batch();
+        batch.submit("running", () -> await(release));
+        batch.submit("queued", () -> await(release));
+
+        // 被拒绝的查询立即得到失败结果，不等待本批截止时间（60 秒）
+        StatisticsFanout.Pending<Integer> rejected = batch.submit("rejected", () -> 1);
+        assertNull(assertTimeoutPreemptively(Duration.ofSeconds(30), rejected::get));
+        assertEquals(List.of("rejected"), batch.staleFields());
+        release.countDown();
+
+        Map<String, Object> queries = (Map<String, Object>) fanout.stats().get("queries");
+        assertEquals(1L, ((Map<String, Object>) queries.get("rejected")).get("rejected"));
+    }
+
+    private ThreadPoolTaskExecutor executor(int threads, int queueCapacity) {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("test-stats-");
+        executor.initialize();
+        return executor;
+    }
+
+    private static int awaitThen(CyclicBarrier barrier, int value) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException("查询没有同时执行", e);
+        }
+        return value;
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -25,6 +25,17 @@ export const timeSlotsApi = {
     })
   },
 
+  /**
+   * 获取可预约日历（每天的空闲时间段数和时间段位图）
+   * @param {string} [startDate] - 开始日期 YYYY-MM-DD，默认今天
+   * @param {string} [endDate] - 结束日期 YYYY-MM-DD，默认最远可预约日期
+   */
+  async getAvailabilityCalendar(startDate, endDate) {
+    return request.get('/time-slots/calendar', {
+      params: { startDate, endDate }
+    })
+  },
+
   /**
    * 获取时间段详情
    * @param {number} timeSlotId - 时间段ID
@@ -63,6 +74,17 @@ export class TimeSlotUtils {
     }
   }
 
+  /**
+   * 判断日历位图中第 index 个时间段（对应 times[index]）是否仍有名额
+   * @param {string} bitmap - 十六进制位图
+   * @param {number} index - 时间段下标
+   * @returns {boolean}
+   */
+  static isFreeInBitmap(bitmap, index) {
+    const byte = parseInt(bitmap.substr((index >> 3) * 2, 2), 16)
+    return Number.isFinite(byte) && ((byte >> (index & 7)) & 1) === 1
+  }
+
   /**
    * 从时间段列表中查找匹配的时间段ID
    * @param {Array} timeSlots - 时间段列表
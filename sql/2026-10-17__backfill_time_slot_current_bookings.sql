@@ -0,0 +1,10 @@
+-- 回填时间段当前预约数（预约改为通过 current_bookings 条件更新占用名额）
+-- current_bookings 口径：该时间段内未取消且未删除的订单数量
+UPDATE `time_slots` t
+LEFT JOIN (
+  SELECT `time_slot_id`, COUNT(*) AS `cnt`
+  FROM `bookings`
+  WHERE `status` <> 'cancelled' AND `deleted` = 0
+  GROUP BY `time_slot_id`
+) b ON b.`time_slot_id` = t.`id`
+SET t.`current_bookings` = COALESCE(b.`cnt`, 0);
@@ -0,0 +1,3 @@
+-- 订单乐观锁版本号：状态流转通过 status + version 条件更新完成比较并交换
+ALTER TABLE `bookings`
+  ADD COLUMN `version` INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号' AFTER `cancel_reason`;
@@ -0,0 +1,4 @@
+-- 订单列表游标分页索引：ORDER BY created_at DESC, id DESC 可直接走索引范围扫描
+ALTER TABLE `bookings`
+  ADD KEY `idx_user_created_id` (`user_id`, `created_at`, `id`),
+  ADD KEY `idx_created_id` (`created_at`, `id`);
@@ -0,0 +1,36 @@
+-- 订单分析立方体：按小时 / 按天预聚合订单数和金额（含已归档订单），由 BookingStatsCube 增量维护
+-- 维度：服务、订单状态、支付状态、支付方式；服务分类在查询时关联 services 得出
+-- 趋势图按范围和粒度选择小时表或天表，周、月粒度由天表汇总，不再扫描 bookings
+CREATE TABLE IF NOT EXISTS `booking_stats_hourly` (
+  `bucket_start` datetime NOT NULL COMMENT '小时起点（订单创建时间）',
+  `service_id` bigint NOT NULL COMMENT '服务ID',
+  `status` enum('pending','confirmed','in_progress','completed','cancelled') NOT NULL COMMENT '订单状态',
+  `payment_status` enum('unpaid','paid','refunded') NOT NULL COMMENT '支付状态',
+  `payment_method` varchar(20) NOT NULL DEFAULT '' COMMENT '支付方式，未支付为空串',
+  `booking_count` int NOT NULL DEFAULT 0 COMMENT '订单数（不含已删除）',
+  `amount` decimal(14,2) NOT NULL DEFAULT 0.00 COMMENT '订单金额合计',
+  `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '汇总时间',
+  PRIMARY KEY (`bucket_start`, `service_id`, `status`, `payment_status`, `payment_method`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='订单分析小时表';
+
+CREATE TABLE IF NOT EXISTS `booking_stats_daily` (
+  `bucket_date` date NOT NULL COMMENT '日期（订单创建时间）',
+  `service_id` bigint NOT NULL COMMENT '服务ID',
+  `status` enum('pending','confirmed','in_progress','completed','cancelled') NOT NULL COMMENT '订单状态',
+  `payment_status` enum('unpaid','paid','refunded') NOT NULL COMMENT '支付状态',
+  `payment_method` varchar(20) NOT NULL DEFAULT '' COMMENT '支付方式，未支付为空串',
+  `booking_count` int NOT NULL DEFAULT 0 COMMENT '订单数（不含已删除）',
+  `amount` decimal(14,2) NOT NULL DEFAULT 0.00 COMMENT '订单金额合计',
+  `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '汇总时间',
+  PRIMARY KEY (`bucket_date`, `service_id`, `status`, `payment_status`, `payment_method`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='订单分析天表';
+
+-- 汇总进度表与 daily_stats 共用；本迁移按文件名排在 create_daily_stats 之前，这里同样建表以便在新库上独立执行
+CREATE TABLE IF NOT EXISTS `stats_rollup_progress` (
+  `job` varchar(32) NOT NULL COMMENT '汇总任务',
+  `watermark` datetime DEFAULT NULL COMMENT '已汇总到的订单更新时间',
+  `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`job`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='统计汇总进度表';
+
+INSERT IGNORE INTO `stats_rollup_progress` (`job`, `watermark`) VALUES ('booking_cube', NULL);
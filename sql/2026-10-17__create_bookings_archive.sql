@@ -0,0 +1,37 @@
+-- 订单归档表：保存预约日期早于保留期的已完成/已取消订单，列与 bookings 一致
+-- 归档后热表只保留近期数据，按日期、时间段和状态的查询及统计扫描的索引范围随之缩小
+-- 不建外键：归档数据只读，且关联的用户、服务、时间段可能已被清理
+CREATE TABLE `bookings_archive` (
+  `id` bigint NOT NULL COMMENT '订单ID（沿用 bookings.id）',
+  `order_no` varchar(32) NOT NULL COMMENT '订单号',
+  `user_id` bigint NOT NULL COMMENT '用户ID',
+  `service_id` bigint NOT NULL COMMENT '服务ID',
+  `time_slot_id` bigint NOT NULL COMMENT '时间段ID',
+  `booking_date` date NOT NULL COMMENT '预约日期',
+  `booking_time` varchar(20) NOT NULL COMMENT '预约时间',
+  `car_number` varchar(20) DEFAULT NULL COMMENT '车牌号',
+  `car_model` varchar(50) DEFAULT NULL COMMENT '车型',
+  `contact_phone` varchar(20) NOT NULL COMMENT '联系电话',
+  `notes` text COMMENT '备注信息',
+  `total_price` decimal(10,2) NOT NULL COMMENT '总价格',
+  `status` enum('pending','confirmed','in_progress','completed','cancelled') DEFAULT 'pending' COMMENT '订单状态',
+  `payment_status` enum('unpaid','paid','refunded') DEFAULT 'unpaid' COMMENT '支付状态',
+  `payment_method` varchar(20) DEFAULT NULL COMMENT '支付方式',
+  `paid_at` datetime DEFAULT NULL COMMENT '支付时间',
+  `completed_at` datetime DEFAULT NULL COMMENT '完成时间',
+  `cancelled_at` datetime DEFAULT NULL COMMENT '取消时间',
+  `cancel_reason` varchar(255) DEFAULT NULL COMMENT '取消原因',
+  `version` int NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
+  `created_at` datetime DEFAULT NULL COMMENT '创建时间',
+  `updated_at` datetime DEFAULT NULL COMMENT '更新时间',
+  `deleted` tinyint DEFAULT '0' COMMENT '逻辑删除：0-未删除，1-已删除',
+  `archived_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '归档时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_order_no` (`order_no`),
+  KEY `idx_user_created_id` (`user_id`, `created_at`, `id`),
+  KEY `idx_booking_date` (`booking_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='预约订单归档表';
+
+-- 归档扫描索引：按状态 + 预约日期定位待归档订单，id 用于分批推进
+ALTER TABLE `bookings`
+  ADD KEY `idx_status_date_id` (`status`, `booking_date`, `id`);
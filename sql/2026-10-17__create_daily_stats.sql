@@ -0,0 +1,33 @@
+-- 订单按日汇总表：按创建日期 × 状态 × 服务汇总订单数和金额（含已归档订单），由 DailyStatsRollup 增量维护
+-- 当月统计读取月初至昨天的汇总行，再加今天创建订单的 created_at 索引范围查询
+CREATE TABLE IF NOT EXISTS `daily_stats` (
+  `stat_date` date NOT NULL COMMENT '订单创建日期',
+  `status` enum('pending','confirmed','in_progress','completed','cancelled') NOT NULL COMMENT '订单状态',
+  `service_id` bigint NOT NULL COMMENT '服务ID',
+  `booking_count` int NOT NULL DEFAULT 0 COMMENT '订单数（不含已删除）',
+  `revenue` decimal(14,2) NOT NULL DEFAULT 0.00 COMMENT '订单金额合计',
+  `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '汇总时间',
+  PRIMARY KEY (`stat_date`, `status`, `service_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='订单按日汇总表';
+
+-- 汇总进度：watermark 为已汇总到的 bookings.updated_at，为空时下次执行全量汇总
+CREATE TABLE IF NOT EXISTS `stats_rollup_progress` (
+  `job` varchar(32) NOT NULL COMMENT '汇总任务',
+  `watermark` datetime DEFAULT NULL COMMENT '已汇总到的订单更新时间',
+  `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`job`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='统计汇总进度表';
+
+INSERT IGNORE INTO `stats_rollup_progress` (`job`, `watermark`) VALUES ('daily_stats', NULL);
+
+-- 增量汇总按 updated_at 范围查找有变更的订单
+ALTER TABLE `bookings`
+  ADD KEY `idx_updated_at` (`updated_at`);
+
+-- 按创建日期重新汇总时归档表也走 created_at 范围扫描
+ALTER TABLE `bookings_archive`
+  ADD KEY `idx_created_at` (`created_at`);
+
+-- 今日/本月新增用户统计改为 created_at 范围条件
+ALTER TABLE `users`
+  ADD KEY `idx_created_at` (`created_at`);
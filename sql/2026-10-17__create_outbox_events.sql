@@ -0,0 +1,17 @@
+-- 事务发件箱表（MySQL）：订单状态通知（WebSocket / 短信）与业务数据同事务写入，提交后异步投递
+CREATE TABLE IF NOT EXISTS `outbox_events` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT,
+  `event_type` VARCHAR(32) NOT NULL,
+  `aggregate_id` BIGINT NULL,
+  `payload` TEXT NOT NULL,
+  `status` VARCHAR(16) NOT NULL DEFAULT 'PENDING',
+  `attempts` INT NOT NULL DEFAULT 0,
+  `next_attempt_at` DATETIME NOT NULL,
+  `last_error` VARCHAR(500) NULL,
+  `locked_at` DATETIME NULL,
+  `sent_at` DATETIME NULL,
+  `created_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `idx_status_next_attempt` (`status`, `next_attempt_at`),
+  KEY `idx_aggregate_id` (`aggregate_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
@@ -0,0 +1,117 @@
+-- 趋势图查询耗时对比：直接按 bookings 分组 vs 订单分析立方体（小时表 / 天表）
+-- 仅在独立的压测库中执行，需先执行 daily_stats_rollup_benchmark.sql 造数（约 300 万条订单，跨 36 个月）
+-- 及 2026-10-17__create_booking_stats_cube.sql 迁移
+-- 用法：mysql -u root -p carwash_bench < booking_stats_cube_benchmark.sql
+--
+-- 对比方式：同一图表口径分别执行 EXPLAIN ANALYZE，比较 actual time 与 rows 扫描量，并核对两种写法结果一致
+
+SET @today = CURDATE();
+SET @year_start = DATE_SUB(@today, INTERVAL 364 DAY);
+
+UPDATE bookings SET payment_method = ELT(1 + id % 3, 'wechat', 'alipay', 'cash')
+ WHERE payment_status = 'paid' AND payment_method IS NULL;
+
+-- ---------------------------------------------------------------------------
+-- 1. 立方体首次全量汇总（与 BookingCubeMapper.insertHourly / insertDaily 相同的语句，按天执行）
+-- ---------------------------------------------------------------------------
+DROP PROCEDURE IF EXISTS bench_cube;
+DELIMITER //
+CREATE PROCEDURE bench_cube(IN p_from DATE, IN p_to DATE)
+BEGIN
+    DECLARE v_day DATE DEFAULT p_from;
+    WHILE v_day <= p_to DO
+        START TRANSACTION;
+        SELECT watermark FROM stats_rollup_progress WHERE job = 'booking_cube' FOR UPDATE;
+        DELETE FROM booking_stats_hourly WHERE bucket_start >= v_day AND bucket_start < v_day + INTERVAL 1 DAY;
+        INSERT INTO booking_stats_hourly (bucket_start, service_id, status, payment_status, payment_method,
+                                          booking_count, amount, updated_at)
+        SELECT t.bucket_start, t.service_id, t.status, t.payment_status, t.payment_method,
+               COUNT(*), COALESCE(SUM(t.total_price), 0), NOW() FROM (
+            SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00') AS bucket_start, service_id,
+                   COALESCE(status, 'pending') AS status, COALESCE(payment_status, 'unpaid') AS payment_status,
+                   COALESCE(payment_method, '') AS payment_method, total_price FROM bookings
+            WHERE created_at >= v_day AND created_at < v_day + INTERVAL 1 DAY AND deleted = 0
+            UNION ALL SELECT DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00'), service_id,
+                   COALESCE(status, 'pending'), COALESCE(payment_status, 'unpaid'),
+                   COALESCE(payment_method, ''), total_price FROM bookings_archive
+            WHERE created_at >= v_day AND created_at < v_day + INTERVAL 1 DAY AND deleted = 0
+        ) t GROUP BY t.bucket_start, t.service_id, t.status, t.payment_status, t.payment_method;
+        DELETE FROM booking_stats_daily WHERE bucket_date = v_day;
+        INSERT INTO booking_stats_daily (bucket_date, service_id, status, payment_status, payment_method,
+                                         booking_count, amount, updated_at)
+        SELECT v_day, service_id, status, payment_status, payment_method, SUM(booking_count), SUM(amount), NOW()
+        FROM booking_stats_hourly WHERE bucket_start >= v_day AND bucket_start < v_day + INTERVAL 1 DAY
+        GROUP BY service_id, status, payment_status, payment_method;
+        COMMIT;
+        SET v_day = v_day + INTERVAL 1 DAY;
+    END WHILE;
+END //
+DELIMITER ;
+
+SET @t0 = NOW(6);
+CALL bench_cube(DATE_SUB(@today, INTERVAL 36 MONTH), @today);
+UPDATE stats_rollup_progress SET watermark = (SELECT MAX(updated_at) FROM bookings) WHERE job = 'booking_cube';
+SELECT TIMESTAMPDIFF(MICROSECOND, @t0, NOW(6)) / 1000000 AS full_cube_seconds,
+       (SELECT COUNT(*) FROM booking_stats_hourly) AS hourly_rows,
+       (SELECT COUNT(*) FROM booking_stats_daily) AS daily_rows;
+
+-- 增量汇总：模拟一批支付回调，只重建涉及的日期
+SET @watermark = (SELECT watermark FROM stats_rollup_progress WHERE job = 'booking_cube');
+UPDATE bookings SET payment_status = 'paid', payment_method = 'wechat', updated_at = @watermark + INTERVAL 1 MINUTE
+ WHERE created_at >= DATE_SUB(@today, INTERVAL 2 DAY) AND payment_status = 'unpaid' AND deleted = 0 LIMIT 300;
+SET @t0 = NOW(6);
+CALL bench_cube(DATE_SUB(@today, INTERVAL 2 DAY), @today);
+SELECT TIMESTAMPDIFF(MICROSECOND, @t0, NOW(6)) / 1000000 AS incremental_cube_seconds;
+
+-- ---------------------------------------------------------------------------
+-- 2. 原写法：一年按天、按服务分类的趋势直接在 bookings 上分组
+-- ---------------------------------------------------------------------------
+EXPLAIN ANALYZE SELECT DATE(b.created_at) AS bucket, COALESCE(s.category, '') AS dim, COUNT(*) AS bookings,
+       SUM(CASE WHEN b.status = 'completed' THEN b.total_price ELSE 0 END) AS revenue,
+       SUM(CASE WHEN b.payment_status = 'paid' THEN b.total_price ELSE 0 END) AS paid_amount
+FROM bookings b LEFT JOIN services s ON s.id = b.service_id
+WHERE b.created_at >= @year_start AND b.created_at < @today + INTERVAL 1 DAY AND b.deleted = 0
+GROUP BY bucket, dim;
+
+-- ---------------------------------------------------------------------------
+-- 3. 立方体：与 BookingCubeMapper.selectDaily / selectHourly 相同的语句
+-- ---------------------------------------------------------------------------
+-- 一年按天、按服务分类（365 个时间桶）
+EXPLAIN ANALYZE SELECT c.bucket_date AS bucket, COALESCE(s.category, '') AS dim, MAX(s.category) AS label,
+       SUM(c.booking_count) AS bookings,
+       SUM(CASE WHEN c.status = 'completed' THEN c.amount ELSE 0 END) AS revenue,
+       SUM(CASE WHEN c.payment_status = 'paid' THEN c.amount ELSE 0 END) AS paid_amount
+FROM booking_stats_daily c LEFT JOIN services s ON s.id = c.service_id
+WHERE c.bucket_date >= @year_start AND c.bucket_date < @today + INTERVAL 1 DAY
+GROUP BY bucket, dim;
+
+-- 三年按周、按支付方式（约 157 个时间桶）
+EXPLAIN ANALYZE SELECT DATE_SUB(c.bucket_date, INTERVAL WEEKDAY(c.bucket_date) DAY) AS bucket,
+       c.payment_method AS dim, SUM(c.booking_count) AS bookings,
+       SUM(CASE WHEN c.payment_status = 'paid' THEN c.amount ELSE 0 END) AS paid_amount
+FROM booking_stats_daily c
+WHERE c.bucket_date >= DATE_SUB(@today, INTERVAL 36 MONTH) AND c.bucket_date < @today + INTERVAL 1 DAY
+GROUP BY bucket, dim;
+
+-- 一周按小时（168 个时间桶）
+EXPLAIN ANALYZE SELECT c.bucket_start AS bucket, 'all' AS dim, SUM(c.booking_count) AS bookings,
+       SUM(CASE WHEN c.status = 'completed' THEN c.amount ELSE 0 END) AS revenue
+FROM booking_stats_hourly c
+WHERE c.bucket_start >= DATE_SUB(@today, INTERVAL 6 DAY) AND c.bucket_start < @today + INTERVAL 1 DAY
+GROUP BY bucket, dim;
+
+-- 结果核对：两种写法的一年订单数、已完成金额与已支付金额应一致
+SELECT 'bookings' AS variant, COUNT(*) AS bookings,
+       SUM(CASE WHEN status = 'completed' THEN total_price ELSE 0 END) AS revenue,
+       SUM(CASE WHEN payment_status = 'paid' THEN total_price ELSE 0 END) AS paid_amount
+FROM bookings WHERE created_at >= @year_start AND created_at < @today + INTERVAL 1 DAY AND deleted = 0
+UNION ALL
+SELECT 'cube', SUM(booking_count),
+       SUM(CASE WHEN status = 'completed' THEN amount ELSE 0 END),
+       SUM(CASE WHEN payment_status = 'paid' THEN amount ELSE 0 END)
+FROM booking_stats_daily WHERE bucket_date >= @year_start AND bucket_date < @today + INTERVAL 1 DAY;
+
+-- ---------------------------------------------------------------------------
+-- 4. 清理
+-- ---------------------------------------------------------------------------
+DROP PROCEDURE IF EXISTS bench_cube;
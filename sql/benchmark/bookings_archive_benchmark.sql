@@ -0,0 +1,142 @@
+-- 订单归档前后热路径查询耗时对比
+-- 仅在独立的压测库中执行（会写入约 300 万条订单并关闭外键检查），需先执行 init.sql 及 2026-10-17__*.sql 迁移
+-- 用法：mysql -u root -p carwash_bench < bookings_archive_benchmark.sql
+--
+-- 数据分布：过去 36 个月 + 未来 7 天，每天约 2700 单、每个时间段 100 单；
+-- 约 95% 为已完成/已取消的历史订单，归档保留 6 个月后热表只剩约 1/6
+-- 对比方式：归档前后各执行一次相同的 EXPLAIN ANALYZE，比较 actual time 与 rows 扫描量
+
+SET SESSION FOREIGN_KEY_CHECKS = 0;
+SET @today = CURDATE();
+SET @cutoff = DATE_FORMAT(DATE_SUB(@today, INTERVAL 6 MONTH), '%Y-%m-01');
+
+-- ---------------------------------------------------------------------------
+-- 1. 造数：0..999999 的数字表 × 3
+-- ---------------------------------------------------------------------------
+DROP TEMPORARY TABLE IF EXISTS bench_digits;
+CREATE TEMPORARY TABLE bench_digits (d INT PRIMARY KEY);
+INSERT INTO bench_digits VALUES (0),(1),(2),(3),(4),(5),(6),(7),(8),(9);
+
+DROP TABLE IF EXISTS bench_seq;
+CREATE TABLE bench_seq (n INT PRIMARY KEY);
+INSERT INTO bench_seq (n)
+SELECT a.d + b.d * 10 + c.d * 100 + d.d * 1000 + e.d * 10000 + f.d * 100000
+FROM bench_digits a, bench_digits b, bench_digits c, bench_digits d, bench_digits e, bench_digits f;
+
+INSERT INTO bookings (order_no, user_id, service_id, time_slot_id, booking_date, booking_time, contact_phone,
+                      total_price, status, payment_status, created_at, deleted)
+SELECT CONCAT('BENCH', r.k),
+       1 + r.k % 5000,
+       1 + r.k % 4,
+       -- 每天 27 个时间段，时间段ID 由日期推导
+       DATEDIFF(r.booking_date, '2000-01-01') * 27 + r.k % 27,
+       r.booking_date,
+       CONCAT(LPAD(8 + r.k % 10, 2, '0'), ':00'),
+       '13800000000',
+       30.00 + r.k % 5 * 10,
+       CASE WHEN r.booking_date >= @today THEN IF(r.k % 3 = 0, 'pending', 'confirmed')
+            WHEN r.k % 10 = 0 THEN 'cancelled'
+            ELSE 'completed' END,
+       IF(r.booking_date >= @today, 'unpaid', 'paid'),
+       TIMESTAMP(DATE_SUB(r.booking_date, INTERVAL r.k % 3 DAY), '10:00:00'),
+       IF(r.k % 50 = 0, 1, 0)
+FROM (
+    SELECT s.n + p.part * 1000000 AS k,
+           DATE_ADD(DATE_SUB(@today, INTERVAL 36 MONTH),
+                    INTERVAL FLOOR((s.n + p.part * 1000000) / 2700) DAY) AS booking_date
+    FROM bench_seq s
+    CROSS JOIN (SELECT 0 AS part UNION ALL SELECT 1 UNION ALL SELECT 2) p
+) r
+WHERE r.booking_date <= DATE_ADD(@today, INTERVAL 7 DAY);
+
+ANALYZE TABLE bookings;
+
+SELECT COUNT(*) AS hot_rows_before FROM bookings;
+
+-- ---------------------------------------------------------------------------
+-- 2. 归档前：热路径查询（与 BookingMapper / StatisticsServiceImpl 中的语句一致）
+-- ---------------------------------------------------------------------------
+SET @probe_date = DATE_SUB(@today, INTERVAL 3 DAY);
+SET @probe_slot = DATEDIFF(@probe_date, '2000-01-01') * 27 + 5;
+SET @probe_order = (SELECT order_no FROM bookings WHERE booking_date = @probe_date LIMIT 1);
+
+EXPLAIN ANALYZE SELECT * FROM bookings WHERE booking_date = @probe_date AND deleted = 0 ORDER BY booking_time ASC;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE time_slot_id = @probe_slot AND status NOT IN ('cancelled') AND deleted = 0;
+EXPLAIN ANALYZE SELECT * FROM bookings WHERE order_no = @probe_order AND deleted = 0;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE deleted = 0;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE status = 'completed' AND deleted = 0;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE status = 'pending' AND deleted = 0;
+EXPLAIN ANALYZE SELECT * FROM bookings WHERE user_id = 42 AND deleted = 0 ORDER BY created_at DESC, id DESC LIMIT 20;
+
+-- ---------------------------------------------------------------------------
+-- 3. 归档：与 BookingArchiver 相同的分批语句（每批 1000 条，独立事务）
+-- ---------------------------------------------------------------------------
+DROP PROCEDURE IF EXISTS bench_archive;
+DELIMITER //
+CREATE PROCEDURE bench_archive(IN p_status VARCHAR(20), IN p_cutoff DATE, IN p_limit INT)
+BEGIN
+    DECLARE v_after_date DATE DEFAULT '1000-01-01';
+    DECLARE v_after_id BIGINT DEFAULT 0;
+    DECLARE v_rows INT DEFAULT 1;
+    WHILE v_rows > 0 DO
+        START TRANSACTION;
+        DROP TEMPORARY TABLE IF EXISTS bench_chunk;
+        CREATE TEMPORARY TABLE bench_chunk (id BIGINT PRIMARY KEY, booking_date DATE);
+        INSERT INTO bench_chunk
+        SELECT b.id, b.booking_date FROM bookings b
+        WHERE b.status = p_status AND b.booking_date < p_cutoff
+          AND (b.booking_date > v_after_date OR (b.booking_date = v_after_date AND b.id > v_after_id))
+          AND NOT EXISTS (SELECT 1 FROM feedback f WHERE f.booking_id = b.id)
+        ORDER BY b.booking_date, b.id LIMIT p_limit
+        FOR UPDATE OF b;
+        SET v_rows = ROW_COUNT();
+        IF v_rows > 0 THEN
+            SELECT booking_date, id INTO v_after_date, v_after_id
+            FROM bench_chunk ORDER BY booking_date DESC, id DESC LIMIT 1;
+            INSERT INTO bookings_archive (id, order_no, user_id, service_id, time_slot_id, booking_date, booking_time,
+                car_number, car_model, contact_phone, notes, total_price, status, payment_status, payment_method,
+                paid_at, completed_at, cancelled_at, cancel_reason, version, created_at, updated_at, deleted, archived_at)
+            SELECT id, order_no, user_id, service_id, time_slot_id, booking_date, booking_time,
+                car_number, car_model, contact_phone, notes, total_price, status, payment_status, payment_method,
+                paid_at, completed_at, cancelled_at, cancel_reason, version, created_at, updated_at, deleted, NOW()
+            FROM bookings WHERE id IN (SELECT id FROM bench_chunk);
+            DELETE FROM bookings WHERE status IN ('completed', 'cancelled') AND id IN (SELECT id FROM bench_chunk);
+        END IF;
+        COMMIT;
+    END WHILE;
+END //
+DELIMITER ;
+
+SET @t0 = NOW(6);
+CALL bench_archive('completed', @cutoff, 1000);
+CALL bench_archive('cancelled', @cutoff, 1000);
+SELECT TIMESTAMPDIFF(MICROSECOND, @t0, NOW(6)) / 1000000 AS archive_seconds;
+
+-- 物理删除后重建统计信息与二级索引页
+OPTIMIZE TABLE bookings;
+ANALYZE TABLE bookings_archive;
+
+SELECT (SELECT COUNT(*) FROM bookings) AS hot_rows_after,
+       (SELECT COUNT(*) FROM bookings_archive) AS archived_rows;
+
+-- ---------------------------------------------------------------------------
+-- 4. 归档后：相同的热路径查询，以及订单号回落到归档表的查询
+-- ---------------------------------------------------------------------------
+EXPLAIN ANALYZE SELECT * FROM bookings WHERE booking_date = @probe_date AND deleted = 0 ORDER BY booking_time ASC;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE time_slot_id = @probe_slot AND status NOT IN ('cancelled') AND deleted = 0;
+EXPLAIN ANALYZE SELECT * FROM bookings WHERE order_no = @probe_order AND deleted = 0;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE deleted = 0;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE status = 'completed' AND deleted = 0;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE status = 'pending' AND deleted = 0;
+EXPLAIN ANALYZE SELECT * FROM bookings WHERE user_id = 42 AND deleted = 0 ORDER BY created_at DESC, id DESC LIMIT 20;
+
+SET @archived_order = (SELECT order_no FROM bookings_archive ORDER BY id LIMIT 1);
+EXPLAIN ANALYZE SELECT * FROM bookings WHERE order_no = @archived_order AND deleted = 0;
+EXPLAIN ANALYZE SELECT * FROM bookings_archive WHERE order_no = @archived_order AND deleted = 0;
+
+-- ---------------------------------------------------------------------------
+-- 5. 清理
+-- ---------------------------------------------------------------------------
+DROP PROCEDURE IF EXISTS bench_archive;
+DROP TABLE IF EXISTS bench_seq;
+SET SESSION FOREIGN_KEY_CHECKS = 1;
@@ -0,0 +1,143 @@
+-- 当日/当月统计查询耗时对比：函数包裹列 vs created_at 范围条件 vs 日汇总表 + 当日范围查询
+-- 仅在独立的压测库中执行（会写入约 300 万条订单并关闭外键检查），需先执行 init.sql 及 2026-10-17__*.sql 迁移
+-- 用法：mysql -u root -p carwash_bench < daily_stats_rollup_benchmark.sql
+--
+-- 数据分布：过去 36 个月，每天约 2700 单，创建时间均匀分布在 08:00-20:00
+-- 对比方式：同一统计口径分别执行 EXPLAIN ANALYZE，比较 actual time 与 rows 扫描量，并核对三种写法结果一致
+
+SET SESSION FOREIGN_KEY_CHECKS = 0;
+SET @today = CURDATE();
+SET @month_start = DATE_FORMAT(@today, '%Y-%m-01');
+
+-- ---------------------------------------------------------------------------
+-- 1. 造数：0..999999 的数字表 × 3
+-- ---------------------------------------------------------------------------
+DROP TEMPORARY TABLE IF EXISTS bench_digits;
+CREATE TEMPORARY TABLE bench_digits (d INT PRIMARY KEY);
+INSERT INTO bench_digits VALUES (0),(1),(2),(3),(4),(5),(6),(7),(8),(9);
+
+DROP TABLE IF EXISTS bench_seq;
+CREATE TABLE bench_seq (n INT PRIMARY KEY);
+INSERT INTO bench_seq (n)
+SELECT a.d + b.d * 10 + c.d * 100 + d.d * 1000 + e.d * 10000 + f.d * 100000
+FROM bench_digits a, bench_digits b, bench_digits c, bench_digits d, bench_digits e, bench_digits f;
+
+INSERT INTO bookings (order_no, user_id, service_id, time_slot_id, booking_date, booking_time, contact_phone,
+                      total_price, status, payment_status, created_at, updated_at, deleted)
+SELECT CONCAT('BENCH', r.k),
+       1 + r.k % 5000,
+       1 + r.k % 4,
+       DATEDIFF(r.created_day, '2000-01-01') * 27 + r.k % 27,
+       DATE_ADD(r.created_day, INTERVAL r.k % 3 DAY),
+       CONCAT(LPAD(8 + r.k % 10, 2, '0'), ':00'),
+       '13800000000',
+       30.00 + r.k % 5 * 10,
+       CASE WHEN r.created_day >= DATE_SUB(@today, INTERVAL 2 DAY) THEN IF(r.k % 3 = 0, 'pending', 'confirmed')
+            WHEN r.k % 10 = 0 THEN 'cancelled'
+            ELSE 'completed' END,
+       IF(r.created_day >= DATE_SUB(@today, INTERVAL 2 DAY), 'unpaid', 'paid'),
+       TIMESTAMP(r.created_day, SEC_TO_TIME(28800 + r.k % 2700 * 16)),
+       TIMESTAMP(DATE_ADD(r.created_day, INTERVAL r.k % 3 DAY), '21:00:00'),
+       IF(r.k % 50 = 0, 1, 0)
+FROM (
+    SELECT s.n + p.part * 1000000 AS k,
+           DATE_ADD(DATE_SUB(@today, INTERVAL 36 MONTH),
+                    INTERVAL FLOOR((s.n + p.part * 1000000) / 2700) DAY) AS created_day
+    FROM bench_seq s
+    CROSS JOIN (SELECT 0 AS part UNION ALL SELECT 1 UNION ALL SELECT 2) p
+) r
+WHERE r.created_day <= @today;
+
+ANALYZE TABLE bookings;
+
+SELECT COUNT(*) AS bench_rows FROM bookings;
+
+-- ---------------------------------------------------------------------------
+-- 2. 原写法：DATE() / YEAR() / MONTH() 包裹 created_at，只能全表或全索引扫描
+-- ---------------------------------------------------------------------------
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings WHERE DATE(created_at) = CURDATE() AND deleted = 0;
+EXPLAIN ANALYZE SELECT COALESCE(SUM(total_price), 0) FROM bookings
+ WHERE DATE(created_at) = CURDATE() AND status = 'completed' AND deleted = 0;
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings
+ WHERE YEAR(created_at) = YEAR(CURDATE()) AND MONTH(created_at) = MONTH(CURDATE()) AND deleted = 0;
+EXPLAIN ANALYZE SELECT COALESCE(SUM(total_price), 0) FROM bookings
+ WHERE YEAR(created_at) = YEAR(CURDATE()) AND MONTH(created_at) = MONTH(CURDATE()) AND status = 'completed' AND deleted = 0;
+
+-- ---------------------------------------------------------------------------
+-- 3. 范围条件：与 BookingMapper 中改写后的语句一致，走 idx_created_id 范围扫描
+-- ---------------------------------------------------------------------------
+EXPLAIN ANALYZE SELECT COUNT(*) FROM bookings
+ WHERE created_at >= CURDATE() AND created_at < CURDATE() + INTERVAL 1 DAY AND deleted = 0;
+EXPLAIN ANALYZE SELECT COUNT(*), COALESCE(SUM(CASE WHEN status = 'completed' THEN total_price END), 0) FROM bookings
+ WHERE created_at >= @month_start AND created_at < @today + INTERVAL 1 DAY AND deleted = 0;
+
+-- ---------------------------------------------------------------------------
+-- 4. 日汇总：首次全量汇总（与 DailyStatsMapper.insertDay 相同的语句，按天执行）
+-- ---------------------------------------------------------------------------
+DROP PROCEDURE IF EXISTS bench_rollup;
+DELIMITER //
+CREATE PROCEDURE bench_rollup(IN p_from DATE, IN p_to DATE)
+BEGIN
+    DECLARE v_day DATE DEFAULT p_from;
+    WHILE v_day <= p_to DO
+        START TRANSACTION;
+        SELECT watermark FROM stats_rollup_progress WHERE job = 'daily_stats' FOR UPDATE;
+        DELETE FROM daily_stats WHERE stat_date = v_day;
+        INSERT INTO daily_stats (stat_date, status, service_id, booking_count, revenue, updated_at)
+        SELECT v_day, t.status, t.service_id, COUNT(*), COALESCE(SUM(t.total_price), 0), NOW() FROM (
+            SELECT status, service_id, total_price FROM bookings
+            WHERE created_at >= v_day AND created_at < v_day + INTERVAL 1 DAY AND deleted = 0
+            UNION ALL SELECT status, service_id, total_price FROM bookings_archive
+            WHERE created_at >= v_day AND created_at < v_day + INTERVAL 1 DAY AND deleted = 0
+        ) t GROUP BY t.status, t.service_id;
+        COMMIT;
+        SET v_day = v_day + INTERVAL 1 DAY;
+    END WHILE;
+END //
+DELIMITER ;
+
+SET @t0 = NOW(6);
+CALL bench_rollup(DATE_SUB(@today, INTERVAL 36 MONTH), @today);
+UPDATE stats_rollup_progress SET watermark = (SELECT MAX(updated_at) FROM bookings) WHERE job = 'daily_stats';
+SELECT TIMESTAMPDIFF(MICROSECOND, @t0, NOW(6)) / 1000000 AS full_rollup_seconds,
+       (SELECT COUNT(*) FROM daily_stats) AS rollup_rows;
+
+-- 增量汇总：模拟 5 分钟内 300 单状态变更，查找有变更的日期并重新汇总
+SET @watermark = (SELECT watermark FROM stats_rollup_progress WHERE job = 'daily_stats');
+UPDATE bookings SET status = 'completed', updated_at = @watermark + INTERVAL 1 MINUTE
+ WHERE created_at >= DATE_SUB(@today, INTERVAL 2 DAY) AND status = 'confirmed' AND deleted = 0 LIMIT 300;
+EXPLAIN ANALYZE SELECT DATE(created_at) AS day, MAX(updated_at) AS last_updated FROM bookings
+ WHERE created_at IS NOT NULL AND updated_at > @watermark - INTERVAL 120 SECOND GROUP BY DATE(created_at);
+SET @t0 = NOW(6);
+CALL bench_rollup(DATE_SUB(@today, INTERVAL 2 DAY), @today);
+SELECT TIMESTAMPDIFF(MICROSECOND, @t0, NOW(6)) / 1000000 AS incremental_rollup_seconds;
+
+-- ---------------------------------------------------------------------------
+-- 5. 汇总表 + 当日范围查询：与 DailyStatsRollup.monthToDate 相同
+-- ---------------------------------------------------------------------------
+EXPLAIN ANALYZE SELECT COALESCE(SUM(booking_count), 0), COALESCE(SUM(CASE WHEN status = 'completed' THEN revenue END), 0)
+ FROM daily_stats WHERE stat_date >= @month_start AND stat_date < @today;
+EXPLAIN ANALYZE SELECT COUNT(*), COALESCE(SUM(CASE WHEN status = 'completed' THEN total_price END), 0) FROM bookings
+ WHERE created_at >= @today AND created_at < @today + INTERVAL 1 DAY AND deleted = 0;
+
+-- 结果核对：三种写法的当月订单数与已完成金额应一致
+SELECT 'function' AS variant, COUNT(*) AS bookings,
+       COALESCE(SUM(CASE WHEN status = 'completed' THEN total_price END), 0) AS revenue
+FROM bookings WHERE YEAR(created_at) = YEAR(CURDATE()) AND MONTH(created_at) = MONTH(CURDATE()) AND deleted = 0
+UNION ALL
+SELECT 'range', COUNT(*), COALESCE(SUM(CASE WHEN status = 'completed' THEN total_price END), 0)
+FROM bookings WHERE created_at >= @month_start AND created_at < @today + INTERVAL 1 DAY AND deleted = 0
+UNION ALL
+SELECT 'rollup+tail', r.bookings + t.bookings, r.revenue + t.revenue
+FROM (SELECT COALESCE(SUM(booking_count), 0) AS bookings,
+             COALESCE(SUM(CASE WHEN status = 'completed' THEN revenue END), 0) AS revenue
+      FROM daily_stats WHERE stat_date >= @month_start AND stat_date < @today) r,
+     (SELECT COUNT(*) AS bookings, COALESCE(SUM(CASE WHEN status = 'completed' THEN total_price END), 0) AS revenue
+      FROM bookings WHERE created_at >= @today AND created_at < @today + INTERVAL 1 DAY AND deleted = 0) t;
+
+-- ---------------------------------------------------------------------------
+-- 6. 清理
+-- ---------------------------------------------------------------------------
+DROP PROCEDURE IF EXISTS bench_rollup;
+DROP TABLE IF EXISTS bench_seq;
+SET SESSION FOREIGN_KEY_CHECKS = 1;
@@ -0,0 +1,89 @@
+-- 生成一年时间段：逐条插入与多行 INSERT IGNORE 的耗时对比
+-- 仅在独立的压测库中执行（会清空 time_slots 中 2030 年的数据），需先执行 init.sql
+-- 用法：mysql -u root -p carwash_bench < time_slot_generation_benchmark.sql
+--
+-- 数据量：2030 全年每天 08:00-20:00、每 30 分钟一个时间段，共 365 × 24 = 8760 行
+-- 方式 A：逐条 INSERT、每条自动提交（对应原先逐个调用 createTimeSlot）
+-- 方式 B：每条语句 500 行、每 4 条语句提交一次（对应 TimeSlotGenerator 默认配置）
+-- 方式 C：再执行一次方式 B，全部命中 uk_date_time 被跳过
+
+SET @year_start = '2030-01-01';
+
+DROP PROCEDURE IF EXISTS bench_slots_single;
+DROP PROCEDURE IF EXISTS bench_slots_batched;
+DELIMITER //
+
+CREATE PROCEDURE bench_slots_single()
+BEGIN
+  DECLARE d INT DEFAULT 0;
+  DECLARE s INT;
+  SET autocommit = 1;
+  WHILE d < 365 DO
+    SET s = 0;
+    WHILE s < 24 DO
+      INSERT INTO time_slots (date, start_time, end_time, max_bookings, current_bookings, status, deleted)
+      VALUES (DATE_ADD(@year_start, INTERVAL d DAY),
+              SEC_TO_TIME(28800 + s * 1800), SEC_TO_TIME(30600 + s * 1800), 4, 0, 1, 0);
+      SET s = s + 1;
+    END WHILE;
+    SET d = d + 1;
+  END WHILE;
+END //
+
+-- 用动态 SQL 拼出与 insertIgnoreBatch 相同形状的多行语句
+CREATE PROCEDURE bench_slots_batched()
+BEGIN
+  DECLARE n INT DEFAULT 0;
+  DECLARE batches INT DEFAULT 0;
+  SET autocommit = 0;
+  WHILE n < 8760 DO
+    SET @sql = 'INSERT IGNORE INTO time_slots (date, start_time, end_time, max_bookings, current_bookings, status, deleted) VALUES ';
+    SET @i = 0;
+    WHILE @i < 500 AND n < 8760 DO
+      SET @sql = CONCAT(@sql, IF(@i = 0, '', ','), '(''',
+                        DATE_ADD(@year_start, INTERVAL n DIV 24 DAY), ''',''',
+                        SEC_TO_TIME(28800 + (n MOD 24) * 1800), ''',''',
+                        SEC_TO_TIME(30600 + (n MOD 24) * 1800), ''',4,0,1,0)');
+      SET @i = @i + 1;
+      SET n = n + 1;
+    END WHILE;
+    PREPARE stmt FROM @sql;
+    EXECUTE stmt;
+    DEALLOCATE PREPARE stmt;
+    SET batches = batches + 1;
+    IF batches MOD 4 = 0 THEN
+      COMMIT;
+    END IF;
+  END WHILE;
+  COMMIT;
+  SET autocommit = 1;
+END //
+
+DELIMITER ;
+
+-- 方式 A
+DELETE FROM time_slots WHERE date BETWEEN '2030-01-01' AND '2030-12-31';
+SET @t0 = NOW(6);
+CALL bench_slots_single();
+SELECT 'A: 逐条插入' AS method, COUNT(*) AS `rows`,
+       TIMESTAMPDIFF(MICROSECOND, @t0, NOW(6)) / 1000 AS elapsed_ms
+FROM time_slots WHERE date BETWEEN '2030-01-01' AND '2030-12-31';
+
+-- 方式 B
+DELETE FROM time_slots WHERE date BETWEEN '2030-01-01' AND '2030-12-31';
+SET @t0 = NOW(6);
+CALL bench_slots_batched();
+SELECT 'B: 多行插入' AS method, COUNT(*) AS `rows`,
+       TIMESTAMPDIFF(MICROSECOND, @t0, NOW(6)) / 1000 AS elapsed_ms
+FROM time_slots WHERE date BETWEEN '2030-01-01' AND '2030-12-31';
+
+-- 方式 C：重复执行，行数不变
+SET @t0 = NOW(6);
+CALL bench_slots_batched();
+SELECT 'C: 重复执行（全部跳过）' AS method, COUNT(*) AS `rows`,
+       TIMESTAMPDIFF(MICROSECOND, @t0, NOW(6)) / 1000 AS elapsed_ms
+FROM time_slots WHERE date BETWEEN '2030-01-01' AND '2030-12-31';
+
+DELETE FROM time_slots WHERE date BETWEEN '2030-01-01' AND '2030-12-31';
+DROP PROCEDURE bench_slots_single;
+DROP PROCEDURE bench_slots_batched;